@@ -35,6 +35,7 @@ import org.matsim.core.utils.geometry.transformations.TransformationFactory;
 import org.matsim.core.utils.io.IOUtils;
 import org.matsim.core.utils.misc.Counter;
 import org.matsim.up.freight.algorithms.complexNetworks.PathDependentNetwork.PathDependentNode;
+import org.matsim.up.freight.utils.CoordinateTransformationService;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
@@ -163,8 +164,9 @@ public class ComplexNetworkUtils {
 			String networkCRS){
 		LOG.info("Writing weighted edge list to file...");
 
-		CoordinateTransformation ct = TransformationFactory.getCoordinateTransformation(
-				networkCRS, TransformationFactory.WGS84);
+		/* Nodes appear in many edges, so remember their positions. */
+		CoordinateTransformation ct = CoordinateTransformationService.get(
+				networkCRS, TransformationFactory.WGS84, 4096);
 		String[] headers = new String[]{"oId", "oLon", "oLat", "oX", "oY", "dId" ,"dLon" ,"dLat", "dX", "dY", "weight"};
 		try(BufferedWriter bw = IOUtils.getBufferedWriter(filename);
 			CSVPrinter csvPrinter = new CSVPrinter(bw, CSVFormat.DEFAULT.withHeader(headers))){
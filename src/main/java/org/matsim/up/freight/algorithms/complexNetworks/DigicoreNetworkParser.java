@@ -27,10 +27,10 @@ import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
 import org.matsim.core.utils.collections.Tuple;
-import org.matsim.core.utils.io.IOUtils;
 import org.matsim.core.utils.misc.Counter;
 import org.matsim.facilities.ActivityFacility;
 import org.matsim.up.freight.containers.DigicoreNetwork;
+import org.matsim.up.freight.utils.BlockGzip;
 
 import edu.uci.ics.jung.graph.util.Pair;
 
@@ -80,7 +80,7 @@ public class DigicoreNetworkParser {
 		Counter nodeCounter = new Counter("   nodes: ");
 		Counter arcCounter = new Counter("   arcs: " );
 
-		BufferedReader br = IOUtils.getBufferedReader(filename);
+		BufferedReader br = BlockGzip.getBufferedReader(filename);
 		try {
 			String line = null;
 			String type = null;
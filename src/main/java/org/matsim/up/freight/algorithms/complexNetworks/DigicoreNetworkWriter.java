@@ -29,10 +29,10 @@ import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
 import org.matsim.core.utils.collections.Tuple;
-import org.matsim.core.utils.io.IOUtils;
 import org.matsim.core.utils.misc.Counter;
 import org.matsim.facilities.ActivityFacility;
 import org.matsim.up.freight.containers.DigicoreNetwork;
+import org.matsim.up.freight.utils.BlockGzip;
 
 import edu.uci.ics.jung.graph.util.Pair;
 
@@ -92,7 +92,7 @@ public class DigicoreNetworkWriter {
 			}			
 		}
 		log.info("Writing network to " + filename);
-		BufferedWriter bw = IOUtils.getBufferedWriter(filename);
+		BufferedWriter bw = BlockGzip.getBufferedWriter(filename);
 		
 		/* Write the nodes/vertices. */
 		log.info("  Writing nodes (" + network.getVertexCount() + ")");
@@ -180,7 +180,7 @@ public class DigicoreNetworkWriter {
 		log.info("Number of vertices to write: " + network.getVertexCount());
 		Counter counter = new Counter("   vertices written: ");
 		
-		BufferedWriter bw = IOUtils.getBufferedWriter(filename);
+		BufferedWriter bw = BlockGzip.getBufferedWriter(filename);
 		try{
 			bw.write("FacilityId,Long,Lat,InOrder,OutOrder,Order");
 			bw.newLine();
@@ -30,6 +30,7 @@ import org.matsim.core.api.internal.MatsimWriter;
 import org.matsim.core.utils.io.MatsimXmlWriter;
 import org.matsim.core.utils.io.UncheckedIOException;
 import org.matsim.up.freight.algorithms.complexNetworks.PathDependentNetwork.PathDependentNode;
+import org.matsim.up.freight.utils.BlockGzip;
 
 public class DigicorePathDependentNetworkWriter extends MatsimXmlWriter implements MatsimWriter {
     private final static Logger LOG = Logger.getLogger(DigicorePathDependentNetworkWriter.class);
@@ -70,7 +71,7 @@ public class DigicorePathDependentNetworkWriter extends MatsimXmlWriter implemen
         DigicorePathDependentNetworkWriterHandler handler = new DigicorePathDependentNetworkWriterHandlerImpl_v1();
 
         try {
-            openFile(filename);
+            this.writer = BlockGzip.getBufferedWriter(filename);
             writeXmlHead();
             writeDoctype("digicoreNetwork", dtd);
 
@@ -107,7 +108,7 @@ public class DigicorePathDependentNetworkWriter extends MatsimXmlWriter implemen
         String dtd = "http://matsim.org/files/dtd/digicorePathDependentNetwork_v2.dtd";
         DigicorePathDependentNetworkWriterHandler handler = new DigicorePathDependentNetworkWriterHandlerImpl_v2();
 
-        openFile(filename);
+        this.writer = BlockGzip.getBufferedWriter(filename);
         writeXmlHead();
         writeDoctype("digicoreNetwork", dtd);
 
@@ -28,6 +28,7 @@ import org.matsim.api.core.v01.Identifiable;
 import org.matsim.api.core.v01.network.Node;
 import org.matsim.core.gbl.MatsimRandom;
 import org.matsim.core.utils.misc.Counter;
+import org.matsim.up.freight.containers.ColumnarDigicoreVehicles;
 import org.matsim.up.freight.containers.DigicoreActivity;
 import org.matsim.up.freight.containers.DigicoreChain;
 import org.matsim.up.freight.containers.DigicoreVehicle;
@@ -102,7 +103,7 @@ public class PathDependentNetwork {
          * source node. This is usable when we sample an activity chain later
          * from the path-dependent complex network. */
         DigicoreActivity firstMajor = activities.get(0);
-        int startHour = firstMajor.getEndTimeGregorianCalendar().get(Calendar.HOUR_OF_DAY);
+        int startHour = firstMajor.getEndHourOfDay();
         int numberOfActivities = chain.getMinorActivities().size();
 
 
@@ -244,6 +245,30 @@ public class PathDependentNetwork {
     }
 
 
+    /**
+     * Builds the network from vehicles kept in columns. Only a single chain
+     * is created, as objects, at a time.
+     */
+    public void buildNetwork(ColumnarDigicoreVehicles vehicles) {
+        LOG.info("Building network... number of vehicles to process: " + vehicles.getNumberOfVehicles());
+        Counter xmlCounter = new Counter("   vehicles completed: ");
+
+        buildStartTime = System.currentTimeMillis();
+        for (int v = 0; v < vehicles.getNumberOfVehicles(); v++) {
+            /* Process vehicle's chains. */
+            for (int c = vehicles.getFirstChain(v); c < vehicles.getChainEnd(v); c++) {
+                this.processActivityChain(vehicles.getChain(c));
+            }
+            xmlCounter.incCounter();
+        }
+
+        xmlCounter.printCounter();
+        buildEndTime = System.currentTimeMillis();
+
+        writeNetworkStatisticsToConsole();
+    }
+
+
     public void addNewPathDependentNode(Id<Node> id, Coord coord) {
         if (this.network.containsKey(id)) {
             LOG.warn("Could not add a new node " + id.toString() + " - it already exists.");
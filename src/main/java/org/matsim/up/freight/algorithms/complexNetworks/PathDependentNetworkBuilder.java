@@ -21,9 +21,8 @@ package org.matsim.up.freight.algorithms.complexNetworks;
 
 import org.apache.log4j.Logger;
 import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.up.freight.containers.CompactDigicoreVehicles;
 import org.matsim.up.freight.containers.DigicoreVehicle;
-import org.matsim.up.freight.containers.DigicoreVehicles;
-import org.matsim.up.freight.io.DigicoreVehiclesReader;
 import org.matsim.up.freight.utils.DigicoreChainCleaner;
 import org.matsim.up.utils.Header;
 
@@ -66,8 +65,7 @@ public class PathDependentNetworkBuilder {
 		builder.setNetworkDescription(description);
 		
 		/* Read the vehicle container. */
-		DigicoreVehicles vehicles = new DigicoreVehicles();
-		new DigicoreVehiclesReader(vehicles).readFile(vehicleFile);
+		CompactDigicoreVehicles vehicles = CompactDigicoreVehicles.read(vehicleFile);
 		builder.network.buildNetwork(vehicles);
 		
 		new DigicorePathDependentNetworkWriter(builder.network).write(outputFile);
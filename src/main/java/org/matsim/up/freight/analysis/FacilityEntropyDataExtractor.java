@@ -31,7 +31,6 @@ import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
 import org.matsim.core.utils.geometry.CoordinateTransformation;
-import org.matsim.core.utils.geometry.transformations.TransformationFactory;
 import org.matsim.core.utils.io.IOUtils;
 import org.matsim.core.utils.misc.Counter;
 import org.matsim.facilities.ActivityFacility;
@@ -40,6 +39,7 @@ import org.matsim.up.freight.containers.DigicoreChain;
 import org.matsim.up.freight.containers.DigicoreVehicle;
 import org.matsim.up.freight.containers.DigicoreVehicles;
 import org.matsim.up.freight.io.DigicoreVehiclesReader;
+import org.matsim.up.freight.utils.CoordinateTransformationService;
 import org.matsim.up.utils.Header;
 import org.matsim.vehicles.Vehicle;
 
@@ -121,7 +121,8 @@ public class FacilityEntropyDataExtractor {
 		counter.printCounter();
 		LOG.info("Done extracting.");
 		
-		CoordinateTransformation ct = TransformationFactory.getCoordinateTransformation("WGS84_SA_Albers", "WGS84");
+		/* Facilities are visited by many vehicles, so remember their positions. */
+		CoordinateTransformation ct = CoordinateTransformationService.get("WGS84_SA_Albers", "WGS84", 4096);
 		
 		LOG.info("Writing outpout to file...");
 		BufferedWriter bw = IOUtils.getBufferedWriter(output);
@@ -20,7 +20,6 @@
 package org.matsim.up.freight.analysis.activity;
 
 import java.io.File;
-import java.util.Calendar;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -88,7 +87,7 @@ public class ActivityStartTimeRunable implements Runnable {
 				
 				if(analyse){
 					/* Convert hour of the day to string. */
-					String hour = String.format("%02d", activity.getStartTimeGregorianCalendar().get(Calendar.HOUR_OF_DAY));
+					String hour = String.format("%02d", activity.getStartHourOfDay());
 					
 					/* Add the start hour to the map, or increment if it already
 					 * exists. */
@@ -172,7 +172,7 @@ public class BasicChainAnalyser {
 				GregorianCalendar chainStart = chain.getFirstMajorActivity().getEndTimeGregorianCalendar();
 				String day = DigicoreUtils.getShortDate(chainStart);
 				int dayType = getDayType(chainStart);
-				int hour = chainStart.get(Calendar.HOUR_OF_DAY);
+				int hour = chain.getFirstMajorActivity().getEndHourOfDay();
 				int numberOfActivities = chain.getMinorActivities().size();
 				
 				this.outputList.add(String.format("%s,%s,%d,%d,%d\n", 
@@ -25,8 +25,8 @@ package org.matsim.up.freight.analysis.chain;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -35,10 +35,10 @@ import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.core.utils.io.IOUtils;
 import org.matsim.core.utils.misc.Counter;
-import org.matsim.up.freight.containers.DigicoreChain;
-import org.matsim.up.freight.containers.DigicoreVehicle;
+import org.matsim.up.freight.containers.ColumnarDigicoreVehicles;
+import org.matsim.up.freight.containers.CompactDigicoreVehicles;
 import org.matsim.up.freight.containers.DigicoreVehicles;
-import org.matsim.up.freight.io.DigicoreVehiclesReader;
+import org.matsim.up.freight.containers.MappedDigicoreVehicles;
 import org.matsim.up.utils.Header;
 import org.matsim.vehicles.Vehicle;
 
@@ -80,11 +80,10 @@ public class ChainCounter {
 	
 	private static void checkMonthByMonth(String path){
 		int chains = 0;
-		DigicoreVehicles vehicles = null;
+		CompactDigicoreVehicles vehicles = null;
 		
 		for(String month : months){
-			vehicles = null; vehicles = new DigicoreVehicles();
-			new DigicoreVehiclesReader(vehicles).readFile(path + "digicoreVehicles_" + month + ".xml.gz");
+			vehicles = null; vehicles = CompactDigicoreVehicles.read(path + "digicoreVehicles_" + month + ".xml.gz");
 			int count = countChains(vehicles, monthlyMap);
 			LOG.info("Number of chains for " + month + ": " + count);
 		}
@@ -94,26 +93,29 @@ public class ChainCounter {
 	
 	private static void checkWholeYear(String path){
 		int chains = 0;
-		DigicoreVehicles vehicles = new DigicoreVehicles();
-		new DigicoreVehiclesReader(vehicles).readFile(path + "digicoreVehicles_201306_201405.xml.gz");
+		/* A whole year need not fit on the heap. */
+		MappedDigicoreVehicles vehicles = MappedDigicoreVehicles.read(path + "digicoreVehicles_201306_201405.xml.gz");
 		chains += countChains(vehicles, yearlyMap);
 		LOG.info("Total number of chains on yearly basis: " + chains);
 	}
 	
-	private static int countChains(DigicoreVehicles vehicles, 
+	private static int countChains(ColumnarDigicoreVehicles vehicles, 
 			Map<Id<Vehicle>, Map<String, Integer>> map){
 		
 		int total = 0;
 		Counter counter = new Counter("  vehicles # ");
-		for(DigicoreVehicle vehicle : vehicles.getVehicles().values()){
-			if(!map.containsKey(vehicle.getId())){
-				map.put(vehicle.getId(), new TreeMap<>());
+		for(int v = 0; v < vehicles.getNumberOfVehicles(); v++){
+			Id<Vehicle> vehicleId = vehicles.getVehicleId(v);
+			if(!map.containsKey(vehicleId)){
+				map.put(vehicleId, new TreeMap<>());
 			}
-			Map<String, Integer> thisMap = map.get(vehicle.getId());
+			Map<String, Integer> thisMap = map.get(vehicleId);
 			
-			for(DigicoreChain chain : vehicle.getChains()){
-				int chainYear = chain.getFirstMajorActivity().getEndTimeGregorianCalendar().get(Calendar.YEAR);
-				int chainMonth = chain.getFirstMajorActivity().getEndTimeGregorianCalendar().get(Calendar.MONTH)+1;
+			for(int c = vehicles.getFirstChain(v); c < vehicles.getChainEnd(v); c++){
+				/* The first (major) activity of the chain. */
+				LocalDate chainDate = vehicles.getEndDate(vehicles.getFirstActivity(c));
+				int chainYear = chainDate.getYear();
+				int chainMonth = chainDate.getMonthValue();
 				String monthString = String.format("%d%02d", chainYear, chainMonth);
 				if(!thisMap.containsKey(monthString)){
 					thisMap.put(monthString, 1);
@@ -123,7 +125,7 @@ public class ChainCounter {
 				}
 			}
 			
-			total += vehicle.getChains().size();
+			total += vehicles.getChainEnd(v) - vehicles.getFirstChain(v);
 			counter.incCounter();
 		}
 		counter.printCounter();
@@ -8,7 +8,6 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -175,17 +174,17 @@ public class ConsecutiveActivityFacilityReporter {
 						Coord c = current.getCoord();
 						Coord cWgs = ct.transform(c);
 						String dateTime = DigicoreUtils.getShortDateAndTime(current.getStartTimeGregorianCalendar());
-						int activityDay = current.getStartTimeGregorianCalendar().get(Calendar.DAY_OF_WEEK);
-						int dayOfYear = current.getStartTimeGregorianCalendar().get(Calendar.DAY_OF_YEAR);
+						int activityDay = current.getStartDayOfWeek();
+						int dayOfYear = current.getStartDate().getDayOfYear();
 						if(abnormalDays.contains(dayOfYear)){
 							activityDay = 8;
 						}
-						long currentStartTime = current.getStartTimeGregorianCalendar().getTimeInMillis();
-						long previousEndTime = previous.getEndTimeGregorianCalendar().getTimeInMillis();
-						long previousStartTime = previous.getStartTimeGregorianCalendar().getTimeInMillis();
+						double currentStartTime = current.getStartTime().seconds();
+						double previousEndTime = previous.getEndTime().seconds();
+						double previousStartTime = previous.getStartTime().seconds();
 						
-						double timeBetweenDuplicates = (((double)currentStartTime) - ((double)previousEndTime))/(60.0*1000.0);
-						double startToStart = (((double)currentStartTime) - ((double)previousStartTime))/(60.0*1000.0);
+						double timeBetweenDuplicates = (currentStartTime - previousEndTime)/60.0;
+						double startToStart = (currentStartTime - previousStartTime)/60.0;
 						
 						/* Check if the facility Ids are the same. */
 						String isDuplicate = "false";
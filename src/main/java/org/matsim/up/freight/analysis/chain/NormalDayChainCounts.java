@@ -75,11 +75,11 @@ public class NormalDayChainCounts {
 			DigicoreVehicle vehicle = dvr.getVehicle();
 			
 			for(DigicoreChain chain : vehicle.getChains()){
-				int dayOfYear = chain.getFirstMajorActivity().getEndTimeGregorianCalendar().get(Calendar.DAY_OF_YEAR);
+				int dayOfYear = chain.getFirstMajorActivity().getEndDate().getDayOfYear();
 				if(!abnormalDays.contains(dayOfYear)){
 					
 					/* Check that it is a weekday */
-					int dayOfWeek = chain.getFirstMajorActivity().getEndTimeGregorianCalendar().get(Calendar.DAY_OF_WEEK);
+					int dayOfWeek = chain.getFirstMajorActivity().getEndDayOfWeek();
 					if(dayOfWeek != Calendar.SATURDAY && dayOfWeek != Calendar.SUNDAY){
 						String dayId = String.valueOf(dayOfYear);
 						
@@ -25,8 +25,6 @@ package org.matsim.up.freight.analysis.chain;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
-import java.util.Calendar;
-import java.util.GregorianCalendar;
 import java.util.List;
 
 import org.matsim.core.utils.io.IOUtils;
@@ -70,7 +68,7 @@ public class StartTimeAnalyser {
 				DigicoreVehicle v = dvr.getVehicle();
 				
 				for(DigicoreChain chain : v.getChains()){
-					bw.write( String.valueOf( getStartTimeInSeconds( chain.getFirstMajorActivity().getEndTimeGregorianCalendar() ) ) );
+					bw.write( String.valueOf( (int) chain.getFirstMajorActivity().getEndTimeInSecondsFromMidnight() ) );
 					bw.write(",");
 					bw.write( String.valueOf( chain.getAllActivities().size() ) );
 					bw.write(",");
@@ -97,15 +95,5 @@ public class StartTimeAnalyser {
 		
 		Header.printFooter();
 	}
-	
-	private static int getStartTimeInSeconds(GregorianCalendar cal){
-		int seconds = 0;
-		
-		seconds += cal.get(Calendar.HOUR_OF_DAY)*3600;
-		seconds += cal.get(Calendar.MINUTE)*60;
-		seconds += cal.get(Calendar.SECOND);
-		
-		return seconds;
-	}
 
 }
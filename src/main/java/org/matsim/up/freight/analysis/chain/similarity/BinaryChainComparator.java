@@ -111,12 +111,16 @@ public class BinaryChainComparator {
 	public Integer getActivityPosition(DigicoreChain chain, Id<ActivityFacility> facilityId){
 		Integer i = null;
 		
+		/* Ids are unique, so the same facility usually has the same Id. Only
+		 * Ids that differ by reference are compared, ignoring case. */
+		List<DigicoreActivity> activities = chain.getAllActivities();
 		int index = 0;
 		boolean found = false;
-		while(!found & index < chain.size()){
-			DigicoreActivity activity = chain.getAllActivities().get(index);
+		while(!found & index < activities.size()){
+			DigicoreActivity activity = activities.get(index);
 			if(activity.getFacilityId() != null){
-				if( activity.getFacilityId().toString().equalsIgnoreCase(facilityId.toString()) ){
+				if( activity.getFacilityId() == facilityId ||
+						activity.getFacilityId().toString().equalsIgnoreCase(facilityId.toString()) ){
 					found = true;
 					i = index;
 				} else{
@@ -126,7 +130,8 @@ public class BinaryChainComparator {
 				/* The activity doesn't have a facility Id, so we should get 
 				 * the Id from the QuadTree using the activity's coordinate. */
 				Id<ActivityFacility> artificialId = this.qt.getClosest(activity.getCoord().getX(), activity.getCoord().getY());
-				if( artificialId.toString().equalsIgnoreCase(facilityId.toString()) ){
+				if( artificialId == facilityId ||
+						artificialId.toString().equalsIgnoreCase(facilityId.toString()) ){
 					found = true;
 					i = index;
 				} else{
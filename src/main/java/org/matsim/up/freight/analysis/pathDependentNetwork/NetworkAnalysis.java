@@ -39,6 +39,7 @@ import org.matsim.core.utils.misc.Counter;
 import org.matsim.up.freight.algorithms.complexNetworks.DigicorePathDependentNetworkReader_v2;
 import org.matsim.up.freight.algorithms.complexNetworks.PathDependentNetwork;
 import org.matsim.up.freight.algorithms.complexNetworks.PathDependentNetwork.PathDependentNode;
+import org.matsim.up.freight.utils.CoordinateTransformationService;
 import org.matsim.up.utils.Header;
 
 import com.google.common.base.Function;
@@ -105,7 +106,7 @@ public class NetworkAnalysis {
 	 */
 	private static void calculateAndWriteDegreeCentralities(PathDependentNetwork network, String output){
 		LOG.info("Calculating the degree centralities...");
-		CoordinateTransformation ct = TransformationFactory.getCoordinateTransformation(
+		CoordinateTransformation ct = CoordinateTransformationService.get(
 				TransformationFactory.HARTEBEESTHOEK94_LO29, TransformationFactory.WGS84);
 		
 		BufferedWriter bw = IOUtils.getBufferedWriter(output);
@@ -172,9 +173,8 @@ public class NetworkAnalysis {
 		
 		LOG.info("Writing the output to " + output);
 		BufferedWriter bw = IOUtils.getBufferedWriter(output);
-		CoordinateTransformation ct = TransformationFactory.getCoordinateTransformation(
-				TransformationFactory.HARTEBEESTHOEK94_LO29, 
-				TransformationFactory.WGS84);
+		CoordinateTransformation ct = CoordinateTransformationService.get(
+				TransformationFactory.HARTEBEESTHOEK94_LO29, TransformationFactory.WGS84);
 		try{
 			try {
 				bw.write("id,x,y,lon,lat,bc,ec");
@@ -258,9 +258,8 @@ public class NetworkAnalysis {
 		
 		LOG.info("Writing the output to " + output);
 		BufferedWriter bw = IOUtils.getBufferedWriter(output);
-		CoordinateTransformation ct = TransformationFactory.getCoordinateTransformation(
-				TransformationFactory.HARTEBEESTHOEK94_LO29, 
-				TransformationFactory.WGS84);
+		CoordinateTransformation ct = CoordinateTransformationService.get(
+				TransformationFactory.HARTEBEESTHOEK94_LO29, TransformationFactory.WGS84);
 		try{
 			try {
 				bw.write("id,x,y,lon,lat,bc,ec");
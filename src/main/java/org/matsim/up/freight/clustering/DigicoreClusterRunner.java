@@ -45,9 +45,11 @@ import org.matsim.facilities.ActivityFacility;
 import org.matsim.facilities.FacilitiesUtils;
 import org.matsim.facilities.FacilitiesWriter;
 import org.matsim.up.freight.clustering.containers.*;
+import org.matsim.up.freight.containers.ColumnarDigicoreVehicles;
+import org.matsim.up.freight.containers.CompactDigicoreVehicles;
 import org.matsim.up.freight.containers.DigicoreVehicle;
 import org.matsim.up.freight.containers.DigicoreVehicles;
-import org.matsim.up.freight.io.DigicoreVehiclesReader;
+import org.matsim.up.freight.containers.MappedDigicoreVehicles;
 import org.matsim.up.utils.FileUtils;
 import org.matsim.up.utils.Header;
 import org.matsim.utils.objectattributes.AttributeConverter;
@@ -78,7 +80,8 @@ public class DigicoreClusterRunner {
      *             <ol>
      *                 <li> the input source. This may be an absolute path of the folder
      *                         containing the Digicore vehicle files, in XML-format, or the
-     *                         {@link DigicoreVehicles} container file. The former (XML folder)
+     *                         {@link DigicoreVehicles} container file, or its
+     *                         {@link MappedDigicoreVehicles} columns file. The former (XML folder)
      *                         is deprecated but still retained for backward compatibility.
      *                 <li> The shapefile within which activities will be clustered. Activities
      *                         outside the shapefile are ignored. NOTE: It is actually recommended
@@ -380,8 +383,10 @@ public class DigicoreClusterRunner {
         LOG.info("Done building QuadTree.");
 
         /* Read the activities from vehicle files. If the input is a single
-         * DigicoreVehicles file, then the single (V2) container will be read,
-         * and each vehicle will be passed to the multi-threaded infrastructure.
+         * DigicoreVehicles file, then the single (V2) container will be read
+         * into a compact container (or, if it is the container's columns
+         * file, mapped), and each vehicle will be created from it
+         * as it is passed to the multi-threaded infrastructure.
          * Alternatively, if the input is a folder containing individual (V1)
          * DigicoreVehicle files, then they will be sampled, and each will be
          * read by the multi-threaded infrastructure. */
@@ -389,12 +394,14 @@ public class DigicoreClusterRunner {
 
 
         List<Object> vehicles = new ArrayList<>();
+        ColumnarDigicoreVehicles dvs = null;
         File folder = new File(source);
-        if (folder.isFile() && source.endsWith("xml.gz")) {
-            /* It is a V2 DigicoreVehicles container. */
-            DigicoreVehicles dvs = new DigicoreVehicles();
-            new DigicoreVehiclesReader(dvs).readFile(source);
-            vehicles.addAll(dvs.getVehicles().values());
+        if (folder.isFile() && (source.endsWith("xml.gz") || source.endsWith(MappedDigicoreVehicles.FILENAME_SUFFIX))) {
+            /* It is a V2 DigicoreVehicles container, or its columns. */
+            dvs = source.endsWith("xml.gz") ? CompactDigicoreVehicles.read(source) : MappedDigicoreVehicles.open(source);
+            for (int v = 0; v < dvs.getNumberOfVehicles(); v++) {
+                vehicles.add(v);
+            }
         } else if (folder.isDirectory()) {
             /* It is a folder with individual V1 DigicoreVehicle files. */
             List<File> vehicleList = FileUtils.sampleFiles(folder, Integer.MAX_VALUE, FileUtils.getFileFilter("xml.gz"));
@@ -428,8 +435,8 @@ public class DigicoreClusterRunner {
             while (blockCounter++ < BLOCK_SIZE && vehicleCounter < vehicles.size()) {
                 Object o = vehicles.get(vehicleCounter++);
                 DigicoreActivityReaderRunnable rdar;
-                if (o instanceof DigicoreVehicle) {
-                    DigicoreVehicle vehicle = (DigicoreVehicle) o;
+                if (o instanceof Integer) {
+                    DigicoreVehicle vehicle = dvs.getVehicle((Integer) o);
                     rdar = new DigicoreActivityReaderRunnable(vehicle, zoneQT, counter);
                 } else if (o instanceof File) {
                     // This is just kept for backward compatability.
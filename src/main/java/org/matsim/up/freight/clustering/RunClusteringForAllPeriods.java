@@ -1,6 +1,7 @@
 package org.matsim.up.freight.clustering;
 
 import org.apache.log4j.Logger;
+import org.matsim.up.freight.containers.MappedDigicoreVehicles;
 import org.matsim.up.freight.extract.ExtractionUtils;
 import org.matsim.up.utils.Header;
 
@@ -53,8 +54,10 @@ class RunClusteringForAllPeriods {
         for(String date : dates){
             LOG.info("==== Processing " + date);
             String folder = path + date + "/";
+            /* The months' vehicles are mapped rather than read onto the heap,
+             * so the columns need only be created once. */
             String[] clusterArgs = new String[]{
-                    folder + ExtractionUtils.FILENAME_VEHICLES,
+                    MappedDigicoreVehicles.convert(folder + ExtractionUtils.FILENAME_VEHICLES),
                     shapefile,
                     shapefileField,
                     threads,
@@ -143,14 +143,30 @@ public class FacilityToActivityAssigner {
 		DigicoreVehiclesReader dvr = new DigicoreVehiclesReader(dvs);
 		dvr.readFile(inputVehicles);
 
+		/* The new vehicles container, to which the threads add each vehicle
+		 * as soon as its chains have been reconstructed. */
+		DigicoreVehicles newVehicles = dvs.getCoordinateReferenceSystem() == null ?
+				DigicoreVehicles.createConcurrent() :
+				DigicoreVehicles.createConcurrent(dvs.getCoordinateReferenceSystem());
+		
+		String oldDescription = dvs.getDescription() == null ? "" : dvs.getDescription();
+		oldDescription += oldDescription.endsWith(".") ? " " : ". ";
+		oldDescription += "Facility Ids added.";
+		
 		/* Execute the multi-threaded jobs. */
 		ExecutorService threadExecutor = Executors.newFixedThreadPool(nThreads);
 		Counter threadCounter = new Counter("   vehicles completed: ");
-		List<Future<DigicoreVehicle>> listOfJobs = new ArrayList<>(dvs.getVehicles().size());
+		List<Future<?>> listOfJobs = new ArrayList<>(dvs.getVehicles().size());
 		
 		for(DigicoreVehicle vehicle : dvs.getVehicles().values()){
 			Callable<DigicoreVehicle> job = new CallableChainReconstructor(vehicle, facilityTree, threadCounter, studyArea);
-			Future<DigicoreVehicle> submit = threadExecutor.submit(job);
+			Future<?> submit = threadExecutor.submit(() -> {
+				DigicoreVehicle reconstructed = job.call();
+				if(reconstructed != null){
+					newVehicles.addDigicoreVehicle(reconstructed);
+				}
+				return null;
+			});
 			listOfJobs.add(submit);
 		}
 
@@ -162,25 +178,10 @@ public class FacilityToActivityAssigner {
 
 		reconstructDuration = System.currentTimeMillis() - startTime;
 		
-		/* Add all vehicles to the new vehicles container. */
-		log.info("Adding all vehicles from multi-threaded run...");
-		DigicoreVehicles newVehicles = null;
-		if(dvs.getCoordinateReferenceSystem() == null) {
-			newVehicles = new DigicoreVehicles();
-		} else {
-			newVehicles = new DigicoreVehicles(dvs.getCoordinateReferenceSystem());
-		}
-		
-		String oldDescription = dvs.getDescription() == null ? "" : dvs.getDescription();
-		oldDescription += oldDescription.endsWith(".") ? " " : ". ";
-		oldDescription += "Facility Ids added.";
-		
-		for(Future<DigicoreVehicle> future : listOfJobs){
+		/* Only check that all the jobs succeeded. */
+		for(Future<?> future : listOfJobs){
 			try {
-				DigicoreVehicle vehicle = future.get();
-				if(vehicle != null){
-					newVehicles.addDigicoreVehicle(vehicle);
-				}
+				future.get();
 			} catch (InterruptedException e) {
 				e.printStackTrace();
 				throw new RuntimeException("Cannot add vehicle during multithreaded consolidation.");
@@ -0,0 +1,138 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ColumnTables.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.containers;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.facilities.ActivityFacility;
+
+/**
+ * The tables used while activities are added to columns: the facility Ids
+ * and the activity types, each of which is then referred to by its index,
+ * and the single time zone (and locale) of all the activities.
+ *
+ * @author jwjoubert
+ */
+final class ColumnTables {
+	final static int NO_FACILITY = -1;
+	/** The activity types are kept as a (unsigned) byte. */
+	final static int MAXIMUM_TYPES = 256;
+
+	private final List<Id<ActivityFacility>> facilityIds = new ArrayList<>();
+	private final Map<Id<ActivityFacility>, Integer> facilityIndex = new HashMap<>();
+	private final List<String> types = new ArrayList<>();
+	private final Map<String, Integer> typeIndex = new HashMap<>();
+
+	private ZoneId zone = null;
+	private TimeZone timeZone = null;
+	private Locale locale = null;
+
+
+	/**
+	 * @throws IllegalArgumentException if the activity is in a different
+	 * 		   time zone than those already checked.
+	 */
+	void checkZone(DigicoreActivity activity){
+		if(zone == null){
+			zone = activity.getZone();
+			timeZone = TimeZone.getTimeZone(zone);
+			locale = activity.getLocale();
+		} else if(!zone.equals(activity.getZone())){
+			throw new IllegalArgumentException("All activities must be in the same time zone: " +
+					activity.getZone() + " is not " + zone);
+		}
+	}
+
+
+	/**
+	 * @return the index of the facility, or {@link #NO_FACILITY} if the Id is
+	 * 		   <code>null</code>.
+	 */
+	int getFacilityIndex(Id<ActivityFacility> facilityId){
+		if(facilityId == null){
+			return NO_FACILITY;
+		}
+		Integer f = facilityIndex.get(facilityId);
+		if(f == null){
+			f = facilityIds.size();
+			facilityIds.add(facilityId);
+			facilityIndex.put(facilityId, f);
+		}
+		return f;
+	}
+
+
+	/**
+	 * @return the index of the type, which must be read as an unsigned byte.
+	 */
+	byte getTypeIndex(String type){
+		Integer t = typeIndex.get(type);
+		if(t == null){
+			if(types.size() == MAXIMUM_TYPES){
+				throw new IllegalArgumentException("Cannot have more than " + MAXIMUM_TYPES + " activity types.");
+			}
+			t = types.size();
+			types.add(type);
+			typeIndex.put(type, t);
+		}
+		return (byte) t.intValue();
+	}
+
+
+	@SuppressWarnings("unchecked")
+	Id<ActivityFacility>[] getFacilityIds(){
+		return facilityIds.toArray(new Id[0]);
+	}
+
+	String[] getTypes(){
+		return types.toArray(new String[0]);
+	}
+
+	ZoneId getZone(){
+		return zone;
+	}
+
+	TimeZone getTimeZone(){
+		return timeZone;
+	}
+
+	Locale getLocale(){
+		return locale;
+	}
+
+
+	static DigicoreActivityType[] getActivityTypes(String[] types){
+		DigicoreActivityType[] activityTypes = new DigicoreActivityType[types.length];
+		for(int t = 0; t < types.length; t++){
+			activityTypes[t] = DigicoreActivityType.of(types[t]);
+		}
+		return activityTypes;
+	}
+
+}
@@ -0,0 +1,233 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ColumnarDigicoreVehicles.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.containers;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+
+/**
+ * Read-only vehicles whose activities are stored in columns rather than as
+ * objects. Vehicles, chains and activities are referred to by their
+ * (zero-based) index, and the accessors read the columns directly, without
+ * creating any objects. For example, to visit all the activities:
+ * <pre>
+ * for(int v = 0; v &lt; vehicles.getNumberOfVehicles(); v++){
+ *     for(int c = vehicles.getFirstChain(v); c &lt; vehicles.getChainEnd(v); c++){
+ *         for(int a = vehicles.getFirstActivity(c); a &lt; vehicles.getActivityEnd(c); a++){
+ *             double x = vehicles.getX(a);
+ *             ...
+ *         }
+ *     }
+ * }
+ * </pre>
+ * Where code still requires the object model, a single activity, chain or
+ * vehicle can be created with {@link #getActivity(int)}, {@link #getChain(int)}
+ * or {@link #getVehicle(int)}. These are new objects, and changing them does
+ * not change the columns.
+ * <p>
+ * Only the activities of the chains are kept: not the traces between them,
+ * nor the activities' link Ids. All the activities are in the same time
+ * zone.
+ *
+ * @see CompactDigicoreVehicles
+ * @see MappedDigicoreVehicles
+ *
+ * @author jwjoubert
+ */
+public interface ColumnarDigicoreVehicles {
+
+	String getCoordinateReferenceSystem();
+
+	String getDescription();
+
+	/**
+	 * @return the time zone of all the activities, or <code>null</code> if
+	 * 		   there are no activities.
+	 */
+	ZoneId getZone();
+
+	/**
+	 * @return the same time zone as {@link #getZone()}, as required by the
+	 * 		   {@link DigicoreActivity}.
+	 */
+	TimeZone getTimeZone();
+
+	Locale getLocale();
+
+	int getNumberOfVehicles();
+
+	int getNumberOfChains();
+
+	int getNumberOfActivities();
+
+
+	/* Vehicles. */
+
+	Id<Vehicle> getVehicleId(int vehicle);
+
+	Id<VehicleType> getVehicleType(int vehicle);
+
+	/**
+	 * @return the index of the vehicle, or -1 if there is no such vehicle.
+	 */
+	int indexOf(Id<Vehicle> id);
+
+	/**
+	 * @return the index of the vehicle's first chain.
+	 */
+	int getFirstChain(int vehicle);
+
+	/**
+	 * @return the index following the vehicle's last chain.
+	 */
+	int getChainEnd(int vehicle);
+
+
+	/* Chains. */
+
+	/**
+	 * @return the index of the chain's first activity.
+	 */
+	int getFirstActivity(int chain);
+
+	/**
+	 * @return the index following the chain's last activity.
+	 */
+	int getActivityEnd(int chain);
+
+
+	/* Activities. */
+
+	/**
+	 * @return the x-coordinate, or {@link Double#NaN} if the activity has no
+	 * 		   coordinate.
+	 */
+	double getX(int activity);
+
+	double getY(int activity);
+
+	/**
+	 * @return the start time, in seconds since the epoch, the same as
+	 * 		   {@link DigicoreActivity#getStartTime()}.
+	 */
+	double getStartTime(int activity);
+
+	/**
+	 * @return the end time, in seconds since the epoch, the same as
+	 * 		   {@link DigicoreActivity#getEndTime()}.
+	 */
+	double getEndTime(int activity);
+
+	/**
+	 * @return the facility Id, or <code>null</code> if the activity is not at
+	 * 		   a facility.
+	 */
+	Id<ActivityFacility> getFacilityId(int activity);
+
+	String getType(int activity);
+
+	DigicoreActivityType getActivityType(int activity);
+
+
+	/**
+	 * @return the local hour of the day (0 through 23) at which the activity
+	 * 		   starts.
+	 */
+	default int getStartHourOfDay(int activity){
+		return Math.floorMod(getLocalSeconds(getStartTime(activity)), 24*60*60) / 3600;
+	}
+
+	/**
+	 * @return the local hour of the day (0 through 23) at which the activity
+	 * 		   ends.
+	 */
+	default int getEndHourOfDay(int activity){
+		return Math.floorMod(getLocalSeconds(getEndTime(activity)), 24*60*60) / 3600;
+	}
+
+	default LocalDate getStartDate(int activity){
+		return LocalDate.ofEpochDay(Math.floorDiv(getLocalSeconds(getStartTime(activity)), 24*60*60));
+	}
+
+	default LocalDate getEndDate(int activity){
+		return LocalDate.ofEpochDay(Math.floorDiv(getLocalSeconds(getEndTime(activity)), 24*60*60));
+	}
+
+	private long getLocalSeconds(double time){
+		long seconds = (long) Math.floor(time);
+		return seconds + getZone().getRules().getOffset(Instant.ofEpochSecond(seconds)).getTotalSeconds();
+	}
+
+
+	/* Objects. */
+
+	/**
+	 * @return a new activity with the values of the given activity.
+	 */
+	default DigicoreActivity getActivity(int activity){
+		DigicoreActivity da = new DigicoreActivity(getType(activity), getTimeZone(), getLocale());
+		double x = getX(activity);
+		if(!Double.isNaN(x)){
+			da.setCoord(new Coord(x, getY(activity)));
+		}
+		da.setStartTime(getStartTime(activity));
+		da.setEndTime(getEndTime(activity));
+		da.setFacilityId(getFacilityId(activity));
+		return da;
+	}
+
+	/**
+	 * @return a new chain with (only) the activities of the given chain.
+	 */
+	default DigicoreChain getChain(int chain){
+		DigicoreChain dc = new DigicoreChain();
+		int activityEnd = getActivityEnd(chain);
+		dc.ensureCapacity(activityEnd - getFirstActivity(chain));
+		for(int a = getFirstActivity(chain); a < activityEnd; a++){
+			dc.add(getActivity(a));
+		}
+		return dc;
+	}
+
+	/**
+	 * @return a new vehicle with the chains of the given vehicle.
+	 */
+	default DigicoreVehicle getVehicle(int vehicle){
+		DigicoreVehicle dv = new DigicoreVehicle(getVehicleId(vehicle));
+		dv.setType(getVehicleType(vehicle).toString());
+		int chainEnd = getChainEnd(vehicle);
+		for(int c = getFirstChain(vehicle); c < chainEnd; c++){
+			dv.getChains().add(getChain(c));
+		}
+		return dv;
+	}
+
+}
@@ -0,0 +1,367 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactDigicoreVehicles.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.containers;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.up.freight.io.DigicoreVehiclesReader;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+
+/**
+ * A compact alternative to {@link DigicoreVehicles} that keeps the
+ * activities of all the vehicles in flat columns on the heap: the
+ * coordinates, the start and end times (epoch milliseconds), an index into
+ * the table of facility Ids, and an index into the table of activity types.
+ * The vehicles and chains are only offsets into these columns. An activity
+ * therefore needs 37 bytes, compared to several hundred for a
+ * {@link DigicoreActivity} with its {@link Coord}, {@link Id}s and
+ * attributes.
+ * <p>
+ * See {@link ColumnarDigicoreVehicles} for how the vehicles are visited.
+ *
+ * @author jwjoubert
+ */
+public final class CompactDigicoreVehicles implements ColumnarDigicoreVehicles {
+	private final static Logger LOG = Logger.getLogger(CompactDigicoreVehicles.class);
+
+	private final String crs;
+	private final String description;
+	private final ZoneId zone;
+	private final TimeZone timeZone;
+	private final Locale locale;
+
+	/* Vehicles. */
+	private final Id<Vehicle>[] vehicleIds;
+	private final Id<VehicleType>[] vehicleTypes;
+	private final int[] vehicleChainOffset;
+	private final Map<Id<Vehicle>, Integer> vehicleIndex;
+
+	/* Chains. */
+	private final int[] chainActivityOffset;
+
+	/* Activities. */
+	private final double[] x;
+	private final double[] y;
+	private final long[] start;
+	private final long[] end;
+	private final int[] facility;
+	private final byte[] type;
+
+	/* Tables. */
+	private final Id<ActivityFacility>[] facilityIds;
+	private final String[] types;
+	private final DigicoreActivityType[] activityTypes;
+
+
+	private CompactDigicoreVehicles(Builder builder, String crs, String description) {
+		this.crs = crs;
+		this.description = description;
+		this.zone = builder.tables.getZone();
+		this.timeZone = builder.tables.getTimeZone();
+		this.locale = builder.tables.getLocale();
+
+		int numberOfVehicles = builder.vehicleIds.size();
+		int numberOfChains = builder.numberOfChains;
+		int numberOfActivities = builder.numberOfActivities;
+		this.vehicleIds = toArray(builder.vehicleIds);
+		this.vehicleTypes = toArray(builder.vehicleTypes);
+		this.vehicleChainOffset = Arrays.copyOf(builder.vehicleChainOffset, numberOfVehicles + 1);
+		this.vehicleChainOffset[numberOfVehicles] = numberOfChains;
+		this.vehicleIndex = new HashMap<>((int) (numberOfVehicles / 0.75) + 1);
+		for(int v = 0; v < numberOfVehicles; v++){
+			this.vehicleIndex.put(this.vehicleIds[v], v);
+		}
+
+		this.chainActivityOffset = Arrays.copyOf(builder.chainActivityOffset, numberOfChains + 1);
+		this.chainActivityOffset[numberOfChains] = numberOfActivities;
+
+		this.x = Arrays.copyOf(builder.x, numberOfActivities);
+		this.y = Arrays.copyOf(builder.y, numberOfActivities);
+		this.start = Arrays.copyOf(builder.start, numberOfActivities);
+		this.end = Arrays.copyOf(builder.end, numberOfActivities);
+		this.facility = Arrays.copyOf(builder.facility, numberOfActivities);
+		this.type = Arrays.copyOf(builder.type, numberOfActivities);
+
+		this.facilityIds = builder.tables.getFacilityIds();
+		this.types = builder.tables.getTypes();
+		this.activityTypes = ColumnTables.getActivityTypes(this.types);
+	}
+
+
+	@SuppressWarnings("unchecked")
+	private static <T> Id<T>[] toArray(List<Id<T>> list){
+		return list.toArray(new Id[0]);
+	}
+
+
+	/**
+	 * Converts a container of vehicles.
+	 */
+	public static CompactDigicoreVehicles of(DigicoreVehicles vehicles){
+		Builder builder = new Builder();
+		for(DigicoreVehicle vehicle : vehicles.getVehicles().values()){
+			builder.add(vehicle);
+		}
+		return builder.build(vehicles.getCoordinateReferenceSystem(), vehicles.getDescription());
+	}
+
+
+	/**
+	 * Reads a vehicles file straight into the compact container. Each
+	 * vehicle is added as soon as it has been read, so the vehicles are never
+	 * all in memory as objects.
+	 */
+	public static CompactDigicoreVehicles read(String filename){
+		DigicoreVehicles vehicles = new DigicoreVehicles();
+		vehicles.setSilentLog(true);
+		Builder builder = new Builder();
+		new DigicoreVehiclesReader(vehicles, builder::add).readFile(filename);
+		return builder.build(vehicles.getCoordinateReferenceSystem(), vehicles.getDescription());
+	}
+
+
+	@Override
+	public String getCoordinateReferenceSystem(){
+		return this.crs;
+	}
+
+	@Override
+	public String getDescription(){
+		return this.description;
+	}
+
+	@Override
+	public ZoneId getZone(){
+		return this.zone;
+	}
+
+	@Override
+	public TimeZone getTimeZone(){
+		return this.timeZone;
+	}
+
+	@Override
+	public Locale getLocale(){
+		return this.locale;
+	}
+
+	@Override
+	public int getNumberOfVehicles(){
+		return this.vehicleIds.length;
+	}
+
+	@Override
+	public int getNumberOfChains(){
+		return this.chainActivityOffset.length - 1;
+	}
+
+	@Override
+	public int getNumberOfActivities(){
+		return this.x.length;
+	}
+
+
+	/* Vehicles. */
+
+	@Override
+	public Id<Vehicle> getVehicleId(int vehicle){
+		return this.vehicleIds[vehicle];
+	}
+
+	@Override
+	public Id<VehicleType> getVehicleType(int vehicle){
+		return this.vehicleTypes[vehicle];
+	}
+
+	@Override
+	public int indexOf(Id<Vehicle> id){
+		Integer index = this.vehicleIndex.get(id);
+		return index == null ? -1 : index;
+	}
+
+	@Override
+	public int getFirstChain(int vehicle){
+		return this.vehicleChainOffset[vehicle];
+	}
+
+	@Override
+	public int getChainEnd(int vehicle){
+		return this.vehicleChainOffset[vehicle + 1];
+	}
+
+
+	/* Chains. */
+
+	@Override
+	public int getFirstActivity(int chain){
+		return this.chainActivityOffset[chain];
+	}
+
+	@Override
+	public int getActivityEnd(int chain){
+		return this.chainActivityOffset[chain + 1];
+	}
+
+
+	/* Activities. */
+
+	@Override
+	public double getX(int activity){
+		return this.x[activity];
+	}
+
+	@Override
+	public double getY(int activity){
+		return this.y[activity];
+	}
+
+	@Override
+	public double getStartTime(int activity){
+		return (double) this.start[activity] / 1000.0;
+	}
+
+	@Override
+	public double getEndTime(int activity){
+		return (double) this.end[activity] / 1000.0;
+	}
+
+	@Override
+	public Id<ActivityFacility> getFacilityId(int activity){
+		int f = this.facility[activity];
+		return f == ColumnTables.NO_FACILITY ? null : this.facilityIds[f];
+	}
+
+	@Override
+	public String getType(int activity){
+		return this.types[this.type[activity] & 0xFF];
+	}
+
+	@Override
+	public DigicoreActivityType getActivityType(int activity){
+		return this.activityTypes[this.type[activity] & 0xFF];
+	}
+
+
+	/**
+	 * Builds the compact container one vehicle at a time. The vehicles are
+	 * not kept, and can be discarded once they have been added.
+	 */
+	public static final class Builder {
+		private final List<Id<Vehicle>> vehicleIds = new ArrayList<>();
+		private final List<Id<VehicleType>> vehicleTypes = new ArrayList<>();
+		private int[] vehicleChainOffset = new int[16];
+		private int[] chainActivityOffset = new int[16];
+		private int numberOfChains = 0;
+
+		private double[] x = new double[64];
+		private double[] y = new double[64];
+		private long[] start = new long[64];
+		private long[] end = new long[64];
+		private int[] facility = new int[64];
+		private byte[] type = new byte[64];
+		private int numberOfActivities = 0;
+
+		private final ColumnTables tables = new ColumnTables();
+		private boolean built = false;
+
+
+		/**
+		 * Adds the vehicle's chains, but only their activities.
+		 *
+		 * @throws IllegalArgumentException if an activity is in a different
+		 * 		   time zone than those already added.
+		 */
+		public synchronized void add(DigicoreVehicle vehicle){
+			if(built){
+				throw new IllegalStateException("The container has already been built.");
+			}
+			int v = vehicleIds.size();
+			if(v + 1 >= vehicleChainOffset.length){
+				vehicleChainOffset = Arrays.copyOf(vehicleChainOffset, 2 * vehicleChainOffset.length);
+			}
+			vehicleIds.add(vehicle.getId());
+			vehicleTypes.add(vehicle.getType().getId());
+			vehicleChainOffset[v] = numberOfChains;
+
+			for(DigicoreChain chain : vehicle.getChains()){
+				if(numberOfChains + 1 >= chainActivityOffset.length){
+					chainActivityOffset = Arrays.copyOf(chainActivityOffset, 2 * chainActivityOffset.length);
+				}
+				chainActivityOffset[numberOfChains++] = numberOfActivities;
+				for(DigicoreActivity activity : chain.getAllActivities()){
+					addActivity(activity);
+				}
+			}
+		}
+
+
+		private void addActivity(DigicoreActivity activity){
+			tables.checkZone(activity);
+
+			int a = numberOfActivities;
+			if(a == x.length){
+				int capacity = 2 * x.length;
+				x = Arrays.copyOf(x, capacity);
+				y = Arrays.copyOf(y, capacity);
+				start = Arrays.copyOf(start, capacity);
+				end = Arrays.copyOf(end, capacity);
+				facility = Arrays.copyOf(facility, capacity);
+				type = Arrays.copyOf(type, capacity);
+			}
+			Coord coord = activity.getCoord();
+			x[a] = coord == null ? Double.NaN : coord.getX();
+			y[a] = coord == null ? Double.NaN : coord.getY();
+			start[a] = Math.round(activity.getStartTime().seconds() * 1000.0);
+			end[a] = Math.round(activity.getEndTime().seconds() * 1000.0);
+
+			facility[a] = tables.getFacilityIndex(activity.getFacilityId());
+			type[a] = tables.getTypeIndex(activity.getType());
+			numberOfActivities++;
+		}
+
+
+		/**
+		 * @return the container of all the vehicles added. The builder cannot
+		 * 		   be used again.
+		 */
+		public synchronized CompactDigicoreVehicles build(String crs, String description){
+			built = true;
+			CompactDigicoreVehicles vehicles = new CompactDigicoreVehicles(this, crs, description);
+			LOG.info("Compact container has " + vehicles.getNumberOfVehicles() + " vehicles, " +
+					vehicles.getNumberOfChains() + " chains and " + vehicles.getNumberOfActivities() + " activities.");
+			return vehicles;
+		}
+	}
+
+}
@@ -1,9 +1,14 @@
 package org.matsim.up.freight.containers;
 
-import java.util.Calendar;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.GregorianCalendar;
 import java.util.Locale;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.GeometryFactory;
@@ -18,20 +23,47 @@ import org.matsim.facilities.ActivityFacility;
 
 import org.matsim.utils.objectattributes.attributable.Attributes;
 
+/**
+ * An activity of a vehicle, i.e. where it stopped. The start and end times
+ * are kept as epoch milliseconds, together with the time zone (and locale)
+ * that is shared by all activities in the same zone. The local time of day,
+ * day of the week and date are calculated from these directly. The
+ * {@link GregorianCalendar}s are only created when asked for, and
+ * only for compatibility.
+ * 
+ * @author jwjoubert
+ */
 public class DigicoreActivity implements Activity, DigicoreChainElement {
+	private final static int SECONDS_PER_DAY = 24*60*60;
+	/** Zones are shared by all the activities, rather than one per activity. */
+	private final static Map<String, ZoneId> ZONES = new ConcurrentHashMap<>();
+	private final static Map<ZoneId, TimeZone> TIME_ZONES = new ConcurrentHashMap<>();
+	private final static AtomicInteger MINOR_TYPE_CHANGES = new AtomicInteger();
 		
 	private Id<ActivityFacility> facilityId;
 	private Id<Link> linkId;
 	private String type;
+	private DigicoreActivityType activityType;
 	private Coord coord;
-	private GregorianCalendar startTime;
-	private GregorianCalendar endTime;
-	private Double maximumDuration = 0.0;
+	private final ZoneId zone;
+	private final Locale locale;
+	/* Epoch milliseconds. */
+	private long startTime;
+	private long endTime;
+	private double maximumDuration = 0.0;
 	
 	public DigicoreActivity(String type, TimeZone timeZone, Locale locale) {
-		this.type = type;
-		startTime = new GregorianCalendar(timeZone, locale);
-		endTime = new GregorianCalendar(timeZone, locale);
+		this.activityType = DigicoreActivityType.of(type);
+		this.type = DigicoreActivityType.intern(type, activityType);
+		this.zone = ZONES.computeIfAbsent(timeZone.getID(), id -> {
+			ZoneId zoneId = timeZone.toZoneId();
+			TIME_ZONES.putIfAbsent(zoneId, (TimeZone) timeZone.clone());
+			return zoneId;
+		});
+		this.locale = locale;
+		/* As the calendars used to, start with the current time. */
+		this.startTime = System.currentTimeMillis();
+		this.endTime = this.startTime;
 	}
 
 	public boolean isInArea(MultiPolygon area){
@@ -51,6 +83,14 @@ public class DigicoreActivity implements Activity, DigicoreChainElement {
 	public String getType(){
 		return this.type;
 	}
+	
+	/**
+	 * @return the type, which can be compared by reference, rather than
+	 * 		   comparing the type's string.
+	 */
+	public DigicoreActivityType getActivityType(){
+		return this.activityType;
+	}
 
 	public Coord getCoord() {
 		return this.coord;
@@ -60,12 +100,38 @@ public class DigicoreActivity implements Activity, DigicoreChainElement {
 		this.coord = coord;
 	}
 	
+	/**
+	 * @return a new calendar of the start time. Changing the calendar does
+	 * 		   <b>not</b> change the activity. Where possible, rather use
+	 * 		   {@link #getStartTime()}, {@link #getStartHourOfDay()},
+	 * 		   {@link #getStartDayOfWeek()} or {@link #getStartDate()}.
+	 */
 	public GregorianCalendar getStartTimeGregorianCalendar() {
-		return startTime;
+		return toCalendar(startTime);
 	}
 	
+	/**
+	 * @return a new calendar of the end time. Changing the calendar does
+	 * 		   <b>not</b> change the activity. Where possible, rather use
+	 * 		   {@link #getEndTime()}, {@link #getEndHourOfDay()},
+	 * 		   {@link #getEndDayOfWeek()} or {@link #getEndDate()}.
+	 */
 	public GregorianCalendar getEndTimeGregorianCalendar() {
-		return endTime;
+		return toCalendar(endTime);
+	}
+	
+	private GregorianCalendar toCalendar(long time){
+		GregorianCalendar calendar = new GregorianCalendar((TimeZone) TIME_ZONES.get(zone).clone(), locale);
+		calendar.setTimeInMillis(time);
+		return calendar;
+	}
+	
+	public ZoneId getZone(){
+		return this.zone;
+	}
+	
+	public Locale getLocale(){
+		return this.locale;
 	}
 	
 	public boolean isAtSameCoord(DigicoreActivity da){
@@ -87,7 +153,7 @@ public class DigicoreActivity implements Activity, DigicoreChainElement {
 
 	@Override
 	public void setStartTime(double seconds) {
-		startTime.setTimeInMillis(Math.round(seconds * 1000.0));		
+		this.startTime = Math.round(seconds * 1000.0);
 	}
 
 	@Override
@@ -98,7 +164,7 @@ public class DigicoreActivity implements Activity, DigicoreChainElement {
 
 	@Override
 	public void setEndTime(double seconds) {
-		endTime.setTimeInMillis(Math.round(seconds * 1000.0));		
+		this.endTime = Math.round(seconds * 1000.0);
 	}
 
 	@Override
@@ -109,7 +175,22 @@ public class DigicoreActivity implements Activity, DigicoreChainElement {
 
 	@Override
 	public void setType(String type) {
-		this.type = type;		
+		DigicoreActivityType activityType = DigicoreActivityType.of(type);
+		if((this.activityType == DigicoreActivityType.MINOR) != (activityType == DigicoreActivityType.MINOR)){
+			MINOR_TYPE_CHANGES.incrementAndGet();
+		}
+		this.activityType = activityType;
+		this.type = DigicoreActivityType.intern(type, activityType);
+	}
+	
+	
+	/**
+	 * @return the number of times that any activity has become, or stopped
+	 * 		   being, a minor activity. Chains use this to know when their
+	 * 		   minor activities must be found again.
+	 */
+	static int getMinorTypeChanges(){
+		return MINOR_TYPE_CHANGES.get();
 	}
 
 
@@ -133,12 +214,12 @@ public class DigicoreActivity implements Activity, DigicoreChainElement {
 
 	@Override
 	public OptionalTime getEndTime() {
-		return OptionalTime.defined((double)this.endTime.getTimeInMillis() / 1000.0);
+		return OptionalTime.defined((double)this.endTime / 1000.0);
 	}
 
 	@Override
 	public OptionalTime getStartTime() {
-		return OptionalTime.defined((double)this.startTime.getTimeInMillis() / 1000.0);
+		return OptionalTime.defined((double)this.startTime / 1000.0);
 	}
 	
 
@@ -169,10 +250,7 @@ public class DigicoreActivity implements Activity, DigicoreChainElement {
 	 * @return
 	 */
 	public double getStartTimeInSecondsFromMidnight(){
-		int hour = startTime.get(Calendar.HOUR_OF_DAY);
-		int minute = startTime.get(Calendar.MINUTE);
-		int second = startTime.get(Calendar.SECOND);
-		return hour*60*60 + minute*60 + second;
+		return Math.floorMod(getLocalSeconds(startTime), SECONDS_PER_DAY);
 	}
 	
 	
@@ -185,10 +263,85 @@ public class DigicoreActivity implements Activity, DigicoreChainElement {
 	 * @return
 	 */
 	public double getEndTimeInSecondsFromMidnight(){
-		int hour = endTime.get(Calendar.HOUR_OF_DAY);
-		int minute = endTime.get(Calendar.MINUTE);
-		int second = endTime.get(Calendar.SECOND);
-		return hour*60*60 + minute*60 + second;
+		return Math.floorMod(getLocalSeconds(endTime), SECONDS_PER_DAY);
+	}
+	
+	
+	/**
+	 * @return the local hour of the day (0 through 23) at which the activity
+	 * 		   starts, the same as the calendar's {@link java.util.Calendar#HOUR_OF_DAY}.
+	 */
+	public int getStartHourOfDay(){
+		return (int) getStartTimeInSecondsFromMidnight() / 3600;
+	}
+	
+	
+	/**
+	 * @return the local hour of the day (0 through 23) at which the activity
+	 * 		   ends, the same as the calendar's {@link java.util.Calendar#HOUR_OF_DAY}.
+	 */
+	public int getEndHourOfDay(){
+		return (int) getEndTimeInSecondsFromMidnight() / 3600;
+	}
+	
+	
+	/**
+	 * @return the day of the week on which the activity starts, using the
+	 * 		   calendar's convention for {@link java.util.Calendar#DAY_OF_WEEK}:
+	 * 		   Sunday is day 1, Monday is 2, etc.
+	 */
+	public int getStartDayOfWeek(){
+		return getDayOfWeek(startTime);
+	}
+	
+	
+	/**
+	 * @return the day of the week on which the activity ends, using the
+	 * 		   calendar's convention for {@link java.util.Calendar#DAY_OF_WEEK}:
+	 * 		   Sunday is day 1, Monday is 2, etc.
+	 */
+	public int getEndDayOfWeek(){
+		return getDayOfWeek(endTime);
+	}
+	
+	
+	/**
+	 * @return the local date on which the activity starts, from which the
+	 * 		   year, month and day of the year can be had.
+	 */
+	public LocalDate getStartDate(){
+		return LocalDate.ofEpochDay(getEpochDay(startTime));
+	}
+	
+	
+	/**
+	 * @return the local date on which the activity ends.
+	 */
+	public LocalDate getEndDate(){
+		return LocalDate.ofEpochDay(getEpochDay(endTime));
+	}
+	
+	
+	/**
+	 * @return the local time, in seconds since the epoch, i.e. the
+	 * 		   UTC time shifted by the zone's offset at the time.
+	 */
+	private long getLocalSeconds(long time){
+		long seconds = Math.floorDiv(time, 1000L);
+		return seconds + zone.getRules().getOffset(Instant.ofEpochSecond(seconds)).getTotalSeconds();
+	}
+	
+	
+	private long getEpochDay(long time){
+		return Math.floorDiv(getLocalSeconds(time), SECONDS_PER_DAY);
+	}
+	
+	
+	/**
+	 * The epoch, 1 January 1970, was a Thursday (day 5).
+	 */
+	private int getDayOfWeek(long time){
+		return (int) Math.floorMod(getEpochDay(time) + 4, 7) + 1;
 	}
 
 	@Override
@@ -0,0 +1,83 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DigicoreActivityType.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.containers;
+
+/**
+ * The types of {@link DigicoreActivity} that have a meaning in the chains.
+ * Each activity knows its type, so that checking it is a reference
+ * comparison rather than a (case-insensitive) string comparison.
+ * <p>
+ * The activity's type remains a string, as required by
+ * {@link org.matsim.api.core.v01.population.Activity}, but the strings of
+ * these types are shared by all the activities.
+ *
+ * @author jwjoubert
+ */
+public enum DigicoreActivityType {
+	MAJOR("major"),
+	MINOR("minor"),
+	ENTRY("entry"),
+	EXIT("exit"),
+	/** Any other type. */
+	OTHER(null);
+
+	private final String name;
+
+	DigicoreActivityType(String name) {
+		this.name = name;
+	}
+
+
+	/**
+	 * @return the (lower case) name of the type, or <code>null</code> for
+	 * 		   {@link #OTHER}.
+	 */
+	public String getName() {
+		return name;
+	}
+
+
+	/**
+	 * @return the type with the given name, ignoring case, or
+	 * 		   {@link #OTHER} if it is not one of the known types.
+	 */
+	public static DigicoreActivityType of(String type) {
+		if (type != null) {
+			for (DigicoreActivityType t : values()) {
+				if (type.equalsIgnoreCase(t.name)) {
+					return t;
+				}
+			}
+		}
+		return OTHER;
+	}
+
+
+	/**
+	 * @return the shared string of the given type, if it is exactly the name
+	 * 		   of a known type, otherwise the type itself.
+	 */
+	static String intern(String type, DigicoreActivityType t) {
+		return t.name != null && t.name.equals(type) ? t.name : type;
+	}
+
+}
@@ -2,6 +2,7 @@ package org.matsim.up.freight.containers;
 
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.GregorianCalendar;
 import java.util.List;
 
@@ -11,15 +12,49 @@ import org.matsim.facilities.ActivityFacility;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 
+/**
+ * A chain of activities, with the traces between them.
+ * <p>
+ * The chain's activities, and its minor activities, are found once and then
+ * kept until the chain changes, or until an activity's type changes to or
+ * from minor. The lists returned by {@link #getAllActivities()} and
+ * {@link #getMinorActivities()} are therefore read-only, and must not be
+ * relied on once the chain has changed.
+ * 
+ * @author jwjoubert
+ */
 public class DigicoreChain extends ArrayList<DigicoreChainElement>{
 	
 	private static final long serialVersionUID = 1L;
+	/* Immutable, so that chains that are shared by threads need no locking. */
+	private transient ActivityIndex activityIndex = null;
+	private transient ActivityIndex minorIndex = null;
 
 	public DigicoreChain() {
 		
 	}
 	
 	
+	/**
+	 * Unlike the other changes, {@link ArrayList#set(int, Object)} does not
+	 * count as a modification of the list itself.
+	 */
+	@Override
+	public DigicoreChainElement set(int index, DigicoreChainElement element) {
+		modCount++;
+		return super.set(index, element);
+	}
+	
+	
+	@Override
+	public Object clone() {
+		DigicoreChain clone = (DigicoreChain) super.clone();
+		clone.activityIndex = null;
+		clone.minorIndex = null;
+		return clone;
+	}
+	
+	
 	/**
 	 * Returns the chain duration in seconds as the time difference between the 
 	 * last major activity's start time and the first major activity's end time.
@@ -43,16 +78,19 @@ public class DigicoreChain extends ArrayList<DigicoreChainElement>{
 	 * Returns only the minor activities.
 	 */
 	public List<DigicoreActivity> getMinorActivities(){
-		List<DigicoreActivity> minors = new ArrayList<DigicoreActivity>();
-		for(DigicoreChainElement dce : this){
-			if(dce instanceof DigicoreActivity){
-				DigicoreActivity a = (DigicoreActivity)dce;
-				if(a.getType().equalsIgnoreCase("minor")){
+		ActivityIndex index = this.minorIndex;
+		int typeChanges = DigicoreActivity.getMinorTypeChanges();
+		if(index == null || index.modCount != this.modCount || index.typeChanges != typeChanges){
+			List<DigicoreActivity> minors = new ArrayList<DigicoreActivity>();
+			for(DigicoreActivity a : getAllActivities()){
+				if(a.getActivityType() == DigicoreActivityType.MINOR){
 					minors.add(a);
 				}
 			}
+			index = new ActivityIndex(minors, this.modCount, typeChanges);
+			this.minorIndex = index;
 		}
-		return minors;
+		return index.activities;
 	}
 	
 	
@@ -114,8 +152,8 @@ public class DigicoreChain extends ArrayList<DigicoreChainElement>{
 		 * activity. */
 		boolean startsAndEndsWithMajor = false;
 		if(activities.size() > 1 &&
-				activities.get(0).getType().equalsIgnoreCase("major") &&
-				activities.get(activities.size()-1).getType().equalsIgnoreCase("major")){
+				activities.get(0).getActivityType() == DigicoreActivityType.MAJOR &&
+				activities.get(activities.size()-1).getActivityType() == DigicoreActivityType.MAJOR){
 			startsAndEndsWithMajor =  true;
 		}
 		
@@ -150,7 +188,7 @@ public class DigicoreChain extends ArrayList<DigicoreChainElement>{
 	 */
 	public DigicoreActivity getFirstMajorActivity(){
 		List<DigicoreActivity> activities = getAllActivities();
-		return activities.size() > 0 ? activities.get(0) : null;
+		return activities.isEmpty() ? null : activities.get(0);
 	}
 
 	
@@ -161,18 +199,26 @@ public class DigicoreChain extends ArrayList<DigicoreChainElement>{
 	 */
 	public DigicoreActivity getLastMajorActivity(){
 		List<DigicoreActivity> activities = getAllActivities();
-		return activities.size() > 0 ? activities.get(activities.size()-1) : null;
+		return activities.isEmpty() ? null : activities.get(activities.size()-1);
 	}
 	
 	
+	/**
+	 * @return the chain's activities, in order, as a read-only list.
+	 */
 	public List<DigicoreActivity> getAllActivities(){
-		List<DigicoreActivity> activities = new ArrayList<>();
-		for(DigicoreChainElement dce : this){
-			if(dce instanceof DigicoreActivity){
-				activities.add((DigicoreActivity)dce);
+		ActivityIndex index = this.activityIndex;
+		if(index == null || index.modCount != this.modCount){
+			List<DigicoreActivity> activities = new ArrayList<>();
+			for(DigicoreChainElement dce : this){
+				if(dce instanceof DigicoreActivity){
+					activities.add((DigicoreActivity)dce);
+				}
 			}
+			index = new ActivityIndex(activities, this.modCount, 0);
+			this.activityIndex = index;
 		}
-		return activities;
+		return index.activities;
 	}
 	
 	
@@ -183,7 +229,7 @@ public class DigicoreChain extends ArrayList<DigicoreChainElement>{
 	 * @return
 	 */
 	public int getChainStartDay(){
-		return this.getFirstMajorActivity().getEndTimeGregorianCalendar().get(Calendar.DAY_OF_WEEK);	
+		return this.getFirstMajorActivity().getEndDayOfWeek();
 	}
 	
 	
@@ -198,9 +244,10 @@ public class DigicoreChain extends ArrayList<DigicoreChainElement>{
 	 * 		   <i>abnormal</i> days.  
 	 */
 	public int getChainStartDay(List<Integer> abnormalDays){
-		int dayOfYear = this.getFirstMajorActivity().getEndTimeGregorianCalendar().get(Calendar.DAY_OF_YEAR);
+		DigicoreActivity firstMajor = this.getFirstMajorActivity();
+		int dayOfYear = firstMajor.getEndDate().getDayOfYear();
 		if(!abnormalDays.contains(dayOfYear)){
-			return this.getFirstMajorActivity().getEndTimeGregorianCalendar().get(Calendar.DAY_OF_WEEK);
+			return firstMajor.getEndDayOfWeek();
 		} else{
 			return 8;
 		}
@@ -245,11 +292,11 @@ public class DigicoreChain extends ArrayList<DigicoreChainElement>{
 		boolean isLastExit = false;
 		
 		/* determine if first activity is major and last activity is an exit */			
-		if(this.getFirstMajorActivity().getType().equalsIgnoreCase("major")){
+		if(this.getFirstMajorActivity().getActivityType() == DigicoreActivityType.MAJOR){
 			isFirstMajor = true;
 		}
 		
-		if(this.getLastMajorActivity().getType().equalsIgnoreCase("exit")){
+		if(this.getLastMajorActivity().getActivityType() == DigicoreActivityType.EXIT){
 			isLastExit = true;
 		}
 	
@@ -275,11 +322,11 @@ public class DigicoreChain extends ArrayList<DigicoreChainElement>{
 		boolean isLastMajor = false;
 		
 		/* determine if first activity is an entry and last activity is a major */			
-		if(this.getFirstMajorActivity().getType().equalsIgnoreCase("entry")){
+		if(this.getFirstMajorActivity().getActivityType() == DigicoreActivityType.ENTRY){
 			isFirstEntry = true;
 		}
 		
-		if(this.getLastMajorActivity().getType().equalsIgnoreCase("major")){
+		if(this.getLastMajorActivity().getActivityType() == DigicoreActivityType.MAJOR){
 			isLastMajor = true;
 		}
 	
@@ -304,11 +351,11 @@ public class DigicoreChain extends ArrayList<DigicoreChainElement>{
 		boolean isLastExit = false;
 		
 		/* determine if first activity is an entry and last activity is an exit */			
-		if(this.getFirstMajorActivity().getType().equalsIgnoreCase("entry")){
+		if(this.getFirstMajorActivity().getActivityType() == DigicoreActivityType.ENTRY){
 			isFirstEntry = true;
 		}
 		
-		if(this.getLastMajorActivity().getType().equalsIgnoreCase("exit")){
+		if(this.getLastMajorActivity().getActivityType() == DigicoreActivityType.EXIT){
 			isLastExit = true;
 		}
 	
@@ -331,4 +378,21 @@ public class DigicoreChain extends ArrayList<DigicoreChainElement>{
 				startCalendar.get(Calendar.MINUTE));
 		return "Start time: " + startDateTime + "; Number of (minor) activities: " + this.getMinorActivities().size(); 
 	}
+	
+	
+	/**
+	 * The activities found in the chain, and the state of the chain (and the
+	 * activities' types) at the time.
+	 */
+	private static final class ActivityIndex{
+		private final List<DigicoreActivity> activities;
+		private final int modCount;
+		private final int typeChanges;
+		
+		private ActivityIndex(List<DigicoreActivity> activities, int modCount, int typeChanges){
+			this.activities = Collections.unmodifiableList(activities);
+			this.modCount = modCount;
+			this.typeChanges = typeChanges;
+		}
+	}
 }
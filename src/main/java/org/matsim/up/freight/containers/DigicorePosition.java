@@ -34,13 +34,14 @@ import org.matsim.up.freight.utils.DigicoreUtils;
 
 /**
  * A container class to store the basic element of a Geographical Positioning
- * System (GPS) record: a time stamp and the location.
+ * System (GPS) record: a time stamp and the location. The time stamp is kept
+ * in seconds, and only converted to a calendar when asked for.
  * 
  * @author jwjoubert
  */
 public class DigicorePosition {
-	private GregorianCalendar time;
-	private Coord coord;
+	private final long time;
+	private final Coord coord;
 	
 	/**
 	 * Use this constructor if the location only has a longitude and latitude, 
@@ -51,8 +52,7 @@ public class DigicorePosition {
 	 * @param lat
 	 */
 	public DigicorePosition(long time, double lon, double lat) {
-		this.time = DigicoreUtils.convertTimestampToGregorianCalendar(
-				time*1000, TimeZone.getTimeZone("GMT+2"), Locale.ENGLISH);
+		this.time = time;
 		this.coord = CoordUtils.createCoord(lon, lat);
 	}
 	
@@ -67,17 +67,41 @@ public class DigicorePosition {
 	 * @param ele
 	 */
 	public DigicorePosition(long time, double lon, double lat, double ele){
-		this.time = DigicoreUtils.convertTimestampToGregorianCalendar(
-				time*1000, TimeZone.getTimeZone("GMT+2"), Locale.ENGLISH);
+		this.time = time;
 		this.coord = CoordUtils.createCoord(lon, lat, ele);
 	}
 	
-	public GregorianCalendar getTimeAsGregorianCalendar(){
+	/**
+	 * @return the time stamp, in seconds.
+	 */
+	public long getTime(){
 		return this.time;
 	}
 	
+	/**
+	 * @return a new calendar, in the GMT+2 time zone, of the time stamp.
+	 */
+	public GregorianCalendar getTimeAsGregorianCalendar(){
+		return DigicoreUtils.convertTimestampToGregorianCalendar(
+				time*1000, TimeZone.getTimeZone("GMT+2"), Locale.ENGLISH);
+	}
+	
 	public Coord getCoord(){
 		return this.coord;
 	}
 	
+	@Override
+	public boolean equals(Object obj) {
+		if(!(obj instanceof DigicorePosition)){
+			return false;
+		}
+		DigicorePosition other = (DigicorePosition) obj;
+		return this.time == other.time && this.coord.equals(other.coord);
+	}
+	
+	@Override
+	public int hashCode() {
+		return 31 * Long.hashCode(time) + coord.hashCode();
+	}
+	
 }
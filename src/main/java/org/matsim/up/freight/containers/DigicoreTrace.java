@@ -23,20 +23,39 @@
  */
 package org.matsim.up.freight.containers;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
 
 
 /**
  * A container class to store the basic location elements of a Geographical 
  * Positioning System (GPS) trace. This is one of the possible elements inside
  * an overall activity/trip chain.
+ * <p>
+ * The positions are kept in primitive columns: the time stamp (in seconds),
+ * the coordinates and, only if any position has one, the elevation. A trace
+ * therefore holds no object per position. The trace is still a list of
+ * {@link DigicorePosition}s, but each position returned by {@link #get(int)},
+ * or by iterating over the trace, is created on request. Rather use
+ * {@link #getTime(int)}, {@link #getX(int)} and {@link #getY(int)} when
+ * going through long traces, and {@link #addPosition(long, double, double)}
+ * when filling them.
  * 
  * @author jwjoubert
  */
-public class DigicoreTrace extends ArrayList<DigicorePosition> implements DigicoreChainElement{
-	private static final long serialVersionUID = 1L;
+public class DigicoreTrace extends AbstractList<DigicorePosition> implements DigicoreChainElement, RandomAccess{
+	private static final int DEFAULT_CAPACITY = 16;
 	private String crs;
 	
+	private long[] time;
+	private double[] x;
+	private double[] y;
+	/** The elevations, or <code>null</code> if no position has one. Positions
+	 *  without an elevation are <code>NaN</code>. */
+	private double[] z = null;
+	private int size = 0;
+	
 	/**
 	 * Container class for keeping track of the sequence of positions, i.e. the
 	 * GPS trace of a device/person/vehicle.
@@ -44,7 +63,44 @@ public class DigicoreTrace extends ArrayList<DigicorePosition> implements Digico
 	 * @param crs
 	 */
 	public DigicoreTrace(String crs) {
+		this(crs, DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * @param crs
+	 * @param capacity the expected number of positions.
+	 */
+	public DigicoreTrace(String crs, int capacity) {
+		this.crs = crs;
+		this.time = new long[capacity];
+		this.x = new double[capacity];
+		this.y = new double[capacity];
+	}
+	
+	private DigicoreTrace(String crs, long[] time, double[] x, double[] y, int size) {
+		if(x.length != time.length || y.length != time.length || size > time.length){
+			throw new IllegalArgumentException("Columns must be of the same length, and hold the positions.");
+		}
 		this.crs = crs;
+		this.time = time;
+		this.x = x;
+		this.y = y;
+		this.size = size;
+	}
+	
+	/**
+	 * Creates a trace of the first <code>size</code> positions in the given
+	 * columns, without copying them. The trace takes over the columns, so
+	 * the caller must not change them while the trace is in use.
+	 * 
+	 * @param crs
+	 * @param time in seconds.
+	 * @param x
+	 * @param y
+	 * @param size the number of positions.
+	 */
+	public static DigicoreTrace wrap(String crs, long[] time, double[] x, double[] y, int size){
+		return new DigicoreTrace(crs, time, x, y, size);
 	}
 	
 	/**
@@ -56,4 +112,181 @@ public class DigicoreTrace extends ArrayList<DigicorePosition> implements Digico
 		return this.crs;
 	}
 	
+	/**
+	 * Adds a position without an elevation to the end of the trace.
+	 * 
+	 * @param time in seconds.
+	 * @param x
+	 * @param y
+	 */
+	public void addPosition(long time, double x, double y){
+		ensureCapacity(size + 1);
+		this.time[size] = time;
+		this.x[size] = x;
+		this.y[size] = y;
+		if(this.z != null){
+			this.z[size] = Double.NaN;
+		}
+		size++;
+		modCount++;
+	}
+	
+	/**
+	 * Adds a position with an elevation to the end of the trace.
+	 * 
+	 * @param time in seconds.
+	 * @param x
+	 * @param y
+	 * @param z the elevation.
+	 */
+	public void addPosition(long time, double x, double y, double z){
+		addPosition(time, x, y);
+		setZ(size - 1, z);
+	}
+	
+	public long getTime(int index){
+		checkIndex(index);
+		return this.time[index];
+	}
+	
+	public double getX(int index){
+		checkIndex(index);
+		return this.x[index];
+	}
+	
+	public double getY(int index){
+		checkIndex(index);
+		return this.y[index];
+	}
+	
+	/**
+	 * @return true if the position has an elevation.
+	 */
+	public boolean hasZ(int index){
+		checkIndex(index);
+		return this.z != null && !Double.isNaN(this.z[index]);
+	}
+	
+	/**
+	 * @return the elevation, or {@link Double#NaN} if the position has none.
+	 */
+	public double getZ(int index){
+		checkIndex(index);
+		return this.z == null ? Double.NaN : this.z[index];
+	}
+	
+	/**
+	 * Reduces the trace's columns to its number of positions.
+	 */
+	public void trimToSize(){
+		if(this.time.length > size){
+			this.time = Arrays.copyOf(this.time, size);
+			this.x = Arrays.copyOf(this.x, size);
+			this.y = Arrays.copyOf(this.y, size);
+			if(this.z != null){
+				this.z = Arrays.copyOf(this.z, size);
+			}
+		}
+	}
+	
+	
+	@Override
+	public DigicorePosition get(int index) {
+		checkIndex(index);
+		if(hasZ(index)){
+			return new DigicorePosition(time[index], x[index], y[index], z[index]);
+		}
+		return new DigicorePosition(time[index], x[index], y[index]);
+	}
+	
+	@Override
+	public int size() {
+		return this.size;
+	}
+	
+	@Override
+	public void add(int index, DigicorePosition position) {
+		if(index < 0 || index > size){
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		ensureCapacity(size + 1);
+		int moved = size - index;
+		System.arraycopy(this.time, index, this.time, index + 1, moved);
+		System.arraycopy(this.x, index, this.x, index + 1, moved);
+		System.arraycopy(this.y, index, this.y, index + 1, moved);
+		if(this.z != null){
+			System.arraycopy(this.z, index, this.z, index + 1, moved);
+		}
+		size++;
+		modCount++;
+		setPosition(index, position);
+	}
+	
+	@Override
+	public DigicorePosition set(int index, DigicorePosition position) {
+		DigicorePosition previous = get(index);
+		setPosition(index, position);
+		return previous;
+	}
+	
+	@Override
+	public DigicorePosition remove(int index) {
+		DigicorePosition previous = get(index);
+		int moved = size - index - 1;
+		System.arraycopy(this.time, index + 1, this.time, index, moved);
+		System.arraycopy(this.x, index + 1, this.x, index, moved);
+		System.arraycopy(this.y, index + 1, this.y, index, moved);
+		if(this.z != null){
+			System.arraycopy(this.z, index + 1, this.z, index, moved);
+		}
+		size--;
+		modCount++;
+		return previous;
+	}
+	
+	@Override
+	public void clear() {
+		size = 0;
+		modCount++;
+	}
+	
+	
+	private void setPosition(int index, DigicorePosition position){
+		this.time[index] = position.getTime();
+		this.x[index] = position.getCoord().getX();
+		this.y[index] = position.getCoord().getY();
+		if(position.getCoord().hasZ()){
+			setZ(index, position.getCoord().getZ());
+		} else if(this.z != null){
+			this.z[index] = Double.NaN;
+		}
+	}
+	
+	private void setZ(int index, double z){
+		if(this.z == null){
+			this.z = new double[this.time.length];
+			Arrays.fill(this.z, Double.NaN);
+		}
+		this.z[index] = z;
+	}
+	
+	private void ensureCapacity(int capacity){
+		if(capacity > this.time.length){
+			int newCapacity = Math.max(capacity, this.time.length + (this.time.length >> 1) + 1);
+			this.time = Arrays.copyOf(this.time, newCapacity);
+			this.x = Arrays.copyOf(this.x, newCapacity);
+			this.y = Arrays.copyOf(this.y, newCapacity);
+			if(this.z != null){
+				this.z = Arrays.copyOf(this.z, newCapacity);
+				Arrays.fill(this.z, size, newCapacity, Double.NaN);
+			}
+		}
+	}
+	
+	private void checkIndex(int index){
+		if(index < 0 || index >= size){
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+	
 }
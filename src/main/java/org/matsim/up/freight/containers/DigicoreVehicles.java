@@ -23,6 +23,8 @@ package org.matsim.up.freight.containers;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
@@ -31,27 +33,59 @@ import org.matsim.vehicles.Vehicle;
 
 /**
  * A container to hold multiple {@link DigicoreVehicle}s.
+ * <p>
+ * A concurrent container, created with {@link #createConcurrent(String)},
+ * allows several threads to add vehicles at the same time, for example
+ * as each thread finishes a vehicle. Duplicate {@link Id}s are still
+ * rejected, and the vehicles still counted, without a lock. Only the
+ * vehicles are concurrent: the description, coordinate reference system
+ * and vehicle attributes should still be set by a single thread.
  * 
  * @author jwjoubert
  */
 public class DigicoreVehicles {
 	final private Logger log = Logger.getLogger(DigicoreVehicles.class);
 	final private ObjectAttributes vehicleAttributes = new ObjectAttributes();
-	private Map<Id<Vehicle>, DigicoreVehicle> vehicles = new HashMap<>();
+	private final Map<Id<Vehicle>, DigicoreVehicle> vehicles;
 	private String descr = null;
-	private int counter = 0;
-	private int nextMsg = 1;
+	private final AtomicInteger counter = new AtomicInteger();
 	private boolean silent = false;
 	private String crs = "Atlantis";
 	
 	public DigicoreVehicles() {
 		/* No coordinate reference system set. */
+		this.vehicles = new HashMap<>();
 	}
 	
 	public DigicoreVehicles(String crs){
+		this.vehicles = new HashMap<>();
 		this.crs = crs;
 	}
 	
+	private DigicoreVehicles(Map<Id<Vehicle>, DigicoreVehicle> vehicles){
+		this.vehicles = vehicles;
+	}
+	
+	/**
+	 * @return a container to which several threads can add vehicles.
+	 */
+	public static DigicoreVehicles createConcurrent(){
+		return new DigicoreVehicles(new ConcurrentHashMap<>());
+	}
+	
+	/**
+	 * @return a container to which several threads can add vehicles.
+	 */
+	public static DigicoreVehicles createConcurrent(String crs){
+		DigicoreVehicles vehicles = createConcurrent();
+		vehicles.setCoordinateReferenceSystem(crs);
+		return vehicles;
+	}
+	
+	public boolean isConcurrent(){
+		return this.vehicles instanceof ConcurrentHashMap;
+	}
+	
 	public void setCoordinateReferenceSystem(String crs){
 		this.crs = crs;
 	}
@@ -83,19 +117,17 @@ public class DigicoreVehicles {
 	 * @throws IllegalArgumentException if a vehicle already exists with the same {@link Id}.
 	 */
 	public void addDigicoreVehicle(DigicoreVehicle vehicle){
-		/* Do not allow duplicate vehicle IDs. */
-		if(vehicles.containsKey(vehicle.getId())){
+		/* Add the vehicle to the container, but do not allow duplicate 
+		 * vehicle IDs. Checking and adding is a single step, so that two 
+		 * threads cannot both add the same Id. */
+		if(this.vehicles.putIfAbsent(vehicle.getId(), vehicle) != null){
 			throw new IllegalArgumentException("There is already a vehicle with Id " + vehicle.getId().toString() + " in the population.");
 		}
 		
-		/* Add the vehicle to the container. */
-		this.vehicles.put(vehicle.getId(), vehicle);
-		
-		/* Update the counter. */
-		counter++;
-		if(this.counter % this.nextMsg == 0){
-			nextMsg *= 2;
-			printVehicleCount();
+		/* Update the counter, reporting each time it doubles. */
+		int count = counter.incrementAndGet();
+		if((count & (count - 1)) == 0){
+			printVehicleCount(count);
 		}
 	}
 	
@@ -115,9 +147,9 @@ public class DigicoreVehicles {
 		return this.vehicleAttributes;
 	}
 	
-	private void printVehicleCount(){
+	private void printVehicleCount(int count){
 		if(!silent){
-			log.info("  vehicles # " + this.counter);
+			log.info("  vehicles # " + count);
 		}
 	}
 	
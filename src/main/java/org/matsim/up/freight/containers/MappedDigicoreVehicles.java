@@ -0,0 +1,649 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * MappedDigicoreVehicles.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.containers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.up.freight.io.DigicoreVehiclesReader;
+import org.matsim.up.utils.Header;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+
+/**
+ * Vehicles whose activities are kept in a file of columns that is mapped
+ * into memory, rather than read onto the heap. The columns are the same as
+ * those of the {@link CompactDigicoreVehicles}, so iterating over, say, a
+ * whole year of chains does not require the year to fit on the heap: the
+ * operating system pages the columns in as they are visited. Since the
+ * file is mapped read-only, several JVMs on the same host share the same
+ * pages in the page cache. Only the vehicle Ids, and the tables of facility
+ * Ids and activity types, are read onto the heap.
+ * <p>
+ * The file is created once from a vehicles (XML) file with
+ * {@link #convert(String)}, after which it is opened with
+ * {@link #open(String)}. The vehicles are converted one at a time, as they
+ * are read, so the conversion does not need the vehicles on the heap either.
+ * <p>
+ * The file starts with a header of a magic number, the version, and the
+ * position of the footer. The columns follow, each one in turn: the x and y
+ * coordinates, start and end times (epoch milliseconds) and facility
+ * indices of the activities, the offsets of the vehicles' chains, the
+ * offsets of the chains' activities, and the activities' type indices. The
+ * footer holds the number of vehicles, chains and activities, the
+ * descriptive fields, the vehicle Ids and types, and the tables of facility
+ * Ids and activity types. All values are big-endian.
+ * <p>
+ * The vehicles can be shared by threads.
+ *
+ * @author jwjoubert
+ */
+public final class MappedDigicoreVehicles implements ColumnarDigicoreVehicles {
+	private final static Logger LOG = Logger.getLogger(MappedDigicoreVehicles.class);
+	/** The suffix of the file of columns, which replaces that of the vehicles file. */
+	public final static String FILENAME_SUFFIX = ".columns";
+	private final static int MAGIC = 0x44474356;
+	private final static int VERSION = 1;
+	private final static int HEADER_SIZE = 16;
+
+	private final String crs;
+	private final String description;
+	private final ZoneId zone;
+	private final TimeZone timeZone;
+	private final Locale locale;
+
+	private final int numberOfVehicles;
+	private final int numberOfChains;
+	private final int numberOfActivities;
+
+	private final Id<Vehicle>[] vehicleIds;
+	private final Id<VehicleType>[] vehicleTypes;
+	private final Map<Id<Vehicle>, Integer> vehicleIndex;
+	private final Id<ActivityFacility>[] facilityIds;
+	private final String[] types;
+	private final DigicoreActivityType[] activityTypes;
+
+	private final Column x;
+	private final Column y;
+	private final Column start;
+	private final Column end;
+	private final Column facility;
+	private final Column vehicleChainOffset;
+	private final Column chainActivityOffset;
+	private final Column type;
+
+
+	@SuppressWarnings("unchecked")
+	private MappedDigicoreVehicles(String filename) throws IOException {
+		try(FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)){
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			while(header.hasRemaining() && channel.read(header) >= 0){
+			}
+			header.flip();
+			if(header.remaining() < HEADER_SIZE || header.getInt() != MAGIC){
+				throw new IllegalArgumentException(filename + " is not a file of vehicle columns.");
+			}
+			int version = header.getInt();
+			if(version != VERSION){
+				throw new IllegalArgumentException("Cannot read version " + version + " of " + filename);
+			}
+			long footer = header.getLong();
+
+			/* The footer. */
+			channel.position(footer);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+			this.numberOfVehicles = in.readInt();
+			this.numberOfChains = in.readInt();
+			this.numberOfActivities = in.readInt();
+			this.crs = readString(in);
+			this.description = readString(in);
+			String zoneId = readString(in);
+			this.zone = zoneId == null ? null : ZoneId.of(zoneId);
+			this.timeZone = zone == null ? null : TimeZone.getTimeZone(zone);
+			String language = readString(in);
+			this.locale = language == null ? null : Locale.forLanguageTag(language);
+
+			this.vehicleIds = new Id[numberOfVehicles];
+			this.vehicleTypes = new Id[numberOfVehicles];
+			this.vehicleIndex = new HashMap<>((int) (numberOfVehicles / 0.75) + 1);
+			for(int v = 0; v < numberOfVehicles; v++){
+				this.vehicleIds[v] = Id.createVehicleId(in.readUTF());
+				this.vehicleTypes[v] = Id.create(in.readUTF(), VehicleType.class);
+				this.vehicleIndex.put(this.vehicleIds[v], v);
+			}
+			this.facilityIds = new Id[in.readInt()];
+			for(int f = 0; f < facilityIds.length; f++){
+				this.facilityIds[f] = Id.create(in.readUTF(), ActivityFacility.class);
+			}
+			this.types = new String[in.readInt()];
+			for(int t = 0; t < types.length; t++){
+				this.types[t] = in.readUTF();
+			}
+			this.activityTypes = ColumnTables.getActivityTypes(this.types);
+
+			/* The columns, which remain mapped once the channel is closed. */
+			long position = HEADER_SIZE;
+			this.x = new Column(channel, position, 8L*numberOfActivities);
+			position += 8L*numberOfActivities;
+			this.y = new Column(channel, position, 8L*numberOfActivities);
+			position += 8L*numberOfActivities;
+			this.start = new Column(channel, position, 8L*numberOfActivities);
+			position += 8L*numberOfActivities;
+			this.end = new Column(channel, position, 8L*numberOfActivities);
+			position += 8L*numberOfActivities;
+			this.facility = new Column(channel, position, 4L*numberOfActivities);
+			position += 4L*numberOfActivities;
+			this.vehicleChainOffset = new Column(channel, position, 4L*(numberOfVehicles + 1));
+			position += 4L*(numberOfVehicles + 1);
+			this.chainActivityOffset = new Column(channel, position, 4L*(numberOfChains + 1));
+			position += 4L*(numberOfChains + 1);
+			this.type = new Column(channel, position, numberOfActivities);
+			position += numberOfActivities;
+			if(position != footer){
+				throw new IllegalArgumentException("The columns of " + filename + " are incomplete.");
+			}
+		}
+	}
+
+
+	/**
+	 * Maps a file of columns created with {@link #convert(String)}.
+	 */
+	public static MappedDigicoreVehicles open(String filename){
+		try{
+			MappedDigicoreVehicles vehicles = new MappedDigicoreVehicles(filename);
+			LOG.info("Mapped " + vehicles.getNumberOfVehicles() + " vehicles, " +
+					vehicles.getNumberOfChains() + " chains and " + vehicles.getNumberOfActivities() + " activities.");
+			return vehicles;
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new RuntimeException("Cannot map " + filename);
+		}
+	}
+
+
+	/**
+	 * Maps the columns of a vehicles file, converting the file first if it
+	 * has not been converted yet.
+	 */
+	public static MappedDigicoreVehicles read(String vehiclesFile){
+		return open(convert(vehiclesFile));
+	}
+
+
+	/**
+	 * Converts a vehicles file to a file of columns, unless the vehicles
+	 * file has already been converted since it last changed. The file of
+	 * columns is next to the vehicles file, with the suffix
+	 * {@link #FILENAME_SUFFIX}.
+	 *
+	 * @return the name of the file of columns.
+	 */
+	public static String convert(String vehiclesFile){
+		String filename = getFilename(vehiclesFile);
+		File columns = new File(filename);
+		if(columns.exists() && columns.lastModified() >= new File(vehiclesFile).lastModified()){
+			LOG.info("Using the existing columns " + filename);
+			return filename;
+		}
+
+		LOG.info("Converting " + vehiclesFile + " to columns...");
+		DigicoreVehicles vehicles = new DigicoreVehicles();
+		vehicles.setSilentLog(true);
+		Writer writer = new Writer(filename);
+		try{
+			new DigicoreVehiclesReader(vehicles, writer::add).readFile(vehiclesFile);
+			writer.finish(vehicles.getCoordinateReferenceSystem(), vehicles.getDescription());
+		} finally{
+			writer.deleteTemporaryFiles();
+		}
+		LOG.info("Done converting to " + filename);
+		return filename;
+	}
+
+
+	/**
+	 * @return the name of the file of columns of the vehicles file.
+	 */
+	public static String getFilename(String vehiclesFile){
+		String name = vehiclesFile;
+		for(String suffix : new String[]{".gz", ".xml"}){
+			if(name.endsWith(suffix)){
+				name = name.substring(0, name.length() - suffix.length());
+			}
+		}
+		return name + FILENAME_SUFFIX;
+	}
+
+
+	/**
+	 * Converts a vehicles file.
+	 *
+	 * @param args the vehicles file.
+	 */
+	public static void main(String[] args){
+		Header.printHeader(MappedDigicoreVehicles.class, args);
+		convert(args[0]);
+		Header.printFooter();
+	}
+
+
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		out.writeBoolean(s != null);
+		if(s != null){
+			out.writeUTF(s);
+		}
+	}
+
+
+	@Override
+	public String getCoordinateReferenceSystem(){
+		return this.crs;
+	}
+
+	@Override
+	public String getDescription(){
+		return this.description;
+	}
+
+	@Override
+	public ZoneId getZone(){
+		return this.zone;
+	}
+
+	@Override
+	public TimeZone getTimeZone(){
+		return this.timeZone;
+	}
+
+	@Override
+	public Locale getLocale(){
+		return this.locale;
+	}
+
+	@Override
+	public int getNumberOfVehicles(){
+		return this.numberOfVehicles;
+	}
+
+	@Override
+	public int getNumberOfChains(){
+		return this.numberOfChains;
+	}
+
+	@Override
+	public int getNumberOfActivities(){
+		return this.numberOfActivities;
+	}
+
+
+	/* Vehicles. */
+
+	@Override
+	public Id<Vehicle> getVehicleId(int vehicle){
+		return this.vehicleIds[vehicle];
+	}
+
+	@Override
+	public Id<VehicleType> getVehicleType(int vehicle){
+		return this.vehicleTypes[vehicle];
+	}
+
+	@Override
+	public int indexOf(Id<Vehicle> id){
+		Integer index = this.vehicleIndex.get(id);
+		return index == null ? -1 : index;
+	}
+
+	@Override
+	public int getFirstChain(int vehicle){
+		return this.vehicleChainOffset.getInt(checkIndex(vehicle, numberOfVehicles));
+	}
+
+	@Override
+	public int getChainEnd(int vehicle){
+		return this.vehicleChainOffset.getInt(checkIndex(vehicle, numberOfVehicles) + 1);
+	}
+
+
+	/* Chains. */
+
+	@Override
+	public int getFirstActivity(int chain){
+		return this.chainActivityOffset.getInt(checkIndex(chain, numberOfChains));
+	}
+
+	@Override
+	public int getActivityEnd(int chain){
+		return this.chainActivityOffset.getInt(checkIndex(chain, numberOfChains) + 1);
+	}
+
+
+	/* Activities. */
+
+	@Override
+	public double getX(int activity){
+		return this.x.getDouble(checkIndex(activity, numberOfActivities));
+	}
+
+	@Override
+	public double getY(int activity){
+		return this.y.getDouble(checkIndex(activity, numberOfActivities));
+	}
+
+	@Override
+	public double getStartTime(int activity){
+		return (double) this.start.getLong(checkIndex(activity, numberOfActivities)) / 1000.0;
+	}
+
+	@Override
+	public double getEndTime(int activity){
+		return (double) this.end.getLong(checkIndex(activity, numberOfActivities)) / 1000.0;
+	}
+
+	@Override
+	public Id<ActivityFacility> getFacilityId(int activity){
+		int f = this.facility.getInt(checkIndex(activity, numberOfActivities));
+		return f == ColumnTables.NO_FACILITY ? null : this.facilityIds[f];
+	}
+
+	@Override
+	public String getType(int activity){
+		return this.types[this.type.getByte(checkIndex(activity, numberOfActivities)) & 0xFF];
+	}
+
+	@Override
+	public DigicoreActivityType getActivityType(int activity){
+		return this.activityTypes[this.type.getByte(checkIndex(activity, numberOfActivities)) & 0xFF];
+	}
+
+
+	/**
+	 * The columns are read by position, so an index beyond a column would
+	 * quietly read the next column rather than fail, as an array would.
+	 */
+	private static int checkIndex(int index, int size){
+		if(index < 0 || index >= size){
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+		}
+		return index;
+	}
+
+
+	/**
+	 * A column that is mapped in chunks, since a single mapping cannot be
+	 * larger than 2GB. The chunks are a multiple of eight bytes, so no value
+	 * straddles two chunks.
+	 */
+	private static final class Column {
+		private final static int CHUNK_BITS = 30;
+		private final static long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+		private final ByteBuffer[] chunks;
+
+		private Column(FileChannel channel, long position, long size) throws IOException {
+			this.chunks = new ByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_BITS)];
+			for(int i = 0; i < chunks.length; i++){
+				long offset = (long) i << CHUNK_BITS;
+				chunks[i] = channel.map(MapMode.READ_ONLY, position + offset, Math.min(CHUNK_MASK + 1, size - offset));
+			}
+		}
+
+		private double getDouble(long index){
+			long p = index << 3;
+			return chunks[(int) (p >>> CHUNK_BITS)].getDouble((int) (p & CHUNK_MASK));
+		}
+
+		private long getLong(long index){
+			long p = index << 3;
+			return chunks[(int) (p >>> CHUNK_BITS)].getLong((int) (p & CHUNK_MASK));
+		}
+
+		private int getInt(long index){
+			long p = index << 2;
+			return chunks[(int) (p >>> CHUNK_BITS)].getInt((int) (p & CHUNK_MASK));
+		}
+
+		private byte getByte(long index){
+			return chunks[(int) (index >>> CHUNK_BITS)].get((int) (index & CHUNK_MASK));
+		}
+	}
+
+
+	/**
+	 * Writes the file of columns one vehicle at a time. Each column is first
+	 * written to its own temporary file, after which the columns are joined
+	 * into the file of columns. The file only appears once it is complete.
+	 */
+	public static final class Writer {
+		private final static int BUFFER_SIZE = 1 << 16;
+		private final String filename;
+		private final List<File> files = new ArrayList<>();
+		private final DataOutputStream x;
+		private final DataOutputStream y;
+		private final DataOutputStream start;
+		private final DataOutputStream end;
+		private final DataOutputStream facility;
+		private final DataOutputStream vehicleChainOffset;
+		private final DataOutputStream chainActivityOffset;
+		private final DataOutputStream type;
+		private final List<Id<Vehicle>> vehicleIds = new ArrayList<>();
+		private final List<Id<VehicleType>> vehicleTypes = new ArrayList<>();
+		private final ColumnTables tables = new ColumnTables();
+		private int numberOfChains = 0;
+		private int numberOfActivities = 0;
+		private boolean finished = false;
+
+
+		public Writer(String filename){
+			this.filename = filename;
+			try{
+				this.x = createColumn();
+				this.y = createColumn();
+				this.start = createColumn();
+				this.end = createColumn();
+				this.facility = createColumn();
+				this.vehicleChainOffset = createColumn();
+				this.chainActivityOffset = createColumn();
+				this.type = createColumn();
+			} catch (IOException e) {
+				deleteTemporaryFiles();
+				e.printStackTrace();
+				throw new RuntimeException("Cannot create the columns of " + filename);
+			}
+		}
+
+
+		private DataOutputStream createColumn() throws IOException {
+			File parent = new File(filename).getAbsoluteFile().getParentFile();
+			File file = File.createTempFile("column", ".tmp", parent);
+			file.deleteOnExit();
+			files.add(file);
+			return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath()), BUFFER_SIZE));
+		}
+
+
+		/**
+		 * Adds the vehicle's chains, but only their activities.
+		 *
+		 * @throws IllegalArgumentException if an activity is in a different
+		 * 		   time zone than those already added.
+		 */
+		public synchronized void add(DigicoreVehicle vehicle){
+			if(finished){
+				throw new IllegalStateException("The columns have already been written.");
+			}
+			try{
+				vehicleIds.add(vehicle.getId());
+				vehicleTypes.add(vehicle.getType().getId());
+				vehicleChainOffset.writeInt(numberOfChains);
+				for(DigicoreChain chain : vehicle.getChains()){
+					chainActivityOffset.writeInt(numberOfActivities);
+					numberOfChains++;
+					for(DigicoreActivity activity : chain.getAllActivities()){
+						addActivity(activity);
+					}
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new RuntimeException("Cannot write the columns of " + filename);
+			}
+		}
+
+
+		private void addActivity(DigicoreActivity activity) throws IOException {
+			if(numberOfActivities == Integer.MAX_VALUE){
+				throw new IllegalArgumentException("Cannot have more than " + Integer.MAX_VALUE + " activities.");
+			}
+			tables.checkZone(activity);
+			boolean hasCoord = activity.getCoord() != null;
+			x.writeDouble(hasCoord ? activity.getCoord().getX() : Double.NaN);
+			y.writeDouble(hasCoord ? activity.getCoord().getY() : Double.NaN);
+			start.writeLong(Math.round(activity.getStartTime().seconds() * 1000.0));
+			end.writeLong(Math.round(activity.getEndTime().seconds() * 1000.0));
+			facility.writeInt(tables.getFacilityIndex(activity.getFacilityId()));
+			type.writeByte(tables.getTypeIndex(activity.getType()));
+			numberOfActivities++;
+		}
+
+
+		/**
+		 * Writes the file of columns. The writer cannot be used again.
+		 */
+		public synchronized void finish(String crs, String description){
+			finished = true;
+			Path temporary = Paths.get(filename + ".tmp");
+			try{
+				vehicleChainOffset.writeInt(numberOfChains);
+				chainActivityOffset.writeInt(numberOfActivities);
+				for(DataOutputStream column : new DataOutputStream[]{x, y, start, end, facility, vehicleChainOffset, chainActivityOffset, type}){
+					column.close();
+				}
+
+				try(FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+						StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+					out.write(ByteBuffer.allocate(HEADER_SIZE));
+					for(File file : files){
+						try(FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+							long size = in.size();
+							long transferred = 0;
+							while(transferred < size){
+								transferred += in.transferTo(transferred, size - transferred, out);
+							}
+						}
+					}
+					long footer = out.position();
+
+					DataOutputStream footerStream = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(out), BUFFER_SIZE));
+					footerStream.writeInt(vehicleIds.size());
+					footerStream.writeInt(numberOfChains);
+					footerStream.writeInt(numberOfActivities);
+					writeString(footerStream, crs);
+					writeString(footerStream, description);
+					writeString(footerStream, tables.getZone() == null ? null : tables.getZone().getId());
+					writeString(footerStream, tables.getLocale() == null ? null : tables.getLocale().toLanguageTag());
+					for(int v = 0; v < vehicleIds.size(); v++){
+						footerStream.writeUTF(vehicleIds.get(v).toString());
+						footerStream.writeUTF(vehicleTypes.get(v).toString());
+					}
+					Id<ActivityFacility>[] facilityIds = tables.getFacilityIds();
+					footerStream.writeInt(facilityIds.length);
+					for(Id<ActivityFacility> id : facilityIds){
+						footerStream.writeUTF(id.toString());
+					}
+					String[] types = tables.getTypes();
+					footerStream.writeInt(types.length);
+					for(String t : types){
+						footerStream.writeUTF(t);
+					}
+					footerStream.flush();
+
+					ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+					header.putInt(MAGIC).putInt(VERSION).putLong(footer).flip();
+					out.write(header, 0);
+					out.force(true);
+				}
+				Files.move(temporary, Paths.get(filename), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new RuntimeException("Cannot write the columns to " + filename);
+			} finally{
+				deleteTemporaryFiles();
+				try{
+					Files.deleteIfExists(temporary);
+				} catch (IOException e) {
+					LOG.warn("Cannot delete " + temporary);
+				}
+			}
+		}
+
+
+		/**
+		 * Deletes the temporary files of the columns. This is done when the
+		 * file of columns has been written, but should also be done when it
+		 * could not be.
+		 */
+		public synchronized void deleteTemporaryFiles(){
+			for(DataOutputStream column : new DataOutputStream[]{x, y, start, end, facility, vehicleChainOffset, chainActivityOffset, type}){
+				if(column != null){
+					try{
+						column.close();
+					} catch (IOException e) {
+						/* It is deleted anyway. */
+					}
+				}
+			}
+			for(File file : files){
+				if(file.exists() && !file.delete()){
+					LOG.warn("Cannot delete " + file.getAbsolutePath());
+				}
+			}
+		}
+	}
+
+}
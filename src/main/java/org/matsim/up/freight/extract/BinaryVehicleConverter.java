@@ -0,0 +1,127 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinaryVehicleConverter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.utils.misc.Counter;
+import org.matsim.up.utils.FileUtils;
+import org.matsim.up.utils.Header;
+
+/**
+ * Converts existing sorted vehicle files (<code>.txt.gz</code>) to the
+ * binary format written by the {@link BinaryVehicleWriter}.
+ *
+ * @author jwjoubert
+ */
+class BinaryVehicleConverter {
+	private final static Logger LOG = Logger.getLogger(BinaryVehicleConverter.class);
+
+	/**
+	 * @param args the following arguments, in the following order:
+	 * <ol>
+	 * 		<li> folder with the sorted vehicle files, typically the
+	 * 		     <code>vehicles</code> folder. The binary files are written to
+	 * 		     the same folder; and
+	 * 		<li> (optional) whether the text files should be deleted once
+	 * 		     converted. The default is <code>false</code>.
+	 * </ol>
+	 */
+	public static void main(String[] args) {
+		Header.printHeader(BinaryVehicleConverter.class, args);
+		File folder = new File(args[0]);
+		boolean delete = args.length > 1 && Boolean.parseBoolean(args[1]);
+
+		List<File> files = FileUtils.sampleFiles(folder, Integer.MAX_VALUE, FileUtils.getFileFilter(ExtractionUtils.SORTED_TEXT_EXTENSION));
+		LOG.info("Converting " + files.size() + " vehicle files in " + folder.getAbsolutePath());
+		Counter counter = new Counter("  vehicles # ");
+		long textBytes = 0;
+		long binaryBytes = 0;
+		for (File file : files) {
+			File binary = getBinaryFile(file);
+			convert(file, binary);
+			textBytes += file.length();
+			binaryBytes += binary.length();
+			if (delete && !file.delete()) {
+				LOG.warn("Could not delete " + file.getAbsolutePath());
+			}
+			counter.incCounter();
+		}
+		counter.printCounter();
+		LOG.info("Size of text files: " + textBytes + " bytes; binary files: " + binaryBytes + " bytes.");
+
+		Header.printFooter();
+	}
+
+	private BinaryVehicleConverter() {
+		/* Hide the constructor. */
+	}
+
+
+	/**
+	 * @return the binary file, in the same folder, for a sorted text file.
+	 */
+	static File getBinaryFile(File textFile) {
+		String name = textFile.getName();
+		if (name.endsWith(ExtractionUtils.SORTED_TEXT_EXTENSION)) {
+			name = name.substring(0, name.length() - ExtractionUtils.SORTED_TEXT_EXTENSION.length());
+		}
+		return new File(textFile.getParentFile(), name + ExtractionUtils.SORTED_BINARY_EXTENSION);
+	}
+
+
+	/**
+	 * Converts a single sorted text file to a binary file.
+	 *
+	 * @return the number of records converted.
+	 */
+	static long convert(File textFile, File binaryFile) {
+		MutableDigicoreRecord record = new MutableDigicoreRecord();
+		long records = 0;
+		try (SortedRecordReader reader = SortedRecordReader.open(textFile)) {
+			BinaryVehicleWriter writer = null;
+			try {
+				while (reader.next(record)) {
+					if (writer == null) {
+						writer = new BinaryVehicleWriter(binaryFile, record.getVehicleId());
+					}
+					writer.write(record.getTime(), record.getLongitude(), record.getLatitude(), record.getStatus(), record.getSpeed());
+					records++;
+				}
+			} finally {
+				if (writer != null) {
+					writer.close();
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not convert " + textFile.getAbsolutePath(), e);
+		}
+		if (records == 0) {
+			LOG.warn("No records in " + textFile.getName() + "; no binary file written.");
+		}
+		return records;
+	}
+
+}
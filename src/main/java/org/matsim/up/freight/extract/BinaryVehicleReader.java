@@ -0,0 +1,177 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinaryVehicleReader.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streams the records of a binary vehicle file, as written by the
+ * {@link BinaryVehicleWriter}, without any text parsing.
+ * <p>
+ * The reader is <b>not</b> thread safe.
+ *
+ * @author jwjoubert
+ */
+final class BinaryVehicleReader implements SortedRecordReader {
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final File file;
+	private final InputStream in;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int position = 0;
+	private int limit = 0;
+
+	private final long vehicleId;
+	private long previousTime = 0;
+	private long previousLongitude = 0;
+	private long previousLatitude = 0;
+
+	/**
+	 * Opens the file, and reads the header.
+	 *
+	 * @throws IOException if the file is not a binary vehicle file, or has an
+	 *                     unsupported version.
+	 */
+	BinaryVehicleReader(File file) throws IOException {
+		this.file = file;
+		this.in = new FileInputStream(file);
+		try {
+			for (byte b : BinaryVehicleWriter.MAGIC) {
+				if (readByte() != b) {
+					throw new IOException(file.getName() + " is not a binary vehicle file.");
+				}
+			}
+			int version = readByte();
+			if (version != BinaryVehicleWriter.VERSION) {
+				throw new IOException("Unsupported version " + version + " of binary vehicle file " + file.getName());
+			}
+			this.vehicleId = readVarLong();
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+
+	long getVehicleId() {
+		return this.vehicleId;
+	}
+
+
+	@Override
+	public boolean next(MutableDigicoreRecord record) throws IOException {
+		if (position == limit && !fill()) {
+			return false;
+		}
+		long timeAndTypes = readUnsignedVarLong();
+		int lonType = (int) (timeAndTypes & BinaryVehicleWriter.COORD_MASK);
+		int latType = (int) ((timeAndTypes >>> BinaryVehicleWriter.COORD_BITS) & BinaryVehicleWriter.COORD_MASK);
+		previousTime += timeAndTypes >>> (2 * BinaryVehicleWriter.COORD_BITS);
+
+		record.vehicleId = vehicleId;
+		record.time = previousTime;
+		if (lonType == BinaryVehicleWriter.COORD_DOUBLE) {
+			record.longitude = readDouble();
+		} else {
+			previousLongitude += readCoordDifference(lonType);
+			record.longitude = previousLongitude / BinaryVehicleWriter.FIXED_POINT_SCALE;
+		}
+		if (latType == BinaryVehicleWriter.COORD_DOUBLE) {
+			record.latitude = readDouble();
+		} else {
+			previousLatitude += readCoordDifference(latType);
+			record.latitude = previousLatitude / BinaryVehicleWriter.FIXED_POINT_SCALE;
+		}
+		record.status = (int) readVarLong();
+		record.speed = (int) readVarLong();
+		return true;
+	}
+
+
+	private long readCoordDifference(int type) throws IOException {
+		switch (type) {
+		case BinaryVehicleWriter.COORD_COARSE:
+			return readVarLong() * BinaryVehicleWriter.COARSE_FACTOR;
+		case BinaryVehicleWriter.COORD_FINE:
+			return readVarLong();
+		default:
+			throw new IOException("Unknown coordinate type " + type + " in binary vehicle file " + file.getName());
+		}
+	}
+
+
+	private int readByte() throws IOException {
+		if (position == limit && !fill()) {
+			throw new EOFException("Unexpected end of binary vehicle file " + file.getName());
+		}
+		return buffer[position++];
+	}
+
+
+	private long readVarLong() throws IOException {
+		long v = readUnsignedVarLong();
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+
+	private long readUnsignedVarLong() throws IOException {
+		long v = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = readByte();
+			v |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return v;
+	}
+
+
+	private double readDouble() throws IOException {
+		long bits = 0;
+		for (int i = 0; i < 8; i++) {
+			bits = (bits << 8) | (readByte() & 0xFF);
+		}
+		return Double.longBitsToDouble(bits);
+	}
+
+
+	private boolean fill() throws IOException {
+		int read = in.read(buffer, 0, BUFFER_SIZE);
+		if (read <= 0) {
+			return false;
+		}
+		position = 0;
+		limit = read;
+		return true;
+	}
+
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+}
@@ -0,0 +1,193 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinaryVehicleWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a single vehicle's chronologically sorted GPS records in a compact
+ * binary format, the alternative to the sorted <code>.txt.gz</code> files.
+ * The file can be read without any text parsing or decompression by the
+ * {@link BinaryVehicleReader}.
+ *
+ * <h4>Format</h4>
+ * The header consists of the bytes <code>DCV</code> and the format version,
+ * followed by the vehicle ID. Each record then consists of:
+ * <ol>
+ * 		<li> the time stamp, as the difference from the previous record's,
+ * 		     shifted left by four bits to make space for the way in which
+ * 		     each of the two coordinates is stored (see below);
+ * 		<li> the longitude and latitude. Coordinates are stored as the
+ * 		     difference from the previous record's, in units of
+ * 		     10<sup>-6</sup> degrees where possible, otherwise in units of
+ * 		     10<sup>-7</sup> degrees (about 1cm). A coordinate that cannot be
+ * 		     reproduced exactly from its fixed-point value is stored as an
+ * 		     8-byte double, so the format is lossless; and
+ * 		<li> the status and speed.
+ * </ol>
+ * All integers, including the differences, are written as variable-length
+ * integers, so that small values take a single byte. Signed values are
+ * zig-zag encoded first.
+ * <p>
+ * The writer is <b>not</b> thread safe.
+ *
+ * @author jwjoubert
+ */
+final class BinaryVehicleWriter implements AutoCloseable {
+	static final byte[] MAGIC = {'D', 'C', 'V'};
+	static final byte VERSION = 1;
+	static final double FIXED_POINT_SCALE = 1e7;
+
+	/* How a coordinate is stored. */
+	static final int COORD_COARSE = 0;
+	static final int COORD_FINE = 1;
+	static final int COORD_DOUBLE = 2;
+	static final int COORD_BITS = 2;
+	static final int COORD_MASK = 3;
+	static final int COARSE_FACTOR = 10;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	/** The maximum number of bytes of a single record. */
+	private static final int MAX_RECORD_SIZE = 5 * 10;
+
+	private final OutputStream out;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int position = 0;
+
+	private long previousTime = 0;
+	private long previousLongitude = 0;
+	private long previousLatitude = 0;
+
+	/**
+	 * Creates the file, and writes the header.
+	 */
+	BinaryVehicleWriter(File file, long vehicleId) throws IOException {
+		this.out = new FileOutputStream(file);
+		System.arraycopy(MAGIC, 0, buffer, 0, MAGIC.length);
+		position = MAGIC.length;
+		buffer[position++] = VERSION;
+		writeVarLong(vehicleId);
+	}
+
+
+	/**
+	 * Writes the next record.
+	 *
+	 * @throws IllegalArgumentException if the record is earlier than the
+	 *                                  previous one.
+	 */
+	void write(long time, double longitude, double latitude, int status, int speed) throws IOException {
+		long timeDifference = time - previousTime;
+		if (timeDifference < 0 || timeDifference > Long.MAX_VALUE >>> (2 * COORD_BITS)) {
+			throw new IllegalArgumentException("Records must be sorted chronologically: " + time + " follows " + previousTime);
+		}
+		if (position > BUFFER_SIZE - MAX_RECORD_SIZE) {
+			flush();
+		}
+		long lon = toFixedPoint(longitude);
+		long lat = toFixedPoint(latitude);
+		int lonType = getCoordType(lon, previousLongitude, longitude);
+		int latType = getCoordType(lat, previousLatitude, latitude);
+		writeUnsignedVarLong((timeDifference << (2 * COORD_BITS)) | ((long) latType << COORD_BITS) | lonType);
+		previousTime = time;
+		previousLongitude = writeCoord(lonType, lon, previousLongitude, longitude);
+		previousLatitude = writeCoord(latType, lat, previousLatitude, latitude);
+		writeVarLong(status);
+		writeVarLong(speed);
+	}
+
+
+	private static long toFixedPoint(double value) {
+		return Math.round(value * FIXED_POINT_SCALE);
+	}
+
+
+	/**
+	 * Stores the coordinate as a (coarse) fixed-point difference if it can
+	 * be reproduced exactly, and as a double otherwise.
+	 */
+	private static int getCoordType(long fixed, long previous, double value) {
+		if (Double.compare(fixed / FIXED_POINT_SCALE, value) != 0) {
+			return COORD_DOUBLE;
+		}
+		return (fixed - previous) % COARSE_FACTOR == 0 ? COORD_COARSE : COORD_FINE;
+	}
+
+
+	/**
+	 * @return the previous fixed-point value for the next record.
+	 */
+	private long writeCoord(int type, long fixed, long previous, double value) {
+		switch (type) {
+		case COORD_COARSE:
+			writeVarLong((fixed - previous) / COARSE_FACTOR);
+			return fixed;
+		case COORD_FINE:
+			writeVarLong(fixed - previous);
+			return fixed;
+		default:
+			writeDouble(value);
+			return previous;
+		}
+	}
+
+
+	private void writeVarLong(long value) {
+		writeUnsignedVarLong((value << 1) ^ (value >> 63));
+	}
+
+
+	private void writeUnsignedVarLong(long v) {
+		while ((v & ~0x7FL) != 0) {
+			buffer[position++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		buffer[position++] = (byte) v;
+	}
+
+
+	private void writeDouble(double value) {
+		long bits = Double.doubleToRawLongBits(value);
+		for (int i = 56; i >= 0; i -= 8) {
+			buffer[position++] = (byte) (bits >>> i);
+		}
+	}
+
+
+	private void flush() throws IOException {
+		out.write(buffer, 0, position);
+		position = 0;
+	}
+
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			out.close();
+		}
+	}
+
+}
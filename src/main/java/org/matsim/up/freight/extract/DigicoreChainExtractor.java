@@ -23,37 +23,40 @@ package org.matsim.up.freight.extract;
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
-import org.matsim.core.utils.geometry.CoordUtils;
-import org.matsim.core.utils.geometry.CoordinateTransformation;
-import org.matsim.core.utils.geometry.transformations.TransformationFactory;
-import org.matsim.core.utils.io.IOUtils;
 import org.matsim.core.utils.misc.Counter;
 import org.matsim.up.freight.containers.*;
 import org.matsim.up.freight.io.DigicoreVehicleWriter;
+import org.matsim.up.freight.utils.CoordinateTransformationService;
 import org.matsim.vehicles.Vehicle;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
 
 
 class DigicoreChainExtractor implements Runnable {
+    private final static TimeZone TIME_ZONE = TimeZone.getTimeZone("GMT+2");
+    private final static Locale LOCALE = new Locale("en", "za");
     private final File vehicleFile;
     private final File outputFolder;
     private final double thresholdMinorMajor;
     private final double thresholdActivityDuration;
-    private final List<String> ignitionOn;
-    private final List<String> ignitionOff;
+    private final StatusTable statusTable;
     private final String crs;
-    private final CoordinateTransformation ct;
+    private final CoordinateTransformationService ct;
     private DigicoreVehicle vehicle;
 
     private final Logger log = Logger.getLogger(DigicoreChainExtractor.class);
     private final Counter threadCounter;
+    private VehicleWriterQueue vehicleQueue = null;
+    private Geofence geofence = Geofence.SOUTHERN_AFRICA;
+    private int rejectedFixes = 0;
+    private int unsortedStops = 0;
+    private final StatusHistogram statusHistogram = new StatusHistogram();
+    private StatusHistogram sharedStatusHistogram = null;
 
     @Override
     public void run() {
@@ -64,82 +67,72 @@ class DigicoreChainExtractor implements Runnable {
         DigicoreChain chain = new DigicoreChain();
         DigicoreActivity activity;
 
-        int invalidGps = 0;
-        List<String[]> activityBuffer = null;
-        List<String[]> tripBuffer = null;
-        List<String[]> previousTripBuffer = null;
+        ActivityBuffer activityBuffer = new ActivityBuffer(this.thresholdActivityDuration);
+        GpsBuffer tripBuffer = new GpsBuffer();
+        GpsBuffer previousTripBuffer = new GpsBuffer();
+        MutableDigicoreRecord record = new MutableDigicoreRecord();
         boolean move = true;
+        boolean moving = true;
         boolean firstRecord = true;
         try {
-            try (BufferedReader br = IOUtils.getBufferedReader(vehicleFile.getAbsolutePath())) {
-                br.readLine();
-                String line;
-                while ((line = br.readLine()) != null) {
-                    String[] sa = line.split(",");
-
-                    /* Check if the coordinate is within bounds... ignore record
-                     * if not. */
-                    double x = Double.parseDouble(sa[2]);
-                    double y = Double.parseDouble(sa[3]);
-                    if (validSACoord(x, y)) {
-                        if (this.ignitionOn.contains(sa[4])) {
+            try (SortedRecordReader reader = SortedRecordReader.open(vehicleFile)) {
+                while (reader.next(record)) {
+                    /* Check if the coordinate is inside the geofence...
+                     * ignore record if not. */
+                    double x = record.getLongitude();
+                    double y = record.getLatitude();
+                    if (geofence.contains(x, y)) {
+                        /* Unknown statuses are counted, and do not change the
+                         * ignition state. */
+                        int status = record.getStatus();
+                        statusHistogram.add(status);
+                        byte ignition = statusTable.get(status);
+                        if (ignition == StatusTable.ON) {
                             move = true;
-                        } else if (this.ignitionOff.contains(sa[4])) {
+                        } else if (ignition == StatusTable.OFF) {
                             move = false;
-                        } else {
-                            log.warn("Could not identify status " + sa[4] + " for vehicle " + name);
                         }
+                        long time = record.getTime();
 
                         /* Initialise the (correct) buffer. */
                         if (firstRecord) {
-                            if (move) {
-                                tripBuffer = new ArrayList<>();
-                            } else {
-                                activityBuffer = new ArrayList<>();
-                            }
+                            moving = move;
                             firstRecord = false;
                         }
 
                         /* Process the record. */
                         if (move) {
-                            if (activityBuffer == null && tripBuffer != null) {
+                            if (moving) {
                                 /* Vehicle is still moving. */
-                                tripBuffer.add(sa);
-                            } else if (activityBuffer != null && tripBuffer == null) {
+                                tripBuffer.add(time, x, y);
+                            } else {
                                 /* Vehicle has started moving. Finish activity. */
-                                activityBuffer.add(sa);
+                                activityBuffer.add(time, x, y);
 
                                 /* Check if activity duration exceeds threshold. */
-                                long duration = (Long.parseLong(activityBuffer.get(activityBuffer.size() - 1)[1]) -
-                                        Long.parseLong(activityBuffer.get(0)[1]));
+                                long duration = activityBuffer.getDuration();
                                 if (duration >= this.thresholdActivityDuration) {
                                     /* It qualifies as an activity. */
 
                                     if (duration >= this.thresholdMinorMajor) {
-                                        activity = new DigicoreActivity("major", TimeZone.getTimeZone("GMT+2"), new Locale("en", "za"));
+                                        activity = new DigicoreActivity("major", TIME_ZONE, LOCALE);
                                     } else {
-                                        activity = new DigicoreActivity("minor", TimeZone.getTimeZone("GMT+2"), new Locale("en", "za"));
+                                        activity = new DigicoreActivity("minor", TIME_ZONE, LOCALE);
                                     }
 
                                     /* Calculate activity centroid */
-                                    double xSum = 0;
-                                    double ySum = 0;
-                                    for (String[] saa : activityBuffer) {
-                                        xSum += Double.parseDouble(saa[2]);
-                                        ySum += Double.parseDouble(saa[3]);
-                                    }
-                                    Coord cOriginal = new Coord(xSum / (double) activityBuffer.size(), ySum / (double) activityBuffer.size());
+                                    Coord cOriginal = activityBuffer.getCentroid();
                                     Coord cFinal = ct.transform(cOriginal);
                                     activity.setCoord(cFinal);
 
                                     /* Set start- and end time. */
-                                    activity.setStartTime(Double.parseDouble(activityBuffer.get(0)[1]));
-                                    activity.setEndTime(Double.parseDouble(activityBuffer.get(activityBuffer.size() - 1)[1]));
+                                    activity.setStartTime(activityBuffer.getStartTime());
+                                    activity.setEndTime(activityBuffer.getEndTime());
 
                                     /*
                                      * Add the activity to the chain.
                                      */
-                                    boolean major = activity.getType().equalsIgnoreCase("major");
+                                    boolean major = activity.getActivityType() == DigicoreActivityType.MAJOR;
                                     if (major) {
                                         /* End current chain and start a new chain. */
                                         chain.add(activity);
@@ -154,17 +147,17 @@ class DigicoreChainExtractor implements Runnable {
                                         chain.add(activity);
                                     }
 
-                                    activityBuffer = null;
                                     /* Start new trip buffer. */
-                                    tripBuffer = new ArrayList<>();
-                                    tripBuffer.add(sa);
+                                    tripBuffer.clear();
+                                    tripBuffer.add(time, x, y);
                                 } else {
                                     /* It is not considered an activity. Re-instate
-                                     * the previous (partial) trip.*/
+                                     * the previous (partial) trip, which is empty if
+                                     * the vehicle has not moved before. */
+                                    GpsBuffer swap = tripBuffer;
                                     tripBuffer = previousTripBuffer;
-                                    if (tripBuffer == null) {
-                                        tripBuffer = new ArrayList<>();
-                                    }
+                                    previousTripBuffer = swap;
+                                    previousTripBuffer.clear();
 
                                     /* Now also remove the previous trace that was
                                      * (possibly) already added to the activity chain. */
@@ -178,40 +171,36 @@ class DigicoreChainExtractor implements Runnable {
                                      * Is it accurate to add the (failed) activity
                                      * records to the trip as well? Jan'17 JWJ */
 
-                                    tripBuffer.addAll(activityBuffer);
-                                    activityBuffer = null;
+                                    if (!activityBuffer.appendTo(tripBuffer)) {
+                                        unsortedStops++;
+                                    }
                                 }
-                            } else {
-                                log.error("The buffer combination is problematic:");
-                                log.error("  Is line buffer null?: " + (activityBuffer == null));
-                                log.error("  Is trip buffer null?: " + (tripBuffer == null));
-                                throw new IllegalStateException("Buffer states seem wrong.");
+                                activityBuffer.clear();
+                                moving = true;
                             }
                         } else {
-                            if (activityBuffer == null && tripBuffer != null) {
-                                /* Vehicle has just stopped. Finish trip.*/
-                                DigicoreTrace trace = convertBufferToTrace(tripBuffer, this.crs);
+                            if (moving) {
+                                /* Vehicle has just stopped. Finish trip. The
+                                 * trip is kept in case the stop does not turn
+                                 * out to be an activity. */
+                                DigicoreTrace trace = convertBufferToTrace(tripBuffer);
                                 chain.add(trace);
+                                GpsBuffer swap = previousTripBuffer;
                                 previousTripBuffer = tripBuffer;
-                                tripBuffer = null;
+                                tripBuffer = swap;
+                                tripBuffer.clear();
 
                                 /* Start activity. */
-                                activityBuffer = new ArrayList<>();
-                                activityBuffer.add(sa);
-
-                            } else if (activityBuffer != null && tripBuffer == null) {
-                                /* Vehicle is still stationary. */
-                                activityBuffer.add(sa);
+                                activityBuffer.add(time, x, y);
+                                moving = false;
 
                             } else {
-                                log.error("The buffer combination is problematic:");
-                                log.error("  Is line buffer null?: " + (activityBuffer == null));
-                                log.error("  Is trip buffer null?: " + (tripBuffer == null));
-                                throw new IllegalStateException("Buffer states seem wrong.");
+                                /* Vehicle is still stationary. */
+                                activityBuffer.add(time, x, y);
                             }
                         }
                     } else {
-                        invalidGps++;
+                        rejectedFixes++;
                     }
                 }
             }
@@ -222,50 +211,41 @@ class DigicoreChainExtractor implements Runnable {
             log.error("Vehicle with NullPointerException: " + vehicle.getId().toString());
         }
 
-        if (invalidGps > 0) {
-            log.warn("Vehicle " + name + " has " + invalidGps + " records with invalid GPS positions.");
+        if (unsortedStops > 0) {
+            log.warn("Vehicle " + vehicle.getId() + " is not sorted chronologically: the positions of "
+                    + unsortedStops + " short stop(s) were left out of its trips.");
         }
-        /* Write the vehicle to file if it has at least one chain. This is
-         * currently (Nov'16) writing version 2 vehicles. When using the
-         * TurnkeyExtractor these files will be removed anyway. */
-        if (vehicle.getChains().size() > 0) {
-            DigicoreVehicleWriter dvw = new DigicoreVehicleWriter(vehicle);
-            dvw.write(this.outputFolder.getAbsolutePath() + "/" + name + ".xml.gz");
-        }
-        threadCounter.incCounter();
-    }
 
-    private boolean validSACoord(double x, double y) {
-        boolean valid = false;
+        if (sharedStatusHistogram != null) {
+            sharedStatusHistogram.addAll(statusHistogram);
+        }
 
-        if (x >= 0.0 && x <= 45.0 && y >= -36.0 && y <= 0.0) {
-            valid = true;
-        } else {
-            log.warn("Out-of-bounds coordinate");
+        /* Hand the vehicle to the queue, and/or write it to its own file, if
+         * it has at least one chain. The individual files are currently
+         * (Nov'16) version 2 vehicles. */
+        if (vehicle.getChains().size() > 0) {
+            if (this.vehicleQueue != null) {
+                this.vehicleQueue.add(vehicle);
+            }
+            if (this.outputFolder != null) {
+                DigicoreVehicleWriter dvw = new DigicoreVehicleWriter(vehicle);
+                dvw.write(this.outputFolder.getAbsolutePath() + "/" + name + ".xml.gz");
+            }
         }
-        return valid;
+        threadCounter.incCounter();
     }
 
     /**
-     * Converts a given buffer of records into a GPS trace.
+     * Converts a given buffer of (WGS84) positions into a GPS trace, after
+     * transforming the positions that have not been transformed yet. The
+     * trace takes over the buffer's columns, so the trip is not copied.
      *
-     * @param buffer buffer of records
-     * @param crs    the coordinate reference system
+     * @param buffer buffer of positions
      * @return a trace object
      */
-    private DigicoreTrace convertBufferToTrace(List<String[]> buffer, String crs) {
-        DigicoreTrace dt = new DigicoreTrace(crs);
-        for (String[] sa : buffer) {
-            long time = Long.parseLong(sa[1]);
-            double lon = Double.parseDouble(sa[2]);
-            double lat = Double.parseDouble(sa[3]);
-
-            Coord c = this.ct.transform(CoordUtils.createCoord(lon, lat));
-
-            DigicorePosition dp = new DigicorePosition(time, c.getX(), c.getY());
-            dt.add(dp);
-        }
-        return dt;
+    private DigicoreTrace convertBufferToTrace(GpsBuffer buffer) {
+        buffer.transform(this.ct);
+        return buffer.handOver(this.crs);
     }
 
 
@@ -275,7 +255,9 @@ class DigicoreChainExtractor implements Runnable {
      *
      * @param file              chronologically sorted text file from which (a single
      *                          vehicle's) activity chains will be extracted;
-     * @param outputFolder      where the single vehicle file will be written;
+     * @param outputFolder      where the single vehicle file will be written,
+     *                          or <code>null</code> if the vehicle should not
+     *                          be written to its own file;
      * @param thresholdMinor    time that distinguishes minor and major activities.
      *                          Any time shorter than this threshold is considered
      *                          a 'minor' activity, and any time longer is considered
@@ -296,25 +278,216 @@ class DigicoreChainExtractor implements Runnable {
                            List<String> ignitionOff,
                            String crs,
                            Counter threadCounter) {
+        this(file, outputFolder, thresholdMinor, thresholdActivity,
+                new StatusTable(ignitionOn, ignitionOff), crs, threadCounter);
+    }
+
+    /**
+     * Uses a status table, typically shared by all the extractors, rather
+     * than the lists of signals.
+     *
+     * @see #DigicoreChainExtractor(File, File, double, double, List, List, String, Counter)
+     */
+    DigicoreChainExtractor(File file,
+                           File outputFolder,
+                           double thresholdMinor,
+                           double thresholdActivity,
+                           StatusTable statusTable,
+                           String crs,
+                           Counter threadCounter) {
         this.vehicleFile = file;
         this.outputFolder = outputFolder;
         this.thresholdMinorMajor = thresholdMinor;
         this.thresholdActivityDuration = thresholdActivity;
-        this.ignitionOn = ignitionOn;
-        this.ignitionOff = ignitionOff;
+        this.statusTable = statusTable;
         this.threadCounter = threadCounter;
         this.crs = crs;
         if (crs == null) {
-            this.ct = TransformationFactory.getCoordinateTransformation("Atlantis", "Atlantis");
+            this.ct = CoordinateTransformationService.get("Atlantis", "Atlantis");
         } else {
-            this.ct = TransformationFactory.getCoordinateTransformation(ExtractionUtils.INPUT_CRS, crs);
+            this.ct = CoordinateTransformationService.get(ExtractionUtils.INPUT_CRS, crs);
         }
     }
 
+    /**
+     * Hands each extracted vehicle to the given queue, from where it is
+     * streamed to a single vehicles container file.
+     */
+    void setVehicleQueue(VehicleWriterQueue vehicleQueue) {
+        this.vehicleQueue = vehicleQueue;
+    }
+
+    /**
+     * Only positions inside the geofence are used, the default being
+     * {@link Geofence#SOUTHERN_AFRICA}.
+     */
+    void setGeofence(Geofence geofence) {
+        this.geofence = geofence;
+    }
+
+    /**
+     * Adds the number of records of each status, once the vehicle has been
+     * extracted, to the given histogram.
+     */
+    void setStatusHistogram(StatusHistogram statusHistogram) {
+        this.sharedStatusHistogram = statusHistogram;
+    }
+
+    /**
+     * @return the number of the vehicle's GPS records that were ignored
+     * because they are outside the geofence. The number is not logged for
+     * each vehicle, but reported for all vehicles once extraction is done.
+     */
+    int getRejectedFixes() {
+        return this.rejectedFixes;
+    }
+
     DigicoreVehicle getVehicle() {
         return this.vehicle;
     }
 
 
-}
+    /**
+     * Growable buffer of positions stored as primitive columns. The buffer
+     * is cleared, rather than discarded, so that its arrays are reused for
+     * the vehicle's subsequent trips. Positions are added as they are read,
+     * and only transformed, all at once, when the trip is converted to a
+     * trace. A trip can be reinstated, and extended, after it has been
+     * converted, so the buffer keeps track of how many of its positions
+     * have been transformed.
+     * <p>
+     * A converted trip's columns are handed over to its trace. The buffer
+     * keeps writing to them only while the trip is reinstated, i.e. when its
+     * trace has been removed from the chain again, and starts new columns
+     * once it is cleared.
+     */
+    private static final class GpsBuffer {
+        private static final int INITIAL_CAPACITY = 64;
+        private long[] time = new long[INITIAL_CAPACITY];
+        private double[] x = new double[INITIAL_CAPACITY];
+        private double[] y = new double[INITIAL_CAPACITY];
+        private int size = 0;
+        private int transformed = 0;
+        private boolean handedOver = false;
+
+        void add(long time, double x, double y) {
+            if (size == this.time.length) {
+                int capacity = 2 * size;
+                this.time = Arrays.copyOf(this.time, capacity);
+                this.x = Arrays.copyOf(this.x, capacity);
+                this.y = Arrays.copyOf(this.y, capacity);
+            }
+            this.time[size] = time;
+            this.x[size] = x;
+            this.y[size] = y;
+            size++;
+        }
 
+        void transform(CoordinateTransformationService ct) {
+            ct.transform(this.x, this.y, transformed, size - transformed);
+            transformed = size;
+        }
+
+        DigicoreTrace handOver(String crs) {
+            handedOver = true;
+            return DigicoreTrace.wrap(crs, time, x, y, size);
+        }
+
+        void clear() {
+            if (handedOver) {
+                time = new long[INITIAL_CAPACITY];
+                x = new double[INITIAL_CAPACITY];
+                y = new double[INITIAL_CAPACITY];
+                handedOver = false;
+            }
+            size = 0;
+            transformed = 0;
+        }
+    }
+
+
+    /**
+     * Keeps the running sums of a (possible) activity, from which its
+     * centroid and duration are calculated. The individual (untransformed)
+     * positions are only needed if the activity turns out to be too short,
+     * in which case they are added to the trip. Since the vehicle files are
+     * sorted chronologically, that can no longer happen once the duration
+     * reaches the activity threshold, after which positions are no longer
+     * kept. The buffer's size is therefore bounded by the threshold, and not
+     * by how long the vehicle is stationary. If the file is not sorted after
+     * all, a stop can still turn out too short once its positions are gone,
+     * and the trip then simply continues without them.
+     */
+    private static final class ActivityBuffer {
+        private final double thresholdActivityDuration;
+        private final GpsBuffer positions = new GpsBuffer();
+        private boolean keepPositions = true;
+        private long startTime;
+        private long endTime;
+        private int count = 0;
+        private double xSum = 0;
+        private double ySum = 0;
+
+        ActivityBuffer(double thresholdActivityDuration) {
+            this.thresholdActivityDuration = thresholdActivityDuration;
+        }
+
+        void add(long time, double x, double y) {
+            if (count == 0) {
+                startTime = time;
+            }
+            endTime = time;
+            count++;
+            xSum += x;
+            ySum += y;
+            if (keepPositions) {
+                positions.add(time, x, y);
+                if (getDuration() >= thresholdActivityDuration) {
+                    keepPositions = false;
+                    positions.clear();
+                }
+            }
+        }
+
+        long getDuration() {
+            return endTime - startTime;
+        }
+
+        long getStartTime() {
+            return startTime;
+        }
+
+        long getEndTime() {
+            return endTime;
+        }
+
+        Coord getCentroid() {
+            return new Coord(xSum / (double) count, ySum / (double) count);
+        }
+
+        /**
+         * Adds the activity's positions to the trip.
+         *
+         * @return false if the positions were no longer kept, which only
+         * happens if the vehicle file is not sorted chronologically.
+         */
+        boolean appendTo(GpsBuffer trip) {
+            if (!keepPositions) {
+                return false;
+            }
+            for (int i = 0; i < positions.size; i++) {
+                trip.add(positions.time[i], positions.x[i], positions.y[i]);
+            }
+            return true;
+        }
+
+        void clear() {
+            positions.clear();
+            keepPositions = true;
+            count = 0;
+            xSum = 0;
+            ySum = 0;
+        }
+    }
+
+}
@@ -0,0 +1,291 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DigicoreChunkedReader.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+import org.apache.log4j.Logger;
+import org.matsim.up.freight.utils.BlockGzipIndex;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import java.util.zip.GZIPInputStream;
+
+
+/**
+ * Reads a raw DigiCore file in independent byte ranges (chunks), each on its
+ * own thread. Uncompressed files are split on byte positions, and
+ * block-gzipped (BGZF) files on block boundaries. A normal gzip file cannot be
+ * split, and is read as a single chunk.
+ *
+ * <p>Chunk boundaries need not coincide with line endings. Every chunk,
+ * except the first, skips everything up to and including its first line
+ * break. In turn, every chunk reads on past its end to finish the line that
+ * starts at, or straddles, its end. Every line is therefore handled exactly
+ * once, and in the order of the file within a chunk. Both <code>\n</code>
+ * and <code>\r\n</code> line endings are supported.</p>
+ *
+ * @author jwjoubert
+ */
+class DigicoreChunkedReader {
+	private static final Logger LOG = Logger.getLogger(DigicoreChunkedReader.class);
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final File file;
+	private final List<Chunk> chunks = new ArrayList<>();
+
+
+	/**
+	 * @param filename       raw input file;
+	 * @param numberOfChunks the number of chunks the file should be split
+	 *                       into. Fewer chunks are used if the file is too
+	 *                       small, or cannot be split.
+	 */
+	DigicoreChunkedReader(String filename, int numberOfChunks) {
+		if (numberOfChunks < 1) {
+			throw new IllegalArgumentException("Must read at least one chunk.");
+		}
+		this.file = new File(filename);
+		try {
+			planChunks(numberOfChunks);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot split " + filename + " into chunks.", e);
+		}
+	}
+
+
+	private void planChunks(int numberOfChunks) throws IOException {
+		if (!file.getName().endsWith(".gz")) {
+			long length = file.length();
+			long previous = 0;
+			for (int i = 1; i <= numberOfChunks; i++) {
+				long end = i == numberOfChunks ? Long.MAX_VALUE : length * i / numberOfChunks;
+				if (end > previous) {
+					chunks.add(new Chunk(previous, previous, end, false));
+					previous = end;
+				}
+			}
+			if (chunks.isEmpty()) {
+				chunks.add(new Chunk(0, 0, Long.MAX_VALUE, false));
+			}
+			return;
+		}
+
+		BlockGzipIndex index = numberOfChunks > 1 ? BlockGzipIndex.read(file) : null;
+		if (index == null) {
+			if (numberOfChunks > 1) {
+				LOG.info("File " + file.getName() + " is not block-gzipped, and will be read as a single chunk.");
+			}
+			chunks.add(new Chunk(0, 0, Long.MAX_VALUE, true));
+			return;
+		}
+
+		/* Balance the chunks on compressed size, which is what has to be read. */
+		int blocks = index.getNumberOfBlocks();
+		long length = index.getCompressedOffset(blocks);
+		int firstBlock = 0;
+		for (int i = 1; i <= numberOfChunks && firstBlock < blocks; i++) {
+			int lastBlock = firstBlock + 1;
+			long target = length * i / numberOfChunks;
+			while (lastBlock < blocks && index.getCompressedOffset(lastBlock) < target) {
+				lastBlock++;
+			}
+			if (i == numberOfChunks) {
+				lastBlock = blocks;
+			}
+			chunks.add(new Chunk(
+					index.getCompressedOffset(firstBlock),
+					index.getUncompressedOffset(firstBlock),
+					lastBlock == blocks ? Long.MAX_VALUE : index.getUncompressedOffset(lastBlock),
+					true));
+			firstBlock = lastBlock;
+		}
+	}
+
+
+	int getNumberOfChunks() {
+		return chunks.size();
+	}
+
+
+	/**
+	 * Reads all the chunks, using at most the given number of threads.
+	 *
+	 * @param handlerFactory creates the handler for a chunk, given the chunk
+	 *                       number. Each handler only ever sees the lines of
+	 *                       its own chunk, from a single thread, so handlers
+	 *                       need not be thread safe.
+	 * @return the handlers, in chunk (and therefore file) order, so that
+	 * their results can be merged.
+	 */
+	<H extends LineHandler> List<H> read(IntFunction<H> handlerFactory, int numberOfThreads) {
+		List<H> handlers = new ArrayList<>(chunks.size());
+		for (int i = 0; i < chunks.size(); i++) {
+			handlers.add(handlerFactory.apply(i));
+		}
+
+		ExecutorService threadExecutor = Executors.newFixedThreadPool(Math.max(1, Math.min(numberOfThreads, chunks.size())));
+		try {
+			List<Future<?>> futures = new ArrayList<>(chunks.size());
+			for (int i = 0; i < chunks.size(); i++) {
+				Chunk chunk = chunks.get(i);
+				H handler = handlers.get(i);
+				futures.add(threadExecutor.submit(() -> {
+					readChunk(chunk, handler);
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while reading " + file.getName(), e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw new UncheckedIOException("Could not read " + file.getName(), (IOException) cause);
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new RuntimeException("Could not read " + file.getName(), cause);
+		} finally {
+			threadExecutor.shutdownNow();
+		}
+		return handlers;
+	}
+
+
+	private void readChunk(Chunk chunk, LineHandler handler) throws IOException {
+		try (FileInputStream fis = new FileInputStream(file)) {
+			fis.getChannel().position(chunk.offset);
+			readLines(chunk, chunk.gzipped ? new GZIPInputStream(fis, BUFFER_SIZE) : fis, handler);
+		}
+		handler.finish();
+	}
+
+
+	private static void readLines(Chunk chunk, InputStream in, LineHandler handler) throws IOException {
+		try (in) {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			long bufferPosition = chunk.start;
+			int length = 0;
+			int lineStart = 0;
+			int scan = 0;
+			boolean skip = chunk.start > 0;
+
+			while (true) {
+				int newline = -1;
+				for (int i = scan; i < length; i++) {
+					if (buffer[i] == '\n') {
+						newline = i;
+						break;
+					}
+				}
+
+				if (newline >= 0) {
+					if (skip) {
+						skip = false;
+					} else if (bufferPosition + lineStart > chunk.end) {
+						break;
+					} else {
+						int end = newline > lineStart && buffer[newline - 1] == '\r' ? newline - 1 : newline;
+						handler.handleLine(buffer, lineStart, end - lineStart);
+					}
+					lineStart = newline + 1;
+					scan = lineStart;
+					continue;
+				}
+
+				/* No complete line left in the buffer: keep the partial line and read more. */
+				if (lineStart > 0) {
+					System.arraycopy(buffer, lineStart, buffer, 0, length - lineStart);
+					bufferPosition += lineStart;
+					length -= lineStart;
+					lineStart = 0;
+				}
+				if (length == buffer.length) {
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				}
+				scan = length;
+				int read = in.read(buffer, length, buffer.length - length);
+				if (read < 0) {
+					/* The last line need not end with a line break. */
+					if (length > 0 && !skip && bufferPosition <= chunk.end) {
+						int end = buffer[length - 1] == '\r' ? length - 1 : length;
+						handler.handleLine(buffer, 0, end);
+					}
+					break;
+				}
+				length += read;
+			}
+		}
+	}
+
+
+	/**
+	 * Receives the lines of one chunk.
+	 */
+	interface LineHandler {
+
+		/**
+		 * Handles a single line, without its line ending. The buffer is reused
+		 * once the method returns.
+		 */
+		void handleLine(byte[] buffer, int offset, int length) throws IOException;
+
+		/**
+		 * Called once all the lines of the chunk have been handled.
+		 */
+		void finish() throws IOException;
+	}
+
+
+	/**
+	 * A byte range of the file.
+	 */
+	private static final class Chunk {
+		/** Position in the (compressed) file where reading starts. */
+		private final long offset;
+		/** Uncompressed position of the first byte of the chunk. */
+		private final long start;
+		/** Uncompressed position of the first byte of the next chunk. */
+		private final long end;
+		private final boolean gzipped;
+
+		private Chunk(long offset, long start, long end, boolean gzipped) {
+			this.offset = offset;
+			this.start = start;
+			this.end = end;
+			this.gzipped = gzipped;
+		}
+	}
+
+}
@@ -0,0 +1,692 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DigicoreExternalSorter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.up.utils.FileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.TimeZone;
+
+
+/**
+ * Combines the first two steps of processing the DigiCore data file, i.e.
+ * {@link DigicoreFileSplitter} and {@link DigicoreFilesSorter}, into a single
+ * external merge-sort on the key (vehicle ID, time stamp).
+ *
+ * <h4>Process</h4>
+ * <p>The raw input file is read only once. Records are packed into primitive
+ * columns until the memory budget is reached. The buffered records are then
+ * sorted and <i>spilled</i> as a binary run to a temporary file. Once the
+ * whole input file has been read, the runs are merged (k-way) and written
+ * directly as chronologically sorted vehicle files, i.e.
+ * <code>vehicles/&lt;id&gt;.txt.gz</code>, in exactly the same format as
+ * that produced by {@link DigicoreFilesSorter}. If there are more runs than
+ * can be merged at once, intermediate merge passes are used. The sort is
+ * stable: records with the same vehicle ID and time stamp retain the order in
+ * which they appear in the input file.</p>
+ *
+ * <p>Since only the memory budget's worth of records is ever held in memory,
+ * the input file can be far larger than the available heap.</p>
+ *
+ * <p>An uncompressed or block-gzipped (BGZF) input file is read in parallel
+ * byte ranges using the {@link DigicoreChunkedReader}, each producing its own
+ * runs. A normal gzip file can only be read by a single thread; it can be
+ * converted using <code>bgzip</code> (from htslib), as the result is still a
+ * valid gzip file.</p>
+ *
+ * @author jwjoubert
+ */
+class DigicoreExternalSorter {
+	private static final Logger LOG = Logger.getLogger(DigicoreExternalSorter.class);
+
+	/**
+	 * Number of bytes used for each buffered record: the six columns, as
+	 * well as the two index arrays used while sorting.
+	 */
+	private static final int BYTES_PER_BUFFERED_RECORD = 8 + 8 + 8 + 8 + 4 + 4 + 4 + 4;
+	private static final int MIN_RECORDS_PER_RUN = 1024;
+	static final int DEFAULT_MAX_FAN_IN = 128;
+
+	private final String inputFilename;
+	private final String outputFolder;
+	private final int recordsPerRun;
+	private int maxFanIn = DEFAULT_MAX_FAN_IN;
+	private int numberOfThreads = 1;
+	private boolean binaryOutput = false;
+
+	private long earliest = Long.MAX_VALUE;
+	private long latest = Long.MIN_VALUE;
+	private long numberOfRecords = 0;
+	private long numberOfVehicles = 0;
+
+
+	/**
+	 * Creates the sorter and the <code>vehicles</code> folder into which the
+	 * sorted vehicle files will be written.
+	 *
+	 * @param inputFilename raw input file;
+	 * @param outputFolder  folder in which the <code>vehicles</code> folder
+	 *                      will be created;
+	 * @param memoryBudget  (approximate) number of bytes that may be used to
+	 *                      buffer records before they are spilled to disk.
+	 */
+	DigicoreExternalSorter(String inputFilename, String outputFolder, long memoryBudget) {
+		this(inputFilename, outputFolder, memoryBudget, false);
+	}
+
+
+	/**
+	 * Creates the sorter which, when resuming, may use an existing
+	 * <code>vehicles</code> folder that was only partially written (see
+	 * {@link #mergeRuns(List)}).
+	 *
+	 * @param inputFilename raw input file;
+	 * @param outputFolder  folder in which the <code>vehicles</code> folder
+	 *                      will be created;
+	 * @param memoryBudget  (approximate) number of bytes that may be used to
+	 *                      buffer records before they are spilled to disk;
+	 * @param resume        whether an existing <code>vehicles</code> folder
+	 *                      may be used.
+	 */
+	DigicoreExternalSorter(String inputFilename, String outputFolder, long memoryBudget, boolean resume) {
+		this.inputFilename = inputFilename;
+		this.outputFolder = outputFolder + (outputFolder.endsWith("/") ? "" : "/");
+		long records = Math.max(MIN_RECORDS_PER_RUN, memoryBudget / BYTES_PER_BUFFERED_RECORD);
+		this.recordsPerRun = (int) Math.min(Integer.MAX_VALUE - 8, records);
+
+		File vehicleFolder = new File(this.outputFolder + ExtractionUtils.FOLDER_VEHICLES);
+		if (!resume || !vehicleFolder.isDirectory()) {
+			ExtractionUtils.createVehicleFolder(this.outputFolder);
+		}
+	}
+
+
+	/**
+	 * Splits and sorts a raw DigiCore file in a single pass.
+	 *
+	 * @param args The following arguments should be passed, and in the given order:
+	 *             <ol>
+	 *             	<li> input file to be split and sorted;
+	 *             	<li> output folder into which a <code>vehicles</code> folder
+	 *             		 will be <i>created</i> within which sorted vehicle files
+	 *             		 will be written;
+	 *             	<li> field number containing the <i>VehicleId</i>;
+	 *             	<li> field number containing the <i>Time</em>;
+	 *             	<li> field number containing the <i>Longitude</i>;
+	 *             	<li> field number containing the <i>Latitude</i>;
+	 *             	<li> field number containing the <i>Status</i>;
+	 *             	<li> field number containing the <i>Speed</i>;
+	 *             	<li> (optional) memory budget, in megabytes, used to buffer
+	 *             		 records. The default is a quarter of the maximum heap;
+	 *             	<li> (optional) number of threads used to read the input
+	 *             		 file. The default is 1.
+	 *             </ol>
+	 */
+	public static void main(String[] args) {
+		if (args.length < 8 || args.length > 10) {
+			throw new RuntimeException("Must provide 8 field arguments: filename, outputfolder, and the field locations for VehId, Time, Long, Lat, Status and Speed.");
+		}
+
+		LOG.info("=================================================================");
+		LOG.info("  Splitting and sorting the DigiCore data file in a single pass.");
+		LOG.info("=================================================================");
+
+		long memoryBudget = args.length >= 9
+				? Long.parseLong(args[8]) * 1024L * 1024L
+				: Runtime.getRuntime().maxMemory() / 4;
+		DigicoreExternalSorter sorter = new DigicoreExternalSorter(args[0], args[1], memoryBudget);
+		if (args.length == 10) {
+			sorter.setNumberOfThreads(Integer.parseInt(args[9]));
+		}
+		sorter.sort(Integer.parseInt(args[2]),
+				Integer.parseInt(args[3]),
+				Integer.parseInt(args[4]),
+				Integer.parseInt(args[5]),
+				Integer.parseInt(args[6]),
+				Integer.parseInt(args[7]));
+
+		GregorianCalendar first = new GregorianCalendar(TimeZone.getTimeZone("GMT+02"), Locale.ENGLISH);
+		first.setTimeInMillis(sorter.getEarliestTimestamp() * 1000);
+		GregorianCalendar last = new GregorianCalendar(TimeZone.getTimeZone("GMT+02"), Locale.ENGLISH);
+		last.setTimeInMillis(sorter.getLatestTimestamp() * 1000);
+
+		LOG.info("-----------------------------------------------------------------");
+		LOG.info("   Process complete.");
+		LOG.info("-----------------------------------------------------------------");
+		LOG.info("      Number of records: " + sorter.getNumberOfRecords());
+		LOG.info("     Number of vehicles: " + sorter.getNumberOfVehicles());
+		LOG.info("   Earliest date parsed: " + DigicoreFileSplitter.calendarToString(first));
+		LOG.info("     Latest date parsed: " + DigicoreFileSplitter.calendarToString(last));
+		LOG.info("=================================================================");
+	}
+
+
+	/**
+	 * Reads the raw file, spills sorted runs to disk, and merges them into
+	 * sorted vehicle files. See
+	 * {@link DigicoreFileSplitter#split(int, int, int, int, int, int)} for a
+	 * description of the fields.
+	 */
+	void sort(int fieldVehId, int fieldTime, int fieldLong, int fieldLat, int fieldStatus, int fieldSpeed) {
+		File runFolder;
+		try {
+			runFolder = Files.createTempDirectory(new File(outputFolder).toPath(), "sortRuns").toFile();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot create folder for sorted runs in " + outputFolder, e);
+		}
+
+		try {
+			List<File> runs = createSortedRuns(runFolder, fieldVehId, fieldTime, fieldLong, fieldLat, fieldStatus, fieldSpeed);
+			mergeRuns(runs);
+		} finally {
+			FileUtils.delete(runFolder);
+		}
+	}
+
+
+	/**
+	 * The first step of {@link #sort(int, int, int, int, int, int)}: reads the
+	 * raw file, and spills sorted runs to the given folder. Intermediate merge
+	 * passes are done until the remaining runs can be merged in one go.
+	 *
+	 * @return the remaining runs, in the order in which they must be merged.
+	 */
+	List<File> createSortedRuns(File runFolder, int fieldVehId, int fieldTime, int fieldLong, int fieldLat, int fieldStatus, int fieldSpeed) {
+		try {
+			List<File> runs = createRuns(runFolder, fieldVehId, fieldTime, fieldLong, fieldLat, fieldStatus, fieldSpeed);
+			LOG.info("Number of sorted runs: " + runs.size());
+
+			/* Reduce the number of runs until they can be merged in one go. */
+			int pass = 0;
+			while (runs.size() > maxFanIn) {
+				LOG.info("Intermediate merge pass " + (++pass) + " of " + runs.size() + " runs.");
+				List<File> merged = new ArrayList<>();
+				for (int i = 0; i < runs.size(); i += maxFanIn) {
+					List<File> group = runs.subList(i, Math.min(i + maxFanIn, runs.size()));
+					File run = new File(runFolder, "pass" + pass + "_" + merged.size() + ".bin");
+					try (RunWriter writer = new RunWriter(run)) {
+						merge(group, writer);
+					}
+					for (File f : group) {
+						FileUtils.delete(f);
+					}
+					merged.add(run);
+				}
+				runs = merged;
+			}
+			return runs;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not sort " + inputFilename, e);
+		}
+	}
+
+
+	/**
+	 * The second step of {@link #sort(int, int, int, int, int, int)}: merges
+	 * the sorted runs into the sorted vehicle files. The runs are not deleted.
+	 * <p>
+	 * Since vehicle files are written in order of vehicle ID, a merge that
+	 * was interrupted can be resumed: all the vehicle files already in the
+	 * <code>vehicles</code> folder are complete, except possibly the one with
+	 * the largest ID. That file is rewritten, and the vehicles before it are
+	 * skipped.
+	 */
+	void mergeRuns(List<File> runs) {
+		String vehicleFolder = outputFolder + ExtractionUtils.FOLDER_VEHICLES;
+		long resumeFrom = Long.MIN_VALUE;
+		long completed = 0;
+		String extension = binaryOutput ? ExtractionUtils.SORTED_BINARY_EXTENSION : ExtractionUtils.SORTED_TEXT_EXTENSION;
+		File[] existing = new File(vehicleFolder).listFiles((dir, name) -> name.endsWith(extension));
+		if (existing != null && existing.length > 0) {
+			for (File file : existing) {
+				String name = file.getName();
+				try {
+					resumeFrom = Math.max(resumeFrom, Long.parseLong(name.substring(0, name.length() - extension.length())));
+				} catch (NumberFormatException e) {
+					throw new IllegalStateException("Cannot resume sorting: " + file.getAbsolutePath() + " is not a sorted vehicle file.", e);
+				}
+			}
+			completed = existing.length - 1;
+			LOG.info("Resuming from vehicle " + resumeFrom + ", " + completed + " vehicle files are complete.");
+		}
+
+		LOG.info("Merging runs into sorted vehicle files...");
+		try (VehicleFileSink sink = new VehicleFileSink(vehicleFolder, resumeFrom, binaryOutput)) {
+			merge(runs, sink);
+			this.numberOfVehicles = completed + sink.vehicles;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not sort " + inputFilename, e);
+		}
+	}
+
+
+	private List<File> createRuns(File runFolder, int fieldVehId, int fieldTime, int fieldLong, int fieldLat, int fieldStatus, int fieldSpeed) {
+		DigicoreChunkedReader reader = new DigicoreChunkedReader(inputFilename, numberOfThreads);
+		int chunks = reader.getNumberOfChunks();
+		LOG.info("Reading " + inputFilename + " in " + chunks + " chunk(s) using " + Math.min(chunks, numberOfThreads) + " thread(s).");
+
+		/* The memory budget is shared by the chunks that are read at the same time. */
+		int recordsPerChunkRun = Math.max(MIN_RECORDS_PER_RUN, recordsPerRun / Math.min(chunks, numberOfThreads));
+		List<RunGenerator> generators = reader.read(chunk -> new RunGenerator(chunk, runFolder, recordsPerChunkRun,
+				fieldVehId, fieldTime, fieldLong, fieldLat, fieldStatus, fieldSpeed), numberOfThreads);
+
+		/* Runs are kept in chunk order, which keeps the merge stable. */
+		List<File> runs = new ArrayList<>();
+		long malformed = 0;
+		for (RunGenerator generator : generators) {
+			earliest = Math.min(earliest, generator.earliest);
+			latest = Math.max(latest, generator.latest);
+			numberOfRecords += generator.records;
+			malformed += generator.malformed;
+			runs.addAll(generator.runs);
+		}
+		LOG.info("   records read: " + numberOfRecords);
+		if (malformed > 0) {
+			LOG.warn(malformed + " lines could not be parsed as a 6-field record, and were ignored.");
+		}
+		return runs;
+	}
+
+
+	/**
+	 * Merges the given (sorted) runs into the sink. Runs are ordered by
+	 * vehicle ID, then time stamp, and then the position of the run in the
+	 * list, which keeps the merge stable.
+	 */
+	private static void merge(List<File> runs, RecordSink sink) throws IOException {
+		PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(1, runs.size()), RunReader.ORDER);
+		List<RunReader> readers = new ArrayList<>(runs.size());
+		try {
+			for (int i = 0; i < runs.size(); i++) {
+				RunReader reader = new RunReader(runs.get(i), i);
+				readers.add(reader);
+				if (reader.next()) {
+					queue.add(reader);
+				}
+			}
+			while (!queue.isEmpty()) {
+				RunReader reader = queue.poll();
+				sink.accept(reader.vehId, reader.time, reader.lon, reader.lat, reader.status, reader.speed);
+				if (reader.next()) {
+					queue.add(reader);
+				}
+			}
+		} finally {
+			for (RunReader reader : readers) {
+				reader.close();
+			}
+		}
+	}
+
+
+	/**
+	 * Sets the number of threads used to read the input file. An uncompressed
+	 * or block-gzipped file is split into this many byte ranges that are read
+	 * (and spilled) in parallel. The memory budget is shared by the threads.
+	 */
+	void setNumberOfThreads(int numberOfThreads) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("Must use at least one thread.");
+		}
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	/**
+	 * Sets whether the sorted vehicle files are written in the binary format
+	 * of the {@link BinaryVehicleWriter}, rather than as text. The default is
+	 * text.
+	 */
+	void setBinaryOutput(boolean binaryOutput) {
+		this.binaryOutput = binaryOutput;
+	}
+
+	/**
+	 * Sets the maximum number of runs that are merged at once. This limits
+	 * the number of temporary files that are open at the same time.
+	 */
+	void setMaximumFanIn(int maxFanIn) {
+		if (maxFanIn < 2) {
+			throw new IllegalArgumentException("Must merge at least two runs at a time.");
+		}
+		this.maxFanIn = maxFanIn;
+	}
+
+	long getEarliestTimestamp() {
+		return this.earliest;
+	}
+
+	long getLatestTimestamp() {
+		return this.latest;
+	}
+
+	long getNumberOfRecords() {
+		return this.numberOfRecords;
+	}
+
+	long getNumberOfVehicles() {
+		return this.numberOfVehicles;
+	}
+
+
+	/**
+	 * Destination of merged records.
+	 */
+	private interface RecordSink {
+		void accept(long vehId, long time, double lon, double lat, int status, int speed) throws IOException;
+	}
+
+
+	/**
+	 * Parses the lines of one chunk of the input file, and spills them as
+	 * sorted runs. Also keeps the chunk's statistics, which are merged once
+	 * all chunks have been read.
+	 */
+	private static final class RunGenerator implements DigicoreChunkedReader.LineHandler {
+		private final int chunk;
+		private final File runFolder;
+		private final int capacity;
+		private final DigicoreRecordParser parser;
+		private final MutableDigicoreRecord record = new MutableDigicoreRecord();
+
+		private final List<File> runs = new ArrayList<>();
+		private RunBuffer buffer = null;
+		private long earliest = Long.MAX_VALUE;
+		private long latest = Long.MIN_VALUE;
+		private long records = 0;
+		private long malformed = 0;
+
+		RunGenerator(int chunk, File runFolder, int capacity,
+				int fieldVehId, int fieldTime, int fieldLong, int fieldLat, int fieldStatus, int fieldSpeed) {
+			this.chunk = chunk;
+			this.runFolder = runFolder;
+			this.capacity = capacity;
+			this.parser = new DigicoreRecordParser(fieldVehId, fieldTime, fieldLong, fieldLat, fieldStatus, fieldSpeed);
+		}
+
+		@Override
+		public void handleLine(byte[] bytes, int offset, int length) throws IOException {
+			if (!parser.parse(bytes, offset, length, record)) {
+				malformed++;
+				return;
+			}
+			long time = record.getTime();
+			earliest = Math.min(earliest, time);
+			latest = Math.max(latest, time);
+
+			/* Only allocate the buffer once the chunk's thread actually starts. */
+			if (buffer == null) {
+				buffer = new RunBuffer(capacity);
+			}
+			buffer.add(record.getVehicleId(), time, record.getLongitude(), record.getLatitude(), record.getStatus(), record.getSpeed());
+			records++;
+			if (buffer.isFull()) {
+				spill();
+			}
+		}
+
+		@Override
+		public void finish() throws IOException {
+			if (buffer != null && buffer.size() > 0) {
+				spill();
+			}
+			buffer = null;
+			LOG.info("   chunk " + chunk + ": " + records + " records in " + runs.size() + " run(s).");
+		}
+
+		private void spill() throws IOException {
+			runs.add(buffer.spill(new File(runFolder, "chunk" + chunk + "_run" + runs.size() + ".bin")));
+		}
+	}
+
+
+	/**
+	 * Fixed-capacity buffer of records stored as primitive columns.
+	 */
+	private static final class RunBuffer {
+		private final long[] vehId;
+		private final long[] time;
+		private final double[] lon;
+		private final double[] lat;
+		private final int[] status;
+		private final int[] speed;
+		private final int[] index;
+		private final int[] tmp;
+		private int size = 0;
+
+		RunBuffer(int capacity) {
+			vehId = new long[capacity];
+			time = new long[capacity];
+			lon = new double[capacity];
+			lat = new double[capacity];
+			status = new int[capacity];
+			speed = new int[capacity];
+			index = new int[capacity];
+			tmp = new int[capacity];
+		}
+
+		void add(long vehId, long time, double lon, double lat, int status, int speed) {
+			this.vehId[size] = vehId;
+			this.time[size] = time;
+			this.lon[size] = lon;
+			this.lat[size] = lat;
+			this.status[size] = status;
+			this.speed[size] = speed;
+			size++;
+		}
+
+		boolean isFull() {
+			return size == vehId.length;
+		}
+
+		int size() {
+			return size;
+		}
+
+		/**
+		 * Sorts the buffered records, writes them to the given run file, and
+		 * empties the buffer.
+		 */
+		File spill(File run) throws IOException {
+			sort();
+			try (RunWriter writer = new RunWriter(run)) {
+				for (int i = 0; i < size; i++) {
+					int j = index[i];
+					writer.accept(vehId[j], time[j], lon[j], lat[j], status[j], speed[j]);
+				}
+			}
+			size = 0;
+			return run;
+		}
+
+		/**
+		 * Stable sort of the record indices on vehicle ID and time stamp.
+		 */
+		private void sort() {
+			RecordIndexSorter.sort(vehId, time, size, index, tmp);
+		}
+	}
+
+
+	/**
+	 * Writes packed binary records to a run file.
+	 */
+	private static final class RunWriter implements RecordSink, AutoCloseable {
+		private final DataOutputStream out;
+
+		RunWriter(File file) throws IOException {
+			this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		}
+
+		@Override
+		public void accept(long vehId, long time, double lon, double lat, int status, int speed) throws IOException {
+			out.writeLong(vehId);
+			out.writeLong(time);
+			out.writeDouble(lon);
+			out.writeDouble(lat);
+			out.writeInt(status);
+			out.writeInt(speed);
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.close();
+		}
+	}
+
+
+	/**
+	 * Reads packed binary records from a run file, one at a time.
+	 */
+	private static final class RunReader implements AutoCloseable {
+		static final Comparator<RunReader> ORDER = (r1, r2) -> {
+			int c = Long.compare(r1.vehId, r2.vehId);
+			if (c == 0) {
+				c = Long.compare(r1.time, r2.time);
+			}
+			return c != 0 ? c : Integer.compare(r1.run, r2.run);
+		};
+
+		private final DataInputStream in;
+		private final int run;
+		long vehId;
+		long time;
+		double lon;
+		double lat;
+		int status;
+		int speed;
+
+		RunReader(File file, int run) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+			this.run = run;
+		}
+
+		/**
+		 * Reads the next record.
+		 *
+		 * @return false if the run is exhausted.
+		 */
+		boolean next() throws IOException {
+			try {
+				vehId = in.readLong();
+			} catch (EOFException e) {
+				return false;
+			}
+			time = in.readLong();
+			lon = in.readDouble();
+			lat = in.readDouble();
+			status = in.readInt();
+			speed = in.readInt();
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+
+	/**
+	 * Writes merged records to one sorted file per vehicle. Since the merged
+	 * records arrive grouped by vehicle, only one file is open at a time.
+	 */
+	private static final class VehicleFileSink implements RecordSink, AutoCloseable {
+		private final String folder;
+		private final long firstVehicle;
+		private final boolean binary;
+		private BufferedWriter bw = null;
+		private BinaryVehicleWriter binaryWriter = null;
+		private boolean open = false;
+		private long currentVehicle = 0;
+		private long vehicles = 0;
+
+		/**
+		 * @param firstVehicle records of vehicles with smaller IDs are
+		 *                     skipped, since their files are already complete;
+		 * @param binary       whether binary, rather than text, files are
+		 *                     written.
+		 */
+		VehicleFileSink(String folder, long firstVehicle, boolean binary) {
+			this.folder = folder;
+			this.firstVehicle = firstVehicle;
+			this.binary = binary;
+		}
+
+		@Override
+		public void accept(long vehId, long time, double lon, double lat, int status, int speed) throws IOException {
+			if (vehId < firstVehicle) {
+				return;
+			}
+			if (!open || vehId != currentVehicle) {
+				close();
+				if (binary) {
+					binaryWriter = new BinaryVehicleWriter(new File(folder + vehId + ExtractionUtils.SORTED_BINARY_EXTENSION), vehId);
+				} else {
+					bw = IOUtils.getBufferedWriter(folder + vehId + ExtractionUtils.SORTED_TEXT_EXTENSION);
+					DigicoreFilesSorter.writeHeader(bw);
+				}
+				open = true;
+				currentVehicle = vehId;
+				vehicles++;
+			} else if (!binary) {
+				bw.newLine();
+			}
+			if (binary) {
+				binaryWriter.write(time, lon, lat, status, speed);
+			} else {
+				DigicoreFilesSorter.writeRecord(bw, vehId, time, lon, lat, status, speed);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (bw != null) {
+				bw.close();
+				bw = null;
+			}
+			if (binaryWriter != null) {
+				binaryWriter.close();
+				binaryWriter = null;
+			}
+			open = false;
+		}
+	}
+
+}
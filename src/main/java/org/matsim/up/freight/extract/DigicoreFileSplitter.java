@@ -25,27 +25,47 @@ import org.matsim.core.utils.io.IOUtils;
 import org.matsim.core.utils.misc.Counter;
 import org.matsim.up.utils.DateString;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.TimeZone;
 
 
 class DigicoreFileSplitter {
     private static final Logger LOG = Logger.getLogger(DigicoreFileSplitter.class);
+    private static final char DELIMITER = ',';
 
     private final String inputFilename;
     private final String outputFolder;
     private final long startLine;
     private final long numberOfLinesToRead;
+    /* The log of an interrupted pooled split that is continued, if any. */
+    private final String checkpointLog;
 
     private long earliest = Long.MAX_VALUE;
     private long latest = Long.MIN_VALUE;
 
+    /* Settings for the pooled split. */
+    static final int DEFAULT_MAX_OPEN_WRITERS = 2048;
+    static final int DEFAULT_WRITER_BUFFER_SIZE = 8192;
+    static final long DEFAULT_CHECKPOINT_INTERVAL = 1000000;
+    private int maxOpenWriters = DEFAULT_MAX_OPEN_WRITERS;
+    private int writerBufferSize = DEFAULT_WRITER_BUFFER_SIZE;
+    private long checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+
 
     /**
      * Creates a file splitter that will start reading at a given line number,
@@ -63,6 +83,7 @@ class DigicoreFileSplitter {
         this.inputFilename = inputFilename;
         this.startLine = startLine;
         this.numberOfLinesToRead = linesToRead;
+        this.checkpointLog = null;
 
         createVehicleFolder(outputFolder);
     }
@@ -83,6 +104,109 @@ class DigicoreFileSplitter {
     }
 
 
+    private DigicoreFileSplitter(String inputFilename, String outputFolder, long startLine, String checkpointLog) {
+        this.outputFolder = outputFolder;
+        this.inputFilename = inputFilename;
+        this.startLine = startLine;
+        this.numberOfLinesToRead = Long.MAX_VALUE;
+        this.checkpointLog = checkpointLog;
+    }
+
+
+    /**
+     * Creates a file splitter that continues an interrupted
+     * {@link #splitPooled(int, int, int, int, int, int)} of the same input
+     * file into the same (existing) output folder. Each vehicle file is cut
+     * back to its length at the last complete checkpoint in the log, and
+     * vehicle files that were only created after that checkpoint are
+     * deleted, so that the records following the checkpoint are not written
+     * twice. The split then continues at the line following the checkpoint,
+     * and appends its own checkpoints to the same log.
+     *
+     * <br><br>Only the part of the input that is read again is reflected in
+     * {@link #getEarliestTimestamp()} and {@link #getLatestTimestamp()}.
+     *
+     * @param inputFilename raw input file, as for the interrupted split;
+     * @param outputFolder  output folder of the interrupted split;
+     * @param checkpointLog the <code>logRecordsRead_*.txt</code> file of the
+     *                      interrupted split.
+     */
+    public static DigicoreFileSplitter resuming(String inputFilename, String outputFolder, String checkpointLog) {
+        Map<String, Long> lengths = new HashMap<>();
+        Map<String, Long> pending = new HashMap<>();
+        long checkpoint = -1;
+        long checkpointEnd = 0;
+        long offset = 0;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(checkpointLog))) {
+            ByteArrayOutputStream entry = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1) {
+                offset++;
+                if (b != '\n') {
+                    entry.write(b);
+                    continue;
+                }
+                /* Only complete lines are used: the last one may have been cut short. */
+                String s = entry.toString(StandardCharsets.UTF_8).trim();
+                entry.reset();
+                int comma = s.lastIndexOf(DELIMITER);
+                if (comma >= 0) {
+                    pending.put(s.substring(0, comma), Long.parseLong(s.substring(comma + 1)));
+                } else if (!s.isEmpty()) {
+                    /* A line number on its own completes a checkpoint. */
+                    checkpoint = Long.parseLong(s);
+                    checkpointEnd = offset;
+                    lengths.putAll(pending);
+                    pending.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read checkpoint log " + checkpointLog, e);
+        }
+        if (checkpoint < 0) {
+            throw new IllegalArgumentException("No complete checkpoint in " + checkpointLog + ". Rather restart the split.");
+        }
+        LOG.info("Resuming after line " + checkpoint + " (" + lengths.size() + " vehicle files)");
+
+        File[] files = new File(outputFolder + ExtractionUtils.FOLDER_VEHICLES).listFiles((dir, name) -> name.endsWith(".txt"));
+        if (files == null) {
+            throw new IllegalArgumentException("No vehicles folder in " + outputFolder);
+        }
+        long truncated = 0;
+        long deleted = 0;
+        try {
+            for (File file : files) {
+                String id = file.getName().substring(0, file.getName().length() - ".txt".length());
+                Long length = lengths.get(id);
+                if (length == null) {
+                    if (!file.delete()) {
+                        throw new IOException("Could not delete " + file);
+                    }
+                    deleted++;
+                } else if (file.length() > length) {
+                    truncate(file, length);
+                    truncated++;
+                } else if (file.length() < length) {
+                    throw new IllegalStateException("Vehicle file " + file + " is shorter than at the last checkpoint. Rather restart the split.");
+                }
+            }
+            /* Remove the incomplete checkpoint, so that the log can be continued. */
+            truncate(new File(checkpointLog), checkpointEnd);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not restore the vehicle files of " + outputFolder, e);
+        }
+        LOG.info("   truncated " + truncated + " and deleted " + deleted + " vehicle files written after the checkpoint.");
+        return new DigicoreFileSplitter(inputFilename, outputFolder, checkpoint + 1, checkpointLog);
+    }
+
+
+    private static void truncate(File file, long length) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+        }
+    }
+
+
     /**
      * This class processes a single file provided by DigiCore holdings,
      * <code>Poslog_Research_Data.txt</code>, and split it into separate files,
@@ -122,10 +246,22 @@ class DigicoreFileSplitter {
      *             	<li> field number containing the <i>Status</i>;
      *             	<li> field number containing the <i>Speed</i>;
      *             </ol>
+     *             The following arguments are optional. If any of them are
+     *             given, the file is split using a pool of open vehicle files
+     *             (see {@link #splitPooled(int, int, int, int, int, int)}):
+     *             <ol start="10">
+     *             	<li> maximum number of vehicle files kept open at once;
+     *             	<li> buffer size (in characters) of each vehicle file;
+     *             	<li> number of records between progress checkpoints;
+     *             	<li> the <code>logRecordsRead_*.txt</code> file of an
+     *             		 interrupted pooled split to continue (see
+     *             		 {@link #resuming(String, String, String)}). The start
+     *             		 line is then taken from the log.
+     *             </ol>
      * @author jwjoubert
      */
     public static void main(String[] args) {
-        if (args.length != 9) {
+        if (args.length < 9 || args.length > 13) {
             throw new RuntimeException("Must provide 9 field arguments: filename, outputfolder, startLine and the field locations for VehId, Time, Long, Lat, Status and Speed.");
         }
 
@@ -133,14 +269,32 @@ class DigicoreFileSplitter {
         LOG.info("  Splitting the DigiCore data file into separate vehicle files.");
         LOG.info("=================================================================");
 
-        DigicoreFileSplitter dfs = new DigicoreFileSplitter(args[0], args[1], Long.parseLong(args[2]));
-
-        dfs.split(Integer.parseInt(args[3]),
-                Integer.parseInt(args[4]),
-                Integer.parseInt(args[5]),
-                Integer.parseInt(args[6]),
-                Integer.parseInt(args[7]),
-                Integer.parseInt(args[8]));
+        DigicoreFileSplitter dfs = args.length == 13 ?
+                DigicoreFileSplitter.resuming(args[0], args[1], args[12]) :
+                new DigicoreFileSplitter(args[0], args[1], Long.parseLong(args[2]));
+
+        if (args.length == 9) {
+            dfs.split(Integer.parseInt(args[3]),
+                    Integer.parseInt(args[4]),
+                    Integer.parseInt(args[5]),
+                    Integer.parseInt(args[6]),
+                    Integer.parseInt(args[7]),
+                    Integer.parseInt(args[8]));
+        } else {
+            dfs.setMaximumOpenWriters(Integer.parseInt(args[9]));
+            if (args.length > 10) {
+                dfs.setWriterBufferSize(Integer.parseInt(args[10]));
+            }
+            if (args.length > 11) {
+                dfs.setCheckpointInterval(Long.parseLong(args[11]));
+            }
+            dfs.splitPooled(Integer.parseInt(args[3]),
+                    Integer.parseInt(args[4]),
+                    Integer.parseInt(args[5]),
+                    Integer.parseInt(args[6]),
+                    Integer.parseInt(args[7]),
+                    Integer.parseInt(args[8]));
+        }
 
         GregorianCalendar first = new GregorianCalendar(TimeZone.getTimeZone("GMT+02"), Locale.ENGLISH);
         first.setTimeInMillis(dfs.getEarliestTimestamp() * 1000);
@@ -150,8 +304,8 @@ class DigicoreFileSplitter {
         LOG.info("-----------------------------------------------------------------");
         LOG.info("   Process complete.");
         LOG.info("-----------------------------------------------------------------");
-        LOG.info("   Earliest date parsed: " + dfs.calendarToString(first));
-        LOG.info("     Latest date parsed: " + dfs.calendarToString(last));
+        LOG.info("   Earliest date parsed: " + calendarToString(first));
+        LOG.info("     Latest date parsed: " + calendarToString(last));
         LOG.info("=================================================================");
     }
 
@@ -182,37 +336,27 @@ class DigicoreFileSplitter {
         BufferedWriter output = null;
         String vehicleFile;
 
+        DigicoreRecordParser parser = new DigicoreRecordParser(fieldVehId, fieldTime, fieldLong, fieldLat, fieldStatus, fieldSpeed);
+        MutableDigicoreRecord record = new MutableDigicoreRecord();
+
         DateString ds = new DateString();
         try (BufferedWriter logRecords = IOUtils.getBufferedWriter(outputFolder + "/logRecordsRead_" + ds.toString() + ".txt")) {
             input = IOUtils.getBufferedReader(inputFilename);
             String inputLine;
             while ((inputLine = input.readLine()) != null) {
                 if (++line >= startLine && lineCounter.getCounter() <= numberOfLinesToRead) {
-                    String delimiter = ",";
-                    String[] inputString = inputLine.split(delimiter);
-                    if (inputString.length == 6) {
+                    if (parser.parse(inputLine, record)) {
                         /* Check the record's date against earliest and latest. */
-                        earliest = Math.min(earliest, Long.parseLong(inputString[fieldTime]));
-                        latest = Math.max(latest, Long.parseLong(inputString[fieldTime]));
+                        earliest = Math.min(earliest, record.getTime());
+                        latest = Math.max(latest, record.getTime());
 
                         /* Open the file for the vehicle
                          */
-                        vehicleFile = outputFolder + ExtractionUtils.FOLDER_VEHICLES + inputString[fieldVehId] + ".txt";
+                        vehicleFile = outputFolder + ExtractionUtils.FOLDER_VEHICLES + getField(inputLine, record, fieldVehId) + ".txt";
                         output = IOUtils.getAppendingBufferedWriter(vehicleFile);
 
                         // Write the record to the associated file
-                        output.write(inputString[fieldVehId]); // Vehicle ID
-                        output.write(delimiter);
-                        output.write(inputString[fieldTime]); // Time stamp
-                        output.write(delimiter);
-                        output.write(inputString[fieldLong]); // X (longitude)
-                        output.write(delimiter);
-                        output.write(inputString[fieldLat]); // Y (latitude)
-                        output.write(delimiter);
-                        output.write(inputString[fieldStatus]); // Status
-                        output.write(delimiter);
-                        output.write(inputString[fieldSpeed]); // Speed
-                        output.newLine();
+                        writeFields(output, inputLine, record, fieldVehId, fieldTime, fieldLong, fieldLat, fieldStatus, fieldSpeed);
 
                         logRecords.write(String.valueOf(lineCounter.getCounter()));
                         logRecords.newLine();
@@ -220,49 +364,36 @@ class DigicoreFileSplitter {
                         lineCounter.incCounter();
                     } else {
                         LOG.warn("Line " + line + " does not contain 6 entries.");
+                        continue;
                     }
 
-                    String vehID = inputString[fieldVehId];
+                    long vehID = record.getVehicleId();
                     while ((inputLine = input.readLine()) != null) {
 
                         // Read the next input line
-                        inputString = inputLine.split(delimiter);
                         if (++line >= startLine && lineCounter.getCounter() <= numberOfLinesToRead) {
-                            if (inputString.length == 6) {
+                            if (parser.parse(inputLine, record)) {
                                 /* Check the record's date against earliest and latest. */
-                                earliest = Math.min(earliest, Long.parseLong(inputString[fieldTime]));
-                                latest = Math.max(latest, Long.parseLong(inputString[fieldTime]));
+                                earliest = Math.min(earliest, record.getTime());
+                                latest = Math.max(latest, record.getTime());
 
-                                if (!vehID.equalsIgnoreCase(inputString[fieldVehId])) {
+                                if (vehID != record.getVehicleId()) {
                                     // Close the file for the current vehicle.
-                                    assert output != null;
                                     output.close();
 
                                     /* Open the file for the new vehicle
                                      */
-                                    vehicleFile = outputFolder + ExtractionUtils.FOLDER_VEHICLES + inputString[fieldVehId] + ".txt";
+                                    vehicleFile = outputFolder + ExtractionUtils.FOLDER_VEHICLES + getField(inputLine, record, fieldVehId) + ".txt";
                                     output = IOUtils.getAppendingBufferedWriter(vehicleFile);
                                 }
 
                                 // Write the record to the new file
-                                assert output != null;
-                                output.write(inputString[fieldVehId]); // Vehicle ID
-                                output.write(delimiter);
-                                output.write(inputString[fieldTime]); // Time stamp
-                                output.write(delimiter);
-                                output.write(inputString[fieldLong]); // X (longitude)
-                                output.write(delimiter);
-                                output.write(inputString[fieldLat]); // Y (latitude)
-                                output.write(delimiter);
-                                output.write(inputString[fieldStatus]); // Status
-                                output.write(delimiter);
-                                output.write(inputString[fieldSpeed]); // Speed
-                                output.newLine();
+                                writeFields(output, inputLine, record, fieldVehId, fieldTime, fieldLong, fieldLat, fieldStatus, fieldSpeed);
 
                                 logRecords.write(String.valueOf(lineCounter.getCounter()));
                                 logRecords.newLine();
 
-                                vehID = inputString[fieldVehId];
+                                vehID = record.getVehicleId();
 
                                 lineCounter.incCounter();
                             }
@@ -270,12 +401,159 @@ class DigicoreFileSplitter {
                     }
                 }
             }
+            /* Close the last vehicle's file, otherwise its buffered records are lost. */
+            if (output != null) {
+                output.close();
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
         lineCounter.printCounter();
     }
 
+    /**
+     * Splits the file in a single pass, but rather than opening (and closing)
+     * a vehicle file every time the vehicle ID changes between consecutive
+     * records, a bounded pool of open vehicle files is kept. When the pool is
+     * full, the least recently used vehicle file is closed. The size of the
+     * pool, and the buffer of each file, can be set with
+     * {@link #setMaximumOpenWriters(int)} and {@link #setWriterBufferSize(int)}.
+     *
+     * <br><br>Instead of logging every record, a progress checkpoint is
+     * written every {@link #setCheckpointInterval(long)} records to the
+     * <code>logRecordsRead_*.txt</code> file. Before a checkpoint is written
+     * all open vehicle files are flushed, and the checkpoint records the
+     * length of every vehicle file written since the previous one, followed
+     * by the last input line of which the record is on disk. Records after
+     * the checkpoint may also be on disk already, so an interrupted job must
+     * be continued with {@link #resuming(String, String, String)} rather than
+     * by only starting at the line following the last checkpoint.
+     *
+     * <br><br>The fields are the same as for
+     * {@link #split(int, int, int, int, int, int)}.
+     */
+    public void splitPooled(int fieldVehId, int fieldTime, int fieldLong, int fieldLat, int fieldStatus, int fieldSpeed) {
+        LOG.info("Splitting with at most " + maxOpenWriters + " open vehicle files (buffer size " + writerBufferSize + ")");
+        long line = 0;
+        long records = 0;
+        long malformed = 0;
+        DigicoreRecordParser parser = new DigicoreRecordParser(fieldVehId, fieldTime, fieldLong, fieldLat, fieldStatus, fieldSpeed);
+        MutableDigicoreRecord record = new MutableDigicoreRecord();
+
+        long start = System.currentTimeMillis();
+        String logFilename = checkpointLog != null ? checkpointLog : outputFolder + "/logRecordsRead_" + new DateString().toString() + ".txt";
+        try (BufferedReader input = IOUtils.getBufferedReader(inputFilename);
+             BufferedWriter logRecords = IOUtils.getAppendingBufferedWriter(logFilename);
+             VehicleWriterPool pool = new VehicleWriterPool(outputFolder + ExtractionUtils.FOLDER_VEHICLES, maxOpenWriters, writerBufferSize)) {
+            String inputLine;
+            long vehID = 0;
+            BufferedWriter output = null;
+            while ((inputLine = input.readLine()) != null && records < numberOfLinesToRead) {
+                if (++line < startLine) {
+                    continue;
+                }
+                if (!parser.parse(inputLine, record)) {
+                    malformed++;
+                    continue;
+                }
+
+                /* Check the record's date against earliest and latest. */
+                long time = record.getTime();
+                earliest = Math.min(earliest, time);
+                latest = Math.max(latest, time);
+
+                /* Only go to the pool if the vehicle changed. */
+                if (output == null || vehID != record.getVehicleId()) {
+                    vehID = record.getVehicleId();
+                    output = pool.getWriter(getField(inputLine, record, fieldVehId));
+                }
+
+                writeFields(output, inputLine, record, fieldVehId, fieldTime, fieldLong, fieldLat, fieldStatus, fieldSpeed);
+
+                if (++records % checkpointInterval == 0) {
+                    pool.checkpoint(logRecords);
+                    logRecords.write(String.valueOf(line));
+                    logRecords.newLine();
+                    logRecords.flush();
+                    reportProgress(records, start, pool);
+                    /* Go back to the pool, so that the next checkpoint includes this vehicle. */
+                    output = null;
+                }
+            }
+            pool.checkpoint(logRecords);
+            logRecords.write(String.valueOf(line));
+            logRecords.newLine();
+            reportProgress(records, start, pool);
+            LOG.info("   open vehicle files at end: " + pool.getNumberOfOpenWriters());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not split " + inputFilename, e);
+        }
+        if (malformed > 0) {
+            LOG.warn(malformed + " lines were not valid 6-field records, and were ignored.");
+        }
+    }
+
+    /**
+     * Writes the original text of the record's fields, in the order of the
+     * vehicle files, followed by a line break.
+     */
+    private static void writeFields(BufferedWriter output, String line, MutableDigicoreRecord record,
+                                    int fieldVehId, int fieldTime, int fieldLong, int fieldLat, int fieldStatus, int fieldSpeed) throws IOException {
+        writeField(output, line, record, fieldVehId); // Vehicle ID
+        output.write(DELIMITER);
+        writeField(output, line, record, fieldTime); // Time stamp
+        output.write(DELIMITER);
+        writeField(output, line, record, fieldLong); // X (longitude)
+        output.write(DELIMITER);
+        writeField(output, line, record, fieldLat); // Y (latitude)
+        output.write(DELIMITER);
+        writeField(output, line, record, fieldStatus); // Status
+        output.write(DELIMITER);
+        writeField(output, line, record, fieldSpeed); // Speed
+        output.newLine();
+    }
+
+    private static void writeField(BufferedWriter output, String line, MutableDigicoreRecord record, int field) throws IOException {
+        output.write(line, record.getFieldStart(field), record.getFieldEnd(field) - record.getFieldStart(field));
+    }
+
+    private static String getField(String line, MutableDigicoreRecord record, int field) {
+        return line.substring(record.getFieldStart(field), record.getFieldEnd(field));
+    }
+
+    private void reportProgress(long records, long start, VehicleWriterPool pool) {
+        double seconds = Math.max(1, System.currentTimeMillis() - start) / 1000.0;
+        LOG.info(String.format(Locale.US, "   records: %d (%.0f records/s); files opened: %d; evictions: %d",
+                records, records / seconds, pool.getNumberOfFilesOpened(), pool.getNumberOfEvictions()));
+    }
+
+    /**
+     * Sets the maximum number of vehicle files kept open by
+     * {@link #splitPooled(int, int, int, int, int, int)}. Make sure it is
+     * well below the operating system's limit on open file handles.
+     */
+    public void setMaximumOpenWriters(int maxOpenWriters) {
+        this.maxOpenWriters = maxOpenWriters;
+    }
+
+    /**
+     * Sets the buffer size (in characters) of each pooled vehicle file.
+     */
+    public void setWriterBufferSize(int bufferSize) {
+        this.writerBufferSize = bufferSize;
+    }
+
+    /**
+     * Sets the number of records between progress checkpoints of the pooled
+     * split.
+     */
+    public void setCheckpointInterval(long checkpointInterval) {
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive.");
+        }
+        this.checkpointInterval = checkpointInterval;
+    }
+
     /**
      * A method to create a new "vehicles" folder in the output directory in which the
      * individual vehicle files will be written out to.
@@ -283,16 +561,7 @@ class DigicoreFileSplitter {
      * @param outputDirectory the path/directory where the "vehicles" folder should be created
      */
     public void createVehicleFolder(String outputDirectory) {
-        File outputFolder = new File(outputDirectory + ExtractionUtils.FOLDER_VEHICLES);
-        if (outputFolder.exists()) {
-            String s = "The folder already exists! Delete " + outputFolder.getPath() + " and rerun.";
-            throw new RuntimeException(s);
-        } else {
-            boolean checkDirectory = outputFolder.mkdirs();
-            if (!checkDirectory) {
-                LOG.warn("Could not make " + outputFolder.toString() + ", or it already exists!");
-            }
-        }
+        ExtractionUtils.createVehicleFolder(outputDirectory);
     }
 
     public long getEarliestTimestamp() {
@@ -310,7 +579,7 @@ class DigicoreFileSplitter {
      * @param calendar to be converted to String.
      * @return a String in the format "3 March 2021"
      */
-    private String calendarToString(GregorianCalendar calendar) {
+    static String calendarToString(GregorianCalendar calendar) {
         int day = calendar.get(Calendar.DAY_OF_MONTH);
         int month = calendar.get(Calendar.MONTH);
         String monthString = null;
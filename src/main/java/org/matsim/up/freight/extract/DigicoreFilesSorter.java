@@ -11,9 +11,7 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Arrays;
 
 
 /**
@@ -80,16 +78,18 @@ class DigicoreFilesSorter {
         int maxLines = 0;
         File maxFile = null;
 
+        /* The same (growing) log is reused for every file. */
+        GpsLog gpsLog = new GpsLog();
         for (File theFile : filesUnsorted) {
-            List<DigicoreRecord> unsortedList = readFileToList(theFile);
-            List<DigicoreRecord> sortedList = sortTimeMerge(unsortedList);
+            readFileToLog(theFile, gpsLog);
+            gpsLog.sort();
 
-            if (sortedList.size() > maxLines) {
-                maxLines = sortedList.size();
+            if (gpsLog.size() > maxLines) {
+                maxLines = gpsLog.size();
                 maxFile = theFile;
             }
 
-            writeList(theFile, sortedList);
+            writeLog(theFile, gpsLog);
 
             fileCounter.incCounter();
 
@@ -105,92 +105,42 @@ class DigicoreFilesSorter {
 
 
     /**
-     * This method reads the given vehicle file, creates a new {@link DigicoreRecord} for
-     * each line, and returns the complete GPS log as a {@link List} of {@link DigicoreRecord}s.
+     * This method reads the given vehicle file into the GPS log, which is
+     * first cleared.
      *
-     * @param file a valid existing vehicle file containing one or more GPS log records;
-     * @return a {@link List} of {@link DigicoreRecord}s; one record for each line.
+     * @param file   a valid existing vehicle file containing one or more GPS log records;
+     * @param gpsLog the log to which one record is added for each line.
      */
-    private List<DigicoreRecord> readFileToList(File file) {
-        int vehID;
-        long time;
-        double longitude;
-        double latitude;
-        int status;
-        int speed;
-
-        List<DigicoreRecord> log = new ArrayList<>();
+    private void readFileToLog(File file, GpsLog gpsLog) {
+        DigicoreRecordParser parser = DigicoreRecordParser.forSortedFiles();
+        MutableDigicoreRecord record = new MutableDigicoreRecord();
+
+        gpsLog.clear();
         try (BufferedReader br = IOUtils.getBufferedReader(file.getAbsolutePath())) {
             String line;
             while ((line = br.readLine()) != null) {
-                String[] sa = line.split(DELIMITER);
-                if (sa.length == 6) {
-                    try {
-                        vehID = Integer.parseInt(sa[0]);
-                        time = Long.parseLong(sa[1]);
-                        longitude = Double.parseDouble(sa[2]);
-                        latitude = Double.parseDouble(sa[3]);
-                        status = Integer.parseInt(sa[4]);
-                        speed = Integer.parseInt(sa[5]);
-
-                        log.add(new DigicoreRecord(vehID, time, longitude, latitude, status, speed));
-                    } catch (NumberFormatException e) {
-                        e.printStackTrace();
-                    }
+                if (parser.parse(line, record)) {
+                    gpsLog.add(record.getVehicleId(), record.getTime(), record.getLongitude(), record.getLatitude(), record.getStatus(), record.getSpeed());
                 }
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
-        return log;
     }
 
-    private void writeList(File file, List<DigicoreRecord> sortedList) {
+    private void writeLog(File file, GpsLog gpsLog) {
         try (BufferedWriter bw = IOUtils.getBufferedWriter(file.getAbsolutePath() + ".gz")) {
             // Write the header, if required, for ArcGIS inclusion
-            bw.write(ExtractionUtils.SORTED_HEADER_VEHICLE_ID);
-            bw.write(DELIMITER);
-            bw.write(ExtractionUtils.SORTED_HEADER_TIME);
-            bw.write(DELIMITER);
-            bw.write(ExtractionUtils.SORTED_HEADER_LONGITUDE);
-            bw.write(DELIMITER);
-            bw.write(ExtractionUtils.SORTED_HEADER_LATITUDE);
-            bw.write(DELIMITER);
-            bw.write(ExtractionUtils.SORTED_HEADER_STATUS);
-            bw.write(DELIMITER);
-            bw.write(ExtractionUtils.SORTED_HEADER_SPEED);
-            bw.newLine();
-
-            // write all points, except the last, with a newLine
-            for (int i = 0; i < (sortedList.size() - 1); i++) {
-                DigicoreRecord dr = sortedList.get(i);
-                bw.write(String.valueOf(dr.getVehID()));
-                bw.write(DELIMITER);
-                bw.write(String.valueOf(dr.getTime()));
-                bw.write(DELIMITER);
-                bw.write(String.valueOf(dr.getLongitude()));
-                bw.write(DELIMITER);
-                bw.write(String.valueOf(dr.getLatitude()));
-                bw.write(DELIMITER);
-                bw.write(String.valueOf(dr.getStatus()));
-                bw.write(DELIMITER);
-                bw.write(String.valueOf(dr.getSpeed()));
-                bw.newLine();
-            }
+            writeHeader(bw);
 
-            // write the last element
-            DigicoreRecord drLast = sortedList.get(sortedList.size() - 1);
-            bw.write(String.valueOf(drLast.getVehID()));
-            bw.write(DELIMITER);
-            bw.write(String.valueOf(drLast.getTime()));
-            bw.write(DELIMITER);
-            bw.write(String.valueOf(drLast.getLongitude()));
-            bw.write(DELIMITER);
-            bw.write(String.valueOf(drLast.getLatitude()));
-            bw.write(DELIMITER);
-            bw.write(String.valueOf(drLast.getStatus()));
-            bw.write(DELIMITER);
-            bw.write(String.valueOf(drLast.getSpeed()));
+            // write all points in chronological order, with a newLine between them
+            for (int i = 0; i < gpsLog.size(); i++) {
+                if (i > 0) {
+                    bw.newLine();
+                }
+                int j = gpsLog.index[i];
+                writeRecord(bw, gpsLog.vehId[j], gpsLog.time[j], gpsLog.lon[j], gpsLog.lat[j], gpsLog.status[j], gpsLog.speed[j]);
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -198,16 +148,97 @@ class DigicoreFilesSorter {
 
 
     /**
-     * Sorts the list of records according to the time stamp.<br><br>
-     *
-     * See also {@link DigicoreRecord#compareTo(DigicoreRecord)}
-     *
-     * @param log unsorted {@link List} of {@link DigicoreRecord}s.
-     * @return sorted {@link List} of {@link DigicoreRecord}s.
+     * Writes the header line of a sorted vehicle file, <i>including</i> the
+     * line break.
+     */
+    static void writeHeader(BufferedWriter bw) throws IOException {
+        bw.write(ExtractionUtils.SORTED_HEADER_VEHICLE_ID);
+        bw.write(DELIMITER);
+        bw.write(ExtractionUtils.SORTED_HEADER_TIME);
+        bw.write(DELIMITER);
+        bw.write(ExtractionUtils.SORTED_HEADER_LONGITUDE);
+        bw.write(DELIMITER);
+        bw.write(ExtractionUtils.SORTED_HEADER_LATITUDE);
+        bw.write(DELIMITER);
+        bw.write(ExtractionUtils.SORTED_HEADER_STATUS);
+        bw.write(DELIMITER);
+        bw.write(ExtractionUtils.SORTED_HEADER_SPEED);
+        bw.newLine();
+    }
+
+
+    /**
+     * Writes a single record of a sorted vehicle file, <i>without</i> a line
+     * break. The last record of a sorted file is not followed by a line break.
+     */
+    static void writeRecord(BufferedWriter bw, long vehID, long time, double longitude, double latitude, int status, int speed) throws IOException {
+        bw.write(String.valueOf(vehID));
+        bw.write(DELIMITER);
+        bw.write(String.valueOf(time));
+        bw.write(DELIMITER);
+        bw.write(String.valueOf(longitude));
+        bw.write(DELIMITER);
+        bw.write(String.valueOf(latitude));
+        bw.write(DELIMITER);
+        bw.write(String.valueOf(status));
+        bw.write(DELIMITER);
+        bw.write(String.valueOf(speed));
+    }
+
+
+    /**
+     * A single vehicle's GPS log, kept as primitive columns rather than as
+     * {@link DigicoreRecord}s, and sorted chronologically through an index
+     * permutation (see {@link RecordIndexSorter}). The columns only grow, so
+     * that they can be reused for every vehicle file.
      */
-    private List<DigicoreRecord> sortTimeMerge(List<DigicoreRecord> log) {
-        Collections.sort(log);
-        return log;
+    private static final class GpsLog {
+        private long[] vehId = new long[1024];
+        private long[] time = new long[1024];
+        private double[] lon = new double[1024];
+        private double[] lat = new double[1024];
+        private int[] status = new int[1024];
+        private int[] speed = new int[1024];
+        private int[] index = new int[1024];
+        private int[] tmp = new int[1024];
+        private int size = 0;
+
+        void add(long vehId, long time, double lon, double lat, int status, int speed) {
+            if (size == this.time.length) {
+                int capacity = size * 2;
+                this.vehId = Arrays.copyOf(this.vehId, capacity);
+                this.time = Arrays.copyOf(this.time, capacity);
+                this.lon = Arrays.copyOf(this.lon, capacity);
+                this.lat = Arrays.copyOf(this.lat, capacity);
+                this.status = Arrays.copyOf(this.status, capacity);
+                this.speed = Arrays.copyOf(this.speed, capacity);
+                this.index = new int[capacity];
+                this.tmp = new int[capacity];
+            }
+            this.vehId[size] = vehId;
+            this.time[size] = time;
+            this.lon[size] = lon;
+            this.lat[size] = lat;
+            this.status[size] = status;
+            this.speed[size] = speed;
+            size++;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Sorts the log chronologically. Records with the same time stamp
+         * retain their order.
+         */
+        void sort() {
+            RecordIndexSorter.sort(time, size, index, tmp);
+        }
     }
 
 }
@@ -0,0 +1,376 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DigicoreRecordParser.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses comma-separated DigiCore GPS log lines into a reusable
+ * {@link MutableDigicoreRecord}. The line is scanned in place: no strings or
+ * arrays are created per line or per field, as is the case with
+ * {@link String#split(String)} followed by {@link Long#parseLong(String)} and
+ * {@link Double#parseDouble(String)}.
+ *
+ * <p>The parsed values are exactly those of the standard Java methods. In
+ * particular, coordinates are correctly rounded to the nearest
+ * <code>double</code>. Plain decimal numbers with up to 18 significant digits
+ * are converted without allocation. Anything else, for example numbers in
+ * scientific notation, falls back to {@link Double#parseDouble(String)}.</p>
+ *
+ * <p>A parser keeps an internal buffer, and is therefore <b>not</b> thread
+ * safe: use one parser per thread.</p>
+ *
+ * @author jwjoubert
+ */
+final class DigicoreRecordParser {
+	private static final byte DELIMITER = ',';
+
+	/** Powers of ten that are exactly representable as a double. */
+	private static final double[] DOUBLE_POWERS_OF_TEN = new double[23];
+	/** Powers of ten that fit into a long. */
+	private static final long[] LONG_POWERS_OF_TEN = new long[19];
+	static {
+		DOUBLE_POWERS_OF_TEN[0] = 1.0;
+		for (int i = 1; i < DOUBLE_POWERS_OF_TEN.length; i++) {
+			DOUBLE_POWERS_OF_TEN[i] = DOUBLE_POWERS_OF_TEN[i - 1] * 10.0;
+		}
+		LONG_POWERS_OF_TEN[0] = 1L;
+		for (int i = 1; i < LONG_POWERS_OF_TEN.length; i++) {
+			LONG_POWERS_OF_TEN[i] = LONG_POWERS_OF_TEN[i - 1] * 10L;
+		}
+	}
+
+	private final int fieldVehId;
+	private final int fieldTime;
+	private final int fieldLong;
+	private final int fieldLat;
+	private final int fieldStatus;
+	private final int fieldSpeed;
+
+	private byte[] chars = new byte[256];
+
+
+	/**
+	 * Creates a parser for lines with the given field (column) order. See
+	 * {@link DigicoreFileSplitter#split(int, int, int, int, int, int)} for a
+	 * description of the fields.
+	 */
+	DigicoreRecordParser(int fieldVehId, int fieldTime, int fieldLong, int fieldLat, int fieldStatus, int fieldSpeed) {
+		checkField(fieldVehId);
+		checkField(fieldTime);
+		checkField(fieldLong);
+		checkField(fieldLat);
+		checkField(fieldStatus);
+		checkField(fieldSpeed);
+		this.fieldVehId = fieldVehId;
+		this.fieldTime = fieldTime;
+		this.fieldLong = fieldLong;
+		this.fieldLat = fieldLat;
+		this.fieldStatus = fieldStatus;
+		this.fieldSpeed = fieldSpeed;
+	}
+
+
+	/**
+	 * Creates a parser for the sorted vehicle files, i.e. those written by
+	 * {@link DigicoreFilesSorter} and {@link DigicoreExternalSorter}, with
+	 * fields <code>vId,time,lon,lat,status,speed</code>.
+	 */
+	static DigicoreRecordParser forSortedFiles() {
+		return new DigicoreRecordParser(0, 1, 2, 3, 4, 5);
+	}
+
+
+	private static void checkField(int field) {
+		if (field < 0 || field >= MutableDigicoreRecord.NUMBER_OF_FIELDS) {
+			throw new IllegalArgumentException("Field number must be in [0, " + MutableDigicoreRecord.NUMBER_OF_FIELDS + "): " + field);
+		}
+	}
+
+
+	/**
+	 * Parses a line.
+	 *
+	 * @return false if the line does not consist of exactly six fields, or if
+	 * any of the fields is not a valid number. The record's values are then
+	 * undefined.
+	 */
+	boolean parse(CharSequence line, MutableDigicoreRecord record) {
+		int length = line.length();
+		if (chars.length < length) {
+			chars = new byte[Math.max(length, chars.length * 2)];
+		}
+		for (int i = 0; i < length; i++) {
+			char c = line.charAt(i);
+			/* Anything that is not ASCII cannot be part of a number anyway. */
+			chars[i] = c < 0x80 ? (byte) c : (byte) '?';
+		}
+		return parse(chars, 0, length, record);
+	}
+
+
+	/**
+	 * Parses a line of (ASCII) bytes. The field positions kept in the record
+	 * are relative to the given offset.
+	 *
+	 * @return false if the line does not consist of exactly six fields, or if
+	 * any of the fields is not a valid number. The record's values are then
+	 * undefined.
+	 */
+	boolean parse(byte[] buffer, int offset, int length, MutableDigicoreRecord record) {
+		int field = 0;
+		int start = offset;
+		int end = offset + length;
+		for (int i = offset; i < end; i++) {
+			if (buffer[i] == DELIMITER) {
+				if (field == MutableDigicoreRecord.NUMBER_OF_FIELDS - 1) {
+					return false;
+				}
+				record.fieldStart[field] = start - offset;
+				record.fieldEnd[field] = i - offset;
+				field++;
+				start = i + 1;
+			}
+		}
+		if (field != MutableDigicoreRecord.NUMBER_OF_FIELDS - 1) {
+			return false;
+		}
+		record.fieldStart[field] = start - offset;
+		record.fieldEnd[field] = end - offset;
+
+		try {
+			record.vehicleId = parseLong(buffer, offset + record.fieldStart[fieldVehId], offset + record.fieldEnd[fieldVehId]);
+			record.time = parseLong(buffer, offset + record.fieldStart[fieldTime], offset + record.fieldEnd[fieldTime]);
+			record.longitude = parseDouble(buffer, offset + record.fieldStart[fieldLong], offset + record.fieldEnd[fieldLong]);
+			record.latitude = parseDouble(buffer, offset + record.fieldStart[fieldLat], offset + record.fieldEnd[fieldLat]);
+			record.status = parseInt(buffer, offset + record.fieldStart[fieldStatus], offset + record.fieldEnd[fieldStatus]);
+			record.speed = parseInt(buffer, offset + record.fieldStart[fieldSpeed], offset + record.fieldEnd[fieldSpeed]);
+		} catch (NumberFormatException e) {
+			return false;
+		}
+		return true;
+	}
+
+
+	/**
+	 * Same as {@link Long#parseLong(String)} on the bytes in
+	 * <code>[start, end)</code>.
+	 */
+	static long parseLong(byte[] buffer, int start, int end) {
+		boolean negative = false;
+		int i = start;
+		if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+			negative = buffer[i] == '-';
+			i++;
+		}
+		/* Up to 18 digits cannot overflow. */
+		if (i == end || end - i > 18) {
+			return Long.parseLong(toString(buffer, start, end));
+		}
+		long value = 0;
+		for (; i < end; i++) {
+			int digit = buffer[i] - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException("For input string: \"" + toString(buffer, start, end) + "\"");
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+
+	/**
+	 * Same as {@link Integer#parseInt(String)} on the bytes in
+	 * <code>[start, end)</code>.
+	 */
+	static int parseInt(byte[] buffer, int start, int end) {
+		boolean negative = false;
+		int i = start;
+		if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+			negative = buffer[i] == '-';
+			i++;
+		}
+		/* Up to 9 digits cannot overflow. */
+		if (i == end || end - i > 9) {
+			return Integer.parseInt(toString(buffer, start, end));
+		}
+		int value = 0;
+		for (; i < end; i++) {
+			int digit = buffer[i] - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException("For input string: \"" + toString(buffer, start, end) + "\"");
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+
+	/**
+	 * Same as {@link Double#parseDouble(String)} on the bytes in
+	 * <code>[start, end)</code>.
+	 */
+	static double parseDouble(byte[] buffer, int start, int end) {
+		boolean negative = false;
+		int i = start;
+		if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+			negative = buffer[i] == '-';
+			i++;
+		}
+
+		/* Collect the significant digits as an integer mantissa, and count
+		 * the digits after the decimal point. */
+		long mantissa = 0;
+		int significantDigits = 0;
+		int decimals = 0;
+		int digits = 0;
+		boolean point = false;
+		for (; i < end; i++) {
+			int c = buffer[i];
+			if (c >= '0' && c <= '9') {
+				digits++;
+				if (point) {
+					decimals++;
+				}
+				if (mantissa == 0 && c == '0') {
+					continue;
+				}
+				if (++significantDigits > 18) {
+					return Double.parseDouble(toString(buffer, start, end));
+				}
+				mantissa = mantissa * 10 + (c - '0');
+			} else if (c == '.' && !point) {
+				point = true;
+			} else {
+				/* Exponents, special values, suffixes, etc. */
+				return Double.parseDouble(toString(buffer, start, end));
+			}
+		}
+		if (digits == 0) {
+			return Double.parseDouble(toString(buffer, start, end));
+		}
+
+		double value;
+		if (mantissa == 0) {
+			value = 0.0;
+		} else if (mantissa <= (1L << 53) && decimals < DOUBLE_POWERS_OF_TEN.length) {
+			/* Both operands are exact, so the quotient is correctly rounded. */
+			value = mantissa / DOUBLE_POWERS_OF_TEN[decimals];
+		} else if (decimals < LONG_POWERS_OF_TEN.length) {
+			value = divideCorrectlyRounded(mantissa, decimals);
+			if (Double.isNaN(value)) {
+				return Double.parseDouble(toString(buffer, start, end));
+			}
+		} else {
+			return Double.parseDouble(toString(buffer, start, end));
+		}
+		return negative ? -value : value;
+	}
+
+
+	/**
+	 * Returns the double nearest to <code>mantissa / 10^decimals</code>
+	 * (ties to even). An estimate is corrected by comparing the exact
+	 * quotient with the midpoints between neighbouring doubles, using 128-bit
+	 * integer arithmetic.
+	 *
+	 * @return NaN if the quotient is outside the range where the comparison
+	 * can be done in 128 bits.
+	 */
+	private static double divideCorrectlyRounded(long mantissa, int decimals) {
+		long divisor = LONG_POWERS_OF_TEN[decimals];
+		double estimate = (double) mantissa / (double) divisor;
+		for (int iteration = 0; iteration < 4; iteration++) {
+			int above = compareToUpperMidpoint(mantissa, divisor, estimate);
+			if (above == Integer.MIN_VALUE) {
+				return Double.NaN;
+			}
+			if (above > 0 || (above == 0 && isOdd(estimate))) {
+				estimate = Math.nextUp(estimate);
+				continue;
+			}
+			double lower = Math.nextDown(estimate);
+			int below = compareToUpperMidpoint(mantissa, divisor, lower);
+			if (below == Integer.MIN_VALUE) {
+				return Double.NaN;
+			}
+			if (below < 0 || (below == 0 && !isOdd(lower))) {
+				estimate = lower;
+				continue;
+			}
+			return estimate;
+		}
+		return Double.NaN;
+	}
+
+
+	/**
+	 * Compares <code>mantissa / divisor</code> with the midpoint between the
+	 * (positive, normal) double <code>d</code> and the next larger double.
+	 *
+	 * @return the sign of the difference, or {@link Integer#MIN_VALUE} if the
+	 * comparison cannot be done.
+	 */
+	private static int compareToUpperMidpoint(long mantissa, long divisor, double d) {
+		long bits = Double.doubleToRawLongBits(d);
+		int exponent = (int) ((bits >>> 52) & 0x7ff);
+		if (exponent == 0 || exponent == 0x7ff) {
+			return Integer.MIN_VALUE;
+		}
+		long significand = (bits & 0xfffffffffffffL) | (1L << 52);
+
+		/* d = significand * 2^e, and the midpoint is (2 * significand + 1) * 2^(e-1).
+		 * Compare mantissa * 2^(1-e) with (2 * significand + 1) * divisor. */
+		int shift = 1 - (exponent - 1075);
+		if (shift < 0 || shift > 64) {
+			return Integer.MIN_VALUE;
+		}
+		long leftHigh;
+		long leftLow;
+		if (shift == 0) {
+			leftHigh = 0;
+			leftLow = mantissa;
+		} else if (shift == 64) {
+			leftHigh = mantissa;
+			leftLow = 0;
+		} else {
+			leftHigh = mantissa >>> (64 - shift);
+			leftLow = mantissa << shift;
+		}
+		long factor = 2 * significand + 1;
+		long rightHigh = Math.multiplyHigh(factor, divisor);
+		long rightLow = factor * divisor;
+
+		int c = Long.compare(leftHigh, rightHigh);
+		return c != 0 ? c : Long.compareUnsigned(leftLow, rightLow);
+	}
+
+
+	private static boolean isOdd(double d) {
+		return (Double.doubleToRawLongBits(d) & 1L) != 0;
+	}
+
+
+	private static String toString(byte[] buffer, int start, int end) {
+		return new String(buffer, start, end - start, StandardCharsets.ISO_8859_1);
+	}
+
+}
@@ -113,18 +113,18 @@ class DigicoreVehicleCollator {
 	 */
 	private static void collate(String inputFolder, String outputFile, String crs, String descr){
 		LOG.info("Collating the Digicore vehicle files in folder " + inputFolder);
-		DigicoreVehicles vehicles = new DigicoreVehicles(crs);
+		DigicoreVehicles vehicles = DigicoreVehicles.createConcurrent(crs);
 		vehicles.setDescription(descr);
 		
-		/* Parse the individual vehicle files. */
+		/* Parse the individual vehicle files in parallel, each thread adding
+		 * its vehicles to the container as soon as they are read. */
 		List<File> files = FileUtils.sampleFiles(new File(inputFolder), Integer.MAX_VALUE, FileUtils.getFileFilter(".xml.gz"));
-		DigicoreVehicleReader dvr;
-		for(File file : files){
-			dvr = new DigicoreVehicleReader();
+		files.parallelStream().forEach(file -> {
+			DigicoreVehicleReader dvr = new DigicoreVehicleReader();
 			dvr.readFile(file.getAbsolutePath());
 			DigicoreVehicle dv = dvr.getVehicle();
 			vehicles.addDigicoreVehicle(dv);
-		}
+		});
 		LOG.info("Done collating the file.");
 
 		/* Write the collated vehicles file. */
@@ -0,0 +1,234 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ExtractionManifest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Records the progress of the {@link TurnkeyExtractor} for a single input
+ * file (typically one month of data), so that an interrupted extraction can
+ * be resumed rather than redone. The manifest is kept as a properties file,
+ * {@link ExtractionUtils#FILENAME_MANIFEST}, in the output folder, and
+ * contains:
+ * <ul>
+ * 		<li> the input file's path, size, last modified time and CRC-32
+ * 		     checksum, so that completed stages are only trusted for the same
+ * 		     input;
+ * 		<li> the time each {@link Stage} was completed;
+ * 		<li> the sorted runs that remain to be merged; and
+ * 		<li> the output files.
+ * </ul>
+ * The file is written to a temporary file first and then renamed, so that an
+ * interrupted write never leaves a corrupt manifest behind.
+ *
+ * @author jwjoubert
+ */
+final class ExtractionManifest {
+	private final static Logger LOG = Logger.getLogger(ExtractionManifest.class);
+
+	private final static String INPUT_PATH = "input.path";
+	private final static String INPUT_SIZE = "input.size";
+	private final static String INPUT_LAST_MODIFIED = "input.lastModified";
+	private final static String INPUT_CRC = "input.crc32";
+	private final static String STAGE_PREFIX = "stage.";
+	private final static String OUTPUT_PREFIX = "output.";
+	private final static String RUNS = "runs";
+	private final static String RUN_SEPARATOR = ",";
+
+	/**
+	 * The stages of the extraction, in the order in which they complete.
+	 */
+	enum Stage {
+		/** The raw file has been read into sorted runs, ready to be merged. */
+		RUNS,
+		/** The runs have been merged into sorted vehicle files. */
+		SORTED,
+		/** Activity chains have been extracted into the vehicles container. */
+		EXTRACTED
+	}
+
+	private final File file;
+	private final Properties properties = new Properties();
+
+
+	private ExtractionManifest(File file) {
+		this.file = file;
+	}
+
+
+	/**
+	 * Reads the manifest in the given folder or, if there is none, creates
+	 * an empty one (which is only written once {@link #write()} is called).
+	 */
+	static ExtractionManifest read(String outputFolder) {
+		ExtractionManifest manifest = new ExtractionManifest(new File(outputFolder, ExtractionUtils.FILENAME_MANIFEST));
+		if (manifest.file.exists()) {
+			try (InputStream is = new BufferedInputStream(new FileInputStream(manifest.file))) {
+				manifest.properties.load(is);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Cannot read manifest " + manifest.file.getAbsolutePath(), e);
+			}
+		}
+		return manifest;
+	}
+
+
+	boolean exists() {
+		return this.file.exists();
+	}
+
+
+	/**
+	 * Checks whether the manifest was created for the given input file. The
+	 * checksum is only recomputed when the file's size is the same, but its
+	 * last modified time is not, for example when it was copied.
+	 */
+	boolean isForInput(File input) {
+		if (!input.getAbsolutePath().equals(properties.getProperty(INPUT_PATH))
+				|| !String.valueOf(input.length()).equals(properties.getProperty(INPUT_SIZE))) {
+			return false;
+		}
+		if (String.valueOf(input.lastModified()).equals(properties.getProperty(INPUT_LAST_MODIFIED))) {
+			return true;
+		}
+		LOG.info("Input file " + input.getName() + " was modified. Comparing checksums...");
+		return String.valueOf(checksum(input)).equals(properties.getProperty(INPUT_CRC));
+	}
+
+
+	/**
+	 * Clears all completed stages and outputs, and records the given input
+	 * file.
+	 */
+	void reset(File input) {
+		properties.clear();
+		properties.setProperty(INPUT_PATH, input.getAbsolutePath());
+		properties.setProperty(INPUT_SIZE, String.valueOf(input.length()));
+		properties.setProperty(INPUT_LAST_MODIFIED, String.valueOf(input.lastModified()));
+		properties.setProperty(INPUT_CRC, String.valueOf(checksum(input)));
+	}
+
+
+	boolean isComplete(Stage stage) {
+		return properties.containsKey(STAGE_PREFIX + stage.name());
+	}
+
+
+	void complete(Stage stage) {
+		properties.setProperty(STAGE_PREFIX + stage.name(), Instant.now().toString());
+	}
+
+
+	/**
+	 * Records the sorted runs that remain to be merged. Only the file names
+	 * are kept, as the runs are all in the same folder.
+	 */
+	void setRuns(List<File> runs) {
+		StringBuilder sb = new StringBuilder();
+		for (File run : runs) {
+			if (sb.length() > 0) {
+				sb.append(RUN_SEPARATOR);
+			}
+			sb.append(run.getName());
+		}
+		properties.setProperty(RUNS, sb.toString());
+	}
+
+
+	/**
+	 * @return the recorded runs, in the order in which they must be merged.
+	 */
+	List<File> getRuns(File runFolder) {
+		List<File> runs = new ArrayList<>();
+		String value = properties.getProperty(RUNS, "");
+		for (String name : value.split(RUN_SEPARATOR)) {
+			if (!name.isEmpty()) {
+				runs.add(new File(runFolder, name));
+			}
+		}
+		return runs;
+	}
+
+
+	void setOutput(String key, String filename) {
+		properties.setProperty(OUTPUT_PREFIX + key, filename);
+	}
+
+
+	String getOutput(String key) {
+		return properties.getProperty(OUTPUT_PREFIX + key);
+	}
+
+
+	/**
+	 * Writes the manifest to a temporary file, and then replaces the
+	 * manifest with it.
+	 */
+	void write() {
+		File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+		try {
+			try (OutputStream os = new FileOutputStream(tmp)) {
+				properties.store(os, "Turnkey extraction manifest");
+				os.flush();
+			}
+			try {
+				Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot write manifest " + file.getAbsolutePath(), e);
+		}
+	}
+
+
+	private static long checksum(File input) {
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[1 << 16];
+		try (InputStream is = new FileInputStream(input)) {
+			int read;
+			while ((read = is.read(buffer)) != -1) {
+				crc.update(buffer, 0, read);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot compute the checksum of " + input.getAbsolutePath(), e);
+		}
+		return crc.getValue();
+	}
+
+}
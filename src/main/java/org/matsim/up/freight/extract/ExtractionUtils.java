@@ -1,7 +1,10 @@
 package org.matsim.up.freight.extract;
 
+import org.apache.log4j.Logger;
 import org.matsim.core.utils.geometry.transformations.TransformationFactory;
 
+import java.io.File;
+
 /**
  * Class that contains reused variables and functions for extracting activity
  * chain data from the Digicore trace files.
@@ -11,7 +14,15 @@ import org.matsim.core.utils.geometry.transformations.TransformationFactory;
 public class ExtractionUtils {
     final static String FOLDER_VEHICLES = "vehicles/";
     final static String FOLDER_XML = "xml/";
+    final static String FOLDER_SORT_RUNS = "sortRuns/";
     public final static String FILENAME_VEHICLES = "digicoreVehicles.xml.gz";
+    final static String FILENAME_EXTRACTION_TIMES = "extractionTimes.csv.gz";
+    final static String FILENAME_STATUS_HISTOGRAM = "statusHistogram.csv.gz";
+    final static String FILENAME_MANIFEST = "manifest.properties";
+
+    /* Extensions of the sorted vehicle files. */
+    final static String SORTED_TEXT_EXTENSION = ".txt.gz";
+    final static String SORTED_BINARY_EXTENSION = ".bin";
 
     final static String SORTED_HEADER_VEHICLE_ID = "vId";
     final static String SORTED_HEADER_TIME = "time";
@@ -21,4 +32,24 @@ public class ExtractionUtils {
     final static String SORTED_HEADER_SPEED = "speed";
 
     final static String INPUT_CRS = TransformationFactory.WGS84;
+
+    /**
+     * Creates a new "vehicles" folder in the output directory in which the
+     * individual vehicle files will be written out to.
+     *
+     * @param outputDirectory the path/directory where the "vehicles" folder should be created
+     * @throws RuntimeException if the folder already exists.
+     */
+    static void createVehicleFolder(String outputDirectory) {
+        File outputFolder = new File(outputDirectory + FOLDER_VEHICLES);
+        if (outputFolder.exists()) {
+            String s = "The folder already exists! Delete " + outputFolder.getPath() + " and rerun.";
+            throw new RuntimeException(s);
+        } else {
+            boolean checkDirectory = outputFolder.mkdirs();
+            if (!checkDirectory) {
+                Logger.getLogger(ExtractionUtils.class).warn("Could not make " + outputFolder + ", or it already exists!");
+            }
+        }
+    }
 }
@@ -0,0 +1,61 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * Geofence.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+/**
+ * The area within which GPS positions are considered valid. Positions
+ * outside the geofence are ignored when activity chains are extracted.
+ * Implementations must be thread safe, as a single geofence is shared by all
+ * the extractor threads.
+ *
+ * @author jwjoubert
+ */
+interface Geofence {
+
+	/**
+	 * The bounding box (0 to 45 degrees East, and 36 degrees South to the
+	 * equator) that has always been used to validate positions. It covers
+	 * South Africa and its neighbours, but also a lot of ocean.
+	 */
+	Geofence SOUTHERN_AFRICA = boundingBox(0.0, -36.0, 45.0, 0.0);
+
+
+	/**
+	 * @param lon the (WGS84) longitude;
+	 * @param lat the (WGS84) latitude.
+	 * @return true if the position is inside, or on the boundary of, the
+	 * 		   geofence.
+	 */
+	boolean contains(double lon, double lat);
+
+
+	/**
+	 * @return a geofence that only contains the positions inside (or on the
+	 * 		   boundary of) the given box.
+	 */
+	static Geofence boundingBox(double minLon, double minLat, double maxLon, double maxLat) {
+		if (minLon > maxLon || minLat > maxLat) {
+			throw new IllegalArgumentException("Invalid bounding box [" + minLon + "," + minLat + "; " + maxLon + "," + maxLat + "]");
+		}
+		return (lon, lat) -> lon >= minLon && lon <= maxLon && lat >= minLat && lat <= maxLat;
+	}
+
+}
@@ -20,38 +20,77 @@
 
 package org.matsim.up.freight.extract;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import org.apache.log4j.Logger;
 import org.matsim.core.utils.geometry.geotools.MGC;
 import org.matsim.core.utils.geometry.transformations.TransformationFactory;
+import org.matsim.core.utils.io.IOUtils;
 import org.matsim.core.utils.misc.Counter;
+import org.matsim.up.freight.containers.DigicoreVehicles;
 import org.matsim.up.utils.FileUtils;
 import org.matsim.up.utils.Header;
 
 
 class MultiThreadChainExtractor {
 	private final static Logger log = Logger.getLogger(MultiThreadChainExtractor.class);
+	/** Number of vehicle files submitted, but not yet completed, per thread. */
+	private final static int FILES_IN_FLIGHT_PER_THREAD = 4;
+	private final static int NUMBER_OF_SLOWEST_FILES_REPORTED = 10;
+	/** Number of extracted vehicles waiting to be streamed to the vehicles file. */
+	private final static int VEHICLE_QUEUE_CAPACITY = 1000;
 	private final ExecutorService threadExecutor;
+	private final Semaphore inFlight;
 
 	/**
 	 * @param args the string arguments in the following order:
 	 * <ol>
-	 * 	<li> root directory for original VehicleFiles (".txt.gz");
+	 * 	<li> root directory for sorted vehicle files, either text (".txt.gz")
+	 * 		 or binary (".bin", see {@link BinaryVehicleWriter});
 	 * 	<li> absolute path of file with On and off statuses;
-	 * 	<li> absolute path of XML (output) folder;
+	 * 	<li> absolute path of XML (output) folder, to which each vehicle is
+	 * 		 written to its own file;
 	 * 	<li> number of threads;
 	 * 	<li> threshold (seconds) to distinguish between minor and major 
 	 * 		 activities (typically 5 hours, or 18000 sec, according to Joubert
 	 * 		 and Axhausen (2011) );
 	 * 	<li> threshold (seconds) of minimum activity duration (we used 60 seconds);
 	 * 	<li> coordinate reference system, typically "WGS84_SA_Albers" for South 
-	 * 		 Africa (as captured in {@link MGC}).
+	 * 		 Africa (as captured in {@link MGC});
+	 * 	<li> (optional) file to which the time it took to extract each vehicle
+	 * 		 file is written;
+	 * 	<li> (optional) file to which all the vehicles are streamed, as a single
+	 * 		 {@link DigicoreVehicles} container, as they are extracted. This
+	 * 		 replaces collating the individual vehicle files afterwards (see
+	 * 		 {@link DigicoreVehicleCollator});
+	 * 	<li> (optional) description of the vehicles container;
+	 * 	<li> (optional) whether the individual vehicle files should still be
+	 * 		 written when the vehicles are streamed to a single file, typically
+	 * 		 only for debugging. The default is <code>false</code>;
+	 * 	<li> (optional) shapefile(s), comma-separated and in the given
+	 * 		 coordinate reference system, whose polygons form the geofence
+	 * 		 (see {@link PolygonGeofence}) outside of which GPS positions are
+	 * 		 ignored. The default, also when empty, is the
+	 * 		 {@link Geofence#SOUTHERN_AFRICA} bounding box; and
+	 * 	<li> (optional) file to which the number of GPS records of each status
+	 * 		 is written (see {@link StatusHistogram}).
 	 * </ol>
+	 * The outputs are still written if some vehicle files could not be
+	 * extracted, but the method then throws a {@link RuntimeException}.
 	 */
 	public static void main(String[] args) {
 		Header.printHeader(MultiThreadChainExtractor.class, args);
@@ -79,14 +118,29 @@ class MultiThreadChainExtractor {
 		}
 		log.info("      Vehicle file folder: " + folder.getAbsolutePath());
 		
+		String timesFilename = args.length > 7 ? args[7] : null;
+		String vehiclesFilename = args.length > 8 ? args[8] : null;
+		String descr = args.length > 9 ? args[9] : null;
+		boolean writeVehicleFiles = vehiclesFilename == null || (args.length > 10 && Boolean.parseBoolean(args[10]));
+		Geofence geofence = args.length > 11 && !args[11].isEmpty() ? PolygonGeofence.read(crs, args[11].split(",")) : Geofence.SOUTHERN_AFRICA;
+		String histogramFilename = args.length > 12 && !args[12].isEmpty() ? args[12] : null;
+		
 		/* Check that output folder exists and is writable. */
-		File outputFolder = new File(outputFolderName);
-		if(!outputFolder.canWrite() || !outputFolder.isDirectory()){
-			throw new RuntimeException("Cannot write to " + outputFolder.getAbsolutePath());			
+		File outputFolder = null;
+		if(writeVehicleFiles){
+			outputFolder = new File(outputFolderName);
+			if(!outputFolder.canWrite() || !outputFolder.isDirectory()){
+				throw new RuntimeException("Cannot write to " + outputFolder.getAbsolutePath());			
+			}
 		}
 		
-		/* Sample all sorted files from given folder. */
-		List<File> fileList = FileUtils.sampleFiles(folder, Integer.MAX_VALUE, FileUtils.getFileFilter(".txt.gz"));
+		/* Sample all sorted files from given folder. The largest files are
+		 * extracted first so that they do not end up running on their own,
+		 * with most threads idle, at the end. */
+		List<File> fileList = new ArrayList<>(FileUtils.sampleFiles(folder, Integer.MAX_VALUE, 
+				file -> file.getName().endsWith(ExtractionUtils.SORTED_TEXT_EXTENSION) 
+				|| file.getName().endsWith(ExtractionUtils.SORTED_BINARY_EXTENSION)));
+		fileList.sort(Comparator.comparingLong(File::length).reversed().thenComparing(File::getName));
 		log.info("          Number of files: " + fileList.size());
 		log.info(" Number of threads to use: " + threads);
 		log.info("-------------------------------------------------------------------------------");
@@ -99,36 +153,185 @@ class MultiThreadChainExtractor {
 			e.printStackTrace();
 			throw new RuntimeException("Cannot parse the ignition signal statuses.");
 		}
+		StatusTable statusTable = new StatusTable(dsr.getStartSignals(), dsr.getStopSignals());
+		StatusHistogram statusHistogram = new StatusHistogram();
 		
 		/* Set up counter. */
 		Counter threadCounter = new Counter("Vehicles processed: ");
 		
+		/* Stream the vehicles to a single file, if required. */
+		VehicleWriterQueue vehicleQueue = null;
+		if(vehiclesFilename != null){
+			log.info("Streaming vehicles to " + vehiclesFilename);
+			vehicleQueue = new VehicleWriterQueue(vehiclesFilename, crs, descr, VEHICLE_QUEUE_CAPACITY, Integer.parseInt(threads));
+		}
+		
 		/* Create extractor, and assign each vehicle file to the thread pool. */
 		MultiThreadChainExtractor extractorExecutor = new MultiThreadChainExtractor(Integer.parseInt(threads));
-		for(File file : fileList){
-			DigicoreChainExtractor dce = new DigicoreChainExtractor(
-					file, 
-					outputFolder, 
-					Double.parseDouble(thresholdMinorMajor), 
-					Double.parseDouble(thresholdActivity), 
-					dsr.getStartSignals(), 
-					dsr.getStopSignals(), 
-					crs, 
-					threadCounter);
-			extractorExecutor.threadExecutor.execute(dce);
-		}
-		extractorExecutor.threadExecutor.shutdown();
-		while(!extractorExecutor.threadExecutor.isTerminated()){
-			/* Do nothing. */
-		}
-		threadCounter.printCounter();
+		final File vehicleFileFolder = outputFolder;
+		final VehicleWriterQueue queue = vehicleQueue;
+		List<FileTime> times;
+		boolean written = false;
+		try{
+			times = extractorExecutor.extract(fileList, file -> {
+				DigicoreChainExtractor dce = new DigicoreChainExtractor(
+						file, 
+						vehicleFileFolder, 
+						Double.parseDouble(thresholdMinorMajor), 
+						Double.parseDouble(thresholdActivity), 
+						statusTable, 
+						crs, 
+						threadCounter);
+				dce.setVehicleQueue(queue);
+				dce.setGeofence(geofence);
+				dce.setStatusHistogram(statusHistogram);
+				return dce;
+			});
+			threadCounter.printCounter();
+			if(vehicleQueue != null){
+				vehicleQueue.close();
+				log.info("Done writing the vehicles.");
+			}
+			written = true;
+		} finally{
+			/* Do not leave a partial vehicles file that looks complete. */
+			if(!written && vehicleQueue != null){
+				log.error("Extraction failed, deleting " + vehiclesFilename);
+				vehicleQueue.discard();
+			}
+		}
+
+		report(times, timesFilename);
+		statusHistogram.reportUnknown(statusTable);
+		if(histogramFilename != null){
+			statusHistogram.write(histogramFilename, statusTable);
+		}
 		Header.printFooter();
+
+		/* Vehicles that could not be extracted are missing from the output,
+		 * so the extraction as a whole failed. */
+		long failed = times.stream().filter(t -> t.failed).count();
+		if(failed > 0){
+			throw new RuntimeException(failed + " vehicle file(s) could not be extracted.");
+		}
 	}
 	
 	public MultiThreadChainExtractor(int nThreads){
-		threadExecutor = Executors.newFixedThreadPool(nThreads);
-		
+		threadExecutor = Executors.newWorkStealingPool(nThreads);
+		inFlight = new Semaphore(nThreads * FILES_IN_FLIGHT_PER_THREAD);
 	}
 
-}
 
+	/**
+	 * Runs an extractor for each of the files, in the given order, and blocks
+	 * until all of them are done. Only a limited number of files are
+	 * submitted to the thread pool at any time, so that the pool's queue does
+	 * not hold an extractor for every vehicle file.
+	 *
+	 * @return the time it took to extract each file, and the number of its
+	 * GPS records outside the geofence, in the order in which the files
+	 * completed.
+	 */
+	List<FileTime> extract(List<File> files, Function<File, DigicoreChainExtractor> extractorFactory) {
+		ConcurrentLinkedQueue<FileTime> times = new ConcurrentLinkedQueue<>();
+		try {
+			for (File file : files) {
+				inFlight.acquire();
+				DigicoreChainExtractor extractor = extractorFactory.apply(file);
+				threadExecutor.execute(() -> {
+					long start = System.nanoTime();
+					boolean failed = false;
+					try {
+						extractor.run();
+					} catch (RuntimeException e) {
+						failed = true;
+						log.error("Could not extract chains from " + file.getName(), e);
+					} finally {
+						times.add(new FileTime(file, System.nanoTime() - start, failed, extractor.getRejectedFixes()));
+						inFlight.release();
+					}
+				});
+			}
+			threadExecutor.shutdown();
+			threadExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			threadExecutor.shutdownNow();
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while extracting activity chains.", e);
+		}
+		return new ArrayList<>(times);
+	}
+
+
+	/**
+	 * Logs the slowest files, and the number of GPS records outside the
+	 * geofence, in total and for the files with the most. The time and
+	 * number of rejected records of each file are written, slowest first, if
+	 * a filename is given.
+	 */
+	private static void report(List<FileTime> times, String filename) {
+		long failed = times.stream().filter(t -> t.failed).count();
+		if (failed > 0) {
+			log.warn(failed + " vehicle file(s) could not be extracted.");
+		}
+
+		long rejected = times.stream().mapToLong(t -> t.rejectedFixes).sum();
+		if (rejected > 0) {
+			times.sort(Comparator.comparingInt((FileTime t) -> t.rejectedFixes).reversed());
+			long vehicles = times.stream().filter(t -> t.rejectedFixes > 0).count();
+			log.warn(rejected + " GPS record(s) of " + vehicles + " vehicle(s) were outside the geofence, and ignored. Most:");
+			for (FileTime time : times.subList(0, (int) Math.min(NUMBER_OF_SLOWEST_FILES_REPORTED, vehicles))) {
+				log.warn("   " + time.file.getName() + ": " + time.rejectedFixes);
+			}
+		}
+
+		times.sort(Comparator.comparingLong((FileTime t) -> t.nanos).reversed());
+		log.info("Slowest vehicle files:");
+		for (FileTime time : times.subList(0, Math.min(NUMBER_OF_SLOWEST_FILES_REPORTED, times.size()))) {
+			log.info(String.format(Locale.US, "   %s: %.1fs (%d bytes)", time.file.getName(), time.getSeconds(), time.file.length()));
+		}
+
+		if (filename == null) {
+			return;
+		}
+		try (BufferedWriter bw = IOUtils.getBufferedWriter(filename)) {
+			bw.write("file,bytes,seconds,failed,rejected");
+			bw.newLine();
+			for (FileTime time : times) {
+				bw.write(String.format(Locale.US, "%s,%d,%.3f,%b,%d", time.file.getName(), time.file.length(), time.getSeconds(), time.failed, time.rejectedFixes));
+				bw.newLine();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot write extraction times to " + filename, e);
+		}
+		log.info("Extraction time of each vehicle file written to " + filename);
+	}
+
+
+	/**
+	 * The (wall) time it took to extract a single vehicle file, and the
+	 * number of its GPS records that were outside the geofence.
+	 */
+	static final class FileTime {
+		private final File file;
+		private final long nanos;
+		private final boolean failed;
+		private final int rejectedFixes;
+
+		private FileTime(File file, long nanos, boolean failed, int rejectedFixes) {
+			this.file = file;
+			this.nanos = nanos;
+			this.failed = failed;
+			this.rejectedFixes = rejectedFixes;
+		}
+
+		int getRejectedFixes() {
+			return rejectedFixes;
+		}
+
+		double getSeconds() {
+			return nanos / 1e9;
+		}
+	}
+
+}
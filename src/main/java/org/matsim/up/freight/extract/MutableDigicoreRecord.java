@@ -0,0 +1,99 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * MutableDigicoreRecord.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+import org.matsim.up.freight.containers.DigicoreRecord;
+
+/**
+ * A reusable holder for a single GPS log record, filled by the
+ * {@link DigicoreRecordParser}. Unlike {@link DigicoreRecord}, one instance
+ * is meant to be reused for every line that is read, so its values are only
+ * valid until the next line is parsed into it.
+ * <p>
+ * Apart from the parsed values, the holder also keeps the position of each
+ * field in the parsed line, so that the original text of a field can be
+ * copied without being parsed and formatted again.
+ *
+ * @author jwjoubert
+ */
+final class MutableDigicoreRecord {
+	static final int NUMBER_OF_FIELDS = 6;
+
+	long vehicleId;
+	long time;
+	double longitude;
+	double latitude;
+	int status;
+	int speed;
+
+	final int[] fieldStart = new int[NUMBER_OF_FIELDS];
+	final int[] fieldEnd = new int[NUMBER_OF_FIELDS];
+
+	long getVehicleId() {
+		return vehicleId;
+	}
+
+	/**
+	 * @return the UNIX-based time stamp, in seconds.
+	 */
+	long getTime() {
+		return time;
+	}
+
+	/**
+	 * @return the longitude, in decimal degrees (WGS84).
+	 */
+	double getLongitude() {
+		return longitude;
+	}
+
+	/**
+	 * @return the latitude, in decimal degrees (WGS84).
+	 */
+	double getLatitude() {
+		return latitude;
+	}
+
+	int getStatus() {
+		return status;
+	}
+
+	int getSpeed() {
+		return speed;
+	}
+
+	/**
+	 * @param field the field (column) number in the parsed line.
+	 * @return the position of the field's first character in the line.
+	 */
+	int getFieldStart(int field) {
+		return fieldStart[field];
+	}
+
+	/**
+	 * @param field the field (column) number in the parsed line.
+	 * @return the position just after the field's last character in the line.
+	 */
+	int getFieldEnd(int field) {
+		return fieldEnd[field];
+	}
+
+}
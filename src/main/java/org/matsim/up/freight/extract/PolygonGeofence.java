@@ -0,0 +1,177 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PolygonGeofence.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.locationtech.jts.algorithm.locate.IndexedPointInAreaLocator;
+import org.locationtech.jts.algorithm.locate.PointOnGeometryLocator;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Location;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.core.utils.gis.ShapeFileReader;
+import org.matsim.up.freight.utils.CoordinateTransformationService;
+import org.opengis.feature.simple.SimpleFeature;
+
+/**
+ * A geofence consisting of (multi)polygons, for example South Africa and the
+ * other SADC countries, typically read from shapefiles such as those in
+ * <code>input/shapefiles</code>.
+ * <p>
+ * Testing every position against detailed polygons is expensive, so the
+ * polygons' envelope is divided into a grid of cells. When the geofence is
+ * created, each cell is classified, using the prepared polygons, as being
+ * completely inside, completely outside, or on the boundary of the polygons.
+ * Only positions in boundary cells are then tested against the polygons
+ * themselves, using an index of the polygons' edges. Positions outside the
+ * envelope are rejected straight away.
+ * <p>
+ * The geofence is immutable once created, and can be shared by threads
+ * without any locking.
+ *
+ * @author jwjoubert
+ */
+final class PolygonGeofence implements Geofence {
+	private final static Logger LOG = Logger.getLogger(PolygonGeofence.class);
+	/** Number of grid cells along each side of the envelope. */
+	private final static int GRID_SIZE = 256;
+	private final static byte OUTSIDE = 0;
+	private final static byte INSIDE = 1;
+	private final static byte BOUNDARY = 2;
+
+	private final double minLon;
+	private final double minLat;
+	private final double maxLon;
+	private final double maxLat;
+	private final double cellWidth;
+	private final double cellHeight;
+	private final byte[] cells = new byte[GRID_SIZE * GRID_SIZE];
+	private final PointOnGeometryLocator locator;
+
+
+	/**
+	 * @param area the (multi)polygon(s), in WGS84.
+	 */
+	PolygonGeofence(Geometry area) {
+		Envelope envelope = area.getEnvelopeInternal();
+		if (envelope.isNull()) {
+			throw new IllegalArgumentException("The geofence cannot be empty.");
+		}
+		this.minLon = envelope.getMinX();
+		this.minLat = envelope.getMinY();
+		this.maxLon = envelope.getMaxX();
+		this.maxLat = envelope.getMaxY();
+		this.cellWidth = (maxLon - minLon) / GRID_SIZE;
+		this.cellHeight = (maxLat - minLat) / GRID_SIZE;
+
+		/* Classify the cells. */
+		PreparedGeometry prepared = PreparedGeometryFactory.prepare(area);
+		GeometryFactory factory = area.getFactory();
+		int boundaryCells = 0;
+		for (int row = 0; row < GRID_SIZE; row++) {
+			for (int column = 0; column < GRID_SIZE; column++) {
+				Geometry cell = factory.toGeometry(new Envelope(
+						minLon + column * cellWidth, minLon + (column + 1) * cellWidth,
+						minLat + row * cellHeight, minLat + (row + 1) * cellHeight));
+				byte type;
+				if (prepared.contains(cell)) {
+					type = INSIDE;
+				} else if (prepared.intersects(cell)) {
+					type = BOUNDARY;
+					boundaryCells++;
+				} else {
+					type = OUTSIDE;
+				}
+				cells[row * GRID_SIZE + column] = type;
+			}
+		}
+		LOG.info("Geofence grid has " + GRID_SIZE + "x" + GRID_SIZE + " cells, of which " + boundaryCells + " are on the boundary.");
+
+		/* Build the locator's index now, rather than lazily when it is
+		 * already shared by the extractor threads. */
+		this.locator = new IndexedPointInAreaLocator(area);
+		this.locator.locate(new Coordinate(minLon, minLat));
+	}
+
+
+	/**
+	 * Reads the geofence from one or more shapefiles. The geometries of all
+	 * the features form part of the geofence.
+	 *
+	 * @param crs        the coordinate reference system of the shapefiles;
+	 * @param shapefiles the shapefiles.
+	 */
+	static PolygonGeofence read(String crs, String... shapefiles) {
+		List<Geometry> geometries = new ArrayList<>();
+		for (String shapefile : shapefiles) {
+			for (SimpleFeature feature : ShapeFileReader.getAllFeatures(shapefile)) {
+				Object o = feature.getDefaultGeometry();
+				if (o instanceof Geometry) {
+					geometries.add((Geometry) o);
+				} else {
+					LOG.warn("Ignoring a feature without a geometry in " + shapefile);
+				}
+			}
+			LOG.info("Read geofence from " + shapefile);
+		}
+		if (geometries.isEmpty()) {
+			throw new IllegalArgumentException("The geofence shapefile(s) contain no geometries.");
+		}
+		Geometry area = new GeometryFactory().buildGeometry(geometries).union();
+
+		/* Transform the polygons, once, to the coordinate reference system
+		 * of the positions. */
+		CoordinateTransformationService ct = CoordinateTransformationService.get(crs, ExtractionUtils.INPUT_CRS);
+		area.apply((Coordinate c) -> {
+			Coord transformed = ct.transform(new Coord(c.x, c.y));
+			c.x = transformed.getX();
+			c.y = transformed.getY();
+		});
+		area.geometryChanged();
+		return new PolygonGeofence(area);
+	}
+
+
+	@Override
+	public boolean contains(double lon, double lat) {
+		if (!(lon >= minLon && lon <= maxLon && lat >= minLat && lat <= maxLat)) {
+			return false;
+		}
+		int column = Math.min((int) ((lon - minLon) / cellWidth), GRID_SIZE - 1);
+		int row = Math.min((int) ((lat - minLat) / cellHeight), GRID_SIZE - 1);
+		switch (cells[row * GRID_SIZE + column]) {
+		case INSIDE:
+			return true;
+		case OUTSIDE:
+			return false;
+		default:
+			return locator.locate(new Coordinate(lon, lat)) != Location.EXTERIOR;
+		}
+	}
+
+}
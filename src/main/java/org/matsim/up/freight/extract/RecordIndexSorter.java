@@ -0,0 +1,261 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RecordIndexSorter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+/**
+ * Sorts GPS records that are kept in primitive columns, without creating an
+ * object per record. Rather than moving the records, a permutation of their
+ * indices is sorted on one or two <code>long</code> keys, typically the
+ * vehicle ID and time stamp.
+ * <p>
+ * GPS logs are usually (nearly) sorted already, so the sort is an adaptive,
+ * natural merge sort: the records are first checked for being sorted, which
+ * takes a single pass. Otherwise the existing ascending runs (and strictly
+ * descending runs, which are reversed) are found and merged pairwise. Two
+ * adjacent runs that are already in order are not merged at all. A nearly
+ * sorted log, with only a few runs, therefore takes close to linear time,
+ * while a shuffled log takes <i>O(n log n)</i>.
+ * <p>
+ * The sort is stable: records with the same key(s) retain their order.
+ *
+ * @author jwjoubert
+ */
+final class RecordIndexSorter {
+	/** Shorter runs are extended with an insertion sort. */
+	private static final int MIN_RUN = 32;
+
+	private RecordIndexSorter() {
+		/* Hide the constructor. */
+	}
+
+
+	/**
+	 * Sorts the indices of the first <code>size</code> records on a single
+	 * key.
+	 *
+	 * @param key   the sort key of each record, e.g. the time stamp;
+	 * @param size  the number of records;
+	 * @param index the array into which the sorted indices are written, i.e.
+	 *              <code>index[0]</code> will be the first record;
+	 * @param tmp   working space of at least <code>size</code>.
+	 */
+	static void sort(long[] key, int size, int[] index, int[] tmp) {
+		sort(key, null, size, index, tmp);
+	}
+
+
+	/**
+	 * Sorts the indices of the first <code>size</code> records on a primary
+	 * key, and then a secondary key.
+	 *
+	 * @param primary   the primary key, e.g. the vehicle ID;
+	 * @param secondary the secondary key, e.g. the time stamp, or
+	 *                  <code>null</code> to only sort on the primary key;
+	 * @param size      the number of records;
+	 * @param index     the array into which the sorted indices are written;
+	 * @param tmp       working space of at least <code>size</code>.
+	 */
+	static void sort(long[] primary, long[] secondary, int size, int[] index, int[] tmp) {
+		if (index.length < size || tmp.length < size) {
+			throw new IllegalArgumentException("Index and working arrays must hold at least " + size + " records.");
+		}
+		for (int i = 0; i < size; i++) {
+			index[i] = i;
+		}
+		if (size < 2 || isSorted(primary, secondary, size)) {
+			return;
+		}
+
+		/* Find the natural runs. Strictly descending runs are reversed,
+		 * which keeps the sort stable, and short runs are extended to
+		 * MIN_RUN records. The starts of the runs are collected in tmp,
+		 * which is not needed until the runs are merged. */
+		int runs = 0;
+		int start = 0;
+		while (start < size) {
+			int end = start + 1;
+			if (end < size && compare(primary, secondary, end, end - 1) < 0) {
+				while (end < size && compare(primary, secondary, end, end - 1) < 0) {
+					end++;
+				}
+				reverse(index, start, end);
+			} else {
+				while (end < size && compare(primary, secondary, end, end - 1) >= 0) {
+					end++;
+				}
+			}
+			if (end - start < MIN_RUN && end < size) {
+				int last = Math.min(start + MIN_RUN, size);
+				insertionSort(primary, secondary, index, start, end, last);
+				end = last;
+			}
+			tmp[runs++] = start;
+			start = end;
+		}
+		int[] bounds = new int[runs + 1];
+		System.arraycopy(tmp, 0, bounds, 0, runs);
+		bounds[runs] = size;
+
+		/* Merge adjacent runs, pairwise, until a single run remains. */
+		int[] from = index;
+		int[] to = tmp;
+		while (runs > 1) {
+			int merged = 0;
+			for (int r = 0; r < runs; r += 2) {
+				int lo = bounds[r];
+				if (r + 1 == runs) {
+					System.arraycopy(from, lo, to, lo, bounds[r + 1] - lo);
+				} else {
+					merge(primary, secondary, from, to, lo, bounds[r + 1], bounds[r + 2]);
+				}
+				bounds[merged++] = lo;
+			}
+			bounds[merged] = size;
+			runs = merged;
+			int[] swap = from;
+			from = to;
+			to = swap;
+		}
+		if (from != index) {
+			System.arraycopy(from, 0, index, 0, size);
+		}
+	}
+
+
+	/**
+	 * @return true if the records are already in order.
+	 */
+	static boolean isSorted(long[] primary, long[] secondary, int size) {
+		for (int i = 1; i < size; i++) {
+			if (compare(primary, secondary, i, i - 1) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * Merges the sorted ranges <code>[lo, mid)</code> and
+	 * <code>[mid, hi)</code> of <code>from</code> into <code>to</code>. The
+	 * records at the start of the first range that precede the whole second
+	 * range, and those at the end of the second range that follow the whole
+	 * first range, are already in place and are simply copied. In nearly
+	 * sorted logs that is most of the records.
+	 */
+	private static void merge(long[] primary, long[] secondary, int[] from, int[] to, int lo, int mid, int hi) {
+		/* Runs that are already in order are simply copied. */
+		if (compare(primary, secondary, from[mid], from[mid - 1]) >= 0) {
+			System.arraycopy(from, lo, to, lo, hi - lo);
+			return;
+		}
+		/* The first record of the first range that follows the second range's
+		 * first record, and the first record of the second range that does
+		 * not precede the first range's last record. */
+		int start = upperBound(primary, secondary, from, lo, mid, from[mid]);
+		int end = lowerBound(primary, secondary, from, mid, hi, from[mid - 1]);
+		System.arraycopy(from, lo, to, lo, start - lo);
+		System.arraycopy(from, end, to, end, hi - end);
+
+		int i = start;
+		int j = mid;
+		int k = start;
+		while (i < mid && j < end) {
+			if (compare(primary, secondary, from[j], from[i]) >= 0) {
+				to[k++] = from[i++];
+			} else {
+				to[k++] = from[j++];
+			}
+		}
+		System.arraycopy(from, i, to, k, mid - i);
+		System.arraycopy(from, j, to, k + mid - i, end - j);
+	}
+
+
+	/**
+	 * @return the first position in the sorted range <code>[lo, hi)</code>
+	 * 		   whose record follows the given record.
+	 */
+	private static int upperBound(long[] primary, long[] secondary, int[] index, int lo, int hi, int record) {
+		while (lo < hi) {
+			int m = (lo + hi) >>> 1;
+			if (compare(primary, secondary, index[m], record) > 0) {
+				hi = m;
+			} else {
+				lo = m + 1;
+			}
+		}
+		return lo;
+	}
+
+
+	/**
+	 * @return the first position in the sorted range <code>[lo, hi)</code>
+	 * 		   whose record does not precede the given record.
+	 */
+	private static int lowerBound(long[] primary, long[] secondary, int[] index, int lo, int hi, int record) {
+		while (lo < hi) {
+			int m = (lo + hi) >>> 1;
+			if (compare(primary, secondary, index[m], record) >= 0) {
+				hi = m;
+			} else {
+				lo = m + 1;
+			}
+		}
+		return lo;
+	}
+
+
+	/**
+	 * Inserts the records in <code>[sorted, hi)</code> into the sorted range
+	 * <code>[lo, sorted)</code>.
+	 */
+	private static void insertionSort(long[] primary, long[] secondary, int[] index, int lo, int sorted, int hi) {
+		for (int i = sorted; i < hi; i++) {
+			int record = index[i];
+			int j = i;
+			while (j > lo && compare(primary, secondary, record, index[j - 1]) < 0) {
+				index[j] = index[j - 1];
+				j--;
+			}
+			index[j] = record;
+		}
+	}
+
+
+	private static int compare(long[] primary, long[] secondary, int a, int b) {
+		int c = Long.compare(primary[a], primary[b]);
+		if (c != 0 || secondary == null) {
+			return c;
+		}
+		return Long.compare(secondary[a], secondary[b]);
+	}
+
+
+	private static void reverse(int[] index, int from, int to) {
+		for (int i = from, j = to - 1; i < j; i++, j--) {
+			int swap = index[i];
+			index[i] = index[j];
+			index[j] = swap;
+		}
+	}
+
+}
@@ -0,0 +1,94 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SortedRecordReader.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+
+import org.matsim.core.utils.io.IOUtils;
+
+/**
+ * Reads the records of a single, chronologically sorted vehicle file one at
+ * a time, regardless of whether it is a text (<code>.txt.gz</code>) or
+ * binary (<code>.bin</code>, see {@link BinaryVehicleWriter}) file.
+ *
+ * @author jwjoubert
+ */
+interface SortedRecordReader extends AutoCloseable {
+
+	/**
+	 * Reads the next record into the given holder.
+	 *
+	 * @return <code>false</code> once there are no more records.
+	 */
+	boolean next(MutableDigicoreRecord record) throws IOException;
+
+	@Override
+	void close() throws IOException;
+
+
+	/**
+	 * Opens a reader for the given sorted vehicle file, based on its
+	 * extension.
+	 */
+	static SortedRecordReader open(File file) throws IOException {
+		if (file.getName().endsWith(ExtractionUtils.SORTED_BINARY_EXTENSION)) {
+			return new BinaryVehicleReader(file);
+		}
+		return new TextReader(file);
+	}
+
+
+	/**
+	 * Reads the text files written by the {@link DigicoreFilesSorter}, and
+	 * the {@link DigicoreExternalSorter}, skipping the header.
+	 */
+	final class TextReader implements SortedRecordReader {
+		private final File file;
+		private final BufferedReader br;
+		private final DigicoreRecordParser parser = DigicoreRecordParser.forSortedFiles();
+
+		TextReader(File file) throws IOException {
+			this.file = file;
+			this.br = IOUtils.getBufferedReader(file.getAbsolutePath());
+			br.readLine();
+		}
+
+		@Override
+		public boolean next(MutableDigicoreRecord record) throws IOException {
+			String line = br.readLine();
+			if (line == null) {
+				return false;
+			}
+			if (!parser.parse(line, record)) {
+				throw new NumberFormatException("Cannot parse record \"" + line + "\" in " + file.getName());
+			}
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			br.close();
+		}
+	}
+
+}
@@ -0,0 +1,121 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * StatusHistogram.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.utils.io.IOUtils;
+
+/**
+ * The number of GPS records of each status code. Each extractor counts the
+ * statuses of its own vehicle, without any synchronisation, and then adds
+ * its counts to the histogram shared by all the extractors, once, when it
+ * is done. Statuses that are not known as ignition-on or -off signals are
+ * thereby counted, rather than logged for every record, and reported once
+ * extraction is done.
+ *
+ * @author jwjoubert
+ */
+final class StatusHistogram {
+	private final static Logger LOG = Logger.getLogger(StatusHistogram.class);
+	/** Codes below this are counted in an array, others in a map. */
+	private final static int ARRAY_CODES = 1 << 10;
+
+	private final long[] counts = new long[ARRAY_CODES];
+	private final Map<Integer, Long> otherCounts = new TreeMap<>();
+
+
+	void add(int status) {
+		if (status >= 0 && status < ARRAY_CODES) {
+			counts[status]++;
+		} else {
+			otherCounts.merge(status, 1L, Long::sum);
+		}
+	}
+
+
+	/**
+	 * Adds another (typically a single vehicle's) histogram to this one.
+	 */
+	synchronized void addAll(StatusHistogram other) {
+		for (int status = 0; status < ARRAY_CODES; status++) {
+			counts[status] += other.counts[status];
+		}
+		other.otherCounts.forEach((status, count) -> otherCounts.merge(status, count, Long::sum));
+	}
+
+
+	/**
+	 * @return the number of records with each status, by status.
+	 */
+	synchronized Map<Integer, Long> getCounts() {
+		Map<Integer, Long> map = new TreeMap<>(otherCounts);
+		for (int status = 0; status < ARRAY_CODES; status++) {
+			if (counts[status] > 0) {
+				map.put(status, counts[status]);
+			}
+		}
+		return map;
+	}
+
+
+	/**
+	 * Logs the statuses that are neither ignition-on nor -off signals, once,
+	 * for all the vehicles.
+	 */
+	void reportUnknown(StatusTable table) {
+		long unknownRecords = 0;
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<Integer, Long> entry : getCounts().entrySet()) {
+			if (table.get(entry.getKey()) == StatusTable.UNKNOWN) {
+				unknownRecords += entry.getValue();
+				sb.append(sb.length() == 0 ? "" : ", ").append(entry.getKey()).append(" (").append(entry.getValue()).append(")");
+			}
+		}
+		if (unknownRecords > 0) {
+			LOG.warn(unknownRecords + " GPS record(s) have unknown status codes, with records: " + sb);
+		}
+	}
+
+
+	/**
+	 * Writes the number of records, and the ignition state, of each status.
+	 */
+	void write(String filename, StatusTable table) {
+		try (BufferedWriter bw = IOUtils.getBufferedWriter(filename)) {
+			bw.write("status,ignition,records");
+			bw.newLine();
+			for (Map.Entry<Integer, Long> entry : getCounts().entrySet()) {
+				bw.write(entry.getKey() + "," + StatusTable.toString(table.get(entry.getKey())) + "," + entry.getValue());
+				bw.newLine();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot write status histogram to " + filename, e);
+		}
+		LOG.info("Number of records of each status written to " + filename);
+	}
+
+}
@@ -0,0 +1,102 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * StatusTable.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+import java.util.List;
+
+/**
+ * A lookup table of the ignition state of each vehicle status code, built
+ * once from the start and stop signals (see {@link DigicoreStatusReader})
+ * and shared, read-only, by all the extractor threads. Looking a status up
+ * is a single array access, rather than a search through the signals.
+ *
+ * @author jwjoubert
+ */
+final class StatusTable {
+	static final byte UNKNOWN = 0;
+	static final byte ON = 1;
+	static final byte OFF = 2;
+	/** Status codes are small integers, so larger codes are rejected. */
+	private static final int MAXIMUM_CODE = 1 << 16;
+
+	private final byte[] table;
+
+
+	/**
+	 * @param ignitionOn  signals indicating the ignition is on;
+	 * @param ignitionOff signals indicating the ignition is off. A signal
+	 * 		  that is in both lists is considered to be on.
+	 * @throws NumberFormatException    if a signal is not an integer.
+	 * @throws IllegalArgumentException if a signal is negative, or too large.
+	 */
+	StatusTable(List<String> ignitionOn, List<String> ignitionOff) {
+		int max = 0;
+		int[] on = parse(ignitionOn);
+		int[] off = parse(ignitionOff);
+		for (int code : on) {
+			max = Math.max(max, code);
+		}
+		for (int code : off) {
+			max = Math.max(max, code);
+		}
+		this.table = new byte[max + 1];
+		for (int code : off) {
+			table[code] = OFF;
+		}
+		for (int code : on) {
+			table[code] = ON;
+		}
+	}
+
+
+	private static int[] parse(List<String> signals) {
+		int[] codes = new int[signals.size()];
+		for (int i = 0; i < codes.length; i++) {
+			int code = Integer.parseInt(signals.get(i).trim());
+			if (code < 0 || code > MAXIMUM_CODE) {
+				throw new IllegalArgumentException("Status codes must be between 0 and " + MAXIMUM_CODE + ": " + code);
+			}
+			codes[i] = code;
+		}
+		return codes;
+	}
+
+
+	/**
+	 * @return {@link #ON}, {@link #OFF}, or {@link #UNKNOWN}.
+	 */
+	byte get(int status) {
+		return status >= 0 && status < table.length ? table[status] : UNKNOWN;
+	}
+
+
+	static String toString(byte state) {
+		switch (state) {
+		case ON:
+			return "on";
+		case OFF:
+			return "off";
+		default:
+			return "unknown";
+		}
+	}
+
+}
@@ -21,20 +21,29 @@
 package org.matsim.up.freight.extract;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 import org.matsim.core.utils.geometry.transformations.TransformationFactory;
+import org.matsim.up.utils.FileUtils;
 import org.matsim.up.utils.Header;
 
 
 /**
- * Class to perform all four extraction phases for a given data set:
+ * Class to perform all the extraction phases for a given data set:
  * <ol>
- * 		<li> split the raw data into unique vehicle files;
- * 		<li> sorting the records chronologically;
- * 		<li> extracting the activity chains; and finally
- * 		<li> combine them into a single container.
+ * 		<li> split the raw data into unique vehicle files, sorting the records
+ * 		     chronologically (see {@link DigicoreExternalSorter});
+ * 		<li> extracting the activity chains, writing them straight into a
+ * 		     single container.
  * </ol>
  *
  * @author jwjoubert
@@ -60,13 +69,19 @@ public class TurnkeyExtractor {
     /**
      * @param args optional arguments in the following order:
      *              <ol>
-     *              <li>input file of raw GPS traces;</li>
-     *              <li>output folder where activity chain is to be extracted;</li>
-     *              <li>description for the file; and</li>
-     *              <li>file that indicates what ignition signals depict engine-on -off.</li>
+     *              <li>folder with the raw GPS files, one per month;</li>
+     *              <li>folder in which each month's activity chains are extracted;</li>
+     *              <li>file that indicates what ignition signals depict engine-on -off;</li>
+     *              <li>(optional) total number of threads to use. The default is
+     *                  {@value #DEFAULT_THREADS}; and</li>
+     *              <li>(optional) number of months extracted at the same time,
+     *                  sharing the threads. The default is 1; and</li>
+     *              <li>(optional) whether to delete each month's sorted
+     *                  vehicle files once its chains are extracted. The
+     *                  default is false.</li>
      *              </ol>
-     *             If no arguments are provided, the defaults point to the first
-     *             month's file as located on the Hobbes server(s).
+     *             If no arguments are provided, the defaults point to the
+     *             files as located on the Hobbes server(s).
      */
     public static void main(String[] args) {
         if (args.length == 0) {
@@ -78,8 +93,11 @@ public class TurnkeyExtractor {
         String inputFolder = args[0];
         String outputFolder = args[1];
         String statusFile = args[2];
+        int threads = Integer.parseInt(args.length > 3 ? args[3] : DEFAULT_THREADS);
+        int monthsInParallel = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+        boolean deleteVehicleFiles = args.length > 5 && Boolean.parseBoolean(args[5]);
 
-        extractAll(inputFolder, outputFolder, statusFile);
+        extractAll(inputFolder, outputFolder, statusFile, threads, monthsInParallel, deleteVehicleFiles);
 
         Header.printFooter();
     }
@@ -88,58 +106,157 @@ public class TurnkeyExtractor {
         /* Hide constructor. */
     }
 
+    /**
+     * Extracts a single input file with the default number of threads, and
+     * deletes the sorted vehicle files afterwards, as the collator used to.
+     */
     static void extract(String inputFile, String outputFolder, String descr, String statusFile) {
-        LOG.info("Executing the turnkey extraction... this may take some time.");
-
-        /* Splitting */
-        String[] splitArgs = {inputFile, outputFolder, "1",
-                String.valueOf(FIELD_VEHICLE_ID),
-                String.valueOf(FIELD_TIME),
-                String.valueOf(FIELD_LONGITUDE),
-                String.valueOf(FIELD_LATITUDE),
-                String.valueOf(FIELD_IGNITION_SIGNAL),
-                String.valueOf(FIELD_SPEED)};
-        DigicoreFileSplitter.main(splitArgs);
-
-        /* Sorting */
-        String[] sortArgs = {outputFolder + ExtractionUtils.FOLDER_VEHICLES};
-        DigicoreFilesSorter.main(sortArgs);
-
-        /* Extracting */
-        boolean createdXmlFolder = new File(outputFolder + ExtractionUtils.FOLDER_XML).mkdirs();
-        if (!createdXmlFolder) {
-            LOG.error("Could not create the " + ExtractionUtils.FOLDER_XML + " folder.");
+        extract(inputFile, outputFolder, descr, statusFile,
+                Integer.parseInt(DEFAULT_THREADS), Runtime.getRuntime().maxMemory() / 4, true);
+    }
+
+    /**
+     * Extracts the activity chains of a single input file. Progress is kept
+     * in an {@link ExtractionManifest} in the output folder: stages that were
+     * completed for the same input file are skipped, and a partially written
+     * <code>vehicles</code> folder is resumed. If the input file changed, the
+     * extraction starts over.
+     *
+     * @param threads      number of threads used to sort and extract;
+     * @param memoryBudget (approximate) number of bytes used to buffer
+     *                     records while sorting; and
+     * @param deleteVehicleFiles whether to delete the sorted vehicle files
+     *                     once the chains are extracted. They are then gone
+     *                     for good: extracting again, with other thresholds
+     *                     say, means sorting the input again.
+     */
+    static void extract(String inputFile, String outputFolder, String descr, String statusFile, int threads, long memoryBudget,
+            boolean deleteVehicleFiles) {
+        LOG.info("Executing the turnkey extraction of " + inputFile + "... this may take some time.");
+        outputFolder += outputFolder.endsWith("/") ? "" : "/";
+        File input = new File(inputFile);
+        File output = new File(outputFolder);
+        if (!output.isDirectory() && !output.mkdirs()) {
+            throw new RuntimeException("Cannot create output folder " + output.getAbsolutePath());
+        }
+        File vehicleFolder = new File(outputFolder + ExtractionUtils.FOLDER_VEHICLES);
+        File runFolder = new File(outputFolder + ExtractionUtils.FOLDER_SORT_RUNS);
+
+        ExtractionManifest manifest = ExtractionManifest.read(outputFolder);
+        if (!manifest.exists() || !manifest.isForInput(input)) {
+            if (manifest.exists()) {
+                LOG.warn("The input file changed since " + outputFolder + " was extracted. Starting over.");
+                deleteIfExists(vehicleFolder);
+                deleteIfExists(runFolder);
+            }
+            manifest.reset(input);
+            manifest.write();
+        }
+
+        /* Splitting and sorting, in a single external merge-sort pass, into
+         * binary vehicle files. The sorted runs are kept until they are
+         * merged, so that an interrupted merge can be resumed. */
+        if (!manifest.isComplete(ExtractionManifest.Stage.SORTED)) {
+            List<File> runs;
+            DigicoreExternalSorter sorter;
+            if (manifest.isComplete(ExtractionManifest.Stage.RUNS)) {
+                LOG.info("Resuming the merge of sorted runs.");
+                sorter = new DigicoreExternalSorter(inputFile, outputFolder, memoryBudget, true);
+                sorter.setBinaryOutput(true);
+                runs = manifest.getRuns(runFolder);
+            } else {
+                deleteIfExists(vehicleFolder);
+                deleteIfExists(runFolder);
+                if (!runFolder.mkdirs()) {
+                    throw new RuntimeException("Cannot create folder for sorted runs " + runFolder.getAbsolutePath());
+                }
+                sorter = new DigicoreExternalSorter(inputFile, outputFolder, memoryBudget);
+                sorter.setNumberOfThreads(threads);
+                sorter.setBinaryOutput(true);
+                runs = sorter.createSortedRuns(runFolder, FIELD_VEHICLE_ID, FIELD_TIME, FIELD_LONGITUDE,
+                        FIELD_LATITUDE, FIELD_IGNITION_SIGNAL, FIELD_SPEED);
+                manifest.setRuns(runs);
+                manifest.complete(ExtractionManifest.Stage.RUNS);
+                manifest.write();
+            }
+            sorter.mergeRuns(runs);
+            manifest.complete(ExtractionManifest.Stage.SORTED);
+            manifest.write();
+            deleteIfExists(runFolder);
+        } else {
+            LOG.info("Skipping sorting, already completed.");
+        }
+
+        /* Extracting, streaming the vehicles straight into a single container. */
+        if (!manifest.isComplete(ExtractionManifest.Stage.EXTRACTED)) {
+            String[] extractArgs = {
+                    outputFolder + ExtractionUtils.FOLDER_VEHICLES,
+                    statusFile,
+                    outputFolder + ExtractionUtils.FOLDER_XML,
+                    String.valueOf(threads),
+                    DEFAULT_MAJOR_THRESHOLD,
+                    DEFAULT_MINOR_THRESHOLD,
+                    TransformationFactory.HARTEBEESTHOEK94_LO29,
+                    outputFolder + ExtractionUtils.FILENAME_EXTRACTION_TIMES,
+                    outputFolder + ExtractionUtils.FILENAME_VEHICLES,
+                    descr,
+                    "false",
+                    "",
+                    outputFolder + ExtractionUtils.FILENAME_STATUS_HISTOGRAM};
+            /* Throws if any vehicle file could not be extracted, so that the
+             * stage is not recorded, and a rerun extracts the month again. */
+            MultiThreadChainExtractor.main(extractArgs);
+            manifest.setOutput("vehicles", outputFolder + ExtractionUtils.FILENAME_VEHICLES);
+            manifest.setOutput("extractionTimes", outputFolder + ExtractionUtils.FILENAME_EXTRACTION_TIMES);
+            manifest.setOutput("statusHistogram", outputFolder + ExtractionUtils.FILENAME_STATUS_HISTOGRAM);
+            manifest.complete(ExtractionManifest.Stage.EXTRACTED);
+            manifest.write();
+        } else {
+            LOG.info("Skipping extraction, already completed.");
+        }
+
+        if (deleteVehicleFiles) {
+            LOG.info("Deleting the sorted vehicle files.");
+            deleteIfExists(vehicleFolder);
         }
-        String[] extractArgs = {
-                outputFolder + ExtractionUtils.FOLDER_VEHICLES,
-                statusFile,
-                outputFolder + ExtractionUtils.FOLDER_XML,
-                DEFAULT_THREADS,
-                DEFAULT_MAJOR_THRESHOLD,
-                DEFAULT_MINOR_THRESHOLD,
-                TransformationFactory.HARTEBEESTHOEK94_LO29};
-        MultiThreadChainExtractor.main(extractArgs);
-
-        /* Collating */
-        String[] collateArgs = {outputFolder, outputFolder + ExtractionUtils.FILENAME_VEHICLES, TransformationFactory.HARTEBEESTHOEK94_LO29, descr, "true"};
-        DigicoreVehicleCollator.main(collateArgs);
 
         LOG.info("Done with the turnkey extraction.");
     }
 
+    private static void deleteIfExists(File folder) {
+        if (folder.exists()) {
+            FileUtils.delete(folder);
+        }
+    }
+
     /**
      * Method meant to be called on the server only, where all the necessary
-     * Digicore files are located togather.
+     * Digicore files are located togather. A month that fails is reported,
+     * but does not stop the other months; it can be resumed by simply
+     * running the extraction again.
      *
      * @param rawFolder folder where all the csv.gz files are;
      * @param processedFolder folder where all the individual months' data will
-     *                        be written/extracted to; and
+     *                        be written/extracted to;
      * @param statusFile the file showing the ignition status (on or off) for
-     *                   different codes in the raw input data.
+     *                   different codes in the raw input data;
+     * @param threads the total number of threads used; and
+     * @param monthsInParallel the number of months extracted at the same
+     *                         time, each using an equal share of the threads
+     *                         and of the memory; and
+     * @param deleteVehicleFiles whether to delete each month's sorted vehicle
+     *                         files once its chains are extracted.
      */
-    static void extractAll(String rawFolder, String processedFolder, String statusFile) {
+    static void extractAll(String rawFolder, String processedFolder, String statusFile, int threads, int monthsInParallel,
+            boolean deleteVehicleFiles) {
         rawFolder += rawFolder.endsWith("/") ? "" : "/";
         processedFolder += processedFolder.endsWith("/") ? "" : "/";
+        if (threads < 1 || monthsInParallel < 1) {
+            throw new IllegalArgumentException("Must use at least one thread, and extract at least one month at a time.");
+        }
+        int threadsPerMonth = Math.max(1, threads / monthsInParallel);
+        long memoryPerMonth = Runtime.getRuntime().maxMemory() / 4 / monthsInParallel;
+        LOG.info("Extracting " + monthsInParallel + " month(s) at a time, each using " + threadsPerMonth + " thread(s).");
 
         String[] months = new String[]{
                 "201001", "201002", "201003", "201004", "201005", "201006", "201007", "201008", "201009", "201010", "201011", "201012",
@@ -149,14 +266,35 @@ public class TurnkeyExtractor {
                 "201401", "201402", "201403", "201404", "201405"
         };
 
-        for(String month : months){
+        ExecutorService executor = Executors.newFixedThreadPool(monthsInParallel);
+        Map<String, Future<?>> futures = new LinkedHashMap<>();
+        for (String month : months) {
             File input = new File(String.format(Locale.US, "%s%s.csv.gz", rawFolder, month));
-            if(input.exists()){
+            if (input.exists()) {
                 String output = String.format(Locale.US, "%s%s/", processedFolder, month);
                 String description = "One month's activity chains " + month + " in Hartebeesthoek94_Lo29_NE";
-                extract(input.getAbsolutePath(), output, description, statusFile);
+                futures.put(month, executor.submit(() ->
+                        extract(input.getAbsolutePath(), output, description, statusFile, threadsPerMonth, memoryPerMonth, deleteVehicleFiles)));
+            }
+        }
+        executor.shutdown();
+
+        List<String> failed = new ArrayList<>();
+        for (Map.Entry<String, Future<?>> entry : futures.entrySet()) {
+            try {
+                entry.getValue().get();
+            } catch (ExecutionException e) {
+                LOG.error("Could not extract month " + entry.getKey(), e.getCause());
+                failed.add(entry.getKey());
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while extracting month " + entry.getKey(), e);
             }
         }
+        if (!failed.isEmpty()) {
+            throw new RuntimeException("Could not extract month(s) " + failed + ". Rerun to resume them.");
+        }
     }
 
 }
@@ -0,0 +1,178 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * VehicleWriterPool.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A bounded pool of open, appending vehicle file writers. The pool keeps at
+ * most a given number of writers open, and closes the <i>least recently
+ * used</i> writer when a new vehicle file has to be opened. Since the raw
+ * Digicore records of different vehicles are interleaved, this saves having
+ * to open (and close) a vehicle file for every change in vehicle ID.
+ * <p>
+ * The pool is <b>not</b> thread safe.
+ *
+ * @author jwjoubert
+ */
+class VehicleWriterPool implements AutoCloseable {
+    private final String folder;
+    private final int maxOpenWriters;
+    private final int bufferSize;
+    private final LinkedHashMap<String, BufferedWriter> writers;
+    /* Vehicles that were handed out since the last checkpoint. */
+    private final Set<String> changed = new LinkedHashSet<>();
+
+    private long opened = 0;
+    private long evicted = 0;
+
+    /**
+     * @param folder         where the vehicle files are written to. Each
+     *                       vehicle's file is named <code>&lt;id&gt;.txt</code>;
+     * @param maxOpenWriters the maximum number of file handles kept open at
+     *                       any one time;
+     * @param bufferSize     the size (in characters) of each writer's buffer.
+     */
+    VehicleWriterPool(String folder, int maxOpenWriters, int bufferSize) {
+        if (maxOpenWriters < 1) {
+            throw new IllegalArgumentException("Must allow at least one open writer.");
+        }
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Writer buffer size must be positive.");
+        }
+        this.folder = folder;
+        this.maxOpenWriters = maxOpenWriters;
+        this.bufferSize = bufferSize;
+        this.writers = new LinkedHashMap<>(Math.min(maxOpenWriters, 1 << 16), 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BufferedWriter> eldest) {
+                if (size() > VehicleWriterPool.this.maxOpenWriters) {
+                    try {
+                        eldest.getValue().close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Could not close vehicle file for " + eldest.getKey(), e);
+                    }
+                    evicted++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the (appending) writer of the given vehicle, opening the
+     * vehicle's file if it is not currently in the pool. The vehicle's file
+     * is included in the next {@link #checkpoint(BufferedWriter)}, so call
+     * this again for every checkpoint interval the writer is used in.
+     */
+    BufferedWriter getWriter(String vehicleId) throws IOException {
+        changed.add(vehicleId);
+        BufferedWriter bw = writers.get(vehicleId);
+        if (bw == null) {
+            bw = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(folder + vehicleId + ".txt", true), StandardCharsets.UTF_8), bufferSize);
+            opened++;
+            writers.put(vehicleId, bw);
+        }
+        return bw;
+    }
+
+    /**
+     * Flushes all the open writers so that everything written so far is on
+     * disk, for example before writing a progress checkpoint.
+     */
+    void flush() throws IOException {
+        for (BufferedWriter bw : writers.values()) {
+            bw.flush();
+        }
+    }
+
+    /**
+     * Flushes all the open writers, and writes the length of every vehicle
+     * file handed out since the previous checkpoint to the log, one
+     * <code>id,length</code> line per vehicle. Together these lines give the
+     * length of each vehicle file at the last checkpoint.
+     */
+    void checkpoint(BufferedWriter log) throws IOException {
+        flush();
+        for (String vehicleId : changed) {
+            log.write(vehicleId);
+            log.write(',');
+            log.write(String.valueOf(new File(folder + vehicleId + ".txt").length()));
+            log.newLine();
+        }
+        changed.clear();
+    }
+
+    /**
+     * Closes all the writers still in the pool.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException exception = null;
+        Iterator<BufferedWriter> iterator = writers.values().iterator();
+        while (iterator.hasNext()) {
+            try {
+                iterator.next().close();
+            } catch (IOException e) {
+                exception = e;
+            }
+            iterator.remove();
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * @return the total number of times a vehicle file was opened.
+     */
+    long getNumberOfFilesOpened() {
+        return opened;
+    }
+
+    /**
+     * @return the number of times a writer had to be closed to make room for
+     * another vehicle. If this is close to {@link #getNumberOfFilesOpened()}
+     * the pool is too small.
+     */
+    long getNumberOfEvictions() {
+        return evicted;
+    }
+
+    int getNumberOfOpenWriters() {
+        return writers.size();
+    }
+}
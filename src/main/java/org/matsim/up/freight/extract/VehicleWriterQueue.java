@@ -0,0 +1,200 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * VehicleWriterQueue.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+import java.io.File;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.up.freight.containers.DigicoreVehicle;
+import org.matsim.up.freight.containers.DigicoreVehicles;
+import org.matsim.up.freight.io.DigicoreVehiclesWriter;
+
+/**
+ * Streams extracted vehicles straight into a single {@link DigicoreVehicles}
+ * file. Extractor threads add their finished vehicles to a bounded queue,
+ * and a single writer thread takes them from the queue and writes them with
+ * a {@link DigicoreVehiclesWriter}. Neither the individual vehicle files,
+ * nor a container with all the vehicles, are needed. When the writer falls
+ * behind, the queue fills up and {@link #add(DigicoreVehicle)} blocks, so
+ * the number of vehicles kept in memory remains bounded.
+ * <p>
+ * Vehicles are written in the order in which they are added.
+ *
+ * @author jwjoubert
+ */
+class VehicleWriterQueue implements AutoCloseable {
+	private final static Logger LOG = Logger.getLogger(VehicleWriterQueue.class);
+	/** Marks the end of the queue. Never written. */
+	private final static DigicoreVehicle END = new DigicoreVehicle(Id.createVehicleId(VehicleWriterQueue.class.getName()));
+
+	private final String filename;
+	private final BlockingQueue<DigicoreVehicle> queue;
+	private final Thread writerThread;
+	private volatile Throwable failure = null;
+	private volatile boolean closed = false;
+
+	/**
+	 * Opens the file, and starts the writer thread.
+	 *
+	 * @param filename  of the vehicles container file;
+	 * @param crs       the coordinate reference system of the vehicles;
+	 * @param descr     describing the container contents;
+	 * @param capacity  the maximum number of vehicles waiting to be written;
+	 * @param threads   the number of threads that compress the file.
+	 */
+	VehicleWriterQueue(String filename, String crs, String descr, int capacity, int threads) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Queue must hold at least one vehicle.");
+		}
+		this.filename = filename;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+
+		DigicoreVehicles header = new DigicoreVehicles(crs);
+		header.setDescription(descr);
+		DigicoreVehiclesWriter writer = new DigicoreVehiclesWriter(header, threads);
+		writer.open(filename);
+
+		this.writerThread = new Thread(() -> write(writer), "VehicleWriterQueue");
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+
+
+	/**
+	 * The file is closed even if a vehicle cannot be written, keeping the
+	 * original failure.
+	 */
+	private void write(DigicoreVehiclesWriter writer) {
+		Throwable error = null;
+		try {
+			DigicoreVehicle vehicle = queue.take();
+			while (vehicle != END) {
+				writer.writeVehicle(vehicle);
+				vehicle = queue.take();
+			}
+		} catch (Throwable t) {
+			error = t;
+		} finally {
+			try {
+				writer.close();
+			} catch (Throwable t) {
+				if (error == null) {
+					error = t;
+				} else {
+					error.addSuppressed(t);
+				}
+			}
+		}
+		if (error != null) {
+			failure = error;
+			LOG.error("Could not write the vehicles.", error);
+			discardRemaining();
+		}
+	}
+
+
+	/**
+	 * Keeps taking (and discarding) vehicles until the end of the queue, so
+	 * that no extractor blocks forever once writing has failed.
+	 */
+	private void discardRemaining() {
+		try {
+			while (queue.take() != END) {
+				/* Discard. */
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	/**
+	 * Adds a vehicle to be written, blocking while the queue is full.
+	 *
+	 * @throws IllegalStateException if writing has already failed, or the
+	 *                               queue has been closed.
+	 */
+	void add(DigicoreVehicle vehicle) {
+		if (closed) {
+			throw new IllegalStateException("Cannot add vehicles after the queue is closed.");
+		}
+		checkFailure();
+		try {
+			queue.put(vehicle);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while queueing vehicle " + vehicle.getId(), e);
+		}
+	}
+
+
+	/**
+	 * Waits for all the queued vehicles to be written, and completes the
+	 * file.
+	 *
+	 * @throws IllegalStateException if any vehicle could not be written.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			queue.put(END);
+			writerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while completing the vehicles file.", e);
+		}
+		checkFailure();
+	}
+
+
+	/**
+	 * Stops the writer thread and deletes the file, for when the vehicles
+	 * cannot all be added. The file would otherwise be complete, and look
+	 * like a valid container of fewer vehicles.
+	 */
+	void discard() {
+		try {
+			close();
+		} catch (RuntimeException e) {
+			LOG.warn("Could not complete the discarded vehicles file.", e);
+		} finally {
+			File file = new File(filename);
+			if (file.exists() && !file.delete()) {
+				LOG.error("Could not delete the incomplete vehicles file " + filename);
+			}
+		}
+	}
+
+
+	private void checkFailure() {
+		if (failure != null) {
+			throw new IllegalStateException("Could not write the vehicles.", failure);
+		}
+	}
+
+}
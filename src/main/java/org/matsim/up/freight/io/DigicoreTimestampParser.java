@@ -0,0 +1,153 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DigicoreTimestampParser.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.io;
+
+import java.util.Arrays;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+/**
+ * Parses the <code>yyyyMMdd HH:mm:ss</code> timestamps of the vehicle files
+ * to seconds since the epoch. This used to create a {@link GregorianCalendar}
+ * for every timestamp. Since the time zone has a constant offset throughout
+ * nearly every day, the parser rather reads the digits in place and adds the
+ * time of day to the day's midnight, which is cached. The calendar is only
+ * used once per day, and for days on which the offset changes, e.g. with
+ * daylight saving, or for fields out of their usual range. The results are
+ * therefore identical.
+ * <p>
+ * A parser is <b>not</b> thread safe: use one parser per reader.
+ *
+ * @author jwjoubert
+ */
+final class DigicoreTimestampParser {
+	private final static int LENGTH = 17;
+	private final static int CACHE_SIZE = 64;
+	private final static int EMPTY = Integer.MIN_VALUE;
+	private final static long IRREGULAR = Long.MIN_VALUE;
+
+	private final GregorianCalendar calendar = new GregorianCalendar();
+	private TimeZone timeZone = null;
+
+	/* Direct-mapped cache of each day's midnight, in seconds. */
+	private final int[] days = new int[CACHE_SIZE];
+	private final long[] midnights = new long[CACHE_SIZE];
+
+
+	DigicoreTimestampParser() {
+		Arrays.fill(days, EMPTY);
+	}
+
+
+	/**
+	 * @return the seconds since the epoch, exactly as the calendar gives
+	 * 		   them for the time zone.
+	 */
+	double parse(String string, TimeZone timeZone){
+		if(timeZone != this.timeZone){
+			this.timeZone = timeZone;
+			Arrays.fill(days, EMPTY);
+		}
+		if(string.length() < LENGTH){
+			return parseWithCalendar(string);
+		}
+
+		int year = digits(string, 0, 4);
+		int month = digits(string, 4, 6);
+		int day = digits(string, 6, 8);
+		int hour = digits(string, 9, 11);
+		int min = digits(string, 12, 14);
+		int sec = digits(string, 15, 17);
+		if(year < 0 || month < 1 || month > 12 || day < 1 || day > 31 ||
+				hour < 0 || hour > 23 || min < 0 || min > 59 || sec < 0 || sec > 59){
+			return parseWithCalendar(string);
+		}
+
+		int key = (year * 100 + month) * 100 + day;
+		int index = (year * 372 + month * 31 + day) & (CACHE_SIZE - 1);
+		if(days[index] != key){
+			days[index] = key;
+			midnights[index] = getMidnight(year, month - 1, day);
+		}
+		long midnight = midnights[index];
+		if(midnight == IRREGULAR){
+			return parseWithCalendar(string);
+		}
+		return midnight + hour * 3600 + min * 60 + sec;
+	}
+
+
+	/**
+	 * @return the value of the decimal digits in the range, or -1 if there
+	 * 		   is any other character.
+	 */
+	private static int digits(String string, int start, int end){
+		int value = 0;
+		for(int i = start; i < end; i++){
+			int digit = string.charAt(i) - '0';
+			if(digit < 0 || digit > 9){
+				return -1;
+			}
+			value = 10 * value + digit;
+		}
+		return value;
+	}
+
+
+	/**
+	 * @return the day's midnight in seconds, or {@link #IRREGULAR} if the
+	 * 		   day does not have exactly 24 hours at a single offset.
+	 */
+	private long getMidnight(int year, int month, int day){
+		long midnight = getMillis(year, month, day, 0, 0, 0);
+		long nextMidnight = getMillis(year, month, day + 1, 0, 0, 0);
+		if(nextMidnight - midnight != 86400000L ||
+				timeZone.getOffset(midnight) != timeZone.getOffset(nextMidnight - 1)){
+			return IRREGULAR;
+		}
+		return Math.floorDiv(midnight, 1000L);
+	}
+
+
+	private long getMillis(int year, int month, int day, int hour, int min, int sec){
+		calendar.setTimeZone(timeZone);
+		calendar.clear();
+		calendar.set(year, month, day, hour, min, sec);
+		return calendar.getTimeInMillis();
+	}
+
+
+	/**
+	 * The way the readers parsed all timestamps before.
+	 */
+	private double parseWithCalendar(String string){
+		int year = Integer.parseInt(string.substring(0,4));
+		int month = Integer.parseInt(string.substring(4, 6)) - 1;
+		int day = Integer.parseInt(string.substring(6, 8));
+		int hour = Integer.parseInt(string.substring(9, 11));
+		int min = Integer.parseInt(string.substring(12, 14));
+		int sec = Integer.parseInt(string.substring(15, 17));
+
+		return Math.floorDiv(getMillis(year, month, day, hour, min, sec), 1000L);
+	}
+
+}
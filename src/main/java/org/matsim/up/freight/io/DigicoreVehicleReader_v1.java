@@ -20,7 +20,6 @@
 
 package org.matsim.up.freight.io;
 
-import java.util.GregorianCalendar;
 import java.util.Locale;
 import java.util.Stack;
 import java.util.TimeZone;
@@ -59,6 +58,7 @@ public class DigicoreVehicleReader_v1 extends MatsimXmlParser {
 	private DigicoreActivity currentActivity = null;
 	private TimeZone timeZone;
 	private Locale locale;
+	private final DigicoreTimestampParser timestampParser = new DigicoreTimestampParser();
 	private DigicoreVehicle vehicle;
 	
 	public DigicoreVehicleReader_v1() {
@@ -134,19 +134,7 @@ public class DigicoreVehicleReader_v1 extends MatsimXmlParser {
 	}
 	
 	private double parseDate(String string){
-		GregorianCalendar g = new GregorianCalendar();
-		g.setTimeZone(timeZone);
-		
-		int year = Integer.parseInt(string.substring(0,4));
-		int month = Integer.parseInt(string.substring(4, 6)) - 1;
-		int day = Integer.parseInt(string.substring(6, 8));
-		int hour = Integer.parseInt(string.substring(9, 11));
-		int min = Integer.parseInt(string.substring(12, 14));
-		int sec = Integer.parseInt(string.substring(15, 17));
-		
-		g.set(year, month, day, hour, min, sec);
-		
-		return (g.getTimeInMillis() / 1000);		
+		return timestampParser.parse(string, timeZone);
 	}
 	
 	
@@ -20,7 +20,6 @@
 
 package org.matsim.up.freight.io;
 
-import java.util.GregorianCalendar;
 import java.util.Locale;
 import java.util.Stack;
 import java.util.TimeZone;
@@ -31,7 +30,6 @@ import org.matsim.core.utils.io.MatsimXmlParser;
 import org.matsim.facilities.ActivityFacility;
 import org.matsim.up.freight.containers.DigicoreActivity;
 import org.matsim.up.freight.containers.DigicoreChain;
-import org.matsim.up.freight.containers.DigicorePosition;
 import org.matsim.up.freight.containers.DigicoreTrace;
 import org.matsim.up.freight.containers.DigicoreVehicle;
 import org.matsim.vehicles.Vehicle;
@@ -61,6 +59,7 @@ public class DigicoreVehicleReader_v2 extends MatsimXmlParser {
 	private final static String ATTR_POS_TIME = "time";
 	private final static String ATTR_POS_X = "x";
 	private final static String ATTR_POS_Y = "y";
+	private final static String ATTR_POS_Z = "z";
 	
 	private DigicoreVehicle vehicle;
 	private DigicoreChain currentChain = null;
@@ -68,6 +67,7 @@ public class DigicoreVehicleReader_v2 extends MatsimXmlParser {
 	private DigicoreTrace currentTrace = null;
 	private TimeZone timeZone;
 	private Locale locale;
+	private final DigicoreTimestampParser timestampParser = new DigicoreTimestampParser();
 	
 	public DigicoreVehicleReader_v2() {
 	}
@@ -105,6 +105,7 @@ public class DigicoreVehicleReader_v2 extends MatsimXmlParser {
 			currentChain.add(currentActivity);
 			currentActivity = null;
 		} else if(TRACE.equals(name)){
+			currentTrace.trimToSize();
 			currentChain.add(currentTrace);
 			currentTrace = null;
 		}
@@ -158,25 +159,17 @@ public class DigicoreVehicleReader_v2 extends MatsimXmlParser {
 		double x = Double.parseDouble(atts.getValue(ATTR_POS_X));
 		double y = Double.parseDouble(atts.getValue(ATTR_POS_Y));
 		
-		DigicorePosition pos = new DigicorePosition((long) time, x, y);
-		currentTrace.add(pos);
+		String z = atts.getValue(ATTR_POS_Z);
+		if(z == null){
+			currentTrace.addPosition((long) time, x, y);
+		} else{
+			currentTrace.addPosition((long) time, x, y, Double.parseDouble(z));
+		}
 	}
 	
 	
 	private double parseDate(String string){
-		GregorianCalendar g = new GregorianCalendar();
-		g.setTimeZone(timeZone);
-		
-		int year = Integer.parseInt(string.substring(0,4));
-		int month = Integer.parseInt(string.substring(4, 6)) - 1;
-		int day = Integer.parseInt(string.substring(6, 8));
-		int hour = Integer.parseInt(string.substring(9, 11));
-		int min = Integer.parseInt(string.substring(12, 14));
-		int sec = Integer.parseInt(string.substring(15, 17));
-		
-		g.set(year, month, day, hour, min, sec);
-		
-		return (g.getTimeInMillis() / 1000);		
+		return timestampParser.parse(string, timeZone);
 	}
 	
 	
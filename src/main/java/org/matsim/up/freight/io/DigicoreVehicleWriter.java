@@ -28,10 +28,14 @@ import org.matsim.core.api.internal.MatsimWriter;
 import org.matsim.core.utils.io.MatsimXmlWriter;
 import org.matsim.core.utils.io.UncheckedIOException;
 import org.matsim.up.freight.containers.*;
+import org.matsim.up.freight.utils.BlockGzip;
 
 
 public class DigicoreVehicleWriter extends MatsimXmlWriter implements MatsimWriter{
 	private final static Logger LOG = Logger.getLogger(DigicoreVehicleWriter.class);
+	/* Vehicle files are written by many extractor threads at once, so each
+	 * file is compressed on its own thread rather than starting a pool. */
+	private final static int COMPRESSION_THREADS = 1;
 	private DigicoreVehicle vehicle;
 
 		
@@ -52,7 +56,7 @@ public class DigicoreVehicleWriter extends MatsimXmlWriter implements MatsimWrit
 		DigicoreVehicleWriterHandler handler = new DigicoreVehicleWriterHandlerImpl_v1();
 		
 		try {
-			openFile(filename);
+			this.writer = BlockGzip.getBufferedWriter(filename, COMPRESSION_THREADS);
 			writeXmlHead();
 			writeDoctype("digicoreVehicle", dtd);
 			
@@ -78,7 +82,7 @@ public class DigicoreVehicleWriter extends MatsimXmlWriter implements MatsimWrit
 		DigicoreVehicleWriterHandler handler = new DigicoreVehicleWriterHandlerImpl_v2();
 		 
 		try {
-			openFile(filename);
+			this.writer = BlockGzip.getBufferedWriter(filename, COMPRESSION_THREADS);
 			writeXmlHead();
 			writeDoctype("digicoreVehicle", dtd);
 			
@@ -94,8 +98,8 @@ public class DigicoreVehicleWriter extends MatsimXmlWriter implements MatsimWrit
 					} else if(element instanceof DigicoreTrace){
 						DigicoreTrace trace = (DigicoreTrace)element;
 						handler.startTrace(trace, this.writer);
-						for(DigicorePosition pos : trace){
-							handler.startPosition(pos, this.writer);
+						for(int i = 0; i < trace.size(); i++){
+							handler.startPosition(trace, i, this.writer);
 							handler.endPosition(this.writer);
 						}
 						handler.endTrace(this.writer);
@@ -44,8 +44,8 @@ public interface DigicoreVehicleWriterHandler {
 	public void startTrace(final DigicoreTrace trace, final BufferedWriter out) throws IOException;
 	public void endTrace(final BufferedWriter out) throws IOException;
 	
-	/* <position ... /> */
-	public void startPosition(final DigicorePosition pos, final BufferedWriter out) throws IOException;
+	/* <position ... />, of the trace's position at the given index. */
+	public void startPosition(final DigicoreTrace trace, final int index, final BufferedWriter out) throws IOException;
 	public void endPosition(final BufferedWriter out) throws IOException;
 	
 	/*TODO <route ... > */
@@ -126,7 +126,7 @@ public class DigicoreVehicleWriterHandlerImpl_v1 implements
 	}
 
 	@Override
-	public void startPosition(DigicorePosition pos, BufferedWriter out) throws IOException {
+	public void startPosition(DigicoreTrace trace, int index, BufferedWriter out) throws IOException {
 		/* Do nothing: implemented from v2 */
 	}
 
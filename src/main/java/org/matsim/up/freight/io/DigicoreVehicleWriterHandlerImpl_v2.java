@@ -22,40 +22,41 @@ package org.matsim.up.freight.io;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.util.Calendar;
-import java.util.GregorianCalendar;
-import java.util.Locale;
+import java.util.TimeZone;
 
 import org.matsim.up.freight.containers.*;
 
 
 public class DigicoreVehicleWriterHandlerImpl_v2 implements
 		DigicoreVehicleWriterHandler {
+	private final static TimeZone POSITION_TIME_ZONE = TimeZone.getTimeZone("GMT+2");
+	private final DigicoreXmlFormatter formatter = new DigicoreXmlFormatter();
 
 	@Override
 	public void startVehicle(DigicoreVehicle vehicle, BufferedWriter out)
 			throws IOException {
-		out.write("\n<digicoreVehicle");
-		out.write(" id=\"" + vehicle.getId().toString() + "\"");
-		out.write(" type=\"" + vehicle.getType().getId().toString() + "\"");
-		out.write(" timezone=\"GMT+2\" locale=\"en\"");
-		out.write(">\n");
+		formatter.append("\n<digicoreVehicle");
+		formatter.append(" id=\"").append(vehicle.getId().toString()).append('"');
+		formatter.append(" type=\"").append(vehicle.getType().getId().toString()).append('"');
+		formatter.append(" timezone=\"GMT+2\" locale=\"en\"");
+		formatter.append(">\n");
 	}
 
 	@Override
 	public void endVehicle(BufferedWriter out) throws IOException {
-		out.write("</digicoreVehicle>");
+		formatter.append("</digicoreVehicle>");
+		formatter.writeTo(out);
 	}
 
 	@Override
 	public void startChain(BufferedWriter out)
 			throws IOException {
-		out.write("\t<chain>\n");
+		formatter.append("\t<chain>\n");
 	}
 
 	@Override
 	public void endChain(BufferedWriter out) throws IOException {
-		out.write("\t</chain>\n\n");
+		formatter.append("\t</chain>\n\n");
 	}
 
 	@Override
@@ -68,30 +69,25 @@ public class DigicoreVehicleWriterHandlerImpl_v2 implements
 		if(activity.getCoord() == null){
 			throw new RuntimeException("An activity must have a coordinate.");
 		}
-		if(activity.getStartTimeGregorianCalendar() == null){
-			throw new RuntimeException("An activity must have a start time.");
-		}
-		if(activity.getEndTimeGregorianCalendar() == null){
-			throw new RuntimeException("An activity must have an end time.");
-		}
 		
-		out.write("\t\t<activity");
-		out.write(" type=\"" + activity.getType() + "\"\n");
-		out.write("\t\t\tstart=\"" + getDateString(activity.getStartTimeGregorianCalendar()) + "\"");
-		out.write(" end=\"" + getDateString(activity.getEndTimeGregorianCalendar()) + "\"\n");
-		out.write("\t\t\tx=\"" + String.format(Locale.US, "%.2f", activity.getCoord().getX()) + "\"");
-		out.write(" y=\"" + String.format(Locale.US, "%.2f", activity.getCoord().getY()) + "\"");
+		formatter.append("\t\t<activity");
+		formatter.append(" type=\"").append(activity.getType()).append("\"\n");
+		formatter.append("\t\t\tstart=\"").appendDate(activity.getStartTime().seconds(), activity).append('"');
+		formatter.append(" end=\"").appendDate(activity.getEndTime().seconds(), activity).append("\"\n");
+		formatter.append("\t\t\tx=\"").appendFixed(activity.getCoord().getX(), 2).append('"');
+		formatter.append(" y=\"").appendFixed(activity.getCoord().getY(), 2).append('"');
 		if(activity.getFacilityId() != null){
-			out.write(" facility=\"" + activity.getFacilityId().toString() + "\"");
+			formatter.append(" facility=\"").append(activity.getFacilityId().toString()).append('"');
 		}
 		if(activity.getLinkId() != null){
-			out.write(" link=\"" + activity.getLinkId().toString() + "\"");
+			formatter.append(" link=\"").append(activity.getLinkId().toString()).append('"');
 		}
 	}
 
 	@Override
 	public void endActivity(BufferedWriter out) throws IOException {
-		out.write("/>\n");
+		formatter.append("/>\n");
+		formatter.flushIfFull(out);
 		
 	}
 
@@ -102,44 +98,29 @@ public class DigicoreVehicleWriterHandlerImpl_v2 implements
 	
 	@Override
 	public void startTrace(DigicoreTrace trace, BufferedWriter out) throws IOException {
-		out.write("\t\t<trace crs=\"" + trace.getCrs() + "\" >\n");
+		formatter.append("\t\t<trace crs=\"").append(String.valueOf(trace.getCrs())).append("\" >\n");
 	}
 
 	@Override
 	public void endTrace(BufferedWriter out) throws IOException {
-		out.write("\t\t</trace>\n");
+		formatter.append("\t\t</trace>\n");
 	}
 
 	@Override
-	public void startPosition(DigicorePosition pos, BufferedWriter out) throws IOException {
-		out.write("\t\t\t<position");
-		out.write(" time=\"" + getDateString(pos.getTimeAsGregorianCalendar()) + "\"");
-		out.write(" x=\"" + String.format(Locale.US, "%.6f", pos.getCoord().getX()) + "\"");
-		out.write(" y=\"" + String.format(Locale.US, "%.6f", pos.getCoord().getY()) + "\"");
-		if(pos.getCoord().hasZ()){
-			out.write(" z=\"" + String.format(Locale.US, "%.1f", pos.getCoord().getZ()) + "\"");
+	public void startPosition(DigicoreTrace trace, int index, BufferedWriter out) throws IOException {
+		formatter.append("\t\t\t<position");
+		formatter.append(" time=\"").appendDate(trace.getTime(index) * 1000, POSITION_TIME_ZONE).append('"');
+		formatter.append(" x=\"").appendFixed(trace.getX(index), 6).append('"');
+		formatter.append(" y=\"").appendFixed(trace.getY(index), 6).append('"');
+		if(trace.hasZ(index)){
+			formatter.append(" z=\"").appendFixed(trace.getZ(index), 1).append('"');
 		}
 	}
 
 	@Override
 	public void endPosition(BufferedWriter out) throws IOException {
-		out.write(" />\n");
+		formatter.append(" />\n");
+		formatter.flushIfFull(out);
 	}
 
-	private String getDateString(GregorianCalendar cal){
-		String s = "";
-		int year = cal.get(Calendar.YEAR);
-		int month = cal.get(Calendar.MONTH)+1; // Seems to be a java thing that month is started at 0... 
-		int day = cal.get(Calendar.DAY_OF_MONTH);
-		int hour = cal.get(Calendar.HOUR_OF_DAY);
-		int minute = cal.get(Calendar.MINUTE);
-		int second = cal.get(Calendar.SECOND);
-		
-		s = String.format(Locale.US, "%04d%02d%02d %02d:%02d:%02d",
-				year, month, day, hour, minute, second);
-		
-		return s;
-	}
-	
 }
-
@@ -0,0 +1,526 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DigicoreVehiclesBinaryCodec.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.up.freight.containers.*;
+import org.matsim.utils.objectattributes.ObjectAttributes;
+import org.matsim.utils.objectattributes.ObjectAttributesUtils;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Encodes a single vehicle as a block of the binary vehicles file, and
+ * decodes it again. See {@link DigicoreVehiclesBinaryWriter} for the layout
+ * of the file, and of a block.
+ * <p>
+ * The attributes can have values of type {@link String}, {@link Integer},
+ * {@link Long}, {@link Double}, {@link Float} or {@link Boolean}. Other
+ * values are not written, as with MATSim's attributes writers, and a
+ * warning is given.
+ * <p>
+ * A codec keeps tables of the time zones and locales it has seen, and is
+ * therefore <b>not</b> thread safe.
+ *
+ * @author jwjoubert
+ */
+final class DigicoreVehiclesBinaryCodec {
+	private final static Logger LOG = Logger.getLogger(DigicoreVehiclesBinaryCodec.class);
+	final static int MAGIC = 0x44475642;
+	final static int VERSION = 1;
+	final static int HEADER_SIZE = 16;
+
+	private final static byte ELEMENT_ACTIVITY = 0;
+	private final static byte ELEMENT_TRACE = 1;
+	private final static byte HAS_COORD = 1;
+	private final static byte HAS_Z = 2;
+	private final static int NONE = -1;
+
+	private final static byte TYPE_STRING = 0;
+	private final static byte TYPE_INTEGER = 1;
+	private final static byte TYPE_LONG = 2;
+	private final static byte TYPE_DOUBLE = 3;
+	private final static byte TYPE_FLOAT = 4;
+	private final static byte TYPE_BOOLEAN = 5;
+
+	/* Encoding. */
+	private final Map<ZoneId, TimeZone> timeZones = new HashMap<>();
+	private final List<String> strings = new ArrayList<>();
+	private final Map<String, Integer> stringIndex = new HashMap<>();
+	private final List<TimeZone> zones = new ArrayList<>();
+	private final Map<TimeZone, Integer> zoneIndex = new HashMap<>();
+	private final List<Locale> locales = new ArrayList<>();
+	private final Map<Locale, Integer> localeIndex = new HashMap<>();
+
+	/* Decoding. */
+	private final Map<String, TimeZone> timeZonesById = new HashMap<>();
+
+
+	/**
+	 * Writes the vehicle, with its attributes in the collection.
+	 *
+	 * @param collectionAttributes of the container, or <code>null</code>.
+	 */
+	void write(DigicoreVehicle vehicle, ObjectAttributes collectionAttributes, DataOutput out) throws IOException {
+		strings.clear();
+		stringIndex.clear();
+		zones.clear();
+		zoneIndex.clear();
+		locales.clear();
+		localeIndex.clear();
+
+		List<DigicoreActivity> activities = new ArrayList<>();
+		List<DigicoreTrace> traces = new ArrayList<>();
+		int numberOfElements = 0;
+		int numberOfPositions = 0;
+		for(DigicoreChain chain : vehicle.getChains()){
+			numberOfElements += chain.size();
+			for(DigicoreChainElement element : chain){
+				if(element instanceof DigicoreActivity){
+					activities.add((DigicoreActivity) element);
+				} else if(element instanceof DigicoreTrace){
+					traces.add((DigicoreTrace) element);
+					numberOfPositions += ((DigicoreTrace) element).size();
+				} else{
+					throw new RuntimeException("Unknown chain element type: " + element.getClass().toString());
+				}
+			}
+		}
+
+		out.writeUTF(vehicle.getId().toString());
+		out.writeUTF(vehicle.getType().getId().toString());
+		writeAttributes(vehicle.getAttributes().getAsMap(), out);
+		Map<String, Object> vehicleAttributes = new LinkedHashMap<>();
+		if(collectionAttributes != null){
+			String id = vehicle.getId().toString();
+			for(String name : ObjectAttributesUtils.getAllAttributeNames(collectionAttributes, id)){
+				vehicleAttributes.put(name, collectionAttributes.getAttribute(id, name));
+			}
+		}
+		writeAttributes(vehicleAttributes, out);
+
+		/* Chains. */
+		out.writeInt(vehicle.getChains().size());
+		out.writeInt(numberOfElements);
+		for(DigicoreChain chain : vehicle.getChains()){
+			out.writeInt(chain.size());
+		}
+		for(DigicoreChain chain : vehicle.getChains()){
+			for(DigicoreChainElement element : chain){
+				out.writeByte(element instanceof DigicoreActivity ? ELEMENT_ACTIVITY : ELEMENT_TRACE);
+			}
+		}
+
+		/* Activities, one column at a time. The tables are built as the
+		 * columns of indices are, and are written after them. */
+		int[] type = new int[activities.size()];
+		int[] zone = new int[activities.size()];
+		int[] locale = new int[activities.size()];
+		int[] facility = new int[activities.size()];
+		int[] link = new int[activities.size()];
+		for(int a = 0; a < activities.size(); a++){
+			DigicoreActivity activity = activities.get(a);
+			type[a] = getStringIndex(activity.getType());
+			zone[a] = getZoneIndex(activity);
+			locale[a] = getLocaleIndex(activity.getLocale());
+			facility[a] = getStringIndex(activity.getFacilityId() == null ? null : activity.getFacilityId().toString());
+			link[a] = getStringIndex(activity.getLinkId() == null ? null : activity.getLinkId().toString());
+		}
+		out.writeInt(activities.size());
+		for(DigicoreActivity activity : activities){
+			Coord coord = activity.getCoord();
+			out.writeByte(coord == null ? 0 : (coord.hasZ() ? HAS_COORD | HAS_Z : HAS_COORD));
+		}
+		for(DigicoreActivity activity : activities){
+			out.writeDouble(activity.getCoord() == null ? Double.NaN : activity.getCoord().getX());
+		}
+		for(DigicoreActivity activity : activities){
+			out.writeDouble(activity.getCoord() == null ? Double.NaN : activity.getCoord().getY());
+		}
+		for(DigicoreActivity activity : activities){
+			out.writeDouble(activity.getCoord() == null || !activity.getCoord().hasZ() ? Double.NaN : activity.getCoord().getZ());
+		}
+		for(DigicoreActivity activity : activities){
+			out.writeLong(Math.round(activity.getStartTime().seconds() * 1000.0));
+		}
+		for(DigicoreActivity activity : activities){
+			out.writeLong(Math.round(activity.getEndTime().seconds() * 1000.0));
+		}
+		for(DigicoreActivity activity : activities){
+			out.writeDouble(activity.getMaximumDuration().seconds());
+		}
+		for(int[] column : new int[][]{type, zone, locale, facility, link}){
+			for(int value : column){
+				out.writeInt(value);
+			}
+		}
+
+		/* Traces, and then their positions. */
+		out.writeInt(traces.size());
+		out.writeInt(numberOfPositions);
+		int[] crs = new int[traces.size()];
+		for(int t = 0; t < traces.size(); t++){
+			crs[t] = getStringIndex(traces.get(t).getCrs());
+		}
+		for(int value : crs){
+			out.writeInt(value);
+		}
+		for(DigicoreTrace trace : traces){
+			out.writeInt(trace.size());
+		}
+		for(DigicoreTrace trace : traces){
+			for(int p = 0; p < trace.size(); p++){
+				out.writeLong(trace.getTime(p));
+			}
+		}
+		for(DigicoreTrace trace : traces){
+			for(int p = 0; p < trace.size(); p++){
+				out.writeDouble(trace.getX(p));
+			}
+		}
+		for(DigicoreTrace trace : traces){
+			for(int p = 0; p < trace.size(); p++){
+				out.writeDouble(trace.getY(p));
+			}
+		}
+		for(DigicoreTrace trace : traces){
+			for(int p = 0; p < trace.size(); p++){
+				out.writeFloat(trace.hasZ(p) ? (float) trace.getZ(p) : Float.NaN);
+			}
+		}
+
+		/* Tables. */
+		out.writeInt(strings.size());
+		for(String s : strings){
+			out.writeUTF(s);
+		}
+		out.writeInt(zones.size());
+		for(TimeZone timeZone : zones){
+			out.writeUTF(timeZone.getID());
+		}
+		out.writeInt(locales.size());
+		for(Locale l : locales){
+			out.writeUTF(l.getLanguage());
+			out.writeUTF(l.getCountry());
+			out.writeUTF(l.getVariant());
+		}
+	}
+
+
+	private int getStringIndex(String string){
+		if(string == null){
+			return NONE;
+		}
+		Integer index = stringIndex.get(string);
+		if(index == null){
+			index = strings.size();
+			strings.add(string);
+			stringIndex.put(string, index);
+		}
+		return index;
+	}
+
+
+	/**
+	 * The time zone is that of the activity's calendars, which is only
+	 * created once per zone.
+	 */
+	private int getZoneIndex(DigicoreActivity activity){
+		TimeZone timeZone = timeZones.get(activity.getZone());
+		if(timeZone == null){
+			timeZone = activity.getStartTimeGregorianCalendar().getTimeZone();
+			timeZones.put(activity.getZone(), timeZone);
+		}
+		Integer index = zoneIndex.get(timeZone);
+		if(index == null){
+			index = zones.size();
+			zones.add(timeZone);
+			zoneIndex.put(timeZone, index);
+		}
+		return index;
+	}
+
+
+	private int getLocaleIndex(Locale locale){
+		if(locale == null){
+			return NONE;
+		}
+		Integer index = localeIndex.get(locale);
+		if(index == null){
+			index = locales.size();
+			locales.add(locale);
+			localeIndex.put(locale, index);
+		}
+		return index;
+	}
+
+
+	/**
+	 * Reads a vehicle written by {@link #write(DigicoreVehicle, ObjectAttributes, DataOutput)}.
+	 *
+	 * @param collectionAttributes to which the vehicle's attributes in the
+	 * 		  collection are added, or <code>null</code> to skip them.
+	 */
+	DigicoreVehicle read(DataInput in, ObjectAttributes collectionAttributes) throws IOException {
+		DigicoreVehicle vehicle = new DigicoreVehicle(Id.create(in.readUTF(), Vehicle.class));
+		vehicle.setType(in.readUTF());
+		for(Map.Entry<String, Object> entry : readAttributes(in).entrySet()){
+			vehicle.getAttributes().putAttribute(entry.getKey(), entry.getValue());
+		}
+		Map<String, Object> vehicleAttributes = readAttributes(in);
+		if(collectionAttributes != null){
+			for(Map.Entry<String, Object> entry : vehicleAttributes.entrySet()){
+				collectionAttributes.putAttribute(vehicle.getId().toString(), entry.getKey(), entry.getValue());
+			}
+		}
+
+		/* Chains. */
+		int numberOfChains = in.readInt();
+		int numberOfElements = in.readInt();
+		int[] chainSize = readInts(in, numberOfChains);
+		byte[] elements = new byte[numberOfElements];
+		in.readFully(elements);
+
+		/* Activities. */
+		int numberOfActivities = in.readInt();
+		byte[] flags = new byte[numberOfActivities];
+		in.readFully(flags);
+		double[] x = readDoubles(in, numberOfActivities);
+		double[] y = readDoubles(in, numberOfActivities);
+		double[] z = readDoubles(in, numberOfActivities);
+		long[] start = readLongs(in, numberOfActivities);
+		long[] end = readLongs(in, numberOfActivities);
+		double[] maximumDuration = readDoubles(in, numberOfActivities);
+		int[] type = readInts(in, numberOfActivities);
+		int[] zone = readInts(in, numberOfActivities);
+		int[] locale = readInts(in, numberOfActivities);
+		int[] facility = readInts(in, numberOfActivities);
+		int[] link = readInts(in, numberOfActivities);
+
+		/* Traces. */
+		int numberOfTraces = in.readInt();
+		int numberOfPositions = in.readInt();
+		int[] crs = readInts(in, numberOfTraces);
+		int[] traceSize = readInts(in, numberOfTraces);
+		long[] time = readLongs(in, numberOfPositions);
+		double[] px = readDoubles(in, numberOfPositions);
+		double[] py = readDoubles(in, numberOfPositions);
+		float[] pz = new float[numberOfPositions];
+		for(int p = 0; p < numberOfPositions; p++){
+			pz[p] = in.readFloat();
+		}
+
+		/* Tables. */
+		String[] strings = new String[in.readInt()];
+		for(int s = 0; s < strings.length; s++){
+			strings[s] = in.readUTF();
+		}
+		TimeZone[] zones = new TimeZone[in.readInt()];
+		for(int t = 0; t < zones.length; t++){
+			zones[t] = timeZonesById.computeIfAbsent(in.readUTF(), TimeZone::getTimeZone);
+		}
+		Locale[] locales = new Locale[in.readInt()];
+		for(int l = 0; l < locales.length; l++){
+			locales[l] = new Locale(in.readUTF(), in.readUTF(), in.readUTF());
+		}
+
+		/* Build the chains. */
+		int element = 0;
+		int activity = 0;
+		int trace = 0;
+		int position = 0;
+		for(int c = 0; c < numberOfChains; c++){
+			DigicoreChain chain = new DigicoreChain();
+			for(int e = 0; e < chainSize[c]; e++){
+				if(elements[element++] == ELEMENT_ACTIVITY){
+					int a = activity++;
+					DigicoreActivity da = new DigicoreActivity(get(strings, type[a]), zones[zone[a]],
+							locale[a] == NONE ? null : locales[locale[a]]);
+					if((flags[a] & HAS_Z) != 0){
+						da.setCoord(new Coord(x[a], y[a], z[a]));
+					} else if((flags[a] & HAS_COORD) != 0){
+						da.setCoord(new Coord(x[a], y[a]));
+					}
+					da.setStartTime(start[a] / 1000.0);
+					da.setEndTime(end[a] / 1000.0);
+					da.setMaximumDuration(maximumDuration[a]);
+					if(facility[a] != NONE){
+						da.setFacilityId(Id.create(strings[facility[a]], ActivityFacility.class));
+					}
+					if(link[a] != NONE){
+						da.setLinkId(Id.createLinkId(strings[link[a]]));
+					}
+					chain.add(da);
+				} else{
+					int t = trace++;
+					DigicoreTrace dt = new DigicoreTrace(get(strings, crs[t]), traceSize[t]);
+					for(int p = 0; p < traceSize[t]; p++, position++){
+						if(Float.isNaN(pz[position])){
+							dt.addPosition(time[position], px[position], py[position]);
+						} else{
+							dt.addPosition(time[position], px[position], py[position], pz[position]);
+						}
+					}
+					chain.add(dt);
+				}
+			}
+			vehicle.getChains().add(chain);
+		}
+		return vehicle;
+	}
+
+
+	private static String get(String[] strings, int index){
+		return index == NONE ? null : strings[index];
+	}
+
+
+	private static int[] readInts(DataInput in, int n) throws IOException {
+		int[] values = new int[n];
+		for(int i = 0; i < n; i++){
+			values[i] = in.readInt();
+		}
+		return values;
+	}
+
+
+	private static long[] readLongs(DataInput in, int n) throws IOException {
+		long[] values = new long[n];
+		for(int i = 0; i < n; i++){
+			values[i] = in.readLong();
+		}
+		return values;
+	}
+
+
+	private static double[] readDoubles(DataInput in, int n) throws IOException {
+		double[] values = new double[n];
+		for(int i = 0; i < n; i++){
+			values[i] = in.readDouble();
+		}
+		return values;
+	}
+
+
+	private static void writeAttributes(Map<String, Object> attributes, DataOutput out) throws IOException {
+		Map<String, Object> written = new LinkedHashMap<>();
+		for(Map.Entry<String, Object> entry : attributes.entrySet()){
+			Object value = entry.getValue();
+			if(value instanceof String || value instanceof Integer || value instanceof Long ||
+					value instanceof Double || value instanceof Float || value instanceof Boolean){
+				written.put(entry.getKey(), value);
+			} else{
+				LOG.warn("Cannot write attribute '" + entry.getKey() + "' of type " +
+						(value == null ? null : value.getClass().getName()) + ". It will not be written.");
+			}
+		}
+		out.writeInt(written.size());
+		for(Map.Entry<String, Object> entry : written.entrySet()){
+			out.writeUTF(entry.getKey());
+			Object value = entry.getValue();
+			if(value instanceof String){
+				out.writeByte(TYPE_STRING);
+				byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			} else if(value instanceof Integer){
+				out.writeByte(TYPE_INTEGER);
+				out.writeInt((Integer) value);
+			} else if(value instanceof Long){
+				out.writeByte(TYPE_LONG);
+				out.writeLong((Long) value);
+			} else if(value instanceof Double){
+				out.writeByte(TYPE_DOUBLE);
+				out.writeDouble((Double) value);
+			} else if(value instanceof Float){
+				out.writeByte(TYPE_FLOAT);
+				out.writeFloat((Float) value);
+			} else{
+				out.writeByte(TYPE_BOOLEAN);
+				out.writeBoolean((Boolean) value);
+			}
+		}
+	}
+
+
+	private static Map<String, Object> readAttributes(DataInput in) throws IOException {
+		int n = in.readInt();
+		Map<String, Object> attributes = new LinkedHashMap<>();
+		for(int i = 0; i < n; i++){
+			String name = in.readUTF();
+			byte type = in.readByte();
+			switch(type){
+			case TYPE_STRING:
+				byte[] bytes = new byte[in.readInt()];
+				in.readFully(bytes);
+				attributes.put(name, new String(bytes, StandardCharsets.UTF_8));
+				break;
+			case TYPE_INTEGER:
+				attributes.put(name, in.readInt());
+				break;
+			case TYPE_LONG:
+				attributes.put(name, in.readLong());
+				break;
+			case TYPE_DOUBLE:
+				attributes.put(name, in.readDouble());
+				break;
+			case TYPE_FLOAT:
+				attributes.put(name, in.readFloat());
+				break;
+			case TYPE_BOOLEAN:
+				attributes.put(name, in.readBoolean());
+				break;
+			default:
+				throw new IOException("Unknown attribute type " + type);
+			}
+		}
+		return attributes;
+	}
+
+
+	static String readString(DataInput in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	static void writeString(DataOutput out, String s) throws IOException {
+		out.writeBoolean(s != null);
+		if(s != null){
+			out.writeUTF(s);
+		}
+	}
+
+}
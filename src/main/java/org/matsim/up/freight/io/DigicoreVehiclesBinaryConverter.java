@@ -0,0 +1,91 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DigicoreVehiclesBinaryConverter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.io;
+
+import org.apache.log4j.Logger;
+import org.matsim.up.freight.containers.DigicoreVehicles;
+import org.matsim.up.utils.Header;
+
+/**
+ * Converts vehicles files between XML and the binary format of
+ * {@link DigicoreVehiclesBinaryWriter}. The vehicles are converted one at a
+ * time, so they are never all in memory. Converting a version 2 XML file to
+ * binary, and back, gives the same XML file.
+ *
+ * @author jwjoubert
+ */
+public class DigicoreVehiclesBinaryConverter {
+	private final static Logger LOG = Logger.getLogger(DigicoreVehiclesBinaryConverter.class);
+
+	private DigicoreVehiclesBinaryConverter(){
+		/* Hide constructor. */
+	}
+
+
+	/**
+	 * Converts an XML vehicles file, of either version, to binary.
+	 */
+	public static void toBinary(String xmlFile, String binaryFile){
+		LOG.info("Converting " + xmlFile + " to binary...");
+		DigicoreVehicles vehicles = new DigicoreVehicles();
+		vehicles.setSilentLog(true);
+		DigicoreVehiclesBinaryWriter writer = new DigicoreVehiclesBinaryWriter(vehicles);
+		writer.open(binaryFile);
+		new DigicoreVehiclesReader(vehicles, writer::writeVehicle).readFile(xmlFile);
+		writer.close();
+	}
+
+
+	/**
+	 * Converts a binary vehicles file to a version 2 XML file.
+	 */
+	public static void toXml(String binaryFile, String xmlFile){
+		LOG.info("Converting " + binaryFile + " to XML...");
+		try(DigicoreVehiclesBinaryReader reader = new DigicoreVehiclesBinaryReader(binaryFile)){
+			DigicoreVehicles vehicles = new DigicoreVehicles(reader.getCoordinateReferenceSystem());
+			vehicles.setDescription(reader.getDescription());
+			DigicoreVehiclesWriter writer = new DigicoreVehiclesWriter(vehicles);
+			writer.open(xmlFile);
+			reader.forEach(writer::writeVehicle);
+			writer.close();
+		}
+	}
+
+
+	/**
+	 * Converts a vehicles file. The direction is that of the input file's
+	 * extension: a binary file ending in {@value DigicoreVehiclesBinaryWriter#FILENAME_SUFFIX}
+	 * is converted to XML, and any other file to binary.
+	 *
+	 * @param args the input file, and the output file.
+	 */
+	public static void main(String[] args){
+		Header.printHeader(DigicoreVehiclesBinaryConverter.class, args);
+		if(args[0].endsWith(DigicoreVehiclesBinaryWriter.FILENAME_SUFFIX)){
+			toXml(args[0], args[1]);
+		} else{
+			toBinary(args[0], args[1]);
+		}
+		Header.printFooter();
+	}
+
+}
@@ -0,0 +1,213 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DigicoreVehiclesBinaryReader.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.up.freight.containers.DigicoreVehicle;
+import org.matsim.up.freight.containers.DigicoreVehicles;
+import org.matsim.utils.objectattributes.ObjectAttributes;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Reads the binary vehicles files written by {@link DigicoreVehiclesBinaryWriter}.
+ * Only the footer is read when the file is opened, so that a single vehicle
+ * can be read with {@link #getVehicle(Id)} without reading any of the
+ * others. Different threads may read vehicles at the same time.
+ *
+ * @author jwjoubert
+ */
+public class DigicoreVehiclesBinaryReader implements Closeable {
+	private final static Logger LOG = Logger.getLogger(DigicoreVehiclesBinaryReader.class);
+	private final FileChannel channel;
+	private final String crs;
+	private final String description;
+	private final Map<Id<Vehicle>, long[]> blocks;
+
+
+	/**
+	 * Opens the file and reads its footer.
+	 *
+	 * @throws IllegalArgumentException if the file is not a binary vehicles
+	 * 		   file, or of a version that cannot be read.
+	 */
+	public DigicoreVehiclesBinaryReader(final String filename){
+		FileChannel channel = null;
+		boolean opened = false;
+		try{
+			channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+			DataInputStream header = new DataInputStream(new ByteArrayInputStream(
+					read(channel, 0L, DigicoreVehiclesBinaryCodec.HEADER_SIZE)));
+			if(header.readInt() != DigicoreVehiclesBinaryCodec.MAGIC){
+				throw new IllegalArgumentException("File " + filename + " is not a binary vehicles file.");
+			}
+			int version = header.readInt();
+			if(version != DigicoreVehiclesBinaryCodec.VERSION){
+				throw new IllegalArgumentException("Version " + version + " of binary vehicles files not known.");
+			}
+			long footer = header.readLong();
+			if(footer < DigicoreVehiclesBinaryCodec.HEADER_SIZE || footer > channel.size()){
+				throw new IllegalArgumentException("File " + filename + " is incomplete.");
+			}
+
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+					read(channel, footer, (int) (channel.size() - footer))));
+			int numberOfVehicles = in.readInt();
+			this.crs = DigicoreVehiclesBinaryCodec.readString(in);
+			this.description = DigicoreVehiclesBinaryCodec.readString(in);
+			this.blocks = new LinkedHashMap<>((int) (numberOfVehicles / 0.75) + 1);
+			for(int v = 0; v < numberOfVehicles; v++){
+				Id<Vehicle> id = Id.create(in.readUTF(), Vehicle.class);
+				this.blocks.put(id, new long[]{in.readLong(), in.readInt()});
+			}
+			this.channel = channel;
+			opened = true;
+		} catch (IOException e){
+			throw new UncheckedIOException(e);
+		} finally{
+			if(!opened && channel != null){
+				try{
+					channel.close();
+				} catch (IOException e){
+					LOG.warn("Could not close " + filename);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Reads all the vehicles in the file into the container, along with the
+	 * coordinate reference system, description and vehicle attributes.
+	 */
+	public static void read(final String filename, DigicoreVehicles vehicles){
+		try(DigicoreVehiclesBinaryReader reader = new DigicoreVehiclesBinaryReader(filename)){
+			reader.readVehicles(vehicles);
+		}
+	}
+
+
+	private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while(buffer.hasRemaining()){
+			int read = channel.read(buffer, position + buffer.position());
+			if(read < 0){
+				throw new IOException("Unexpected end of file.");
+			}
+		}
+		return buffer.array();
+	}
+
+
+	public String getCoordinateReferenceSystem(){
+		return this.crs;
+	}
+
+	public String getDescription(){
+		return this.description;
+	}
+
+	/**
+	 * @return the Ids of the vehicles, in the order in which they were
+	 * 		   written.
+	 */
+	public Set<Id<Vehicle>> getVehicleIds(){
+		return Collections.unmodifiableSet(this.blocks.keySet());
+	}
+
+
+	/**
+	 * Reads a single vehicle.
+	 *
+	 * @return the vehicle, or <code>null</code> if the file has no vehicle
+	 * 		   with the Id.
+	 */
+	public DigicoreVehicle getVehicle(Id<Vehicle> id){
+		return getVehicle(id, new DigicoreVehiclesBinaryCodec(), null);
+	}
+
+
+	private DigicoreVehicle getVehicle(Id<Vehicle> id, DigicoreVehiclesBinaryCodec codec, ObjectAttributes attributes){
+		long[] block = this.blocks.get(id);
+		if(block == null){
+			return null;
+		}
+		try{
+			return codec.read(new DataInputStream(new ByteArrayInputStream(
+					read(this.channel, block[0], (int) block[1]))), attributes);
+		} catch (IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+
+	/**
+	 * Hands each vehicle in turn to the handler, so that only a single
+	 * vehicle is kept in memory at a time.
+	 */
+	public void forEach(Consumer<DigicoreVehicle> vehicleHandler){
+		DigicoreVehiclesBinaryCodec codec = new DigicoreVehiclesBinaryCodec();
+		for(Id<Vehicle> id : this.blocks.keySet()){
+			vehicleHandler.accept(getVehicle(id, codec, null));
+		}
+	}
+
+
+	/**
+	 * Adds all the vehicles to the container, and sets its coordinate
+	 * reference system, description and vehicle attributes.
+	 */
+	public void readVehicles(DigicoreVehicles vehicles){
+		vehicles.setCoordinateReferenceSystem(this.crs);
+		vehicles.setDescription(this.description);
+		DigicoreVehiclesBinaryCodec codec = new DigicoreVehiclesBinaryCodec();
+		for(Id<Vehicle> id : this.blocks.keySet()){
+			vehicles.addDigicoreVehicle(getVehicle(id, codec, vehicles.getVehicleAttributes()));
+		}
+	}
+
+
+	@Override
+	public void close(){
+		try{
+			this.channel.close();
+		} catch (IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
@@ -0,0 +1,188 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DigicoreVehiclesBinaryWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.io;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.api.internal.MatsimWriter;
+import org.matsim.core.utils.misc.Counter;
+import org.matsim.up.freight.containers.DigicoreVehicle;
+import org.matsim.up.freight.containers.DigicoreVehicles;
+
+/**
+ * Writes vehicles to a binary file from which any single vehicle can be read
+ * again, with {@link DigicoreVehiclesBinaryReader}, without reading the rest.
+ * The file is not compressed. It has
+ * <ul>
+ * 		<li>a header with the magic number, the format version, and the
+ * 			position of the footer;</li>
+ * 		<li>one block per vehicle, with its attributes, the lengths of its
+ * 			chains, and then the activities and the positions of the traces
+ * 			each in columns, followed by the tables of the strings, time zones
+ * 			and locales that the columns index; and</li>
+ * 		<li>a footer with the coordinate reference system and description of
+ * 			the container, and the Id, position and length of each vehicle's
+ * 			block.</li>
+ * </ul>
+ * Everything that a version 2 XML file holds is kept. The container's
+ * vehicle attributes ({@link DigicoreVehicles#getVehicleAttributes()}), which
+ * the XML files do not hold, are kept in each vehicle's block.
+ * <p>
+ * As with {@link DigicoreVehiclesWriter}, vehicles can also be written one
+ * at a time with {@link #open(String)}, {@link #writeVehicle(DigicoreVehicle)}
+ * and {@link #close()}.
+ *
+ * @author jwjoubert
+ */
+public class DigicoreVehiclesBinaryWriter implements MatsimWriter {
+	private final static Logger LOG = Logger.getLogger(DigicoreVehiclesBinaryWriter.class);
+	/** The usual extension of binary vehicles files. */
+	public final static String FILENAME_SUFFIX = ".dvb";
+	private final DigicoreVehicles vehicles;
+	private final Counter counter = new Counter("  vehicle # ");
+
+	private final DigicoreVehiclesBinaryCodec codec = new DigicoreVehiclesBinaryCodec();
+	private final ByteArrayOutputStream block = new ByteArrayOutputStream(1 << 16);
+	private final DataOutputStream blockOutput = new DataOutputStream(block);
+	private final List<String> ids = new ArrayList<>();
+	private final List<Long> offsets = new ArrayList<>();
+	private final List<Integer> lengths = new ArrayList<>();
+	private FileChannel channel = null;
+	private DataOutputStream output = null;
+	private long position;
+
+
+	/**
+	 * @param vehicles the container that is written, or whose coordinate
+	 * 		  reference system, description and vehicle attributes are used
+	 * 		  when the vehicles are written one at a time.
+	 */
+	public DigicoreVehiclesBinaryWriter(DigicoreVehicles vehicles){
+		this.vehicles = vehicles;
+	}
+
+
+	@Override
+	public void write(final String filename){
+		LOG.info("Writing binary Digicore vehicles to file: " + filename);
+		open(filename);
+		for(DigicoreVehicle vehicle : this.vehicles.getVehicles().values()){
+			writeVehicle(vehicle);
+		}
+		close();
+	}
+
+
+	/**
+	 * Opens the file and writes its header.
+	 */
+	public void open(final String filename){
+		if(this.channel != null){
+			throw new IllegalStateException("The writer is already open.");
+		}
+		try{
+			this.channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			this.output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(this.channel), 1 << 16));
+			this.output.writeInt(DigicoreVehiclesBinaryCodec.MAGIC);
+			this.output.writeInt(DigicoreVehiclesBinaryCodec.VERSION);
+			this.output.writeLong(0L);
+			this.position = DigicoreVehiclesBinaryCodec.HEADER_SIZE;
+		} catch (IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+
+	/**
+	 * Writes a single vehicle to a file opened with {@link #open(String)}.
+	 */
+	public void writeVehicle(final DigicoreVehicle vehicle){
+		if(this.channel == null){
+			throw new IllegalStateException("The writer must first be opened.");
+		}
+		try{
+			block.reset();
+			codec.write(vehicle, this.vehicles.getVehicleAttributes(), blockOutput);
+			blockOutput.flush();
+			block.writeTo(output);
+			ids.add(vehicle.getId().toString());
+			offsets.add(position);
+			lengths.add(block.size());
+			position += block.size();
+			counter.incCounter();
+		} catch (IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+
+	/**
+	 * Writes the footer, points the header to it, and closes the file.
+	 */
+	public void close(){
+		if(this.channel == null){
+			throw new IllegalStateException("The writer must first be opened.");
+		}
+		try{
+			counter.printCounter();
+			long footer = position;
+			output.writeInt(ids.size());
+			DigicoreVehiclesBinaryCodec.writeString(output, this.vehicles.getCoordinateReferenceSystem());
+			DigicoreVehiclesBinaryCodec.writeString(output, this.vehicles.getDescription());
+			for(int i = 0; i < ids.size(); i++){
+				output.writeUTF(ids.get(i));
+				output.writeLong(offsets.get(i));
+				output.writeInt(lengths.get(i));
+			}
+			output.flush();
+
+			ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+			buffer.putLong(footer).flip();
+			while(buffer.hasRemaining()){
+				channel.write(buffer, DigicoreVehiclesBinaryCodec.HEADER_SIZE - Long.BYTES + buffer.position());
+			}
+			output.close();
+		} catch (IOException e){
+			throw new UncheckedIOException(e);
+		} finally{
+			this.channel = null;
+			this.output = null;
+			this.ids.clear();
+			this.offsets.clear();
+			this.lengths.clear();
+		}
+	}
+
+}
@@ -0,0 +1,370 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DigicoreVehiclesIterator.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.utils.misc.Counter;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.up.freight.containers.*;
+import org.matsim.up.freight.utils.BlockGzip;
+import org.matsim.utils.objectattributes.ObjectAttributes;
+import org.matsim.vehicles.Vehicle;
+
+
+/**
+ * Pulls the vehicles from a v1 or v2 vehicles file one at a time, rather
+ * than filling a {@link DigicoreVehicles} container. Only the vehicle being
+ * returned is in memory, so a file can be visited regardless of its size.
+ * The vehicles are the same as those built by {@link DigicoreVehiclesReader}.
+ * <p>
+ * The coordinate reference system and description are available as soon as
+ * the iterator has been created. The iterator must be closed, which is best
+ * done with a try-with-resources statement:
+ * <pre>
+ * try(DigicoreVehiclesIterator it = new DigicoreVehiclesIterator(file)){
+ * 	it.stream().forEach(vehicle -> ...);
+ * }
+ * </pre>
+ *
+ * @author jwjoubert
+ */
+public class DigicoreVehiclesIterator implements Iterator<DigicoreVehicle>, Closeable {
+	private final static Logger LOG = Logger.getLogger(DigicoreVehiclesIterator.class);
+	private final static String DIGICORE_VEHICLES_V1 = "digicoreVehicles_v1.dtd";
+	private final static String DIGICORE_VEHICLES_V2 = "digicoreVehicles_v2.dtd";
+	private final static Pattern SYSTEM_ID = Pattern.compile("[\"']([^\"']*)[\"']\\s*>?\\s*$");
+
+	private final static String VEHICLES = "digicoreVehicles";
+	private final static String VEHICLE = "digicoreVehicle";
+	private final static String CHAIN = "chain";
+	private final static String ACTIVITY = "activity";
+	private final static String TRACE = "trace";
+	private final static String POSITION = "position";
+
+	/* Attributes. */
+	private final static String ATTR_CRS = "crs";
+	private final static String ATTR_DESCR = "desc";
+	private final static String ATTR_ID = "id";
+	private final static String ATTR_TIMEZONE = "timezone";
+	private final static String ATTR_LOCALE = "locale";
+	private final static String ATTR_X = "x";
+	private final static String ATTR_Y = "y";
+	private final static String ATTR_TYPE = "type";
+	private final static String ATTR_STARTTIME = "start";
+	private final static String ATTR_ENDTIME = "end";
+	private final static String ATTR_ACTIVITYTYPE = "type";
+	private final static String ATTR_FACILITY = "facility";
+	private final static String ATTR_LINK = "link";
+	private final static String ATTR_POS_TIME = "time";
+	private final static String ATTR_POS_X = "x";
+	private final static String ATTR_POS_Y = "y";
+	private final static String ATTR_POS_Z = "z";
+
+	private final String filename;
+	private final InputStream stream;
+	private final XMLStreamReader reader;
+	private String doctype = null;
+	private String crs = null;
+	private String description = null;
+	private final ObjectAttributes vehicleAttributes = new ObjectAttributes();
+
+	private TimeZone timeZone;
+	private Locale locale;
+	private final DigicoreTimestampParser timestampParser = new DigicoreTimestampParser();
+	private DigicoreVehicle next = null;
+	private boolean finished = false;
+	private final Counter counter = new Counter("  vehicles # ");
+
+
+	/**
+	 * Opens the file, and reads up to the first vehicle.
+	 *
+	 * @throws IllegalArgumentException if the file is neither a v1 nor a v2
+	 * 		   vehicles file.
+	 */
+	public DigicoreVehiclesIterator(String filename) {
+		this.filename = filename;
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+		this.stream = BlockGzip.getInputStream(filename);
+		boolean opened = false;
+		try {
+			this.reader = factory.createXMLStreamReader(this.stream);
+			readHeader();
+			opened = true;
+		} catch (XMLStreamException e) {
+			throw new RuntimeException("Cannot read the vehicles from " + filename, e);
+		} finally {
+			if(!opened){
+				closeQuietly();
+			}
+		}
+	}
+
+
+	/**
+	 * Reads the document type and the root element's attributes.
+	 */
+	private void readHeader() throws XMLStreamException {
+		while(reader.hasNext()){
+			int event = reader.next();
+			if(event == XMLStreamConstants.DTD){
+				Matcher matcher = SYSTEM_ID.matcher(reader.getText());
+				if(matcher.find()){
+					String systemId = matcher.group(1);
+					doctype = systemId.substring(systemId.lastIndexOf('/') + 1);
+				}
+			} else if(event == XMLStreamConstants.START_ELEMENT){
+				if(!VEHICLES.equals(reader.getLocalName())){
+					throw new RuntimeException(this + "[tag=" + reader.getLocalName() + " not known or not supported]");
+				}
+				if(!DIGICORE_VEHICLES_V1.equals(doctype) && !DIGICORE_VEHICLES_V2.equals(doctype)){
+					throw new IllegalArgumentException("Doctype \"" + doctype + "\" not known.");
+				}
+				crs = reader.getAttributeValue(null, ATTR_CRS);
+				description = reader.getAttributeValue(null, ATTR_DESCR);
+				LOG.info("Iterating over the vehicles of a " + doctype + " file.");
+				return;
+			}
+		}
+		throw new RuntimeException("No vehicles in " + filename);
+	}
+
+
+	public String getCoordinateReferenceSystem(){
+		return this.crs;
+	}
+
+
+	public String getDescription(){
+		return this.description;
+	}
+
+
+	/**
+	 * @return the document type, either <code>digicoreVehicles_v1.dtd</code>
+	 * 		   or <code>digicoreVehicles_v2.dtd</code>.
+	 */
+	public String getDoctype(){
+		return this.doctype;
+	}
+
+
+	/**
+	 * The attributes that {@link DigicoreVehicles#getVehicleAttributes()}
+	 * keeps for the collection as a whole. Neither of the file formats stores
+	 * them, so they are empty unless the caller reads them from elsewhere.
+	 * They are kept here, rather than with the vehicles, so that they remain
+	 * available while the vehicles themselves are discarded.
+	 */
+	public ObjectAttributes getVehicleAttributes(){
+		return this.vehicleAttributes;
+	}
+
+
+	@Override
+	public boolean hasNext() {
+		if(next == null && !finished){
+			try {
+				next = readVehicle();
+			} catch (XMLStreamException e) {
+				throw new RuntimeException("Cannot read the vehicles from " + filename, e);
+			}
+		}
+		return next != null;
+	}
+
+
+	@Override
+	public DigicoreVehicle next() {
+		if(!hasNext()){
+			throw new NoSuchElementException();
+		}
+		DigicoreVehicle vehicle = next;
+		next = null;
+		return vehicle;
+	}
+
+
+	/**
+	 * @return the vehicles that remain, in the order of the file. Closing the
+	 * 		   stream closes the iterator.
+	 */
+	public Stream<DigicoreVehicle> stream(){
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+				Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(this::closeQuietly);
+	}
+
+
+	@Override
+	public void close() throws IOException {
+		finished = true;
+		next = null;
+		try {
+			if(reader != null){
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException("Cannot close " + filename, e);
+		} finally {
+			stream.close();
+		}
+	}
+
+
+	private void closeQuietly(){
+		try {
+			close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+
+	/**
+	 * @return the next vehicle, or <code>null</code> once the vehicles have
+	 * 		   all been read.
+	 */
+	private DigicoreVehicle readVehicle() throws XMLStreamException {
+		DigicoreVehicle vehicle = null;
+		DigicoreChain chain = null;
+		DigicoreTrace trace = null;
+		while(reader.hasNext()){
+			int event = reader.next();
+			if(event == XMLStreamConstants.START_ELEMENT){
+				String name = reader.getLocalName();
+				if(VEHICLE.equals(name)){
+					vehicle = startVehicle();
+				} else if(CHAIN.equals(name)){
+					chain = new DigicoreChain();
+				} else if(ACTIVITY.equals(name)){
+					chain.add(startActivity());
+				} else if(TRACE.equals(name)){
+					trace = new DigicoreTrace(crs);
+				} else if(POSITION.equals(name)){
+					startPosition(trace);
+				} else {
+					throw new RuntimeException(this + "[tag=" + name + " not known or not supported]");
+				}
+			} else if(event == XMLStreamConstants.END_ELEMENT){
+				String name = reader.getLocalName();
+				if(VEHICLE.equals(name)){
+					counter.incCounter();
+					return vehicle;
+				} else if(CHAIN.equals(name)){
+					vehicle.getChains().add(chain);
+					chain = null;
+				} else if(TRACE.equals(name)){
+					trace.trimToSize();
+					chain.add(trace);
+					trace = null;
+				} else if(VEHICLES.equals(name)){
+					counter.printCounter();
+					LOG.info("Done iterating over the vehicles file.");
+				}
+			}
+		}
+		finished = true;
+		return null;
+	}
+
+
+	private DigicoreVehicle startVehicle(){
+		DigicoreVehicle dv = new DigicoreVehicle(Id.create(reader.getAttributeValue(null, ATTR_ID), Vehicle.class));
+		dv.setType(reader.getAttributeValue(null, ATTR_TYPE));
+		String tz = reader.getAttributeValue(null, ATTR_TIMEZONE);
+		String l = reader.getAttributeValue(null, ATTR_LOCALE);
+		if(tz != null){
+			timeZone = TimeZone.getTimeZone(tz);
+		}
+		if(l != null){
+			locale = new Locale(l);
+		}
+		return dv;
+	}
+
+
+	private DigicoreActivity startActivity(){
+		String x = reader.getAttributeValue(null, ATTR_X);
+		String y = reader.getAttributeValue(null, ATTR_Y);
+		String type = reader.getAttributeValue(null, ATTR_ACTIVITYTYPE);
+		String facility = reader.getAttributeValue(null, ATTR_FACILITY);
+		String link = reader.getAttributeValue(null, ATTR_LINK);
+
+		DigicoreActivity activity = new DigicoreActivity(type, timeZone, locale);
+		activity.setCoord(new Coord(Double.parseDouble(x), Double.parseDouble(y)));
+		activity.setStartTime(parseDate(reader.getAttributeValue(null, ATTR_STARTTIME)));
+		activity.setEndTime(parseDate(reader.getAttributeValue(null, ATTR_ENDTIME)));
+		activity.setType(type);
+		if(facility != null){
+			activity.setFacilityId(Id.create(facility, ActivityFacility.class));
+		}
+		if(link != null){
+			activity.setLinkId(Id.createLinkId(link));
+		}
+		return activity;
+	}
+
+
+	private void startPosition(DigicoreTrace trace){
+		double time = parseDate(reader.getAttributeValue(null, ATTR_POS_TIME));
+		double x = Double.parseDouble(reader.getAttributeValue(null, ATTR_POS_X));
+		double y = Double.parseDouble(reader.getAttributeValue(null, ATTR_POS_Y));
+
+		String z = reader.getAttributeValue(null, ATTR_POS_Z);
+		if(z == null){
+			trace.addPosition((long) time, x, y);
+		} else{
+			trace.addPosition((long) time, x, y, Double.parseDouble(z));
+		}
+	}
+
+
+	private double parseDate(String string){
+		return timestampParser.parse(string, timeZone);
+	}
+
+}
@@ -21,9 +21,11 @@
 package org.matsim.up.freight.io;
 
 import java.util.Stack;
+import java.util.function.Consumer;
 
 import org.apache.log4j.Logger;
 import org.matsim.core.utils.io.MatsimXmlParser;
+import org.matsim.up.freight.containers.DigicoreVehicle;
 import org.matsim.up.freight.containers.DigicoreVehicles;
 import org.xml.sax.Attributes;
 
@@ -34,6 +36,7 @@ public class DigicoreVehiclesReader extends MatsimXmlParser {
 	private final static Logger LOG = Logger.getLogger(DigicoreVehiclesReader.class);
 	private MatsimXmlParser delegate = null;
 	private DigicoreVehicles vehicles;
+	private Consumer<DigicoreVehicle> vehicleHandler = null;
 
 	
 	/**
@@ -44,6 +47,18 @@ public class DigicoreVehiclesReader extends MatsimXmlParser {
 	}
 	
 	
+	/**
+	 * Creates a new reader that hands each vehicle, as soon as it has been
+	 * read, to the given handler rather than adding it to the container. Only
+	 * a single vehicle is therefore kept in memory at a time. The container
+	 * still receives the description and coordinate reference system.
+	 */
+	public DigicoreVehiclesReader(DigicoreVehicles vehicles, Consumer<DigicoreVehicle> vehicleHandler) {
+		this.vehicles = vehicles;
+		this.vehicleHandler = vehicleHandler;
+	}
+	
+	
 	@Override
 	public void startTag(String name, Attributes atts, Stack<String> context) {
 		this.delegate.startTag(name, atts, context);
@@ -61,10 +76,14 @@ public class DigicoreVehiclesReader extends MatsimXmlParser {
 		super.setDoctype(doctype);
 		// Currently the only digicoreVehicles-type is v1
 		if (DIGICORE_VEHICLES_V1.equals(doctype)) {
-			this.delegate = new DigicoreVehiclesReader_v1(this.vehicles);
+			this.delegate = this.vehicleHandler == null ?
+					new DigicoreVehiclesReader_v1(this.vehicles) :
+					new DigicoreVehiclesReader_v1(this.vehicles, this.vehicleHandler);
 			LOG.info("Using digicoreVehicle_v1 reader.");
 		} else if(DIGICORE_VEHICLES_V2.equals(doctype)) {
-			this.delegate = new DigicoreVehiclesReader_v2(this.vehicles);
+			this.delegate = this.vehicleHandler == null ?
+					new DigicoreVehiclesReader_v2(this.vehicles) :
+					new DigicoreVehiclesReader_v2(this.vehicles, this.vehicleHandler);
 			LOG.info("Using digicoreVehicle_v2 reader.");
 		} else {
 			throw new IllegalArgumentException("Doctype \"" + doctype + "\" not known.");
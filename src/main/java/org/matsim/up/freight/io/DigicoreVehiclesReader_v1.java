@@ -20,10 +20,10 @@
 
 package org.matsim.up.freight.io;
 
-import java.util.GregorianCalendar;
 import java.util.Locale;
 import java.util.Stack;
 import java.util.TimeZone;
+import java.util.function.Consumer;
 
 import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
@@ -60,12 +60,25 @@ public class DigicoreVehiclesReader_v1 extends MatsimXmlParser {
 	private DigicoreActivity currentActivity = null;
 	private TimeZone timeZone;
 	private Locale locale;
+	private final DigicoreTimestampParser timestampParser = new DigicoreTimestampParser();
 	private DigicoreVehicle currentVehicle;
 	private DigicoreVehicles vehicles;
+	private final Consumer<DigicoreVehicle> vehicleHandler;
 	
 	
 	public DigicoreVehiclesReader_v1(DigicoreVehicles vehicles) {
+		this(vehicles, vehicle -> vehicles.getVehicles().put(vehicle.getId(), vehicle));
+	}
+	
+	
+	/**
+	 * Hands each vehicle to the given handler, rather than adding it to the
+	 * container. The container only receives the description and coordinate
+	 * reference system.
+	 */
+	public DigicoreVehiclesReader_v1(DigicoreVehicles vehicles, Consumer<DigicoreVehicle> vehicleHandler) {
 		this.vehicles = vehicles;
+		this.vehicleHandler = vehicleHandler;
 	}
 	
 	
@@ -87,7 +100,7 @@ public class DigicoreVehiclesReader_v1 extends MatsimXmlParser {
 	@Override
 	public void endTag(String name, String content, Stack<String> context) {
 		if(VEHICLE.equals(name)){
-			vehicles.getVehicles().put(currentVehicle.getId(), currentVehicle);
+			vehicleHandler.accept(currentVehicle);
 			currentVehicle = null;
 		} else if(CHAIN.equals(name)){
 			currentVehicle.getChains().add(currentChain);
@@ -144,19 +157,7 @@ public class DigicoreVehiclesReader_v1 extends MatsimXmlParser {
 	}
 	
 	private double parseDate(String string){
-		GregorianCalendar g = new GregorianCalendar();
-		g.setTimeZone(timeZone);
-		
-		int year = Integer.parseInt(string.substring(0,4));
-		int month = Integer.parseInt(string.substring(4, 6)) - 1;
-		int day = Integer.parseInt(string.substring(6, 8));
-		int hour = Integer.parseInt(string.substring(9, 11));
-		int min = Integer.parseInt(string.substring(12, 14));
-		int sec = Integer.parseInt(string.substring(15, 17));
-		
-		g.set(year, month, day, hour, min, sec);
-		
-		return (g.getTimeInMillis() / 1000);		
+		return timestampParser.parse(string, timeZone);
 	}
 	
 	
@@ -20,10 +20,10 @@
 
 package org.matsim.up.freight.io;
 
-import java.util.GregorianCalendar;
 import java.util.Locale;
 import java.util.Stack;
 import java.util.TimeZone;
+import java.util.function.Consumer;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Coord;
@@ -64,20 +64,34 @@ public class DigicoreVehiclesReader_v2 extends MatsimXmlParser {
 	private final static String ATTR_POS_TIME = "time";
 	private final static String ATTR_POS_X = "x";
 	private final static String ATTR_POS_Y = "y";
+	private final static String ATTR_POS_Z = "z";
 	
 	private DigicoreVehicles vehicles;
+	private final Consumer<DigicoreVehicle> vehicleHandler;
 	private DigicoreVehicle currentVehicle;
 	private DigicoreChain currentChain = null;
 	private DigicoreActivity currentActivity = null;
 	private DigicoreTrace currentTrace = null;
 	private TimeZone timeZone;
 	private Locale locale;
+	private final DigicoreTimestampParser timestampParser = new DigicoreTimestampParser();
 	
 	private Counter counter = new Counter("  vehicles # ");
 	
 	
 	public DigicoreVehiclesReader_v2(DigicoreVehicles vehicles) {
+		this(vehicles, vehicle -> vehicles.getVehicles().put(vehicle.getId(), vehicle));
+	}
+	
+	
+	/**
+	 * Hands each vehicle to the given handler, rather than adding it to the
+	 * container. The container only receives the description and coordinate
+	 * reference system.
+	 */
+	public DigicoreVehiclesReader_v2(DigicoreVehicles vehicles, Consumer<DigicoreVehicle> vehicleHandler) {
 		this.vehicles = vehicles;
+		this.vehicleHandler = vehicleHandler;
 	}
 	
 	
@@ -103,7 +117,7 @@ public class DigicoreVehiclesReader_v2 extends MatsimXmlParser {
 	@Override
 	public void endTag(String name, String content, Stack<String> context) {
 		if(VEHICLE.equals(name)){
-			vehicles.getVehicles().put(currentVehicle.getId(), currentVehicle);
+			vehicleHandler.accept(currentVehicle);
 			counter.incCounter();
 			currentVehicle = null;
 		} else if(CHAIN.equals(name)){
@@ -113,6 +127,7 @@ public class DigicoreVehiclesReader_v2 extends MatsimXmlParser {
 			currentChain.add(currentActivity);
 			currentActivity = null;
 		} else if(TRACE.equals(name)){
+			currentTrace.trimToSize();
 			currentChain.add(currentTrace);
 			currentTrace = null;
 		} else if(VEHICLES.equalsIgnoreCase(name)){
@@ -175,24 +190,16 @@ public class DigicoreVehiclesReader_v2 extends MatsimXmlParser {
 		double x = Double.parseDouble(atts.getValue(ATTR_POS_X));
 		double y = Double.parseDouble(atts.getValue(ATTR_POS_Y));
 		
-		DigicorePosition pos = new DigicorePosition((long) time, x, y);
-		currentTrace.add(pos);
+		String z = atts.getValue(ATTR_POS_Z);
+		if(z == null){
+			currentTrace.addPosition((long) time, x, y);
+		} else{
+			currentTrace.addPosition((long) time, x, y, Double.parseDouble(z));
+		}
 	}
 	
 	private double parseDate(String string){
-		GregorianCalendar g = new GregorianCalendar();
-		g.setTimeZone(timeZone);
-		
-		int year = Integer.parseInt(string.substring(0,4));
-		int month = Integer.parseInt(string.substring(4, 6)) - 1;
-		int day = Integer.parseInt(string.substring(6, 8));
-		int hour = Integer.parseInt(string.substring(9, 11));
-		int min = Integer.parseInt(string.substring(12, 14));
-		int sec = Integer.parseInt(string.substring(15, 17));
-		
-		g.set(year, month, day, hour, min, sec);
-		
-		return (g.getTimeInMillis() / 1000);		
+		return timestampParser.parse(string, timeZone);
 	}
 	
 	
@@ -20,6 +20,7 @@
 
 package org.matsim.up.freight.io;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.util.List;
 
@@ -31,21 +32,34 @@ import org.matsim.core.utils.misc.Counter;
 import org.matsim.up.freight.containers.DigicoreActivity;
 import org.matsim.up.freight.containers.DigicoreChain;
 import org.matsim.up.freight.containers.DigicoreChainElement;
-import org.matsim.up.freight.containers.DigicorePosition;
 import org.matsim.up.freight.containers.DigicoreTrace;
 import org.matsim.up.freight.containers.DigicoreVehicle;
 import org.matsim.up.freight.containers.DigicoreVehicles;
+import org.matsim.up.freight.utils.BlockGzip;
 
 
 public class DigicoreVehiclesWriter extends MatsimXmlWriter implements MatsimWriter{
 	private final Logger log = Logger.getLogger(DigicoreVehiclesWriter.class);
 	private Counter counter = new Counter("  vehicle # ");
 	private DigicoreVehicles vehicles;
+	private DigicoreVehiclesWriterHandler handler = null;
+	private final int compressionThreads;
 
 		
 	public DigicoreVehiclesWriter(DigicoreVehicles vehicles){
+		this(vehicles, Runtime.getRuntime().availableProcessors());
+	}
+	
+	
+	/**
+	 * @param compressionThreads the number of threads that compress a
+	 * 		  <code>.gz</code> file. Writers that run alongside other work, such
+	 * 		  as the extraction of a month, should stay within its thread budget.
+	 */
+	public DigicoreVehiclesWriter(DigicoreVehicles vehicles, int compressionThreads){
 		super();
 		this.vehicles = vehicles;
+		this.compressionThreads = compressionThreads;
 	}
 
 	
@@ -61,7 +75,7 @@ public class DigicoreVehiclesWriter extends MatsimXmlWriter implements MatsimWri
 		DigicoreVehiclesWriterHandler handler = new DigicoreVehiclesWriterHandlerImpl_v1();
 		
 		try {
-			openFile(filename);
+			this.writer = BlockGzip.getBufferedWriter(filename, this.compressionThreads);
 			writeXmlHead();
 			writeDoctype("digicoreVehicles", dtd);
 			
@@ -89,57 +103,103 @@ public class DigicoreVehiclesWriter extends MatsimXmlWriter implements MatsimWri
 	}
 	
 	public void writeV2(final String filename){
+		open(filename);
+		for(DigicoreVehicle vehicle : this.vehicles.getVehicles().values()){
+			writeVehicle(vehicle);
+		}
+		close();
+	}
+	
+	
+	/**
+	 * Opens the file and writes the container's header, using only the
+	 * coordinate reference system and description of the container. Vehicles
+	 * can then be written one at a time with {@link #writeVehicle(DigicoreVehicle)},
+	 * without them all having to be in the container (or in memory), before
+	 * the file is completed with {@link #close()}. Only version 2 files are
+	 * written this way.
+	 * 
+	 * @param filename of the vehicles container file.
+	 */
+	public void open(final String filename){
+		if(this.handler != null){
+			throw new IllegalStateException("The writer is already open.");
+		}
 		String dtd = "http://matsim.org/files/dtd/digicoreVehicles_v2.dtd";
-		DigicoreVehiclesWriterHandler handler = new DigicoreVehiclesWriterHandlerImpl_v2();
-		
+		this.handler = new DigicoreVehiclesWriterHandlerImpl_v2();
 		try {
-			openFile(filename);
+			this.writer = BlockGzip.getBufferedWriter(filename, this.compressionThreads);
 			writeXmlHead();
 			writeDoctype("digicoreVehicles", dtd);
-			
 			handler.startVehicles(this.vehicles, this.writer);
-			for(DigicoreVehicle vehicle : this.vehicles.getVehicles().values()){
-				handler.startVehicle(vehicle, this.writer);
-				for(DigicoreChain chain : vehicle.getChains()){
-					handler.startChain(this.writer);
-					
-					for(DigicoreChainElement element : chain){
-						if(element instanceof DigicoreActivity){
-							DigicoreActivity activity = (DigicoreActivity)element;
-							handler.startActivity(activity, this.writer);
-							handler.endActivity(this.writer);
-						} else if(element instanceof DigicoreTrace){
-							DigicoreTrace trace = (DigicoreTrace)element;
-							
-							/* Check that trace CRS is consistent with that of
-							 * the overall vehicles container. */
-							if(!trace.getCrs().equalsIgnoreCase(this.vehicles.getCoordinateReferenceSystem())){
-								throw new IllegalStateException("The trace has a coordinate reference system that is different from the overall vehicles container.");
-							}
-							
-							handler.startTrace(trace, this.writer);
-							for(DigicorePosition pos : trace){
-								handler.startPosition(pos, this.writer);
-								handler.endPosition(this.writer);
-							}
-							handler.endTrace(this.writer);
-						} else{
-							throw new RuntimeException("Unknown chain element type: " + element.getClass().toString());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	
+	/**
+	 * Writes a single vehicle to a file opened with {@link #open(String)}.
+	 */
+	public void writeVehicle(final DigicoreVehicle vehicle){
+		if(this.handler == null){
+			throw new IllegalStateException("The writer must first be opened.");
+		}
+		try {
+			handler.startVehicle(vehicle, this.writer);
+			for(DigicoreChain chain : vehicle.getChains()){
+				handler.startChain(this.writer);
+				
+				for(DigicoreChainElement element : chain){
+					if(element instanceof DigicoreActivity){
+						DigicoreActivity activity = (DigicoreActivity)element;
+						handler.startActivity(activity, this.writer);
+						handler.endActivity(this.writer);
+					} else if(element instanceof DigicoreTrace){
+						DigicoreTrace trace = (DigicoreTrace)element;
+						
+						/* Check that trace CRS is consistent with that of
+						 * the overall vehicles container. */
+						if(!trace.getCrs().equalsIgnoreCase(this.vehicles.getCoordinateReferenceSystem())){
+							throw new IllegalStateException("The trace has a coordinate reference system that is different from the overall vehicles container.");
+						}
+						
+						handler.startTrace(trace, this.writer);
+						for(int i = 0; i < trace.size(); i++){
+							handler.startPosition(trace, i, this.writer);
+							handler.endPosition(this.writer);
 						}
+						handler.endTrace(this.writer);
+					} else{
+						throw new RuntimeException("Unknown chain element type: " + element.getClass().toString());
 					}
-					
-					handler.endChain(this.writer);
 				}
-				handler.endVehicle(this.writer);
-				counter.incCounter();
+				
+				handler.endChain(this.writer);
 			}
+			handler.endVehicle(this.writer);
+			counter.incCounter();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	
+	/**
+	 * Completes and closes a file opened with {@link #open(String)}. The file
+	 * is closed even if it cannot be completed.
+	 */
+	public void close(){
+		if(this.handler == null){
+			throw new IllegalStateException("The writer must first be opened.");
+		}
+		try (BufferedWriter writer = this.writer) {
 			counter.printCounter();
-			handler.endVehicles(this.writer);
-			this.writer.close();
+			handler.endVehicles(writer);
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
+		} finally {
+			this.handler = null;
 		}
-		
 	}
 }
-
@@ -48,8 +48,8 @@ public interface DigicoreVehiclesWriterHandler {
 	public void startTrace(final DigicoreTrace trace, final BufferedWriter out) throws IOException;
 	public void endTrace(final BufferedWriter out) throws IOException;
 	
-	/* <position ... /> */
-	public void startPosition(final DigicorePosition pos, final BufferedWriter out) throws IOException;
+	/* <position ... />, of the trace's position at the given index. */
+	public void startPosition(final DigicoreTrace trace, final int index, final BufferedWriter out) throws IOException;
 	public void endPosition(final BufferedWriter out) throws IOException;
 	
 	/*TODO <route ... > */
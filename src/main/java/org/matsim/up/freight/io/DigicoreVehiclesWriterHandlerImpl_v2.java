@@ -22,80 +22,87 @@ package org.matsim.up.freight.io;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.util.Calendar;
-import java.util.GregorianCalendar;
-import java.util.Locale;
+import java.util.TimeZone;
 
 import org.matsim.up.freight.containers.*;
 
 
+/**
+ * Builds the file in a {@link DigicoreXmlFormatter}, which is only written
+ * once it is large enough, and at the end of each vehicle.
+ */
 public class DigicoreVehiclesWriterHandlerImpl_v2 implements
 		DigicoreVehiclesWriterHandler {
+	private final static TimeZone POSITION_TIME_ZONE = TimeZone.getTimeZone("GMT+2");
+	private final DigicoreXmlFormatter formatter = new DigicoreXmlFormatter();
 
 
 	@Override
 	public void startVehicles(DigicoreVehicles vehicles, BufferedWriter out) throws IOException {
-		out.write("\n<digicoreVehicles");
-		out.write(" crs=\"" + vehicles.getCoordinateReferenceSystem() + "\"");
+		formatter.append("\n<digicoreVehicles");
+		formatter.append(" crs=\"").append(String.valueOf(vehicles.getCoordinateReferenceSystem())).append('"');
 		if(vehicles.getDescription() != null){
-			out.write(" desc=\"" + vehicles.getDescription() + "\"");
+			formatter.append(" desc=\"").append(vehicles.getDescription()).append('"');
 		}
-		out.write(">\n");
+		formatter.append(">\n");
+		formatter.writeTo(out);
 	}
 
 	@Override
 	public void endVehicles(BufferedWriter out) throws IOException {
-		out.write("</digicoreVehicles>");
+		formatter.append("</digicoreVehicles>");
+		formatter.writeTo(out);
 	}
 
 
 	@Override
 	public void startVehicle(DigicoreVehicle vehicle, BufferedWriter out)
 			throws IOException {
-		out.write("\n\t<digicoreVehicle");
-		out.write(" id=\"" + vehicle.getId().toString() + "\"");
-		out.write(" type=\"" + vehicle.getType().getId().toString() + "\"");
-		out.write(" timezone=\"GMT+2\" locale=\"en\"");
-		out.write(">\n");
+		formatter.append("\n\t<digicoreVehicle");
+		formatter.append(" id=\"").append(vehicle.getId().toString()).append('"');
+		formatter.append(" type=\"").append(vehicle.getType().getId().toString()).append('"');
+		formatter.append(" timezone=\"GMT+2\" locale=\"en\"");
+		formatter.append(">\n");
 	}
 
 	@Override
 	public void endVehicle(BufferedWriter out) throws IOException {
-		out.write("\t</digicoreVehicle>\n");
+		formatter.append("\t</digicoreVehicle>\n");
+		formatter.writeTo(out);
 	}
 
 	@Override
 	public void startChain(BufferedWriter out)
 			throws IOException {
-		out.write("\t\t<chain>\n");
+		formatter.append("\t\t<chain>\n");
 	}
 
 	@Override
 	public void endChain(BufferedWriter out) throws IOException {
-		out.write("\t\t</chain>\n");
+		formatter.append("\t\t</chain>\n");
 	}
 
 	@Override
 	public void startActivity(DigicoreActivity activity, BufferedWriter out)
 			throws IOException {
-		out.write("\t\t\t<activity");
-		out.write(" type=\"" + activity.getType() + "\"\n");
-		out.write("\t\t\t\tstart=\"" + getDateString(activity.getStartTimeGregorianCalendar()) + "\"");
-		out.write(" end=\"" + getDateString(activity.getEndTimeGregorianCalendar()) + "\"\n");
-		out.write("\t\t\t\tx=\"" + String.format(Locale.US, "%.2f", activity.getCoord().getX()) + "\"");
-		out.write(" y=\"" + String.format(Locale.US, "%.2f", activity.getCoord().getY()) + "\"");
+		formatter.append("\t\t\t<activity");
+		formatter.append(" type=\"").append(String.valueOf(activity.getType())).append("\"\n");
+		formatter.append("\t\t\t\tstart=\"").appendDate(activity.getStartTime().seconds(), activity).append('"');
+		formatter.append(" end=\"").appendDate(activity.getEndTime().seconds(), activity).append("\"\n");
+		formatter.append("\t\t\t\tx=\"").appendFixed(activity.getCoord().getX(), 2).append('"');
+		formatter.append(" y=\"").appendFixed(activity.getCoord().getY(), 2).append('"');
 		if(activity.getFacilityId() != null){
-			out.write(" facility=\"" + activity.getFacilityId().toString() + "\"");
+			formatter.append(" facility=\"").append(activity.getFacilityId().toString()).append('"');
 		}
 		if(activity.getLinkId() != null){
-			out.write(" link=\"" + activity.getLinkId().toString() + "\"");
+			formatter.append(" link=\"").append(activity.getLinkId().toString()).append('"');
 		}
 	}
 
 	@Override
 	public void endActivity(BufferedWriter out) throws IOException {
-		out.write("/>\n");
-		
+		formatter.append("/>\n");
+		formatter.flushIfFull(out);
 	}
 
 	@Override
@@ -105,45 +112,29 @@ public class DigicoreVehiclesWriterHandlerImpl_v2 implements
 	
 	@Override
 	public void startTrace(DigicoreTrace trace, BufferedWriter out) throws IOException {
-		out.write("\t\t\t<trace>\n");
+		formatter.append("\t\t\t<trace>\n");
 	}
 
 	@Override
 	public void endTrace(BufferedWriter out) throws IOException {
-		out.write("\t\t\t</trace>\n");
+		formatter.append("\t\t\t</trace>\n");
 	}
 
 	@Override
-	public void startPosition(DigicorePosition pos, BufferedWriter out) throws IOException {
-		out.write("\t\t\t\t<position");
-		out.write(" time=\"" + getDateString(pos.getTimeAsGregorianCalendar()) + "\"");
-		out.write(" x=\"" + String.format(Locale.US, "%.6f", pos.getCoord().getX()) + "\"");
-		out.write(" y=\"" + String.format(Locale.US, "%.6f", pos.getCoord().getY()) + "\"");
-		if(pos.getCoord().hasZ()){
-			out.write(" z=\"" + String.format(Locale.US, "%.1f", pos.getCoord().getZ()) + "\"");
+	public void startPosition(DigicoreTrace trace, int index, BufferedWriter out) throws IOException {
+		formatter.append("\t\t\t\t<position");
+		formatter.append(" time=\"").appendDate(trace.getTime(index) * 1000, POSITION_TIME_ZONE).append('"');
+		formatter.append(" x=\"").appendFixed(trace.getX(index), 6).append('"');
+		formatter.append(" y=\"").appendFixed(trace.getY(index), 6).append('"');
+		if(trace.hasZ(index)){
+			formatter.append(" z=\"").appendFixed(trace.getZ(index), 1).append('"');
 		}
 	}
 
 	@Override
 	public void endPosition(BufferedWriter out) throws IOException {
-		out.write(" />\n");
+		formatter.append(" />\n");
+		formatter.flushIfFull(out);
 	}
 
-	
-	private String getDateString(GregorianCalendar cal){
-		String s = "";
-		int year = cal.get(Calendar.YEAR);
-		int month = cal.get(Calendar.MONTH)+1; // Seems to be a java thing that month is started at 0... 
-		int day = cal.get(Calendar.DAY_OF_MONTH);
-		int hour = cal.get(Calendar.HOUR_OF_DAY);
-		int minute = cal.get(Calendar.MINUTE);
-		int second = cal.get(Calendar.SECOND);
-		
-		s = String.format(Locale.US, "%04d%02d%02d %02d:%02d:%02d",
-				year, month, day, hour, minute, second);
-		
-		return s;
-	}
-	
 }
-
@@ -0,0 +1,255 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DigicoreXmlFormatter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.io;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.matsim.up.freight.containers.DigicoreActivity;
+
+/**
+ * Builds the lines of the vehicle files in a large character buffer, which
+ * is then written in one go. The writers used to format every coordinate
+ * with <code>String.format("%.2f", ...)</code>, and every timestamp through
+ * a new {@link GregorianCalendar} and <code>String.format</code>. Here the
+ * coordinates are written as fixed-point numbers, and the date of a
+ * timestamp is kept for as long as the following timestamps fall on the
+ * same day. The output is identical: whenever a coordinate is too close to
+ * a rounding tie to be sure, or too large, it is still formatted with
+ * {@link String#format(Locale, String, Object...)}, and days on which the
+ * zone's offset changes are left to the calendar.
+ * <p>
+ * A formatter is <b>not</b> thread safe: use one per handler.
+ *
+ * @author jwjoubert
+ */
+final class DigicoreXmlFormatter {
+	private final static int FLUSH_SIZE = 1 << 16;
+	private final static long MILLISECONDS_PER_DAY = 24L*60*60*1000;
+	private final static double[] POWERS = {1.0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9};
+	/* Beyond this the scaled value is not accurate enough to round. */
+	private final static double MAXIMUM_SCALED = 1e12;
+	private final static double TIE_MARGIN = 1e-3;
+
+	private char[] buffer = new char[2 * FLUSH_SIZE];
+	private int length = 0;
+
+	/* The day of the last timestamp. */
+	private TimeZone dayZone = null;
+	private long dayStart = 0;
+	private long dayEnd = 0;
+	private final char[] dayPrefix = new char[9];
+	private final Map<ZoneId, TimeZone> timeZones = new HashMap<>();
+
+
+	DigicoreXmlFormatter append(String string){
+		int n = string.length();
+		ensureCapacity(n);
+		string.getChars(0, n, buffer, length);
+		length += n;
+		return this;
+	}
+
+
+	DigicoreXmlFormatter append(char c){
+		ensureCapacity(1);
+		buffer[length++] = c;
+		return this;
+	}
+
+
+	/**
+	 * Appends the value exactly as <code>String.format(Locale.US, "%.nf",
+	 * value)</code> would, where n is the number of decimals.
+	 */
+	DigicoreXmlFormatter appendFixed(double value, int decimals){
+		double scaled = Math.abs(value) * POWERS[decimals];
+		if(!(scaled < MAXIMUM_SCALED)){
+			return append(String.format(Locale.US, "%." + decimals + "f", value));
+		}
+		long whole = (long) scaled;
+		double fraction = scaled - whole;
+		if(Math.abs(fraction - 0.5) < TIE_MARGIN){
+			return append(String.format(Locale.US, "%." + decimals + "f", value));
+		}
+		long rounded = fraction > 0.5 ? whole + 1 : whole;
+
+		/* Also "-0.00", as the formatter does. */
+		if(Double.doubleToRawLongBits(value) < 0){
+			append('-');
+		}
+		long power = (long) POWERS[decimals];
+		appendLong(rounded / power);
+		if(decimals > 0){
+			append('.');
+			appendDigits(rounded % power, decimals);
+		}
+		return this;
+	}
+
+
+	/**
+	 * Appends the timestamp as <code>yyyyMMdd HH:mm:ss</code> in the time
+	 * zone, the same as the calendar fields.
+	 *
+	 * @param timeZone is compared by reference, so pass the same instance
+	 * 		  for timestamps in the same zone.
+	 */
+	DigicoreXmlFormatter appendDate(long milliseconds, TimeZone timeZone){
+		if(timeZone != dayZone || milliseconds < dayStart || milliseconds >= dayEnd){
+			if(!setDay(milliseconds, timeZone)){
+				return appendDateWithCalendar(milliseconds, timeZone);
+			}
+		}
+		ensureCapacity(17);
+		System.arraycopy(dayPrefix, 0, buffer, length, dayPrefix.length);
+		length += dayPrefix.length;
+		int second = (int) ((milliseconds - dayStart) / 1000);
+		appendDigits(second / 3600, 2);
+		append(':');
+		appendDigits((second / 60) % 60, 2);
+		append(':');
+		appendDigits(second % 60, 2);
+		return this;
+	}
+
+
+	/**
+	 * Appends the start or end time of the activity, in seconds, as the
+	 * activity's calendars give it.
+	 */
+	DigicoreXmlFormatter appendDate(double seconds, DigicoreActivity activity){
+		TimeZone timeZone = timeZones.get(activity.getZone());
+		if(timeZone == null){
+			timeZone = activity.getStartTimeGregorianCalendar().getTimeZone();
+			timeZones.put(activity.getZone(), timeZone);
+		}
+		return appendDate(Math.round(seconds * 1000.0), timeZone);
+	}
+
+
+	/**
+	 * Keeps the day of the timestamp, unless the day does not start at
+	 * midnight, or does not have exactly 24 hours at a single offset. The
+	 * hour that is repeated when daylight saving ends is therefore also
+	 * left to the calendar.
+	 *
+	 * @return whether the day could be kept.
+	 */
+	private boolean setDay(long milliseconds, TimeZone timeZone){
+		dayZone = null;
+		GregorianCalendar calendar = new GregorianCalendar(timeZone, Locale.US);
+		calendar.setTimeInMillis(milliseconds);
+		calendar.set(Calendar.HOUR_OF_DAY, 0);
+		calendar.set(Calendar.MINUTE, 0);
+		calendar.set(Calendar.SECOND, 0);
+		calendar.set(Calendar.MILLISECOND, 0);
+		long start = calendar.getTimeInMillis();
+		long end = start + MILLISECONDS_PER_DAY;
+		int year = calendar.get(Calendar.YEAR);
+		int month = calendar.get(Calendar.MONTH) + 1;
+		int day = calendar.get(Calendar.DAY_OF_MONTH);
+		if(calendar.get(Calendar.HOUR_OF_DAY) != 0 || calendar.get(Calendar.MINUTE) != 0 || year > 9999 ||
+				milliseconds < start || milliseconds >= end ||
+				timeZone.getOffset(start) != timeZone.getOffset(end - 1)){
+			return false;
+		}
+
+		String prefix = String.format(Locale.US, "%04d%02d%02d ", year, month, day);
+		prefix.getChars(0, dayPrefix.length, dayPrefix, 0);
+		dayZone = timeZone;
+		dayStart = start;
+		dayEnd = end;
+		return true;
+	}
+
+
+	private DigicoreXmlFormatter appendDateWithCalendar(long milliseconds, TimeZone timeZone){
+		GregorianCalendar cal = new GregorianCalendar(timeZone, Locale.US);
+		cal.setTimeInMillis(milliseconds);
+		return append(String.format(Locale.US, "%04d%02d%02d %02d:%02d:%02d",
+				cal.get(Calendar.YEAR), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.DAY_OF_MONTH),
+				cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.MINUTE), cal.get(Calendar.SECOND)));
+	}
+
+
+	private void appendLong(long value){
+		if(value < 10){
+			append((char) ('0' + value));
+			return;
+		}
+		int digits = 1;
+		for(long v = value / 10; v > 0; v /= 10){
+			digits++;
+		}
+		appendDigits(value, digits);
+	}
+
+
+	/**
+	 * Appends the lowest digits of the (non-negative) value, with leading
+	 * zeros.
+	 */
+	private void appendDigits(long value, int digits){
+		ensureCapacity(digits);
+		for(int i = length + digits - 1; i >= length; i--){
+			buffer[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		length += digits;
+	}
+
+
+	private void ensureCapacity(int n){
+		if(length + n > buffer.length){
+			buffer = Arrays.copyOf(buffer, Math.max(2 * buffer.length, length + n));
+		}
+	}
+
+
+	/**
+	 * Writes the buffer once it is large enough to be worth it.
+	 */
+	void flushIfFull(Writer out) throws IOException {
+		if(length >= FLUSH_SIZE){
+			writeTo(out);
+		}
+	}
+
+
+	/**
+	 * Writes, and empties, the buffer.
+	 */
+	void writeTo(Writer out) throws IOException {
+		out.write(buffer, 0, length);
+		length = 0;
+	}
+
+}
@@ -0,0 +1,117 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BlockGzip.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import org.matsim.core.utils.io.IOUtils;
+
+/**
+ * Opens files like {@link IOUtils} does, but compresses <code>.gz</code>
+ * files with {@link BlockGzipOutputStream}, and reads block-gzipped files
+ * with {@link BlockGzipInputStream}, so that both use several threads. All
+ * other files, including normal gzip files, are left to {@link IOUtils}.
+ *
+ * @author jwjoubert
+ */
+public final class BlockGzip {
+	private static final String GZIP_SUFFIX = ".gz";
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int DEFAULT_NUMBER_OF_THREADS = Runtime.getRuntime().availableProcessors();
+
+	private BlockGzip() {
+		/* Hide constructor. */
+	}
+
+
+	/**
+	 * @return a UTF-8 writer, that block-gzips the file on as many threads as
+	 * there are processors if its name ends in <code>.gz</code>.
+	 */
+	public static BufferedWriter getBufferedWriter(String filename) {
+		return getBufferedWriter(filename, DEFAULT_NUMBER_OF_THREADS);
+	}
+
+
+	/**
+	 * As {@link #getBufferedWriter(String)}, but compresses on the given
+	 * number of threads. Callers that already write many files concurrently
+	 * should use a single thread, so that each file does not start its own
+	 * pool.
+	 */
+	public static BufferedWriter getBufferedWriter(String filename, int threads) {
+		if (!filename.endsWith(GZIP_SUFFIX)) {
+			return IOUtils.getBufferedWriter(filename);
+		}
+		try {
+			return new BufferedWriter(new OutputStreamWriter(
+					new BlockGzipOutputStream(new FileOutputStream(filename), threads), StandardCharsets.UTF_8), BUFFER_SIZE);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot write to " + filename, e);
+		}
+	}
+
+
+	/**
+	 * @return the (uncompressed) contents of the file, decompressed on as
+	 * many threads as there are processors if the file is block-gzipped.
+	 */
+	public static InputStream getInputStream(String filename) {
+		return getInputStream(filename, DEFAULT_NUMBER_OF_THREADS);
+	}
+
+
+	/**
+	 * As {@link #getInputStream(String)}, but decompresses a block-gzipped
+	 * file on the given number of threads.
+	 */
+	public static InputStream getInputStream(String filename, int threads) {
+		File file = new File(filename);
+		try {
+			if (filename.endsWith(GZIP_SUFFIX) && file.isFile() && BlockGzipIndex.isBlockGzipped(file)) {
+				return new BlockGzipInputStream(new FileInputStream(file), threads);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot read " + filename, e);
+		}
+		return IOUtils.getInputStream(IOUtils.resolveFileOrResource(filename));
+	}
+
+
+	/**
+	 * @return a UTF-8 reader of the file, see {@link #getInputStream(String)}.
+	 */
+	public static BufferedReader getBufferedReader(String filename) {
+		return new BufferedReader(new InputStreamReader(getInputStream(filename), StandardCharsets.UTF_8), BUFFER_SIZE);
+	}
+
+}
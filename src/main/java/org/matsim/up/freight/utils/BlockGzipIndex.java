@@ -0,0 +1,205 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BlockGzipIndex.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Index of the blocks of a <i>block-gzipped</i> (BGZF) file. Such a file is
+ * a concatenation of independent gzip members, each with a <code>BC</code>
+ * extra field holding the compressed size of the block. It is still a valid
+ * gzip file, but because every block can be decompressed on its own, the file
+ * can be read from any block boundary, e.g. by several threads at once.
+ * <p>
+ * Only the block headers and footers are read to build the index; no data is
+ * decompressed.
+ *
+ * @author jwjoubert
+ */
+public final class BlockGzipIndex {
+	private static final int GZIP_ID1 = 0x1f;
+	private static final int GZIP_ID2 = 0x8b;
+	private static final int GZIP_CM_DEFLATE = 8;
+	private static final int GZIP_FLG_FEXTRA = 4;
+	private static final int FIXED_HEADER_LENGTH = 12;
+	private static final int FOOTER_LENGTH = 8;
+
+	private final long[] compressedOffsets;
+	private final long[] uncompressedOffsets;
+	private final int numberOfBlocks;
+
+	private BlockGzipIndex(long[] compressedOffsets, long[] uncompressedOffsets, int numberOfBlocks) {
+		this.compressedOffsets = compressedOffsets;
+		this.uncompressedOffsets = uncompressedOffsets;
+		this.numberOfBlocks = numberOfBlocks;
+	}
+
+
+	/**
+	 * Checks, from the first block header only, whether the given file is
+	 * block-gzipped.
+	 */
+	public static boolean isBlockGzipped(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			return readBlockSize(channel, 0) > 0;
+		}
+	}
+
+
+	/**
+	 * Builds the index of the given file.
+	 *
+	 * @return the index, or <code>null</code> if the file is not
+	 * block-gzipped, in which case it can only be read sequentially.
+	 */
+	public static BlockGzipIndex read(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long length = channel.size();
+			long[] compressed = new long[1024];
+			long[] uncompressed = new long[1024];
+			int blocks = 0;
+
+			long position = 0;
+			long total = 0;
+			ByteBuffer footer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+			while (position < length) {
+				int blockSize = readBlockSize(channel, position);
+				if (blockSize < 0) {
+					if (blocks == 0) {
+						return null;
+					}
+					throw new IOException("Block " + blocks + " at byte " + position + " of " + file.getName() + " is not a valid BGZF block.");
+				}
+				if (position + blockSize > length) {
+					throw new IOException("Block " + blocks + " of " + file.getName() + " is truncated.");
+				}
+
+				footer.clear();
+				readFully(channel, footer, position + blockSize - 4);
+				long isize = Integer.toUnsignedLong(footer.getInt(0));
+
+				if (blocks + 1 >= compressed.length) {
+					compressed = Arrays.copyOf(compressed, compressed.length * 2);
+					uncompressed = Arrays.copyOf(uncompressed, uncompressed.length * 2);
+				}
+				compressed[blocks] = position;
+				uncompressed[blocks] = total;
+				blocks++;
+
+				position += blockSize;
+				total += isize;
+			}
+			compressed[blocks] = position;
+			uncompressed[blocks] = total;
+			return new BlockGzipIndex(compressed, uncompressed, blocks);
+		}
+	}
+
+
+	/**
+	 * Reads the gzip member header at the given position.
+	 *
+	 * @return the total (compressed) size of the block, including header and
+	 * footer, or -1 if there is no BGZF block header at the position.
+	 */
+	private static int readBlockSize(FileChannel channel, long position) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+		if (channel.read(header, position) < FIXED_HEADER_LENGTH) {
+			return -1;
+		}
+		if ((header.get(0) & 0xff) != GZIP_ID1 || (header.get(1) & 0xff) != GZIP_ID2
+				|| header.get(2) != GZIP_CM_DEFLATE || (header.get(3) & GZIP_FLG_FEXTRA) == 0) {
+			return -1;
+		}
+		int xlen = header.getShort(10) & 0xffff;
+		ByteBuffer extra = ByteBuffer.allocate(xlen).order(ByteOrder.LITTLE_ENDIAN);
+		if (channel.read(extra, position + FIXED_HEADER_LENGTH) < xlen) {
+			return -1;
+		}
+
+		/* Look for the 'BC' subfield amongst the extra subfields. */
+		int offset = 0;
+		while (offset + 4 <= xlen) {
+			int si1 = extra.get(offset) & 0xff;
+			int si2 = extra.get(offset + 1) & 0xff;
+			int slen = extra.getShort(offset + 2) & 0xffff;
+			if (si1 == 'B' && si2 == 'C' && slen == 2 && offset + 6 <= xlen) {
+				int blockSize = (extra.getShort(offset + 4) & 0xffff) + 1;
+				return blockSize >= FIXED_HEADER_LENGTH + xlen + FOOTER_LENGTH ? blockSize : -1;
+			}
+			offset += 4 + slen;
+		}
+		return -1;
+	}
+
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position + buffer.position());
+			if (read < 0) {
+				throw new IOException("Unexpected end of file.");
+			}
+		}
+	}
+
+
+	public int getNumberOfBlocks() {
+		return numberOfBlocks;
+	}
+
+	/**
+	 * @param block block number, or the number of blocks to get the length of
+	 *              the file.
+	 * @return the byte position in the compressed file where the block starts.
+	 */
+	public long getCompressedOffset(int block) {
+		checkBlock(block);
+		return compressedOffsets[block];
+	}
+
+	/**
+	 * @param block block number, or the number of blocks to get the total
+	 *              uncompressed size.
+	 * @return the position in the uncompressed data of the first byte of the
+	 * block.
+	 */
+	public long getUncompressedOffset(int block) {
+		checkBlock(block);
+		return uncompressedOffsets[block];
+	}
+
+	public long getUncompressedSize() {
+		return uncompressedOffsets[numberOfBlocks];
+	}
+
+	private void checkBlock(int block) {
+		if (block < 0 || block > numberOfBlocks) {
+			throw new IndexOutOfBoundsException("Block " + block + " not in [0, " + numberOfBlocks + "]");
+		}
+	}
+
+}
@@ -0,0 +1,309 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BlockGzipInputStream.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a <i>block-gzipped</i> (BGZF) stream, such as those written by
+ * {@link BlockGzipOutputStream} or <code>bgzip</code>, decompressing the
+ * blocks ahead of the reader on several threads. The compressed blocks are
+ * read in order on the calling thread, which is cheap, and only a limited
+ * number of blocks are decompressed ahead.
+ * <p>
+ * A normal gzip stream does not have the block sizes in its headers, and
+ * cannot be read this way. Use {@link BlockGzipIndex#isBlockGzipped(java.io.File)}
+ * to check a file first. The stream is not thread safe.
+ *
+ * @author jwjoubert
+ */
+public final class BlockGzipInputStream extends InputStream {
+	private static final int GZIP_ID1 = 0x1f;
+	private static final int GZIP_ID2 = 0x8b;
+	private static final int GZIP_CM_DEFLATE = 8;
+	private static final int GZIP_FLG_FHCRC = 2;
+	private static final int GZIP_FLG_FEXTRA = 4;
+	private static final int GZIP_FLG_FNAME = 8;
+	private static final int GZIP_FLG_FCOMMENT = 16;
+	private static final int FIXED_HEADER_LENGTH = 12;
+
+	private final InputStream in;
+	private final ExecutorService executor;
+	private final int maximumPending;
+	private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+	private final byte[] header = new byte[FIXED_HEADER_LENGTH];
+	private byte[] block = new byte[0];
+	private int position = 0;
+	private long numberOfBlocks = 0;
+	private boolean endOfInput = false;
+	private boolean closed = false;
+
+
+	/**
+	 * @param in              the underlying, compressed, stream, closed along
+	 *                        with this one.
+	 * @param numberOfThreads the number of threads that decompress blocks.
+	 *                        With one thread the blocks are decompressed as
+	 *                        they are read, without a pool.
+	 */
+	public BlockGzipInputStream(InputStream in, int numberOfThreads) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("Must use at least one thread.");
+		}
+		this.in = in;
+		this.executor = numberOfThreads == 1 ? null : Executors.newFixedThreadPool(numberOfThreads, BlockGzipOutputStream.daemonThreads("BlockGzipReader"));
+		this.maximumPending = 2 * numberOfThreads;
+	}
+
+
+	@Override
+	public int read() throws IOException {
+		if (position == block.length && !nextBlock()) {
+			return -1;
+		}
+		return block[position++] & 0xff;
+	}
+
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (position == block.length && !nextBlock()) {
+			return -1;
+		}
+		int n = Math.min(len, block.length - position);
+		System.arraycopy(block, position, b, off, n);
+		position += n;
+		return n;
+	}
+
+
+	@Override
+	public int available() throws IOException {
+		checkOpen();
+		return block.length - position;
+	}
+
+
+	private void checkOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed.");
+		}
+	}
+
+
+	/**
+	 * Moves on to the next block with data, first reading ahead as many
+	 * blocks as may be pending.
+	 *
+	 * @return false at the end of the stream.
+	 */
+	private boolean nextBlock() throws IOException {
+		checkOpen();
+		do {
+			while (!endOfInput && pending.size() < maximumPending) {
+				byte[] compressed = readCompressedBlock();
+				if (compressed == null) {
+					endOfInput = true;
+				} else {
+					pending.add(BlockGzipOutputStream.submit(executor, () -> decompress(compressed)));
+				}
+			}
+			if (pending.isEmpty()) {
+				return false;
+			}
+			block = BlockGzipOutputStream.get(pending.poll());
+			position = 0;
+		} while (block.length == 0);
+		return true;
+	}
+
+
+	/**
+	 * @return the whole gzip member, or <code>null</code> at the end of the
+	 * stream.
+	 */
+	private byte[] readCompressedBlock() throws IOException {
+		int read = readFully(header, 0, FIXED_HEADER_LENGTH);
+		if (read == 0) {
+			return null;
+		}
+		if (read < FIXED_HEADER_LENGTH) {
+			throw new EOFException("Block " + numberOfBlocks + " is truncated.");
+		}
+		ByteBuffer bb = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+		if ((bb.get(0) & 0xff) != GZIP_ID1 || (bb.get(1) & 0xff) != GZIP_ID2
+				|| bb.get(2) != GZIP_CM_DEFLATE || (bb.get(3) & GZIP_FLG_FEXTRA) == 0) {
+			throw new IOException("Block " + numberOfBlocks + " is not a valid BGZF block.");
+		}
+		int xlen = bb.getShort(10) & 0xffff;
+		byte[] extra = new byte[xlen];
+		if (readFully(extra, 0, xlen) < xlen) {
+			throw new EOFException("Block " + numberOfBlocks + " is truncated.");
+		}
+		int blockSize = getBlockSize(extra);
+		if (blockSize < FIXED_HEADER_LENGTH + xlen + BlockGzipOutputStream.FOOTER_LENGTH) {
+			throw new IOException("Block " + numberOfBlocks + " is not a valid BGZF block.");
+		}
+
+		byte[] member = new byte[blockSize];
+		System.arraycopy(header, 0, member, 0, FIXED_HEADER_LENGTH);
+		System.arraycopy(extra, 0, member, FIXED_HEADER_LENGTH, xlen);
+		int offset = FIXED_HEADER_LENGTH + xlen;
+		if (readFully(member, offset, blockSize - offset) < blockSize - offset) {
+			throw new EOFException("Block " + numberOfBlocks + " is truncated.");
+		}
+		numberOfBlocks++;
+		return member;
+	}
+
+
+	/**
+	 * @return the size of the block from the <code>BC</code> extra subfield,
+	 * or -1 if there is none.
+	 */
+	private static int getBlockSize(byte[] extra) {
+		ByteBuffer bb = ByteBuffer.wrap(extra).order(ByteOrder.LITTLE_ENDIAN);
+		int offset = 0;
+		while (offset + 4 <= extra.length) {
+			int si1 = bb.get(offset) & 0xff;
+			int si2 = bb.get(offset + 1) & 0xff;
+			int slen = bb.getShort(offset + 2) & 0xffff;
+			if (si1 == 'B' && si2 == 'C' && slen == 2 && offset + 6 <= extra.length) {
+				return (bb.getShort(offset + 4) & 0xffff) + 1;
+			}
+			offset += 4 + slen;
+		}
+		return -1;
+	}
+
+
+	private int readFully(byte[] b, int off, int len) throws IOException {
+		int total = 0;
+		while (total < len) {
+			int n = in.read(b, off + total, len - total);
+			if (n < 0) {
+				break;
+			}
+			total += n;
+		}
+		return total;
+	}
+
+
+	/**
+	 * Decompresses a whole gzip member, and checks its size and checksum.
+	 */
+	static byte[] decompress(byte[] member) throws IOException {
+		ByteBuffer bb = ByteBuffer.wrap(member).order(ByteOrder.LITTLE_ENDIAN);
+		int flags = bb.get(3);
+		int offset = FIXED_HEADER_LENGTH + (bb.getShort(10) & 0xffff);
+		if ((flags & GZIP_FLG_FNAME) != 0) {
+			offset = skipZeroTerminated(member, offset);
+		}
+		if ((flags & GZIP_FLG_FCOMMENT) != 0) {
+			offset = skipZeroTerminated(member, offset);
+		}
+		if ((flags & GZIP_FLG_FHCRC) != 0) {
+			offset += 2;
+		}
+		int footer = member.length - BlockGzipOutputStream.FOOTER_LENGTH;
+		if (offset > footer) {
+			throw new IOException("Invalid BGZF block header.");
+		}
+		int crc = bb.getInt(footer);
+		int isize = bb.getInt(footer + 4);
+		if (isize < 0 || isize > BlockGzipOutputStream.MAXIMUM_BLOCK_LENGTH) {
+			throw new IOException("Invalid BGZF block size " + Integer.toUnsignedString(isize));
+		}
+
+		byte[] data = new byte[isize];
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(member, offset, footer - offset);
+			int inflated = 0;
+			byte[] excess = new byte[1];
+			while (!inflater.finished()) {
+				int n;
+				if (inflated < isize) {
+					n = inflater.inflate(data, inflated, isize - inflated);
+					inflated += n;
+				} else if ((n = inflater.inflate(excess)) > 0) {
+					throw new IOException("BGZF block is larger than its size.");
+				}
+				if (n == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new IOException("Corrupt BGZF block.");
+				}
+			}
+			if (inflated != isize) {
+				throw new IOException("BGZF block is smaller than its size.");
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Corrupt BGZF block.", e);
+		} finally {
+			inflater.end();
+		}
+
+		CRC32 check = new CRC32();
+		check.update(data, 0, isize);
+		if ((int) check.getValue() != crc) {
+			throw new IOException("BGZF block has the wrong checksum.");
+		}
+		return data;
+	}
+
+
+	private static int skipZeroTerminated(byte[] member, int offset) {
+		while (offset < member.length && member[offset] != 0) {
+			offset++;
+		}
+		return offset + 1;
+	}
+
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		pending.clear();
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+		in.close();
+	}
+
+}
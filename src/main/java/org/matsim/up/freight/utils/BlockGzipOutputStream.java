@@ -0,0 +1,276 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BlockGzipOutputStream.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a <i>block-gzipped</i> (BGZF) stream, compressing the blocks on
+ * several threads. The data is cut into blocks of {@link #BLOCK_SIZE} bytes,
+ * each compressed into its own gzip member, and the members are written in
+ * order. The result is a valid gzip file that <code>gunzip</code> (or
+ * {@link java.util.zip.GZIPInputStream}) reads as usual, but that can also be
+ * read in parallel, with {@link BlockGzipInputStream}, or split with
+ * {@link BlockGzipIndex}. As with <code>bgzip</code>, the stream ends with an
+ * empty block.
+ * <p>
+ * Only a limited number of blocks are compressed ahead of those written,
+ * so memory use does not depend on how fast the underlying stream is. The
+ * stream is not thread safe.
+ *
+ * @author jwjoubert
+ */
+public final class BlockGzipOutputStream extends OutputStream {
+	/**
+	 * The uncompressed size of a block, as used by <code>bgzip</code>. Even
+	 * if the data cannot be compressed, the block then fits in the 16-bit
+	 * block size of the header.
+	 */
+	public static final int BLOCK_SIZE = 0xff00;
+	static final int MAXIMUM_BLOCK_LENGTH = 1 << 16;
+	static final int HEADER_LENGTH = 18;
+	static final int FOOTER_LENGTH = 8;
+
+	private final OutputStream out;
+	private final ExecutorService executor;
+	private final int maximumPending;
+	private final int level;
+	private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+	private byte[] buffer = new byte[BLOCK_SIZE];
+	private int count = 0;
+	private boolean closed = false;
+
+
+	/**
+	 * @param out             the underlying stream, closed along with this one.
+	 * @param numberOfThreads the number of threads that compress blocks. With
+	 *                        one thread the blocks are compressed as they are
+	 *                        written, without a pool.
+	 */
+	public BlockGzipOutputStream(OutputStream out, int numberOfThreads) {
+		this(out, numberOfThreads, Deflater.DEFAULT_COMPRESSION);
+	}
+
+
+	/**
+	 * @param level the {@link Deflater} compression level.
+	 */
+	public BlockGzipOutputStream(OutputStream out, int numberOfThreads, int level) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("Must use at least one thread.");
+		}
+		this.out = out;
+		this.executor = numberOfThreads == 1 ? null : Executors.newFixedThreadPool(numberOfThreads, daemonThreads("BlockGzipWriter"));
+		this.maximumPending = 2 * numberOfThreads;
+		this.level = level;
+	}
+
+
+	/**
+	 * Pool threads must not keep the application alive if a stream is not
+	 * closed.
+	 */
+	static ThreadFactory daemonThreads(String name) {
+		AtomicInteger counter = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+
+	static <T> Future<T> submit(ExecutorService executor, Callable<T> task) throws IOException {
+		if (executor != null) {
+			return executor.submit(task);
+		}
+		try {
+			return CompletableFuture.completedFuture(task.call());
+		} catch (IOException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+	}
+
+
+	static <T> T get(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a block.");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+
+	@Override
+	public void write(int b) throws IOException {
+		checkOpen();
+		buffer[count++] = (byte) b;
+		if (count == BLOCK_SIZE) {
+			submitBlock();
+		}
+	}
+
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		checkOpen();
+		while (len > 0) {
+			int n = Math.min(len, BLOCK_SIZE - count);
+			System.arraycopy(b, off, buffer, count, n);
+			count += n;
+			off += n;
+			len -= n;
+			if (count == BLOCK_SIZE) {
+				submitBlock();
+			}
+		}
+	}
+
+
+	private void checkOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed.");
+		}
+	}
+
+
+	private void submitBlock() throws IOException {
+		byte[] data = buffer;
+		int length = count;
+		buffer = new byte[BLOCK_SIZE];
+		count = 0;
+		pending.add(submit(executor, () -> compress(data, length, level)));
+		while (pending.size() > maximumPending) {
+			out.write(get(pending.poll()));
+		}
+	}
+
+
+	/**
+	 * Writes all the data so far as complete blocks. A partly filled block is
+	 * written as a smaller block, so flushing often makes the file larger.
+	 */
+	@Override
+	public void flush() throws IOException {
+		checkOpen();
+		if (count > 0) {
+			submitBlock();
+		}
+		while (!pending.isEmpty()) {
+			out.write(get(pending.poll()));
+		}
+		out.flush();
+	}
+
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		try {
+			flush();
+			out.write(compress(new byte[0], 0, level));
+		} finally {
+			closed = true;
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+			out.close();
+		}
+	}
+
+
+	/**
+	 * Compresses the data into a single BGZF block: a gzip member with a
+	 * <code>BC</code> extra field holding the size of the block.
+	 */
+	static byte[] compress(byte[] data, int length, int level) {
+		byte[] block = new byte[MAXIMUM_BLOCK_LENGTH];
+		int compressed = deflate(data, length, level, block);
+		if (compressed < 0) {
+			/* Incompressible data is stored, which always fits. */
+			compressed = deflate(data, length, Deflater.NO_COMPRESSION, block);
+		}
+		int blockSize = HEADER_LENGTH + compressed + FOOTER_LENGTH;
+
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, length);
+		ByteBuffer bb = ByteBuffer.wrap(block).order(ByteOrder.LITTLE_ENDIAN);
+		bb.put((byte) 0x1f).put((byte) 0x8b).put((byte) 8).put((byte) 4);
+		bb.putInt(0).put((byte) 0).put((byte) 0xff);
+		bb.putShort((short) 6).put((byte) 'B').put((byte) 'C').putShort((short) 2);
+		bb.putShort((short) (blockSize - 1));
+		bb.position(HEADER_LENGTH + compressed);
+		bb.putInt((int) crc.getValue()).putInt(length);
+		byte[] result = new byte[blockSize];
+		System.arraycopy(block, 0, result, 0, blockSize);
+		return result;
+	}
+
+
+	/**
+	 * @return the compressed length, or -1 if it does not fit in a block.
+	 */
+	private static int deflate(byte[] data, int length, int level, byte[] block) {
+		Deflater deflater = new Deflater(level, true);
+		try {
+			deflater.setInput(data, 0, length);
+			deflater.finish();
+			int capacity = MAXIMUM_BLOCK_LENGTH - HEADER_LENGTH - FOOTER_LENGTH;
+			int compressed = 0;
+			while (!deflater.finished() && compressed < capacity) {
+				compressed += deflater.deflate(block, HEADER_LENGTH + compressed, capacity - compressed);
+			}
+			return deflater.finished() ? compressed : -1;
+		} finally {
+			deflater.end();
+		}
+	}
+
+}
@@ -0,0 +1,343 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CoordinateTransformationService.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.utils;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.geotools.referencing.CRS;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.core.utils.geometry.CoordinateTransformation;
+import org.matsim.core.utils.geometry.geotools.MGC;
+import org.matsim.core.utils.geometry.transformations.GeotoolsTransformation;
+import org.matsim.core.utils.geometry.transformations.IdentityTransformation;
+import org.matsim.core.utils.geometry.transformations.TransformationFactory;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.operation.MathTransform;
+import org.opengis.referencing.operation.TransformException;
+
+/**
+ * A shared, thread-safe transformation between two coordinate reference
+ * systems, typically between {@link TransformationFactory#WGS84} and
+ * {@link TransformationFactory#HARTEBEESTHOEK94_LO29}. There is a single
+ * service per pair of systems (see {@link #get(String, String)}), so that
+ * the extractor threads and the analyses need not each set up their own
+ * transformation.
+ * <p>
+ * Besides transforming single {@link Coord}s, the service transforms whole
+ * arrays of coordinates in place with {@link #transform(double[], double[], int, int)},
+ * without creating a {@link Coord} (or geometry) per position. Each thread
+ * keeps its own transformation and working arrays, which are reused from
+ * one call to the next. A position that is the same as the one before it,
+ * which is typical of a stationary vehicle, is only transformed once. An
+ * optional, small cache per thread also remembers positions that recur
+ * later.
+ * <p>
+ * The results are identical to those of the transformation created by the
+ * {@link TransformationFactory}.
+ *
+ * @author jwjoubert
+ */
+public final class CoordinateTransformationService implements CoordinateTransformation {
+	private static final Map<String, CoordinateTransformationService> SERVICES = new ConcurrentHashMap<>();
+	/** The number of positions passed to the transformation at once. */
+	private static final int BATCH_SIZE = 512;
+
+	private final String fromCrs;
+	private final String toCrs;
+	private final boolean identity;
+	private final boolean geotools;
+	private final int cacheSize;
+	private final ThreadLocal<State> state;
+
+
+	private CoordinateTransformationService(String fromCrs, String toCrs, int cacheSize) {
+		this.fromCrs = fromCrs;
+		this.toCrs = toCrs;
+		CoordinateTransformation ct = TransformationFactory.getCoordinateTransformation(fromCrs, toCrs);
+		this.identity = ct instanceof IdentityTransformation;
+		this.geotools = ct instanceof GeotoolsTransformation;
+		this.cacheSize = cacheSize <= 1 ? cacheSize : Integer.highestOneBit(cacheSize - 1) << 1;
+		this.state = ThreadLocal.withInitial(this::createState);
+	}
+
+
+	/**
+	 * @return the shared transformation from one coordinate reference system
+	 * 		   to another, without a cache.
+	 */
+	public static CoordinateTransformationService get(String fromCrs, String toCrs) {
+		return get(fromCrs, toCrs, 0);
+	}
+
+
+	/**
+	 * @param cacheSize the number of transformed positions each thread
+	 * 		  remembers, rounded up to a power of two. Use zero for no cache.
+	 * 		  Since positions are only cached by their exact value, a cache is
+	 * 		  only worthwhile if positions recur, for example the nodes of a
+	 * 		  network that are visited repeatedly.
+	 * @return the shared transformation from one coordinate reference system
+	 * 		   to another.
+	 */
+	public static CoordinateTransformationService get(String fromCrs, String toCrs, int cacheSize) {
+		if (cacheSize < 0) {
+			throw new IllegalArgumentException("Cache size cannot be negative: " + cacheSize);
+		}
+		return SERVICES.computeIfAbsent(fromCrs + "\t" + toCrs + "\t" + cacheSize,
+				k -> new CoordinateTransformationService(fromCrs, toCrs, cacheSize));
+	}
+
+
+	private State createState() {
+		CoordinateTransformation ct = TransformationFactory.getCoordinateTransformation(fromCrs, toCrs);
+		MathTransform mathTransform = null;
+		if (geotools) {
+			/* The same transformation as that of the GeotoolsTransformation,
+			 * but used directly, so that positions need not be wrapped in
+			 * geometries. */
+			try {
+				mathTransform = CRS.findMathTransform(MGC.getCRS(fromCrs), MGC.getCRS(toCrs), true);
+			} catch (FactoryException e) {
+				throw new RuntimeException("Cannot transform from " + fromCrs + " to " + toCrs, e);
+			}
+		}
+		return new State(ct, mathTransform, cacheSize);
+	}
+
+
+	@Override
+	public Coord transform(Coord coord) {
+		if (identity) {
+			return coord;
+		}
+		State s = state.get();
+		if (coord.hasZ()) {
+			return s.ct.transform(coord);
+		}
+		double x = coord.getX();
+		double y = coord.getY();
+		int slot = s.lookup(x, y);
+		if (slot >= 0) {
+			return new Coord(s.cachedX[slot], s.cachedY[slot]);
+		}
+		s.points[0] = x;
+		s.points[1] = y;
+		s.transformPoints(1, this);
+		s.store(x, y, s.points[0], s.points[1]);
+		return new Coord(s.points[0], s.points[1]);
+	}
+
+
+	/**
+	 * Transforms the positions in place.
+	 */
+	public void transform(double[] x, double[] y, int size) {
+		transform(x, y, 0, size);
+	}
+
+
+	/**
+	 * Transforms the positions <code>offset</code> to
+	 * <code>offset + length - 1</code> in place.
+	 */
+	public void transform(double[] x, double[] y, int offset, int length) {
+		if (identity || length <= 0) {
+			return;
+		}
+		State s = state.get();
+		int end = offset + length;
+		double previousX = Double.NaN;
+		double previousY = Double.NaN;
+		for (int i = offset; i < end; i++) {
+			double xi = x[i];
+			double yi = y[i];
+			if (i > offset && sameValue(xi, previousX) && sameValue(yi, previousY)) {
+				/* Same as the previous position, which may not have been
+				 * transformed yet. */
+				s.addCopy(i);
+			} else {
+				int slot = s.lookup(xi, yi);
+				if (slot >= 0) {
+					x[i] = s.cachedX[slot];
+					y[i] = s.cachedY[slot];
+				} else {
+					if (s.pending == BATCH_SIZE) {
+						s.flush(x, y, this);
+					}
+					s.addPending(i, xi, yi);
+				}
+			}
+			previousX = xi;
+			previousY = yi;
+		}
+		s.flush(x, y, this);
+	}
+
+
+	private static boolean sameValue(double a, double b) {
+		return Double.doubleToRawLongBits(a) == Double.doubleToRawLongBits(b);
+	}
+
+
+	@Override
+	public String toString() {
+		return fromCrs + " -> " + toCrs + (cacheSize > 0 ? " (cache " + cacheSize + ")" : "");
+	}
+
+
+	/**
+	 * The working state of a single thread.
+	 */
+	private static final class State {
+		private final CoordinateTransformation ct;
+		private final MathTransform mathTransform;
+
+		/* Positions waiting to be transformed, interleaved as x and y. */
+		private final double[] points = new double[2 * BATCH_SIZE];
+		private final double[] originals = new double[2 * BATCH_SIZE];
+		private final int[] targets = new int[BATCH_SIZE];
+		private int pending = 0;
+
+		/* Positions that are copies of the one before them. */
+		private int[] copies = new int[BATCH_SIZE];
+		private int numberOfCopies = 0;
+
+		/* A direct-mapped cache of transformed positions. */
+		private final int cacheMask;
+		private final long[] cacheX;
+		private final long[] cacheY;
+		private final double[] cachedX;
+		private final double[] cachedY;
+		private final boolean[] cached;
+
+		private State(CoordinateTransformation ct, MathTransform mathTransform, int cacheSize) {
+			this.ct = ct;
+			this.mathTransform = mathTransform;
+			this.cacheMask = cacheSize - 1;
+			this.cacheX = new long[cacheSize];
+			this.cacheY = new long[cacheSize];
+			this.cachedX = new double[cacheSize];
+			this.cachedY = new double[cacheSize];
+			this.cached = new boolean[cacheSize];
+		}
+
+
+		private void addPending(int target, double x, double y) {
+			targets[pending] = target;
+			points[2 * pending] = x;
+			points[2 * pending + 1] = y;
+			originals[2 * pending] = x;
+			originals[2 * pending + 1] = y;
+			pending++;
+		}
+
+
+		private void addCopy(int target) {
+			if (numberOfCopies == copies.length) {
+				copies = Arrays.copyOf(copies, 2 * copies.length);
+			}
+			copies[numberOfCopies++] = target;
+		}
+
+
+		/**
+		 * Transforms the pending positions, and then fills in the copies.
+		 */
+		private void flush(double[] x, double[] y, CoordinateTransformationService service) {
+			if (pending > 0) {
+				transformPoints(pending, service);
+				for (int p = 0; p < pending; p++) {
+					int i = targets[p];
+					x[i] = points[2 * p];
+					y[i] = points[2 * p + 1];
+					store(originals[2 * p], originals[2 * p + 1], x[i], y[i]);
+				}
+				pending = 0;
+			}
+			/* Copies are in increasing order, so a copy of a copy is filled
+			 * in after the position it copies. */
+			for (int c = 0; c < numberOfCopies; c++) {
+				int i = copies[c];
+				x[i] = x[i - 1];
+				y[i] = y[i - 1];
+			}
+			numberOfCopies = 0;
+		}
+
+
+		private void transformPoints(int n, CoordinateTransformationService service) {
+			if (mathTransform != null) {
+				try {
+					mathTransform.transform(points, 0, points, 0, n);
+				} catch (TransformException e) {
+					throw new RuntimeException("Cannot transform from " + service.fromCrs + " to " + service.toCrs, e);
+				}
+			} else {
+				for (int p = 0; p < n; p++) {
+					Coord c = ct.transform(new Coord(points[2 * p], points[2 * p + 1]));
+					points[2 * p] = c.getX();
+					points[2 * p + 1] = c.getY();
+				}
+			}
+		}
+
+
+		/**
+		 * @return the position's slot in the cache, or -1 if it is not
+		 * 		   cached.
+		 */
+		private int lookup(double x, double y) {
+			if (cacheMask < 0) {
+				return -1;
+			}
+			long bx = Double.doubleToRawLongBits(x);
+			long by = Double.doubleToRawLongBits(y);
+			int slot = slot(bx, by);
+			return cached[slot] && cacheX[slot] == bx && cacheY[slot] == by ? slot : -1;
+		}
+
+
+		private void store(double x, double y, double transformedX, double transformedY) {
+			if (cacheMask < 0) {
+				return;
+			}
+			long bx = Double.doubleToRawLongBits(x);
+			long by = Double.doubleToRawLongBits(y);
+			int slot = slot(bx, by);
+			cached[slot] = true;
+			cacheX[slot] = bx;
+			cacheY[slot] = by;
+			cachedX[slot] = transformedX;
+			cachedY[slot] = transformedY;
+		}
+
+
+		private int slot(long bx, long by) {
+			long h = (bx * 0x9E3779B97F4A7C15L) ^ by;
+			h ^= h >>> 29;
+			h *= 0xBF58476D1CE4E5B9L;
+			return (int) (h >>> 32) & cacheMask;
+		}
+	}
+
+}
@@ -31,6 +31,7 @@ import java.util.concurrent.Future;
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.core.utils.misc.Counter;
+import org.matsim.facilities.ActivityFacility;
 import org.matsim.up.freight.containers.*;
 import org.matsim.up.freight.io.DigicoreVehiclesReader;
 import org.matsim.up.freight.io.DigicoreVehiclesWriter;
@@ -71,14 +72,31 @@ public class DigicoreChainCleaner {
 		DigicoreVehicles vehicles = new DigicoreVehicles();
 		new DigicoreVehiclesReader(vehicles).readFile(inputVehiclesFile);
 		
+		/* The cleaned vehicles are added by the threads as they finish. */
+		DigicoreVehicles newVehicles = DigicoreVehicles.createConcurrent(vehicles.getCoordinateReferenceSystem());
+		String oldDescription = vehicles.getDescription();
+		if(oldDescription == null){
+			oldDescription = "";
+		} else{
+			oldDescription += oldDescription.endsWith(".") ? " " : ". ";
+		}
+		oldDescription += "Cleaned consecutive activities at same facility.";
+		newVehicles.setDescription(oldDescription);
+		
 		/* Execute the multi-threaded jobs */
 		ExecutorService threadExecutor = Executors.newFixedThreadPool(numberOfThreads);
-		List<Future<DigicoreVehicle>> listOfJobs = new ArrayList<>(vehicles.getVehicles().size());
+		List<Future<?>> listOfJobs = new ArrayList<>(vehicles.getVehicles().size());
 		Counter threadCounter = new Counter("   vehicles completed: ");
 		
 		for(DigicoreVehicle vehicle : vehicles.getVehicles().values()){
 			Callable<DigicoreVehicle> job = new CallableChainCleaner(vehicle, threadCounter);
-			Future<DigicoreVehicle> submit = threadExecutor.submit(job);
+			Future<?> submit = threadExecutor.submit(() -> {
+				DigicoreVehicle cleanVehicle = job.call();
+				if(cleanVehicle != null){
+					newVehicles.addDigicoreVehicle(cleanVehicle);
+				}
+				return null;
+			});
 			listOfJobs.add(submit);
 		}
 		
@@ -87,25 +105,10 @@ public class DigicoreChainCleaner {
 		}
 		threadCounter.printCounter();
 
-		/* Consolidate output. */
-		LOG.info("Consolidate cleaned vehicles into single DigicoreVehicles container.");
-		DigicoreVehicles newVehicles = new DigicoreVehicles(vehicles.getCoordinateReferenceSystem());
-		String oldDescription = vehicles.getDescription();
-		if(oldDescription == null){
-			oldDescription = "";
-		} else{
-			oldDescription += oldDescription.endsWith(".") ? " " : ". ";
-		}
-		oldDescription += "Cleaned consecutive activities at same facility.";
-		newVehicles.setDescription(oldDescription);
-		
-		for(Future<DigicoreVehicle> future : listOfJobs){
-			DigicoreVehicle vehicle;
+		/* Only check that all the jobs succeeded. */
+		for(Future<?> future : listOfJobs){
 			try {
-				vehicle = future.get();
-				if(vehicle != null){
-					newVehicles.addDigicoreVehicle(vehicle);
-				}
+				future.get();
 			} catch (InterruptedException | ExecutionException e) {
 				e.printStackTrace();
 				throw new RuntimeException("Could not get DigicoreVehicle after multithreaded run.");
@@ -180,10 +183,14 @@ public class DigicoreChainCleaner {
 					nextActivity = (DigicoreActivity) ((List<DigicoreChainElement>) chain).get(activityIndex+2);
 				}
 
+				/* Ids are unique, so the same facility usually has the same Id.
+				 * Only Ids that differ by reference are compared, ignoring case. */
 				assert thisActivity != null;
-				if( thisActivity.getFacilityId() != null &&
-						Objects.requireNonNull(nextActivity).getFacilityId() != null &&
-						thisActivity.getFacilityId().toString().equalsIgnoreCase(nextActivity.getFacilityId().toString()) ){
+				Id<ActivityFacility> thisFacilityId = thisActivity.getFacilityId();
+				Id<ActivityFacility> nextFacilityId = Objects.requireNonNull(nextActivity).getFacilityId();
+				if( thisFacilityId != null && nextFacilityId != null &&
+						(thisFacilityId == nextFacilityId ||
+						thisFacilityId.toString().equalsIgnoreCase(nextFacilityId.toString())) ){
 					/* Merge the two activities. */
 					numberOfActivitiesChanged++;
 					thisActivity.setEndTime( nextActivity.getEndTime().seconds() );
@@ -192,8 +199,8 @@ public class DigicoreChainCleaner {
 					
 					/* If one of the two activities is a 'major' type, then the 
 					 * joint, merged activity should be major too. */
-					if(thisActivity.getType().equalsIgnoreCase("major") ||
-							nextActivity.getType().equalsIgnoreCase("major")){
+					if(thisActivity.getActivityType() == DigicoreActivityType.MAJOR ||
+							nextActivity.getActivityType() == DigicoreActivityType.MAJOR){
 						thisActivity.setType("major");
 					}
 				} else{
@@ -0,0 +1,167 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactDigicoreVehiclesTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.containers;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.facilities.ActivityFacility;
+
+public class CompactDigicoreVehiclesTest {
+
+	@Test
+	public void testAccessors(){
+		CompactDigicoreVehicles compact = CompactDigicoreVehicles.of(buildVehicles());
+		Assert.assertEquals("Wrong crs.", "WGS84", compact.getCoordinateReferenceSystem());
+		Assert.assertEquals("Wrong description.", "test", compact.getDescription());
+		Assert.assertEquals("Wrong number of vehicles.", 2, compact.getNumberOfVehicles());
+		Assert.assertEquals("Wrong number of chains.", 3, compact.getNumberOfChains());
+		Assert.assertEquals("Wrong number of activities.", 7, compact.getNumberOfActivities());
+
+		int v = compact.indexOf(Id.createVehicleId("1"));
+		Assert.assertEquals("Wrong vehicle.", Id.createVehicleId("1"), compact.getVehicleId(v));
+		Assert.assertEquals("Wrong vehicle type.", "truck", compact.getVehicleType(v).toString());
+		Assert.assertEquals("Wrong number of chains.", 2, compact.getChainEnd(v) - compact.getFirstChain(v));
+		Assert.assertEquals("Should not find vehicle.", -1, compact.indexOf(Id.createVehicleId("3")));
+
+		int c = compact.getFirstChain(v);
+		Assert.assertEquals("Wrong number of activities.", 3, compact.getActivityEnd(c) - compact.getFirstActivity(c));
+		int a = compact.getFirstActivity(c);
+		Assert.assertEquals("Wrong x.", 10.0, compact.getX(a), 0.0);
+		Assert.assertEquals("Wrong y.", 20.0, compact.getY(a), 0.0);
+		Assert.assertEquals("Wrong start time.", 1000000.0, compact.getStartTime(a), 0.0);
+		Assert.assertEquals("Wrong end time.", 1003600.5, compact.getEndTime(a), 0.0);
+		Assert.assertEquals("Wrong facility.", Id.create("f1", ActivityFacility.class), compact.getFacilityId(a));
+		Assert.assertEquals("Wrong type.", DigicoreActivityType.MAJOR, compact.getActivityType(a));
+		Assert.assertNull("Should have no facility.", compact.getFacilityId(a + 1));
+		Assert.assertEquals("Wrong type.", DigicoreActivityType.MINOR, compact.getActivityType(a + 1));
+		Assert.assertEquals("Wrong type.", "depot", compact.getType(a + 2));
+		Assert.assertEquals("Wrong type.", DigicoreActivityType.OTHER, compact.getActivityType(a + 2));
+	}
+
+
+	/**
+	 * The objects created from the container must be the same as the
+	 * original ones.
+	 */
+	@Test
+	public void testObjects(){
+		DigicoreVehicles vehicles = buildVehicles();
+		CompactDigicoreVehicles compact = CompactDigicoreVehicles.of(vehicles);
+		for(int v = 0; v < compact.getNumberOfVehicles(); v++){
+			DigicoreVehicle original = vehicles.getVehicles().get(compact.getVehicleId(v));
+			DigicoreVehicle vehicle = compact.getVehicle(v);
+			Assert.assertEquals("Wrong vehicle.", original.getId(), vehicle.getId());
+			Assert.assertEquals("Wrong vehicle type.", original.getType().getId(), vehicle.getType().getId());
+			Assert.assertEquals("Wrong number of chains.", original.getChains().size(), vehicle.getChains().size());
+			for(int c = 0; c < vehicle.getChains().size(); c++){
+				DigicoreChain originalChain = original.getChains().get(c);
+				DigicoreChain chain = vehicle.getChains().get(c);
+				Assert.assertEquals("Traces should be dropped.", originalChain.getAllActivities().size(), chain.size());
+				for(int i = 0; i < chain.size(); i++){
+					DigicoreActivity expected = originalChain.getAllActivities().get(i);
+					DigicoreActivity activity = chain.getAllActivities().get(i);
+					Assert.assertEquals("Wrong type.", expected.getType(), activity.getType());
+					Assert.assertEquals("Wrong coord.", expected.getCoord(), activity.getCoord());
+					Assert.assertEquals("Wrong start time.", expected.getStartTime().seconds(), activity.getStartTime().seconds(), 0.0);
+					Assert.assertEquals("Wrong end time.", expected.getEndTime().seconds(), activity.getEndTime().seconds(), 0.0);
+					Assert.assertEquals("Wrong end date.", expected.getEndDate(), activity.getEndDate());
+					Assert.assertEquals("Wrong end hour.", expected.getEndHourOfDay(), activity.getEndHourOfDay());
+					Assert.assertEquals("Wrong facility.", expected.getFacilityId(), activity.getFacilityId());
+					Assert.assertEquals("Wrong zone.", expected.getZone(), activity.getZone());
+				}
+			}
+		}
+		int a = compact.getFirstActivity(0);
+		DigicoreActivity activity = compact.getActivity(a);
+		Assert.assertEquals("Wrong end date.", activity.getEndDate(), compact.getEndDate(a));
+		Assert.assertEquals("Wrong start hour.", activity.getStartHourOfDay(), compact.getStartHourOfDay(a));
+	}
+
+
+	@Test
+	public void testDifferentZones(){
+		DigicoreVehicles vehicles = buildVehicles();
+		DigicoreVehicle vehicle = new DigicoreVehicle(Id.createVehicleId("3"));
+		DigicoreChain chain = new DigicoreChain();
+		chain.add(createActivity("major", "Europe/Berlin", 0.0, 0.0, null));
+		vehicle.getChains().add(chain);
+		vehicles.addDigicoreVehicle(vehicle);
+		try{
+			CompactDigicoreVehicles.of(vehicles);
+			Assert.fail("Should not accept different time zones.");
+		} catch(IllegalArgumentException e){
+			/* Correct. */
+		}
+	}
+
+
+	/**
+	 * Two vehicles, the first with two chains, the second with one.
+	 */
+	static DigicoreVehicles buildVehicles(){
+		DigicoreVehicles vehicles = new DigicoreVehicles("WGS84");
+		vehicles.setDescription("test");
+
+		DigicoreVehicle v1 = new DigicoreVehicle(Id.createVehicleId("1"));
+		v1.setType("truck");
+		DigicoreChain c1 = new DigicoreChain();
+		DigicoreActivity a1 = createActivity("major", "GMT+2", 10.0, 20.0, "f1");
+		a1.setStartTime(1000000.0);
+		a1.setEndTime(1003600.5);
+		c1.add(a1);
+		c1.add(new DigicoreTrace("WGS84"));
+		c1.add(createActivity("minor", "GMT+2", 11.0, 21.0, null));
+		c1.add(createActivity("depot", "GMT+2", 12.0, 22.0, "f2"));
+		v1.getChains().add(c1);
+		DigicoreChain c2 = new DigicoreChain();
+		c2.add(createActivity("major", "GMT+2", 12.0, 22.0, "f2"));
+		c2.add(createActivity("major", "GMT+2", 10.0, 20.0, "f1"));
+		v1.getChains().add(c2);
+		vehicles.addDigicoreVehicle(v1);
+
+		DigicoreVehicle v2 = new DigicoreVehicle(Id.createVehicleId("2"));
+		DigicoreChain c3 = new DigicoreChain();
+		c3.add(createActivity("major", "GMT+2", 13.0, 23.0, "f3"));
+		c3.add(createActivity("major", "GMT+2", 10.0, 20.0, "f1"));
+		v2.getChains().add(c3);
+		vehicles.addDigicoreVehicle(v2);
+		return vehicles;
+	}
+
+
+	private static DigicoreActivity createActivity(String type, String zone, double x, double y, String facility){
+		DigicoreActivity activity = new DigicoreActivity(type, TimeZone.getTimeZone(zone), new Locale("en"));
+		activity.setCoord(new Coord(x, y));
+		activity.setStartTime(x * 100000.0);
+		activity.setEndTime(y * 100000.0);
+		if(facility != null){
+			activity.setFacilityId(Id.create(facility, ActivityFacility.class));
+		}
+		return activity;
+	}
+
+}
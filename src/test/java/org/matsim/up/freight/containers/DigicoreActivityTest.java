@@ -20,6 +20,13 @@
 
 package org.matsim.up.freight.containers;
 
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Assert;
 import org.junit.Test;
 
 public class DigicoreActivityTest {
@@ -28,6 +35,57 @@ public class DigicoreActivityTest {
 	public void testConstructor(){
 		//TODO Finish
 	}
+	
+	
+	@Test
+	public void testActivityType(){
+		DigicoreActivity activity = new DigicoreActivity(new String("major"), TimeZone.getTimeZone("GMT+2"), new Locale("en"));
+		Assert.assertEquals("Wrong type.", DigicoreActivityType.MAJOR, activity.getActivityType());
+		Assert.assertSame("Type should be shared.", DigicoreActivityType.MAJOR.getName(), activity.getType());
+		
+		activity.setType("Minor");
+		Assert.assertEquals("Type should ignore case.", DigicoreActivityType.MINOR, activity.getActivityType());
+		Assert.assertEquals("Type should keep its case.", "Minor", activity.getType());
+		
+		activity.setType("depot");
+		Assert.assertEquals("Wrong type.", DigicoreActivityType.OTHER, activity.getActivityType());
+		Assert.assertEquals("Wrong type.", "depot", activity.getType());
+	}
+	
+	
+	/**
+	 * The local time fields must be the same as those of the calendars, also
+	 * in a zone with daylight saving time.
+	 */
+	@Test
+	public void testLocalTime(){
+		Random random = new Random(20121004);
+		for(String zone : new String[]{"GMT+2", "Europe/Berlin"}){
+			DigicoreActivity activity = new DigicoreActivity("test", TimeZone.getTimeZone(zone), new Locale("en"));
+			for(int i = 0; i < 10000; i++){
+				/* Between 1970 and 2040. */
+				long seconds = (long) (random.nextDouble() * 2200000000L);
+				activity.setStartTime(seconds);
+				activity.setEndTime(seconds + random.nextInt(100000));
+				
+				GregorianCalendar start = activity.getStartTimeGregorianCalendar();
+				Assert.assertEquals("Wrong start time.", seconds*1000L, start.getTimeInMillis());
+				Assert.assertEquals("Wrong hour.", start.get(Calendar.HOUR_OF_DAY), activity.getStartHourOfDay());
+				Assert.assertEquals("Wrong day of week.", start.get(Calendar.DAY_OF_WEEK), activity.getStartDayOfWeek());
+				Assert.assertEquals("Wrong day of year.", start.get(Calendar.DAY_OF_YEAR), activity.getStartDate().getDayOfYear());
+				Assert.assertEquals("Wrong seconds from midnight.", 
+						start.get(Calendar.HOUR_OF_DAY)*3600 + start.get(Calendar.MINUTE)*60 + start.get(Calendar.SECOND), 
+						activity.getStartTimeInSecondsFromMidnight(), 0.0);
+				
+				GregorianCalendar end = activity.getEndTimeGregorianCalendar();
+				Assert.assertEquals("Wrong hour.", end.get(Calendar.HOUR_OF_DAY), activity.getEndHourOfDay());
+				Assert.assertEquals("Wrong day of week.", end.get(Calendar.DAY_OF_WEEK), activity.getEndDayOfWeek());
+				Assert.assertEquals("Wrong year.", end.get(Calendar.YEAR), activity.getEndDate().getYear());
+				Assert.assertEquals("Wrong month.", end.get(Calendar.MONTH)+1, activity.getEndDate().getMonthValue());
+				Assert.assertEquals("Wrong day of month.", end.get(Calendar.DAY_OF_MONTH), activity.getEndDate().getDayOfMonth());
+			}
+		}
+	}
 
 }
 
@@ -20,6 +20,7 @@
 
 package org.matsim.up.freight.containers;
 
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.Locale;
@@ -85,6 +86,64 @@ public class DigicoreChainTest{
 		Assert.assertTrue("Should have found NULL facility.", dc.containsFacility(null));
 
 	}
+	
+	
+	/**
+	 * The activities are kept between calls, so they must be found again
+	 * whenever the chain changes.
+	 */
+	@Test
+	public void testActivityViews(){
+		DigicoreChain dc = new DigicoreChain();
+		DigicoreActivity major1 = new DigicoreActivity("major", TimeZone.getTimeZone("GMT+2"), new Locale("en"));
+		DigicoreActivity minor1 = new DigicoreActivity("minor", TimeZone.getTimeZone("GMT+2"), new Locale("en"));
+		DigicoreActivity minor2 = new DigicoreActivity("minor", TimeZone.getTimeZone("GMT+2"), new Locale("en"));
+		DigicoreActivity major2 = new DigicoreActivity("major", TimeZone.getTimeZone("GMT+2"), new Locale("en"));
+		dc.add(major1);
+		dc.add(new DigicoreTrace("Test CRS"));
+		dc.add(minor1);
+		
+		Assert.assertEquals("Wrong number of activities.", 2, dc.getAllActivities().size());
+		Assert.assertSame("Should be the same view.", dc.getAllActivities(), dc.getAllActivities());
+		Assert.assertSame("Should be the same view.", dc.getMinorActivities(), dc.getMinorActivities());
+		Assert.assertSame("Wrong last activity.", minor1, dc.getLastMajorActivity());
+		try{
+			dc.getAllActivities().add(major2);
+			Assert.fail("View should be read-only.");
+		} catch(UnsupportedOperationException e){
+			/* Correct. */
+		}
+		
+		/* Add. */
+		dc.add(new DigicoreTrace("Test CRS"));
+		dc.add(minor2);
+		dc.add(new DigicoreTrace("Test CRS"));
+		dc.add(major2);
+		Assert.assertEquals("Wrong activities after adding.", Arrays.asList(major1, minor1, minor2, major2), dc.getAllActivities());
+		Assert.assertEquals("Wrong minor activities after adding.", Arrays.asList(minor1, minor2), dc.getMinorActivities());
+		Assert.assertSame("Wrong first activity.", major1, dc.getFirstMajorActivity());
+		Assert.assertSame("Wrong last activity.", major2, dc.getLastMajorActivity());
+		
+		/* Remove. */
+		dc.remove(minor1);
+		Assert.assertEquals("Wrong activities after removing.", Arrays.asList(major1, minor2, major2), dc.getAllActivities());
+		Assert.assertEquals("Wrong minor activities after removing.", Arrays.asList(minor2), dc.getMinorActivities());
+		dc.remove(dc.size()-1);
+		Assert.assertSame("Wrong last activity after removing.", minor2, dc.getLastMajorActivity());
+		
+		/* Replace. */
+		dc.set(0, minor1);
+		Assert.assertSame("Wrong first activity after replacing.", minor1, dc.getFirstMajorActivity());
+		Assert.assertEquals("Wrong minor activities after replacing.", Arrays.asList(minor1, minor2), dc.getMinorActivities());
+		
+		/* Change the type of an activity, without changing the chain. */
+		minor2.setType("major");
+		Assert.assertEquals("Wrong minor activities after changing type.", Arrays.asList(minor1), dc.getMinorActivities());
+		
+		dc.clear();
+		Assert.assertTrue("Should have no activities.", dc.getAllActivities().isEmpty());
+		Assert.assertNull("Should have no first activity.", dc.getFirstMajorActivity());
+	}
 
 }
 
@@ -0,0 +1,134 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DigicoreTraceTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.containers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.testcases.MatsimTestUtils;
+
+
+public class DigicoreTraceTest {
+
+	@Test
+	public void testAddPosition() {
+		DigicoreTrace trace = new DigicoreTrace("Test CRS", 2);
+		for (int i = 0; i < 100; i++) {
+			trace.addPosition(i, i + 0.5, -i - 0.5);
+		}
+		Assert.assertEquals("Wrong number of positions.", 100, trace.size());
+		Assert.assertEquals("Wrong time.", 42L, trace.getTime(42));
+		Assert.assertEquals("Wrong x.", 42.5, trace.getX(42), MatsimTestUtils.EPSILON);
+		Assert.assertEquals("Wrong y.", -42.5, trace.getY(42), MatsimTestUtils.EPSILON);
+		Assert.assertFalse("Should not have an elevation.", trace.hasZ(42));
+
+		DigicorePosition position = trace.get(42);
+		Assert.assertEquals("Wrong time.", 42000L, position.getTimeAsGregorianCalendar().getTimeInMillis());
+		Assert.assertEquals("Wrong x.", 42.5, position.getCoord().getX(), MatsimTestUtils.EPSILON);
+		Assert.assertFalse("Should not have an elevation.", position.getCoord().hasZ());
+
+		try {
+			trace.getTime(100);
+			Assert.fail("Should not have a position beyond the trace.");
+		} catch (IndexOutOfBoundsException e) {
+			/* Correct. */
+		}
+	}
+
+
+	@Test
+	public void testElevation() {
+		DigicoreTrace trace = new DigicoreTrace("Test CRS");
+		trace.addPosition(1, 1.0, 1.0);
+		trace.addPosition(2, 2.0, 2.0, 1500.0);
+		trace.add(new DigicorePosition(3, 3.0, 3.0));
+		Assert.assertFalse("Should not have an elevation.", trace.hasZ(0));
+		Assert.assertTrue("Should have an elevation.", trace.hasZ(1));
+		Assert.assertEquals("Wrong elevation.", 1500.0, trace.get(1).getCoord().getZ(), MatsimTestUtils.EPSILON);
+		Assert.assertFalse("Should not have an elevation.", trace.get(2).getCoord().hasZ());
+		Assert.assertTrue("Should be NaN.", Double.isNaN(trace.getZ(2)));
+	}
+
+
+	@Test
+	public void testWrap() {
+		long[] time = {1, 2, 3, 0};
+		double[] x = {1.0, 2.0, 3.0, 0.0};
+		double[] y = {-1.0, -2.0, -3.0, 0.0};
+		DigicoreTrace trace = DigicoreTrace.wrap("Test CRS", time, x, y, 3);
+		Assert.assertEquals("Wrong number of positions.", 3, trace.size());
+		Assert.assertEquals("Wrong time.", 3L, trace.getTime(2));
+		Assert.assertEquals("Wrong y.", -2.0, trace.getY(1), MatsimTestUtils.EPSILON);
+
+		/* The trace can grow beyond the columns it was given. */
+		trace.addPosition(4, 4.0, -4.0);
+		trace.addPosition(5, 5.0, -5.0);
+		Assert.assertEquals("Wrong number of positions.", 5, trace.size());
+		Assert.assertEquals("Wrong x.", 5.0, trace.getX(4), MatsimTestUtils.EPSILON);
+
+		try {
+			DigicoreTrace.wrap("Test CRS", time, x, new double[2], 2);
+			Assert.fail("Should not accept columns of different lengths.");
+		} catch (IllegalArgumentException e) {
+			/* Correct. */
+		}
+	}
+
+
+	/**
+	 * The trace must still behave like any other list of positions.
+	 */
+	@Test
+	public void testListSemantics() {
+		List<DigicorePosition> expected = new ArrayList<>();
+		DigicoreTrace trace = new DigicoreTrace("Test CRS");
+		for (int i = 0; i < 5; i++) {
+			DigicorePosition position = new DigicorePosition(i, i, i);
+			expected.add(position);
+			trace.add(position);
+		}
+		Assert.assertEquals("Should be equal.", expected, trace);
+
+		DigicorePosition inserted = new DigicorePosition(10, 10.0, 10.0, 10.0);
+		expected.add(2, inserted);
+		trace.add(2, inserted);
+		Assert.assertEquals("Should be equal after insertion.", expected, trace);
+
+		expected.remove(0);
+		trace.remove(0);
+		expected.set(3, inserted);
+		trace.set(3, inserted);
+		Assert.assertEquals("Should be equal after removal.", expected, trace);
+
+		int i = 0;
+		for (DigicorePosition position : trace) {
+			Assert.assertEquals("Wrong position.", expected.get(i++), position);
+		}
+		Assert.assertEquals("Not all positions iterated.", expected.size(), i);
+
+		trace.clear();
+		Assert.assertTrue("Should be empty.", trace.isEmpty());
+	}
+
+}
@@ -25,6 +25,10 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Test;
 import org.matsim.api.core.v01.Id;
 import org.matsim.up.freight.containers.DigicoreVehicle;
@@ -63,6 +67,45 @@ public class DigicoreVehiclesTest {
 		assertNotNull("Cannot find vehicle '2'", dv.getVehicles().get(Id.createVehicleId("2")));
 	}
 	
+	/**
+	 * Threads add overlapping ranges of vehicles to the same container. Each
+	 * vehicle must be added exactly once, and every other attempt rejected.
+	 */
+	@Test
+	public void testAddConcurrently() throws InterruptedException {
+		DigicoreVehicles dv = DigicoreVehicles.createConcurrent("Test");
+		dv.setSilentLog(true);
+		assertTrue("Should be concurrent.", dv.isConcurrent());
+		assertFalse("Should not be concurrent.", new DigicoreVehicles().isConcurrent());
+		assertEquals("Wrong CRS.", "Test", dv.getCoordinateReferenceSystem());
+		
+		int numberOfThreads = 8;
+		int numberOfVehicles = 10000;
+		AtomicInteger rejected = new AtomicInteger();
+		List<Thread> threads = new ArrayList<>();
+		for(int t = 0; t < numberOfThreads; t++){
+			int first = t * numberOfVehicles / 2;
+			Thread thread = new Thread(() -> {
+				for(int i = first; i < first + numberOfVehicles; i++){
+					try{
+						dv.addDigicoreVehicle(new DigicoreVehicle(Id.createVehicleId(i)));
+					} catch (IllegalArgumentException e){
+						rejected.incrementAndGet();
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for(Thread thread : threads){
+			thread.join();
+		}
+		
+		int expected = (numberOfThreads + 1) * numberOfVehicles / 2;
+		assertEquals("Wrong number of vehicles.", expected, dv.getVehicles().size());
+		assertEquals("Wrong number of duplicates.", numberOfThreads * numberOfVehicles - expected, rejected.get());
+	}
+	
 	@Test
 	public void testSilentLog(){
 		DigicoreVehicles dv = new DigicoreVehicles();
@@ -0,0 +1,127 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * MappedDigicoreVehiclesTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.containers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class MappedDigicoreVehiclesTest {
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+
+	/**
+	 * The mapped columns must be the same as those on the heap.
+	 */
+	@Test
+	public void testColumns(){
+		DigicoreVehicles vehicles = CompactDigicoreVehiclesTest.buildVehicles();
+		CompactDigicoreVehicles expected = CompactDigicoreVehicles.of(vehicles);
+		MappedDigicoreVehicles mapped = MappedDigicoreVehicles.open(write(vehicles));
+
+		Assert.assertEquals("Wrong crs.", expected.getCoordinateReferenceSystem(), mapped.getCoordinateReferenceSystem());
+		Assert.assertEquals("Wrong description.", expected.getDescription(), mapped.getDescription());
+		Assert.assertEquals("Wrong zone.", expected.getZone(), mapped.getZone());
+		Assert.assertEquals("Wrong locale.", expected.getLocale(), mapped.getLocale());
+		Assert.assertEquals("Wrong number of vehicles.", expected.getNumberOfVehicles(), mapped.getNumberOfVehicles());
+		Assert.assertEquals("Wrong number of chains.", expected.getNumberOfChains(), mapped.getNumberOfChains());
+		Assert.assertEquals("Wrong number of activities.", expected.getNumberOfActivities(), mapped.getNumberOfActivities());
+
+		for(int v = 0; v < mapped.getNumberOfVehicles(); v++){
+			Assert.assertEquals("Wrong vehicle.", expected.getVehicleId(v), mapped.getVehicleId(v));
+			Assert.assertEquals("Wrong vehicle type.", expected.getVehicleType(v), mapped.getVehicleType(v));
+			Assert.assertEquals("Wrong index.", v, mapped.indexOf(mapped.getVehicleId(v)));
+			Assert.assertEquals("Wrong first chain.", expected.getFirstChain(v), mapped.getFirstChain(v));
+			Assert.assertEquals("Wrong chain end.", expected.getChainEnd(v), mapped.getChainEnd(v));
+		}
+		for(int c = 0; c < mapped.getNumberOfChains(); c++){
+			Assert.assertEquals("Wrong first activity.", expected.getFirstActivity(c), mapped.getFirstActivity(c));
+			Assert.assertEquals("Wrong activity end.", expected.getActivityEnd(c), mapped.getActivityEnd(c));
+		}
+		for(int a = 0; a < mapped.getNumberOfActivities(); a++){
+			Assert.assertEquals("Wrong x.", expected.getX(a), mapped.getX(a), 0.0);
+			Assert.assertEquals("Wrong y.", expected.getY(a), mapped.getY(a), 0.0);
+			Assert.assertEquals("Wrong start time.", expected.getStartTime(a), mapped.getStartTime(a), 0.0);
+			Assert.assertEquals("Wrong end time.", expected.getEndTime(a), mapped.getEndTime(a), 0.0);
+			Assert.assertEquals("Wrong end date.", expected.getEndDate(a), mapped.getEndDate(a));
+			Assert.assertEquals("Wrong facility.", expected.getFacilityId(a), mapped.getFacilityId(a));
+			Assert.assertEquals("Wrong type.", expected.getType(a), mapped.getType(a));
+			Assert.assertEquals("Wrong type.", expected.getActivityType(a), mapped.getActivityType(a));
+		}
+
+		try{
+			mapped.getX(mapped.getNumberOfActivities());
+			Assert.fail("Should not read beyond the column.");
+		} catch(IndexOutOfBoundsException e){
+			/* Correct. */
+		}
+	}
+
+
+	@Test
+	public void testEmpty(){
+		MappedDigicoreVehicles mapped = MappedDigicoreVehicles.open(write(new DigicoreVehicles()));
+		Assert.assertEquals("Should have no vehicles.", 0, mapped.getNumberOfVehicles());
+		Assert.assertEquals("Should have no activities.", 0, mapped.getNumberOfActivities());
+		Assert.assertNull("Should have no zone.", mapped.getZone());
+	}
+
+
+	@Test
+	public void testNotColumns() throws IOException {
+		File file = new File(utils.getOutputDirectory() + "test" + MappedDigicoreVehicles.FILENAME_SUFFIX);
+		Files.write(file.toPath(), "<?xml version=\"1.0\" encoding=\"UTF-8\"?>".getBytes());
+		try{
+			MappedDigicoreVehicles.open(file.getAbsolutePath());
+			Assert.fail("Should not open a file that is not columns.");
+		} catch(IllegalArgumentException e){
+			/* Correct. */
+		}
+	}
+
+
+	@Test
+	public void testGetFilename(){
+		Assert.assertEquals("Wrong filename.", "/a/digicoreVehicles.columns",
+				MappedDigicoreVehicles.getFilename("/a/digicoreVehicles.xml.gz"));
+		Assert.assertEquals("Wrong filename.", "/a/digicoreVehicles.columns",
+				MappedDigicoreVehicles.getFilename("/a/digicoreVehicles.xml"));
+	}
+
+
+	private String write(DigicoreVehicles vehicles){
+		String filename = utils.getOutputDirectory() + "test" + MappedDigicoreVehicles.FILENAME_SUFFIX;
+		MappedDigicoreVehicles.Writer writer = new MappedDigicoreVehicles.Writer(filename);
+		for(DigicoreVehicle vehicle : vehicles.getVehicles().values()){
+			writer.add(vehicle);
+		}
+		writer.finish(vehicles.getCoordinateReferenceSystem(), vehicles.getDescription());
+		Assert.assertEquals("Temporary files should be deleted.", 1, new File(utils.getOutputDirectory()).list().length);
+		return filename;
+	}
+
+}
@@ -0,0 +1,154 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinaryVehicleFileBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.up.utils.FileUtils;
+
+/**
+ * Compares the size, and the read throughput, of the sorted text vehicle
+ * files with that of the binary vehicle files. Given a month's
+ * <code>vehicles</code> folder, its text files are converted in a temporary
+ * folder, e.g.
+ * <pre>
+ *     java -Xmx2g ... BinaryVehicleFileBenchmark /path/to/month/vehicles/ 5
+ * </pre>
+ * Without a folder, vehicle files resembling the DigiCore data are
+ * generated.
+ *
+ * @author jwjoubert
+ */
+public class BinaryVehicleFileBenchmark {
+	private static final Logger LOG = Logger.getLogger(BinaryVehicleFileBenchmark.class);
+
+	/**
+	 * @param args optional folder with sorted <code>.txt.gz</code> vehicle
+	 *             files (or "-" to generate them), and the number of measured
+	 *             iterations (default 5).
+	 */
+	public static void main(String[] args) throws IOException {
+		File tmp = Files.createTempDirectory("binaryVehicles").toFile();
+		File folder = args.length > 0 && !args[0].equals("-") ? new File(args[0]) : createFiles(tmp, 200, 20000);
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		File[] textFiles = folder.listFiles((dir, name) -> name.endsWith(ExtractionUtils.SORTED_TEXT_EXTENSION));
+		List<File> binaryFiles = new ArrayList<>();
+		long textBytes = 0;
+		long binaryBytes = 0;
+		long records = 0;
+		for (File text : textFiles) {
+			File binary = new File(tmp, BinaryVehicleConverter.getBinaryFile(text).getName());
+			records += BinaryVehicleConverter.convert(text, binary);
+			textBytes += text.length();
+			binaryBytes += binary.length();
+			binaryFiles.add(binary);
+		}
+		LOG.info(String.format(Locale.US, "%d files, %d records", textFiles.length, records));
+		LOG.info(String.format(Locale.US, "  text: %d bytes (%.2f bytes/record)", textBytes, (double) textBytes / records));
+		LOG.info(String.format(Locale.US, "binary: %d bytes (%.2f bytes/record)", binaryBytes, (double) binaryBytes / records));
+
+		/* Warm up both readers before measuring. */
+		for (int i = 0; i < 2; i++) {
+			read(List.of(textFiles));
+			read(binaryFiles);
+		}
+		long textTime = 0;
+		long binaryTime = 0;
+		double check = 0;
+		for (int i = 0; i < iterations; i++) {
+			long start = System.nanoTime();
+			check += read(List.of(textFiles));
+			textTime += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			check -= read(binaryFiles);
+			binaryTime += System.nanoTime() - start;
+		}
+		if (check != 0) {
+			throw new IllegalStateException("The two formats do not contain the same values.");
+		}
+		double total = (double) records * iterations;
+		LOG.info(String.format(Locale.US, "  text: %.1f ns/record (%.1fM records/s)", textTime / total, total / textTime * 1e3));
+		LOG.info(String.format(Locale.US, "binary: %.1f ns/record (%.1fM records/s)", binaryTime / total, total / binaryTime * 1e3));
+
+		FileUtils.delete(tmp);
+	}
+
+
+	private static double read(List<File> files) throws IOException {
+		MutableDigicoreRecord record = new MutableDigicoreRecord();
+		double sum = 0;
+		for (File file : files) {
+			try (SortedRecordReader reader = SortedRecordReader.open(file)) {
+				while (reader.next(record)) {
+					sum += record.getTime() + record.getLongitude() + record.getLatitude() + record.getStatus() + record.getSpeed();
+				}
+			}
+		}
+		return sum;
+	}
+
+
+	/**
+	 * Creates sorted text vehicle files with records every 1 to 300 seconds,
+	 * and coordinates with six decimals that follow a random walk.
+	 */
+	private static File createFiles(File tmp, int vehicles, int recordsPerVehicle) throws IOException {
+		File folder = new File(tmp, "text");
+		if (!folder.mkdirs()) {
+			throw new IOException("Cannot create " + folder.getAbsolutePath());
+		}
+		Random random = new Random(20221201);
+		int[] statuses = {17, 17, 17, 17, 18, 143, 14, 12};
+		for (int v = 0; v < vehicles; v++) {
+			long id = 10000 + v;
+			long time = 1370599410L;
+			long lon = 17000000 + random.nextInt(15000000);
+			long lat = -22000000 - random.nextInt(12000000);
+			try (BufferedWriter bw = IOUtils.getBufferedWriter(new File(folder, id + ExtractionUtils.SORTED_TEXT_EXTENSION).getAbsolutePath())) {
+				DigicoreFilesSorter.writeHeader(bw);
+				for (int i = 0; i < recordsPerVehicle; i++) {
+					time += 1 + random.nextInt(300);
+					boolean stationary = random.nextInt(3) == 0;
+					lon += stationary ? 0 : random.nextInt(20001) - 10000;
+					lat += stationary ? 0 : random.nextInt(20001) - 10000;
+					if (i > 0) {
+						bw.newLine();
+					}
+					DigicoreFilesSorter.writeRecord(bw, id, time, lon / 1e6, lat / 1e6,
+							statuses[random.nextInt(statuses.length)], stationary ? 0 : random.nextInt(120));
+				}
+			}
+		}
+		return folder;
+	}
+
+}
@@ -0,0 +1,140 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinaryVehicleFileTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+
+public class BinaryVehicleFileTest {
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	/**
+	 * Every value must be read back exactly, including coordinates that
+	 * cannot be represented as fixed-point values.
+	 */
+	@Test
+	public void testWriteAndRead() throws IOException {
+		File file = new File(utils.getOutputDirectory() + "1234" + ExtractionUtils.SORTED_BINARY_EXTENSION);
+		long[] time = new long[10000];
+		double[] lon = new double[time.length];
+		double[] lat = new double[time.length];
+		int[] status = new int[time.length];
+		int[] speed = new int[time.length];
+		Random random = new Random(20221201);
+		long t = 1370599410L;
+		for (int i = 0; i < time.length; i++) {
+			t += random.nextInt(300);
+			time[i] = t;
+			lon[i] = random.nextBoolean() ? Math.round((17.0 + 15.0 * random.nextDouble()) * 1e6) / 1e6 : 17.0 + 15.0 * random.nextDouble();
+			lat[i] = random.nextBoolean() ? Math.round((-22.0 - 12.0 * random.nextDouble()) * 1e7) / 1e7 : -22.0 - 12.0 * random.nextDouble();
+			status[i] = random.nextInt(170);
+			speed[i] = random.nextInt(140) - 10;
+		}
+		lon[0] = -0.0;
+		lat[1] = Double.NaN;
+		lon[2] = 1e300;
+
+		try (BinaryVehicleWriter writer = new BinaryVehicleWriter(file, 1234L)) {
+			for (int i = 0; i < time.length; i++) {
+				writer.write(time[i], lon[i], lat[i], status[i], speed[i]);
+			}
+		}
+
+		MutableDigicoreRecord record = new MutableDigicoreRecord();
+		try (BinaryVehicleReader reader = new BinaryVehicleReader(file)) {
+			Assert.assertEquals("Wrong vehicle.", 1234L, reader.getVehicleId());
+			for (int i = 0; i < time.length; i++) {
+				Assert.assertTrue("Should have record " + i, reader.next(record));
+				Assert.assertEquals("Wrong vehicle.", 1234L, record.getVehicleId());
+				Assert.assertEquals("Wrong time.", time[i], record.getTime());
+				Assert.assertEquals("Wrong longitude.", Double.doubleToRawLongBits(lon[i]), Double.doubleToRawLongBits(record.getLongitude()));
+				Assert.assertEquals("Wrong latitude.", Double.doubleToRawLongBits(lat[i]), Double.doubleToRawLongBits(record.getLatitude()));
+				Assert.assertEquals("Wrong status.", status[i], record.getStatus());
+				Assert.assertEquals("Wrong speed.", speed[i], record.getSpeed());
+			}
+			Assert.assertFalse("Should not have more records.", reader.next(record));
+		}
+	}
+
+	/**
+	 * A converted text file must read back the same records as the text
+	 * file itself.
+	 */
+	@Test
+	public void testConvert() throws IOException {
+		File text = new File(utils.getOutputDirectory() + "14114" + ExtractionUtils.SORTED_TEXT_EXTENSION);
+		try (BufferedWriter bw = IOUtils.getBufferedWriter(text.getAbsolutePath())) {
+			DigicoreFilesSorter.writeHeader(bw);
+			DigicoreFilesSorter.writeRecord(bw, 14114L, 1370599410L, 30.732733, -29.826650000000001, 15, 12);
+			bw.newLine();
+			DigicoreFilesSorter.writeRecord(bw, 14114L, 1370599530L, 30.732766999999999, -29.82666, 17, 0);
+		}
+		File binary = BinaryVehicleConverter.getBinaryFile(text);
+		Assert.assertEquals("Wrong binary file.", "14114" + ExtractionUtils.SORTED_BINARY_EXTENSION, binary.getName());
+		Assert.assertEquals("Wrong number of records.", 2L, BinaryVehicleConverter.convert(text, binary));
+
+		MutableDigicoreRecord expected = new MutableDigicoreRecord();
+		MutableDigicoreRecord actual = new MutableDigicoreRecord();
+		try (SortedRecordReader textReader = SortedRecordReader.open(text);
+				SortedRecordReader binaryReader = SortedRecordReader.open(binary)) {
+			Assert.assertTrue("Wrong reader.", binaryReader instanceof BinaryVehicleReader);
+			while (textReader.next(expected)) {
+				Assert.assertTrue("Missing binary record.", binaryReader.next(actual));
+				Assert.assertEquals("Wrong vehicle.", expected.getVehicleId(), actual.getVehicleId());
+				Assert.assertEquals("Wrong time.", expected.getTime(), actual.getTime());
+				Assert.assertEquals("Wrong longitude.", expected.getLongitude(), actual.getLongitude(), 0.0);
+				Assert.assertEquals("Wrong latitude.", expected.getLatitude(), actual.getLatitude(), 0.0);
+				Assert.assertEquals("Wrong status.", expected.getStatus(), actual.getStatus());
+				Assert.assertEquals("Wrong speed.", expected.getSpeed(), actual.getSpeed());
+			}
+			Assert.assertFalse("Too many binary records.", binaryReader.next(actual));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsortedRecords() throws IOException {
+		File file = new File(utils.getOutputDirectory() + "1" + ExtractionUtils.SORTED_BINARY_EXTENSION);
+		try (BinaryVehicleWriter writer = new BinaryVehicleWriter(file, 1L)) {
+			writer.write(1370599410L, 30.0, -29.0, 17, 0);
+			writer.write(1370599409L, 30.0, -29.0, 17, 0);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotBinaryFile() throws IOException {
+		File file = new File(utils.getOutputDirectory() + "dummy" + ExtractionUtils.SORTED_BINARY_EXTENSION);
+		try (FileOutputStream fos = new FileOutputStream(file)) {
+			fos.write("vId,time".getBytes());
+		}
+		new BinaryVehicleReader(file).close();
+	}
+
+}
@@ -0,0 +1,126 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CoordinateTransformationBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.core.utils.geometry.CoordinateTransformation;
+import org.matsim.core.utils.geometry.transformations.TransformationFactory;
+import org.matsim.up.freight.utils.CoordinateTransformationService;
+
+/**
+ * Compares transforming every GPS position of a month's sorted vehicle files
+ * one {@link Coord} at a time, as the {@link DigicoreChainExtractor} used to,
+ * with transforming them in batches with the shared
+ * {@link CoordinateTransformationService}. The positions are read from a
+ * month's sorted <code>vehicles</code> folder, e.g.
+ * <pre>
+ *     java -Xmx4g ... CoordinateTransformationBenchmark /path/to/month/vehicles/ 5
+ * </pre>
+ *
+ * @author jwjoubert
+ */
+public class CoordinateTransformationBenchmark {
+	private static final Logger LOG = Logger.getLogger(CoordinateTransformationBenchmark.class);
+
+	/**
+	 * @param args the folder with sorted vehicle files, and optionally the
+	 *             number of measured iterations (default 5).
+	 */
+	public static void main(String[] args) throws IOException {
+		File folder = new File(args[0]);
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		/* Read all the positions, so that only the transformation is timed. */
+		File[] files = folder.listFiles((dir, name) -> name.endsWith(ExtractionUtils.SORTED_TEXT_EXTENSION)
+				|| name.endsWith(ExtractionUtils.SORTED_BINARY_EXTENSION));
+		double[] lon = new double[1 << 20];
+		double[] lat = new double[lon.length];
+		int size = 0;
+		MutableDigicoreRecord record = new MutableDigicoreRecord();
+		for (File file : files) {
+			try (SortedRecordReader reader = SortedRecordReader.open(file)) {
+				while (reader.next(record)) {
+					if (size == lon.length) {
+						lon = Arrays.copyOf(lon, 2 * size);
+						lat = Arrays.copyOf(lat, 2 * size);
+					}
+					lon[size] = record.getLongitude();
+					lat[size] = record.getLatitude();
+					size++;
+				}
+			}
+		}
+		LOG.info(String.format(Locale.US, "%d files, %d positions", files.length, size));
+
+		CoordinateTransformation perCoord = TransformationFactory.getCoordinateTransformation(
+				ExtractionUtils.INPUT_CRS, TransformationFactory.HARTEBEESTHOEK94_LO29);
+		CoordinateTransformationService service = CoordinateTransformationService.get(
+				ExtractionUtils.INPUT_CRS, TransformationFactory.HARTEBEESTHOEK94_LO29);
+		double[] x = new double[size];
+		double[] y = new double[size];
+
+		/* Warm up both before measuring. */
+		for (int i = 0; i < 2; i++) {
+			transformPerCoord(perCoord, lon, lat, x, y, size);
+			System.arraycopy(lon, 0, x, 0, size);
+			System.arraycopy(lat, 0, y, 0, size);
+			service.transform(x, y, size);
+		}
+		long perCoordTime = 0;
+		long serviceTime = 0;
+		double check = 0;
+		for (int i = 0; i < iterations; i++) {
+			long start = System.nanoTime();
+			transformPerCoord(perCoord, lon, lat, x, y, size);
+			perCoordTime += System.nanoTime() - start;
+			check += x[size - 1] + y[size - 1];
+
+			System.arraycopy(lon, 0, x, 0, size);
+			System.arraycopy(lat, 0, y, 0, size);
+			start = System.nanoTime();
+			service.transform(x, y, size);
+			serviceTime += System.nanoTime() - start;
+			check -= x[size - 1] + y[size - 1];
+		}
+		if (check != 0) {
+			throw new IllegalStateException("The two transformations do not agree.");
+		}
+		double total = (double) size * iterations;
+		LOG.info(String.format(Locale.US, "per coordinate: %.1f ns/position (%.1fM positions/s)", perCoordTime / total, total / perCoordTime * 1e3));
+		LOG.info(String.format(Locale.US, "       batched: %.1f ns/position (%.1fM positions/s)", serviceTime / total, total / serviceTime * 1e3));
+	}
+
+
+	private static void transformPerCoord(CoordinateTransformation ct, double[] lon, double[] lat, double[] x, double[] y, int size) {
+		for (int i = 0; i < size; i++) {
+			Coord c = ct.transform(new Coord(lon[i], lat[i]));
+			x[i] = c.getX();
+			y[i] = c.getY();
+		}
+	}
+
+}
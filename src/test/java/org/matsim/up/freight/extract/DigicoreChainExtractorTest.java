@@ -22,12 +22,17 @@ package org.matsim.up.freight.extract;
 
 import static org.junit.Assert.*;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Rule;
 import org.junit.Test;
+import org.matsim.core.utils.io.IOUtils;
 import org.matsim.core.utils.misc.Counter;
 import org.matsim.testcases.MatsimTestUtils;
 import org.matsim.up.freight.containers.*;
@@ -77,6 +82,93 @@ public class DigicoreChainExtractorTest {
 		assertTrue("Wrong element type.", e3 instanceof DigicoreActivity);
 	}
 	
+	@Test
+	public void testGeofence() {
+		DigicoreChainExtractor dce = setup();
+		dce.run();
+		assertEquals("Should not reject any records.", 0, dce.getRejectedFixes());
+
+		/* Exclude the last activity, east of 25E. */
+		dce = setup();
+		dce.setGeofence(Geofence.boundingBox(19.5, -25.0, 25.5, -19.0));
+		dce.run();
+		assertEquals("Wrong number of rejected records.", 11, dce.getRejectedFixes());
+		assertEquals("Chain should be incomplete.", 0, dce.getVehicle().getChains().size());
+	}
+	
+	@Test
+	public void testStatusHistogram() {
+		StatusHistogram histogram = new StatusHistogram();
+		DigicoreChainExtractor dce = setup();
+		dce.setStatusHistogram(histogram);
+		dce.run();
+		dce = setup();
+		dce.setStatusHistogram(histogram);
+		dce.run();
+		
+		Map<Integer, Long> counts = histogram.getCounts();
+		assertEquals("Wrong number of statuses.", 2, counts.size());
+		assertEquals("Wrong number of ignition-on records.", Long.valueOf(40), counts.get(0));
+		assertEquals("Wrong number of ignition-off records.", Long.valueOf(12), counts.get(15));
+	}
+	
+	@Test
+	public void testStatusTable() {
+		StatusTable table = new StatusTable(Arrays.asList("0", "7"), Arrays.asList("15", "7"));
+		assertEquals("Wrong state.", StatusTable.ON, table.get(0));
+		assertEquals("On should take precedence.", StatusTable.ON, table.get(7));
+		assertEquals("Wrong state.", StatusTable.OFF, table.get(15));
+		assertEquals("Wrong state.", StatusTable.UNKNOWN, table.get(3));
+		assertEquals("Wrong state.", StatusTable.UNKNOWN, table.get(-1));
+		assertEquals("Wrong state.", StatusTable.UNKNOWN, table.get(Integer.MAX_VALUE));
+		
+		try {
+			new StatusTable(Arrays.asList("on"), new ArrayList<>());
+			fail("Should not accept a non-integer status.");
+		} catch (IllegalArgumentException e) {
+			/* Correct. */
+		}
+	}
+	
+	/**
+	 * The second stop's records are out of order: its duration first exceeds
+	 * the activity threshold, and then drops below it again. The stop's
+	 * positions are then no longer available, but extraction must go on
+	 * without them.
+	 */
+	@Test
+	public void testUnsortedStop() throws IOException {
+		File inputFile = new File(utils.getOutputDirectory() + "1.txt");
+		try (BufferedWriter bw = IOUtils.getBufferedWriter(inputFile.getAbsolutePath())) {
+			bw.write("VehicleId,Time,Long,Lat,Status,Speed\n");
+			bw.write("1,0,20,-20,15,0\n");
+			bw.write("1,150,20,-20,15,0\n");
+			bw.write("1,151,21,-20,0,10\n");
+			bw.write("1,152,22,-20,0,10\n");
+			bw.write("1,153,23,-20,0,10\n");
+			bw.write("1,160,23,-20,15,0\n");
+			bw.write("1,180,23,-20,15,0\n");
+			bw.write("1,162,23,-20,15,0\n");
+			bw.write("1,163,24,-20,0,10\n");
+			bw.write("1,164,25,-20,0,10\n");
+			bw.write("1,165,26,-20,0,10\n");
+			bw.write("1,170,26,-20,15,0\n");
+			bw.write("1,400,26,-20,15,0\n");
+			bw.write("1,401,27,-20,0,10\n");
+		}
+		DigicoreChainExtractor dce = new DigicoreChainExtractor(inputFile, null, 100.0, 10.0,
+				Arrays.asList("0"), Arrays.asList("15"), null, new Counter("   test # "));
+		dce.run();
+
+		List<DigicoreChain> chains = dce.getVehicle().getChains();
+		assertEquals("Wrong number of chains.", 1, chains.size());
+		DigicoreChain chain = chains.get(0);
+		assertEquals("Wrong number of chain elements.", 3, chain.size());
+		DigicoreTrace trace = (DigicoreTrace) chain.get(1);
+		assertEquals("Trip should continue without the short stop's positions.", 5, trace.size());
+		assertEquals("Wrong time after the short stop.", 164L, trace.getTime(3));
+	}
+
 	private DigicoreChainExtractor setup(){
 		File inputFile = new File(utils.getClassInputDirectory() + "test.txt");
 		File outputFolder = new File(utils.getOutputDirectory());
@@ -0,0 +1,176 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DigicoreChunkedReaderTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.up.freight.utils.BlockGzipIndex;
+
+
+public class DigicoreChunkedReaderTest {
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	/**
+	 * Every line must be read exactly once, and in order, irrespective of
+	 * where the chunk boundaries fall.
+	 */
+	@Test
+	public void testUncompressed() throws IOException {
+		List<String> lines = createLines();
+		String filename = utils.getOutputDirectory() + "input.csv";
+		try (OutputStream os = new FileOutputStream(filename)) {
+			os.write(toBytes(lines, "\n", false));
+		}
+		for (int chunks = 1; chunks <= 13; chunks++) {
+			Assert.assertEquals("Wrong lines with " + chunks + " chunk(s).", lines, readAll(filename, chunks));
+		}
+	}
+
+	@Test
+	public void testWindowsLineEndings() throws IOException {
+		List<String> lines = createLines();
+		String filename = utils.getOutputDirectory() + "input.csv";
+		try (OutputStream os = new FileOutputStream(filename)) {
+			os.write(toBytes(lines, "\r\n", true));
+		}
+		for (int chunks = 1; chunks <= 13; chunks++) {
+			Assert.assertEquals("Wrong lines with " + chunks + " chunk(s).", lines, readAll(filename, chunks));
+		}
+	}
+
+	@Test
+	public void testBlockGzipped() throws IOException {
+		List<String> lines = createLines();
+		byte[] data = toBytes(lines, "\n", true);
+		String filename = utils.getOutputDirectory() + "input.csv.gz";
+		try (OutputStream os = new FileOutputStream(filename)) {
+			/* Small, odd-sized blocks so that lines straddle block boundaries. */
+			for (int i = 0; i < data.length; i += 997) {
+				os.write(blockGzip(data, i, Math.min(997, data.length - i)));
+			}
+			os.write(blockGzip(data, 0, 0));
+		}
+		Assert.assertTrue("Multiple blocks are required.", new DigicoreChunkedReader(filename, 13).getNumberOfChunks() > 1);
+
+		BlockGzipIndex index = BlockGzipIndex.read(new File(filename));
+		Assert.assertNotNull("File should be block-gzipped.", index);
+		Assert.assertEquals("Wrong uncompressed size.", data.length, index.getUncompressedSize());
+
+		for (int chunks = 1; chunks <= 13; chunks++) {
+			Assert.assertEquals("Wrong lines with " + chunks + " chunk(s).", lines, readAll(filename, chunks));
+		}
+	}
+
+	private static List<String> readAll(String filename, int chunks) {
+		DigicoreChunkedReader reader = new DigicoreChunkedReader(filename, chunks);
+		List<LineCollector> collectors = reader.read(chunk -> new LineCollector(), 4);
+		List<String> result = new ArrayList<>();
+		for (LineCollector collector : collectors) {
+			Assert.assertTrue("Chunk not finished.", collector.finished);
+			result.addAll(collector.lines);
+		}
+		return result;
+	}
+
+	/**
+	 * Lines of different lengths, including an empty one.
+	 */
+	private static List<String> createLines() {
+		List<String> lines = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			StringBuilder sb = new StringBuilder(String.valueOf(1370599410 + i));
+			for (int j = 0; j < i % 7; j++) {
+				sb.append(",").append(i * j);
+			}
+			lines.add(i == 250 ? "" : sb.toString());
+		}
+		return lines;
+	}
+
+	private static byte[] toBytes(List<String> lines, String lineEnding, boolean lastLineEnding) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < lines.size(); i++) {
+			sb.append(lines.get(i));
+			if (i < lines.size() - 1 || lastLineEnding) {
+				sb.append(lineEnding);
+			}
+		}
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes a single BGZF block, i.e. a gzip member with a 'BC' extra field
+	 * containing the block size.
+	 */
+	private static byte[] blockGzip(byte[] data, int offset, int length) {
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		deflater.setInput(data, offset, length);
+		deflater.finish();
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		while (!deflater.finished()) {
+			int n = deflater.deflate(buffer);
+			compressed.write(buffer, 0, n);
+		}
+		deflater.end();
+		CRC32 crc = new CRC32();
+		crc.update(data, offset, length);
+
+		ByteBuffer block = ByteBuffer.allocate(18 + compressed.size() + 8).order(ByteOrder.LITTLE_ENDIAN);
+		block.put((byte) 0x1f).put((byte) 0x8b).put((byte) 8).put((byte) 4);
+		block.putInt(0).put((byte) 0).put((byte) 0xff);
+		block.putShort((short) 6).put((byte) 'B').put((byte) 'C').putShort((short) 2);
+		block.putShort((short) (block.capacity() - 1));
+		block.put(compressed.toByteArray());
+		block.putInt((int) crc.getValue()).putInt(length);
+		return block.array();
+	}
+
+	private static final class LineCollector implements DigicoreChunkedReader.LineHandler {
+		private final List<String> lines = new ArrayList<>();
+		private boolean finished = false;
+
+		@Override
+		public void handleLine(byte[] buffer, int offset, int length) {
+			lines.add(new String(buffer, offset, length, StandardCharsets.UTF_8));
+		}
+
+		@Override
+		public void finish() {
+			finished = true;
+		}
+	}
+}
@@ -0,0 +1,176 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DigicoreExternalSorterTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+
+public class DigicoreExternalSorterTest {
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	private static final int VEHICLES = 3;
+	private static final int RECORDS_PER_VEHICLE = 2000;
+
+	/**
+	 * Sorts a shuffled file with a memory budget so small that several runs,
+	 * and intermediate merge passes, are required.
+	 */
+	@Test
+	public void testSort() {
+		String input = utils.getOutputDirectory() + "input.csv";
+		writeShuffledInput(input);
+
+		DigicoreExternalSorter sorter = new DigicoreExternalSorter(input, utils.getOutputDirectory(), 1);
+		sorter.setMaximumFanIn(2);
+		sorter.sort(5, 0, 2, 1, 4, 3);
+		assertSorted(sorter);
+	}
+
+	/**
+	 * Same as {@link #testSort()}, but with the input read in parallel
+	 * chunks.
+	 */
+	@Test
+	public void testSortInParallel() {
+		String input = utils.getOutputDirectory() + "input.csv";
+		writeShuffledInput(input);
+
+		DigicoreExternalSorter sorter = new DigicoreExternalSorter(input, utils.getOutputDirectory(), 1);
+		sorter.setMaximumFanIn(2);
+		sorter.setNumberOfThreads(4);
+		sorter.sort(5, 0, 2, 1, 4, 3);
+		assertSorted(sorter);
+	}
+
+	/**
+	 * Interrupts the merge by removing the last vehicle file and truncating
+	 * the one before it, and checks that the merge is resumed correctly.
+	 */
+	@Test
+	public void testResumeMerge() throws IOException {
+		String input = utils.getOutputDirectory() + "input.csv";
+		writeShuffledInput(input);
+		File runFolder = new File(utils.getOutputDirectory() + "resumeRuns/");
+		Assert.assertTrue("Cannot create run folder.", runFolder.mkdirs());
+
+		DigicoreExternalSorter sorter = new DigicoreExternalSorter(input, utils.getOutputDirectory(), 1);
+		sorter.setMaximumFanIn(2);
+		List<File> runs = sorter.createSortedRuns(runFolder, 5, 0, 2, 1, 4, 3);
+		sorter.mergeRuns(runs);
+
+		String folder = utils.getOutputDirectory() + ExtractionUtils.FOLDER_VEHICLES;
+		Assert.assertTrue("Cannot remove vehicle file.", new File(folder + VEHICLES + ".txt.gz").delete());
+		try (BufferedWriter bw = IOUtils.getBufferedWriter(folder + (VEHICLES - 1) + ".txt.gz")) {
+			DigicoreFilesSorter.writeHeader(bw);
+		}
+
+		DigicoreExternalSorter resumed = new DigicoreExternalSorter(input, utils.getOutputDirectory(), 1, true);
+		resumed.mergeRuns(runs);
+		Assert.assertEquals("Wrong number of vehicles.", VEHICLES, resumed.getNumberOfVehicles());
+		/* The resumed sorter did not read the input, so only its files are checked. */
+		assertVehicleFiles();
+	}
+
+	private void assertSorted(DigicoreExternalSorter sorter) {
+		Assert.assertEquals("Wrong number of records.", VEHICLES * RECORDS_PER_VEHICLE, sorter.getNumberOfRecords());
+		Assert.assertEquals("Wrong number of vehicles.", VEHICLES, sorter.getNumberOfVehicles());
+		Assert.assertEquals("Wrong earliest time stamp.", 1000L, sorter.getEarliestTimestamp());
+		Assert.assertEquals("Wrong latest time stamp.", 1000L + RECORDS_PER_VEHICLE - 1, sorter.getLatestTimestamp());
+		assertVehicleFiles();
+	}
+
+	private void assertVehicleFiles() {
+		for (int v = 1; v <= VEHICLES; v++) {
+			File file = new File(utils.getOutputDirectory() + ExtractionUtils.FOLDER_VEHICLES + v + ".txt.gz");
+			Assert.assertTrue("Cannot find sorted file for vehicle " + v, file.exists());
+			List<String> lines = readLines(file);
+			Assert.assertEquals("Wrong header.", "vId,time,lon,lat,status,speed", lines.get(0));
+			Assert.assertEquals("Wrong number of records for vehicle " + v, RECORDS_PER_VEHICLE, lines.size() - 1);
+
+			long previous = Long.MIN_VALUE;
+			for (String line : lines.subList(1, lines.size())) {
+				String[] sa = line.split(",");
+				Assert.assertEquals("Wrong vehicle in file.", String.valueOf(v), sa[0]);
+				long time = Long.parseLong(sa[1]);
+				Assert.assertTrue("Records not sorted.", time >= previous);
+				Assert.assertEquals("Coordinate not linked to time stamp.", 20.0 + (time - 1000) / 10000.0, Double.parseDouble(sa[2]), MatsimTestUtils.EPSILON);
+				previous = time;
+			}
+		}
+		String[] runFolders = new File(utils.getOutputDirectory()).list((dir, name) -> name.startsWith("sortRuns"));
+		Assert.assertEquals("Temporary run folder should have been removed.", 0, runFolders.length);
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testExistingVehiclesFolder() {
+		new File(utils.getOutputDirectory() + ExtractionUtils.FOLDER_VEHICLES).mkdirs();
+		new DigicoreExternalSorter("dummy.csv", utils.getOutputDirectory(), 1);
+	}
+
+	/**
+	 * Writes a raw file (same field order as the Digicore data) with records
+	 * of several vehicles in random order.
+	 */
+	private void writeShuffledInput(String filename) {
+		List<String> lines = new ArrayList<>();
+		for (int v = 1; v <= VEHICLES; v++) {
+			for (int i = 0; i < RECORDS_PER_VEHICLE; i++) {
+				long time = 1000 + i;
+				lines.add(time + ",-25.0," + (20.0 + i / 10000.0) + ",0,17," + v);
+			}
+		}
+		Collections.shuffle(lines, new Random(20221201));
+		try (BufferedWriter bw = IOUtils.getBufferedWriter(filename)) {
+			for (String line : lines) {
+				bw.write(line);
+				bw.newLine();
+			}
+		} catch (IOException e) {
+			Assert.fail("Could not write test input.");
+		}
+	}
+
+	private static List<String> readLines(File file) {
+		List<String> lines = new ArrayList<>();
+		try (BufferedReader br = IOUtils.getBufferedReader(file.getAbsolutePath())) {
+			String line;
+			while ((line = br.readLine()) != null) {
+				lines.add(line);
+			}
+		} catch (IOException e) {
+			Assert.fail("Could not read " + file.getName());
+		}
+		return lines;
+	}
+}
@@ -0,0 +1,144 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DigicoreFileSplitterTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.extract;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.testcases.MatsimTestUtils;
+
+
+public class DigicoreFileSplitterTest {
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testSplitPooled() throws IOException {
+		String input = writeInput();
+		String folder = utils.getOutputDirectory() + "pooled/";
+		DigicoreFileSplitter dfs = new DigicoreFileSplitter(input, folder, 2);
+		dfs.setMaximumOpenWriters(2);
+		dfs.setCheckpointInterval(3);
+		dfs.splitPooled(0, 1, 2, 3, 4, 5);
+
+		Assert.assertEquals("Wrong number of vehicle files.", 3, new File(folder + ExtractionUtils.FOLDER_VEHICLES).list().length);
+		Assert.assertEquals("Wrong records for vehicle 2.",
+				List.of("2,1000,28.1,-25.1,0,10", "2,1002,28.3,-25.3,0,30", "2,1005,28.6,-25.6,0,60"),
+				readVehicle(folder, "2"));
+		Assert.assertEquals("Wrong earliest time.", 1000, dfs.getEarliestTimestamp());
+		Assert.assertEquals("Wrong latest time.", 1007, dfs.getLatestTimestamp());
+	}
+
+
+	/**
+	 * An interrupted split is simulated by cutting the log back to its first
+	 * checkpoint, and leaving an incomplete one behind. The vehicle files then
+	 * already hold records after the checkpoint, and a vehicle that was only
+	 * seen after it. Resuming must give the same files as a single split.
+	 */
+	@Test
+	public void testResuming() throws IOException {
+		String input = writeInput();
+		String expected = utils.getOutputDirectory() + "expected/";
+		new DigicoreFileSplitter(input, expected, 2).splitPooled(0, 1, 2, 3, 4, 5);
+
+		String folder = utils.getOutputDirectory() + "resumed/";
+		DigicoreFileSplitter dfs = new DigicoreFileSplitter(input, folder, 2);
+		dfs.setCheckpointInterval(3);
+		dfs.splitPooled(0, 1, 2, 3, 4, 5);
+
+		File[] logs = new File(folder).listFiles((dir, name) -> name.startsWith("logRecordsRead_"));
+		Assert.assertEquals("Should have one log.", 1, logs.length);
+		List<String> log = Files.readAllLines(logs[0].toPath());
+		List<String> interrupted = new ArrayList<>();
+		for (String entry : log) {
+			interrupted.add(entry);
+			if (!entry.contains(",")) {
+				break;
+			}
+		}
+		Assert.assertEquals("First checkpoint should be after three records.", "4", interrupted.get(interrupted.size() - 1));
+		Files.writeString(logs[0].toPath(), String.join("\n", interrupted) + "\n1,2");
+
+		DigicoreFileSplitter resumed = DigicoreFileSplitter.resuming(input, folder, logs[0].getPath());
+		resumed.setCheckpointInterval(3);
+		resumed.splitPooled(0, 1, 2, 3, 4, 5);
+
+		for (String id : new String[]{"1", "2", "3"}) {
+			Assert.assertEquals("Wrong records for vehicle " + id + ".", readVehicle(expected, id), readVehicle(folder, id));
+		}
+		Assert.assertEquals("Resumed split should only read the remaining lines.", 1003, resumed.getEarliestTimestamp());
+
+		/* The continued log must be usable again. */
+		List<String> continued = Files.readAllLines(logs[0].toPath());
+		Assert.assertEquals("Log should end at the last line.", "9", continued.get(continued.size() - 1));
+	}
+
+
+	@Test
+	public void testResumingWithoutCheckpoint() throws IOException {
+		String input = writeInput();
+		String folder = utils.getOutputDirectory();
+		new DigicoreFileSplitter(input, folder, 2);
+		String log = folder + "logRecordsRead_test.txt";
+		Files.writeString(new File(log).toPath(), "1,42\n");
+		try {
+			DigicoreFileSplitter.resuming(input, folder, log);
+			Assert.fail("Should not resume without a complete checkpoint.");
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(e.getMessage().startsWith("No complete checkpoint"));
+		}
+	}
+
+
+	/**
+	 * Writes eight records of three vehicles, with vehicle 3 only appearing
+	 * after the first checkpoint of three records.
+	 */
+	private String writeInput() throws IOException {
+		String input = utils.getOutputDirectory() + "input.csv";
+		try (BufferedWriter bw = Files.newBufferedWriter(new File(input).toPath(), StandardCharsets.UTF_8)) {
+			bw.write("id,time,lon,lat,status,speed\n");
+			bw.write("2,1000,28.1,-25.1,0,10\n");
+			bw.write("1,1001,28.2,-25.2,0,20\n");
+			bw.write("2,1002,28.3,-25.3,0,30\n");
+			bw.write("1,1003,28.4,-25.4,0,40\n");
+			bw.write("3,1004,28.5,-25.5,0,50\n");
+			bw.write("2,1005,28.6,-25.6,0,60\n");
+			bw.write("3,1006,28.7,-25.7,0,70\n");
+			bw.write("1,1007,28.8,-25.8,0,80\n");
+		}
+		return input;
+	}
+
+	private static List<String> readVehicle(String folder, String id) throws IOException {
+		return Files.readAllLines(new File(folder + ExtractionUtils.FOLDER_VEHICLES + id + ".txt").toPath());
+	}
+
+}
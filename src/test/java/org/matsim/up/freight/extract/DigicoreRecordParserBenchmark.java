@@ -0,0 +1,125 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DigicoreRecordParserBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+import java.util.Locale;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Compares the {@link DigicoreRecordParser} with the previous way of parsing
+ * raw DigiCore lines, i.e. {@link String#split(String)} followed by the
+ * standard number parsers, on generated lines. Add <code>-verbose:gc</code>
+ * to also compare the garbage that each creates, e.g.
+ * <pre>
+ *     java -Xms2g -Xmx2g -verbose:gc ... DigicoreRecordParserBenchmark 2000000 10
+ * </pre>
+ *
+ * @author jwjoubert
+ */
+public class DigicoreRecordParserBenchmark {
+	private static final Logger LOG = Logger.getLogger(DigicoreRecordParserBenchmark.class);
+
+	/**
+	 * @param args optional number of lines (default 1000000) and number of
+	 *             measured iterations (default 10).
+	 */
+	public static void main(String[] args) {
+		int numberOfLines = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		String[] lines = createLines(numberOfLines);
+
+		/* Warm up both paths before measuring. */
+		for (int i = 0; i < 5; i++) {
+			parseWithSplit(lines);
+			parseWithParser(lines);
+		}
+
+		long splitTime = 0;
+		long parserTime = 0;
+		double check = 0;
+		for (int i = 0; i < iterations; i++) {
+			long start = System.nanoTime();
+			check += parseWithSplit(lines);
+			splitTime += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			check -= parseWithParser(lines);
+			parserTime += System.nanoTime() - start;
+		}
+		if (check != 0) {
+			throw new IllegalStateException("The two paths do not parse the same values.");
+		}
+		double total = (double) numberOfLines * iterations;
+		LOG.info(String.format(Locale.US, "split-based: %.1f ns/line", splitTime / total));
+		LOG.info(String.format(Locale.US, "     parser: %.1f ns/line", parserTime / total));
+	}
+
+
+	private static double parseWithSplit(String[] lines) {
+		double sum = 0;
+		for (String line : lines) {
+			String[] sa = line.split(",");
+			if (sa.length == 6) {
+				sum += Long.parseLong(sa[5]) + Long.parseLong(sa[0])
+						+ Double.parseDouble(sa[2]) + Double.parseDouble(sa[1])
+						+ Integer.parseInt(sa[4]) + Integer.parseInt(sa[3]);
+			}
+		}
+		return sum;
+	}
+
+
+	private static double parseWithParser(String[] lines) {
+		DigicoreRecordParser parser = new DigicoreRecordParser(5, 0, 2, 1, 4, 3);
+		MutableDigicoreRecord record = new MutableDigicoreRecord();
+		double sum = 0;
+		for (String line : lines) {
+			if (parser.parse(line, record)) {
+				sum += record.getVehicleId() + record.getTime()
+						+ record.getLongitude() + record.getLatitude()
+						+ record.getStatus() + record.getSpeed();
+			}
+		}
+		return sum;
+	}
+
+
+	/**
+	 * Creates raw lines that resemble the DigiCore data: many coordinates
+	 * have 17 significant digits.
+	 */
+	private static String[] createLines(int numberOfLines) {
+		Random random = new Random(20221201);
+		String[] lines = new String[numberOfLines];
+		long time = 1370599410;
+		for (int i = 0; i < numberOfLines; i++) {
+			time += random.nextInt(120);
+			double lat = -22.0 - 12.0 * random.nextDouble();
+			double lon = 17.0 + 15.0 * random.nextDouble();
+			String latString = random.nextBoolean() ? String.format(Locale.US, "%.15f", lat) : String.format(Locale.US, "%.6f", lat);
+			String lonString = random.nextBoolean() ? String.format(Locale.US, "%.15f", lon) : String.format(Locale.US, "%.6f", lon);
+			lines[i] = time + "," + latString + "," + lonString + "," + random.nextInt(120) + "," + random.nextInt(170) + "," + (10000 + random.nextInt(50000));
+		}
+		return lines;
+	}
+}
@@ -0,0 +1,120 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DigicoreRecordParserTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class DigicoreRecordParserTest {
+
+	@Test
+	public void testParseRawRecord() {
+		DigicoreRecordParser parser = new DigicoreRecordParser(5, 0, 2, 1, 4, 3);
+		MutableDigicoreRecord record = new MutableDigicoreRecord();
+		String line = "1370599410,-29.826650000000001,30.732733,12,15,14114";
+		Assert.assertTrue("Should parse.", parser.parse(line, record));
+		Assert.assertEquals("Wrong vehicle.", 14114L, record.getVehicleId());
+		Assert.assertEquals("Wrong time.", 1370599410L, record.getTime());
+		Assert.assertEquals("Wrong longitude.", Double.parseDouble("30.732733"), record.getLongitude(), 0.0);
+		Assert.assertEquals("Wrong latitude.", Double.parseDouble("-29.826650000000001"), record.getLatitude(), 0.0);
+		Assert.assertEquals("Wrong status.", 15, record.getStatus());
+		Assert.assertEquals("Wrong speed.", 12, record.getSpeed());
+
+		/* Field positions refer to the columns of the line. */
+		Assert.assertEquals("Wrong field text.", "14114", line.substring(record.getFieldStart(5), record.getFieldEnd(5)));
+		Assert.assertEquals("Wrong field text.", "-29.826650000000001", line.substring(record.getFieldStart(1), record.getFieldEnd(1)));
+
+		/* Same from bytes, with an offset. */
+		byte[] bytes = ("xx" + line + "yy").getBytes(StandardCharsets.US_ASCII);
+		MutableDigicoreRecord other = new MutableDigicoreRecord();
+		Assert.assertTrue("Should parse.", parser.parse(bytes, 2, line.length(), other));
+		Assert.assertEquals("Wrong vehicle.", record.getVehicleId(), other.getVehicleId());
+		Assert.assertEquals("Wrong latitude.", record.getLatitude(), other.getLatitude(), 0.0);
+		Assert.assertEquals("Wrong field start.", record.getFieldStart(3), other.getFieldStart(3));
+	}
+
+	@Test
+	public void testMalformedRecords() {
+		DigicoreRecordParser parser = DigicoreRecordParser.forSortedFiles();
+		MutableDigicoreRecord record = new MutableDigicoreRecord();
+		Assert.assertFalse("Header is not a record.", parser.parse("vId,time,lon,lat,status,speed", record));
+		Assert.assertFalse("Too few fields.", parser.parse("1,2,3.0,4.0,5", record));
+		Assert.assertFalse("Too many fields.", parser.parse("1,2,3.0,4.0,5,6,7", record));
+		Assert.assertFalse("Empty field.", parser.parse("1,,3.0,4.0,5,6", record));
+		Assert.assertFalse("Empty last field.", parser.parse("1,2,3.0,4.0,5,", record));
+		Assert.assertFalse("Not an integer status.", parser.parse("1,2,3.0,4.0,5.5,6", record));
+		Assert.assertFalse("Empty line.", parser.parse("", record));
+		Assert.assertTrue("Scientific notation is valid.", parser.parse("1,2,3.0E1,-4.0e-1,5,6", record));
+		Assert.assertEquals("Wrong longitude.", 30.0, record.getLongitude(), 0.0);
+		Assert.assertEquals("Wrong latitude.", -0.4, record.getLatitude(), 0.0);
+	}
+
+	/**
+	 * The parsed numbers must be exactly those of the standard Java parsers.
+	 */
+	@Test
+	public void testSameAsJava() {
+		Random random = new Random(20221201);
+		for (int i = 0; i < 100000; i++) {
+			double d = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(10) - 2);
+			assertSameDouble(Double.toString(d));
+			assertSameDouble(new BigDecimal(d).round(new MathContext(1 + random.nextInt(18))).toPlainString());
+		}
+		String[] special = {"0", "-0.0", "1.", ".5", "+2.5", "007.100",
+				"9007199254740993", "9007199254740995", "-29.826650000000001", "30.732766999999999",
+				"0.000000000000000001", "999999999999999999", "1234567890.123456789"};
+		for (String s : special) {
+			assertSameDouble(s);
+		}
+
+		String[] integers = {"0", "-5", "+7", "123456789", "999999999", "2147483647", "-2147483648",
+				"123456789012345678", "9223372036854775807", "-9223372036854775808"};
+		for (String s : integers) {
+			byte[] b = s.getBytes(StandardCharsets.US_ASCII);
+			Assert.assertEquals("Wrong long for " + s, Long.parseLong(s), DigicoreRecordParser.parseLong(b, 0, b.length));
+		}
+		String[] ints = {"0", "-5", "+7", "123456789", "999999999", "2147483647", "-2147483648"};
+		for (String s : ints) {
+			byte[] b = s.getBytes(StandardCharsets.US_ASCII);
+			Assert.assertEquals("Wrong int for " + s, Integer.parseInt(s), DigicoreRecordParser.parseInt(b, 0, b.length));
+		}
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testIntegerOverflow() {
+		byte[] b = "2147483648".getBytes(StandardCharsets.US_ASCII);
+		DigicoreRecordParser.parseInt(b, 0, b.length);
+	}
+
+	private static void assertSameDouble(String s) {
+		byte[] b = s.getBytes(StandardCharsets.US_ASCII);
+		double expected = Double.parseDouble(s);
+		double actual = DigicoreRecordParser.parseDouble(b, 0, b.length);
+		Assert.assertEquals("Wrong double for " + s,
+				Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual));
+	}
+}
@@ -0,0 +1,86 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * GeofenceTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+
+public class GeofenceTest {
+
+	@Test
+	public void testBoundingBox() {
+		Geofence geofence = Geofence.SOUTHERN_AFRICA;
+		Assert.assertTrue("Should be inside.", geofence.contains(28.2, -25.7));
+		Assert.assertTrue("Boundary should be inside.", geofence.contains(0.0, -36.0));
+		Assert.assertTrue("Boundary should be inside.", geofence.contains(45.0, 0.0));
+		Assert.assertFalse("Should be outside.", geofence.contains(-0.1, -25.7));
+		Assert.assertFalse("Should be outside.", geofence.contains(28.2, 0.1));
+		Assert.assertFalse("Should be outside.", geofence.contains(Double.NaN, -25.7));
+
+		try {
+			Geofence.boundingBox(1.0, 0.0, 0.0, 1.0);
+			Assert.fail("Should not accept an invalid box.");
+		} catch (IllegalArgumentException e) {
+			/* Correct. */
+		}
+	}
+
+
+	/**
+	 * The grid must not change which positions are inside a (concave)
+	 * polygon.
+	 */
+	@Test
+	public void testPolygon() {
+		GeometryFactory gf = new GeometryFactory();
+		Geometry polygon = gf.createPolygon(new Coordinate[]{
+				new Coordinate(16.5, -34.8),
+				new Coordinate(32.9, -26.9),
+				new Coordinate(31.0, -22.3),
+				new Coordinate(25.0, -29.0),
+				new Coordinate(20.0, -22.0),
+				new Coordinate(16.5, -34.8)});
+		Geofence geofence = new PolygonGeofence(polygon);
+
+		Random random = new Random(20221209);
+		int inside = 0;
+		for (int i = 0; i < 100000; i++) {
+			double lon = 15.0 + 20.0 * random.nextDouble();
+			double lat = -36.0 + 15.0 * random.nextDouble();
+			boolean expected = polygon.covers(gf.createPoint(new Coordinate(lon, lat)));
+			Assert.assertEquals("Wrong result for (" + lon + "," + lat + ")", expected, geofence.contains(lon, lat));
+			inside += expected ? 1 : 0;
+		}
+		Assert.assertTrue("Should have positions inside.", inside > 0);
+
+		Assert.assertTrue("Vertex should be inside.", geofence.contains(25.0, -29.0));
+		Assert.assertTrue("Envelope corner should be inside.", geofence.contains(32.9, -26.9));
+		Assert.assertFalse("Should be outside the envelope.", geofence.contains(33.0, -26.9));
+		Assert.assertFalse("Should be in the concave part.", geofence.contains(25.0, -23.0));
+	}
+
+}
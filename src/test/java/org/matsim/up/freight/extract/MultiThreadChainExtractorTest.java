@@ -0,0 +1,95 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * MultiThreadChainExtractorTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.extract;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.core.utils.geometry.transformations.TransformationFactory;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+
+public class MultiThreadChainExtractorTest {
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	/**
+	 * A vehicle file that cannot be extracted must fail the extraction as a
+	 * whole, after the other vehicles have been written.
+	 */
+	@Test
+	public void testFailedVehicleFile() throws IOException {
+		String folder = utils.getOutputDirectory() + ExtractionUtils.FOLDER_VEHICLES;
+		Assert.assertTrue("Cannot create vehicles folder.", new File(folder).mkdirs());
+		writeVehicleFile(folder + "1" + ExtractionUtils.SORTED_TEXT_EXTENSION,
+				"1,0,20,-20,15,0", "1,200,20,-20,15,0", "1,201,21,-20,0,10",
+				"1,202,22,-20,0,10", "1,300,22,-20,15,0", "1,600,22,-20,15,0", "1,601,23,-20,0,10");
+		writeVehicleFile(folder + "2" + ExtractionUtils.SORTED_TEXT_EXTENSION,
+				"2,0,20,-20,15,0", "2,not a time,20,-20,15,0");
+		String statusFile = utils.getOutputDirectory() + "status.csv";
+		try (BufferedWriter bw = IOUtils.getBufferedWriter(statusFile)) {
+			bw.write("Start,0\nStop,15\n");
+		}
+
+		String timesFile = utils.getOutputDirectory() + ExtractionUtils.FILENAME_EXTRACTION_TIMES;
+		String vehiclesFile = utils.getOutputDirectory() + ExtractionUtils.FILENAME_VEHICLES;
+		try {
+			MultiThreadChainExtractor.main(new String[]{folder, statusFile, utils.getOutputDirectory(), "2",
+					"100", "10", TransformationFactory.HARTEBEESTHOEK94_LO29, timesFile, vehiclesFile, "Test"});
+			Assert.fail("Should fail if a vehicle file cannot be extracted.");
+		} catch (RuntimeException e) {
+			Assert.assertTrue("Wrong failure.", e.getMessage().startsWith("1 vehicle file(s) could not be extracted"));
+		}
+
+		Assert.assertTrue("Vehicles should still be written.", new File(vehiclesFile).exists());
+		try (BufferedReader br = IOUtils.getBufferedReader(timesFile)) {
+			Assert.assertEquals("Wrong header.", "file,bytes,seconds,failed,rejected", br.readLine());
+			int failed = 0;
+			String line;
+			while ((line = br.readLine()) != null) {
+				String[] sa = line.split(",");
+				if (Boolean.parseBoolean(sa[3])) {
+					Assert.assertEquals("Wrong failed file.", "2" + ExtractionUtils.SORTED_TEXT_EXTENSION, sa[0]);
+					failed++;
+				}
+			}
+			Assert.assertEquals("Wrong number of failed files.", 1, failed);
+		}
+	}
+
+	private static void writeVehicleFile(String filename, String... records) throws IOException {
+		try (BufferedWriter bw = IOUtils.getBufferedWriter(filename)) {
+			bw.write("vId,time,lon,lat,status,speed");
+			bw.newLine();
+			for (String record : records) {
+				bw.write(record);
+				bw.newLine();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,124 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RecordIndexSorterBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+import org.matsim.up.freight.containers.DigicoreRecord;
+
+/**
+ * Compares sorting a vehicle's GPS records as a list of
+ * {@link DigicoreRecord} objects with sorting the indices of primitive
+ * columns with the {@link RecordIndexSorter}, for both a nearly sorted and a
+ * shuffled log. The object sort needs a large heap for long logs, e.g.
+ * <pre>
+ *     java -Xmx4g ... RecordIndexSorterBenchmark 10000000 5
+ * </pre>
+ *
+ * @author jwjoubert
+ */
+public class RecordIndexSorterBenchmark {
+	private static final Logger LOG = Logger.getLogger(RecordIndexSorterBenchmark.class);
+
+	/**
+	 * @param args optional number of records (default 10<sup>7</sup>), and
+	 *             the number of measured iterations (default 5).
+	 */
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		Random random = new Random(20221205);
+
+		long[] nearlySorted = new long[size];
+		for (int i = 0; i < size; i++) {
+			nearlySorted[i] = 1370599410L + 10L * i + random.nextInt(10);
+		}
+		/* Swap one record in a thousand with a nearby one. */
+		for (int i = 0; i < size / 1000; i++) {
+			int a = random.nextInt(size - 100);
+			int b = a + 1 + random.nextInt(99);
+			long swap = nearlySorted[a];
+			nearlySorted[a] = nearlySorted[b];
+			nearlySorted[b] = swap;
+		}
+		long[] shuffled = nearlySorted.clone();
+		for (int i = size - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			long swap = shuffled[i];
+			shuffled[i] = shuffled[j];
+			shuffled[j] = swap;
+		}
+
+		run("nearly sorted", nearlySorted, iterations);
+		run("shuffled", shuffled, iterations);
+	}
+
+
+	private static void run(String description, long[] time, int iterations) {
+		int[] index = new int[time.length];
+		int[] tmp = new int[time.length];
+
+		/* Warm up both sorts before measuring. */
+		for (int i = 0; i < 2; i++) {
+			sortObjects(time);
+			RecordIndexSorter.sort(time, time.length, index, tmp);
+		}
+		long objectTime = 0;
+		long primitiveTime = 0;
+		for (int i = 0; i < iterations; i++) {
+			long start = System.nanoTime();
+			long first = sortObjects(time);
+			objectTime += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			RecordIndexSorter.sort(time, time.length, index, tmp);
+			primitiveTime += System.nanoTime() - start;
+			if (first != time[index[0]]) {
+				throw new IllegalStateException("The two sorts do not agree.");
+			}
+		}
+		double total = (double) time.length * iterations;
+		LOG.info(String.format(Locale.US, "%s, %d records:", description, time.length));
+		LOG.info(String.format(Locale.US, "   objects: %.1f ns/record (%.0f ms/sort)", objectTime / total, objectTime / 1e6 / iterations));
+		LOG.info(String.format(Locale.US, "primitives: %.1f ns/record (%.0f ms/sort)", primitiveTime / total, primitiveTime / 1e6 / iterations));
+	}
+
+
+	/**
+	 * Creates the records, as they were read, and sorts them.
+	 *
+	 * @return the earliest time stamp.
+	 */
+	private static long sortObjects(long[] time) {
+		List<DigicoreRecord> records = new ArrayList<>();
+		for (long t : time) {
+			records.add(new DigicoreRecord(1234, t, 28.0, -26.0, 17, 0));
+		}
+		Collections.sort(records);
+		return records.get(0).getTime();
+	}
+
+}
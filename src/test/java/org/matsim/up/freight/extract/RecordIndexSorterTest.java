@@ -0,0 +1,139 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RecordIndexSorterTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.extract;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class RecordIndexSorterTest {
+
+	@Test
+	public void testShuffled() {
+		Random random = new Random(20221202);
+		long[] time = new long[10000];
+		for (int i = 0; i < time.length; i++) {
+			/* Few distinct values, so that stability is tested too. */
+			time[i] = random.nextInt(500);
+		}
+		assertSortedStable(time, null);
+	}
+
+
+	@Test
+	public void testNearlySorted() {
+		Random random = new Random(20221203);
+		long[] time = new long[10000];
+		for (int i = 0; i < time.length; i++) {
+			time[i] = 1370599410L + 10L * i;
+		}
+		for (int i = 0; i < 20; i++) {
+			int a = random.nextInt(time.length);
+			int b = random.nextInt(time.length);
+			long swap = time[a];
+			time[a] = time[b];
+			time[b] = swap;
+		}
+		assertSortedStable(time, null);
+	}
+
+
+	@Test
+	public void testSortedAndReversed() {
+		long[] sorted = {1, 2, 2, 3, 5, 8, 8, 8, 13};
+		assertSortedStable(sorted, null);
+		long[] reversed = {13, 8, 8, 8, 5, 3, 2, 2, 1};
+		assertSortedStable(reversed, null);
+		long[] descendingRuns = {5, 4, 3, 9, 8, 7, 1, 1, 0};
+		assertSortedStable(descendingRuns, null);
+	}
+
+
+	@Test
+	public void testEmptyAndSingle() {
+		assertSortedStable(new long[0], null);
+		assertSortedStable(new long[]{42}, null);
+
+		/* Only the first records must be sorted. */
+		long[] time = {3, 2, 1, 0};
+		int[] index = new int[4];
+		RecordIndexSorter.sort(time, 3, index, new int[3]);
+		Assert.assertArrayEquals("Wrong order.", new int[]{2, 1, 0}, Arrays.copyOf(index, 3));
+	}
+
+
+	@Test
+	public void testVehicleAndTime() {
+		Random random = new Random(20221204);
+		long[] vehicle = new long[10000];
+		long[] time = new long[vehicle.length];
+		for (int i = 0; i < vehicle.length; i++) {
+			vehicle[i] = random.nextInt(20);
+			time[i] = random.nextInt(1000);
+		}
+		assertSortedStable(vehicle, time);
+	}
+
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooSmallWorkingSpace() {
+		RecordIndexSorter.sort(new long[]{2, 1}, 2, new int[2], new int[1]);
+	}
+
+
+	/**
+	 * Compares the sorted indices with those of a (stable) object sort.
+	 */
+	private static void assertSortedStable(long[] primary, long[] secondary) {
+		int size = primary.length;
+		Integer[] expected = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			expected[i] = i;
+		}
+		Comparator<Integer> comparator = Comparator.comparingLong(i -> primary[i]);
+		if (secondary != null) {
+			comparator = comparator.thenComparingLong(i -> secondary[i]);
+		}
+		Arrays.sort(expected, comparator);
+
+		int[] index = new int[size];
+		RecordIndexSorter.sort(primary, secondary, size, index, new int[size]);
+		for (int i = 0; i < size; i++) {
+			Assert.assertEquals("Wrong record at position " + i, expected[i].intValue(), index[i]);
+		}
+		Assert.assertEquals("Sorted check disagrees.", isSorted(primary, secondary), RecordIndexSorter.isSorted(primary, secondary, size));
+	}
+
+
+	private static boolean isSorted(long[] primary, long[] secondary) {
+		for (int i = 1; i < primary.length; i++) {
+			if (primary[i] < primary[i - 1] || (primary[i] == primary[i - 1] && secondary != null && secondary[i] < secondary[i - 1])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -93,6 +93,37 @@ public class TurnkeyExtractorTest {
 	}
 	
 	
+	@Test
+	public void testResumeCompletedExtraction(){
+		String[] args = getTestArguments();
+		TurnkeyExtractor.extract(args[0], args[1], args[2], args[3]);
+		
+		ExtractionManifest manifest = ExtractionManifest.read(utils.getOutputDirectory());
+		Assert.assertTrue("Manifest should exist.", manifest.exists());
+		for(ExtractionManifest.Stage stage : ExtractionManifest.Stage.values()){
+			Assert.assertTrue("Stage " + stage + " should be complete.", manifest.isComplete(stage));
+		}
+		Assert.assertTrue("Manifest should be for the input file.", manifest.isForInput(new File(args[0])));
+		Assert.assertEquals("Wrong vehicles output.", utils.getOutputDirectory() + ExtractionUtils.FILENAME_VEHICLES, manifest.getOutput("vehicles"));
+		
+		/* Rerunning must skip all the stages. */
+		File f = new File(utils.getOutputDirectory() + ExtractionUtils.FILENAME_VEHICLES);
+		Assert.assertTrue("Cannot change the file's modification time.", f.setLastModified(0L));
+		TurnkeyExtractor.extract(args[0], args[1], args[2], args[3]);
+		Assert.assertEquals("Vehicles file should not have been rewritten.", 0L, f.lastModified());
+		Assert.assertFalse("Vehicles directory should not exist.", new File(utils.getOutputDirectory() + ExtractionUtils.FOLDER_VEHICLES).exists());
+	}
+	
+	
+	@Test
+	public void testKeepVehicleFiles(){
+		String[] args = getTestArguments();
+		TurnkeyExtractor.extract(args[0], args[1], args[2], args[3], 2, Runtime.getRuntime().maxMemory() / 4, false);
+		Assert.assertTrue("Vehicles directory should be kept.", new File(utils.getOutputDirectory() + ExtractionUtils.FOLDER_VEHICLES).exists());
+		Assert.assertTrue("Vehicles container file should exist.", new File(utils.getOutputDirectory() + ExtractionUtils.FILENAME_VEHICLES).exists());
+	}
+	
+	
 	private String[] getTestArguments(){
 		return new String[]{
 				utils.getClassInputDirectory() + "/test.csv.gz",
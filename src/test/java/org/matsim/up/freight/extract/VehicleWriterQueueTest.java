@@ -0,0 +1,89 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * VehicleWriterQueueTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.extract;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.up.freight.containers.DigicoreChain;
+import org.matsim.up.freight.containers.DigicoreTrace;
+import org.matsim.up.freight.containers.DigicoreVehicle;
+
+
+public class VehicleWriterQueueTest {
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	/**
+	 * A vehicle that cannot be written must fail the queue, but the file
+	 * must still be closed.
+	 */
+	@Test
+	public void testFailedWriteClosesFile() throws IOException {
+		String filename = utils.getOutputDirectory() + "vehicles.xml.gz";
+		VehicleWriterQueue queue = new VehicleWriterQueue(filename, "Test CRS", "Test", 2, 1);
+		DigicoreVehicle vehicle = new DigicoreVehicle(Id.createVehicleId("1"));
+		DigicoreChain chain = new DigicoreChain();
+		chain.add(new DigicoreTrace("Other CRS"));
+		vehicle.getChains().add(chain);
+		queue.add(vehicle);
+		try {
+			queue.close();
+			Assert.fail("Should not write a trace in another coordinate reference system.");
+		} catch (IllegalStateException e) {
+			Assert.assertTrue("Should keep the original failure.", e.getCause().getMessage().contains("coordinate reference system"));
+		}
+
+		/* A file that was never closed is incomplete. */
+		try (InputStream in = new GZIPInputStream(new FileInputStream(filename))) {
+			Assert.assertTrue("File should have the header.", in.readAllBytes().length > 0);
+		}
+	}
+
+
+	@Test
+	public void testDiscard() {
+		String filename = utils.getOutputDirectory() + "vehicles.xml.gz";
+		VehicleWriterQueue queue = new VehicleWriterQueue(filename, "Test CRS", "Test", 2, 1);
+		queue.add(new DigicoreVehicle(Id.createVehicleId("1")));
+		queue.discard();
+		Assert.assertFalse("Incomplete file should be deleted.", new File(filename).exists());
+
+		/* Also when writing has failed. */
+		queue = new VehicleWriterQueue(filename, "Test CRS", "Test", 2, 1);
+		DigicoreVehicle vehicle = new DigicoreVehicle(Id.createVehicleId("2"));
+		DigicoreChain chain = new DigicoreChain();
+		chain.add(new DigicoreTrace("Other CRS"));
+		vehicle.getChains().add(chain);
+		queue.add(vehicle);
+		queue.discard();
+		Assert.assertFalse("Incomplete file should be deleted.", new File(filename).exists());
+	}
+
+}
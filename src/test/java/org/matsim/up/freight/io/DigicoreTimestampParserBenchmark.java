@@ -0,0 +1,159 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DigicoreTimestampParserBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.up.freight.containers.DigicoreVehicles;
+
+/**
+ * Compares parsing the timestamps of a vehicles file with a
+ * {@link java.util.GregorianCalendar} per timestamp, as the readers did before, with
+ * the {@link DigicoreTimestampParser}. The timestamps are those of the given
+ * vehicles file, e.g. a full month's <code>digicoreVehicles.xml.gz</code>,
+ * or a synthetic month if no file is given. The file is then also read
+ * completely with the {@link DigicoreVehiclesReader}, e.g.
+ * <pre>
+ *     java -Xms4g -Xmx4g ... DigicoreTimestampParserBenchmark digicoreVehicles.xml.gz 5
+ * </pre>
+ *
+ * @author jwjoubert
+ */
+public class DigicoreTimestampParserBenchmark {
+	private static final Logger LOG = Logger.getLogger(DigicoreTimestampParserBenchmark.class);
+	private static final Pattern TIMESTAMP = Pattern.compile("(?:start|end|time)=\"(\\d{8} \\d{2}:\\d{2}:\\d{2})\"");
+	private static final TimeZone TIME_ZONE = TimeZone.getTimeZone("GMT+2");
+
+	/**
+	 * @param args optional vehicles file (or "-" for a synthetic month of
+	 *             10<sup>7</sup> timestamps), and the number of measured
+	 *             iterations (default 5).
+	 */
+	public static void main(String[] args) {
+		String filename = args.length > 0 && !args[0].equals("-") ? args[0] : null;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		String[] timestamps = filename == null ? createTimestamps(10_000_000) : readTimestamps(filename);
+		LOG.info("Parsing " + timestamps.length + " timestamps.");
+
+		/* Warm up both paths before measuring. */
+		for (int i = 0; i < 3; i++) {
+			parseWithCalendar(timestamps);
+			parseWithParser(timestamps);
+		}
+
+		long calendarTime = 0;
+		long parserTime = 0;
+		double check = 0;
+		for (int i = 0; i < iterations; i++) {
+			long start = System.nanoTime();
+			check += parseWithCalendar(timestamps);
+			calendarTime += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			check -= parseWithParser(timestamps);
+			parserTime += System.nanoTime() - start;
+		}
+		if (check != 0) {
+			throw new IllegalStateException("The two paths do not parse the same times.");
+		}
+		double total = (double) timestamps.length * iterations;
+		LOG.info(String.format(Locale.US, "calendar: %.1f ns/timestamp (%.1f million/s)", calendarTime / total, 1000.0 * total / calendarTime));
+		LOG.info(String.format(Locale.US, "  parser: %.1f ns/timestamp (%.1f million/s)", parserTime / total, 1000.0 * total / parserTime));
+
+		if (filename != null) {
+			long start = System.nanoTime();
+			DigicoreVehicles vehicles = new DigicoreVehicles();
+			vehicles.setSilentLog(true);
+			int[] count = {0};
+			new DigicoreVehiclesReader(vehicles, vehicle -> count[0]++).readFile(filename);
+			LOG.info(String.format(Locale.US, "Read %d vehicles in %.1f s.", count[0], (System.nanoTime() - start) / 1e9));
+		}
+	}
+
+
+	private static double parseWithCalendar(String[] timestamps) {
+		double sum = 0;
+		for (String timestamp : timestamps) {
+			sum += DigicoreTimestampParserTest.parseWithCalendar(timestamp, TIME_ZONE);
+		}
+		return sum;
+	}
+
+
+	private static double parseWithParser(String[] timestamps) {
+		DigicoreTimestampParser parser = new DigicoreTimestampParser();
+		double sum = 0;
+		for (String timestamp : timestamps) {
+			sum += parser.parse(timestamp, TIME_ZONE);
+		}
+		return sum;
+	}
+
+
+	/**
+	 * @return the activity and position timestamps of the file.
+	 */
+	private static String[] readTimestamps(String filename) {
+		List<String> timestamps = new ArrayList<>();
+		try (BufferedReader br = IOUtils.getBufferedReader(filename)) {
+			String line;
+			while ((line = br.readLine()) != null) {
+				Matcher matcher = TIMESTAMP.matcher(line);
+				while (matcher.find()) {
+					timestamps.add(matcher.group(1));
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot read " + filename, e);
+		}
+		return timestamps.toArray(new String[0]);
+	}
+
+
+	/**
+	 * @return timestamps that resemble a month of activities: every 2000
+	 * 		   timestamps, i.e. a vehicle, increase through the month.
+	 */
+	private static String[] createTimestamps(int number) {
+		Random random = new Random(20221220);
+		String[] timestamps = new String[number];
+		for (int i = 0; i < number; i++) {
+			int second = (int) ((long) (i % 2000) * 31 * 86400 / 2000) + random.nextInt(1200);
+			int day = 1 + second / 86400;
+			int hour = (second / 3600) % 24;
+			int minute = (second / 60) % 60;
+			timestamps[i] = String.format(Locale.US, "201303%02d %02d:%02d:%02d", day, hour, minute, second % 60);
+		}
+		return timestamps;
+	}
+}
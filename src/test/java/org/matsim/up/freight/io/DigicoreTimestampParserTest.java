@@ -0,0 +1,110 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DigicoreTimestampParserTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.io;
+
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class DigicoreTimestampParserTest {
+
+	@Test
+	public void testParse() {
+		DigicoreTimestampParser parser = new DigicoreTimestampParser();
+		TimeZone gmt2 = TimeZone.getTimeZone("GMT+2");
+		Assert.assertEquals("Wrong epoch.", -7200.0, parser.parse("19700101 00:00:00", gmt2), 0.0);
+		Assert.assertEquals("Wrong time.", 1370599410.0, parser.parse("20130607 12:03:30", gmt2), 0.0);
+		Assert.assertEquals("Wrong time from the cache.", 1370599411.0, parser.parse("20130607 12:03:31", gmt2), 0.0);
+		Assert.assertEquals("Wrong time in another zone.", 1370606610.0, parser.parse("20130607 12:03:30", TimeZone.getTimeZone("GMT")), 0.0);
+		Assert.assertEquals("Wrong leap day.", 1330466400.0, parser.parse("20120229 00:00:00", gmt2), 0.0);
+		Assert.assertEquals("Wrong time before the epoch.", -86399.0, parser.parse("19691231 02:00:01", gmt2), 0.0);
+
+		try {
+			parser.parse("2013-06-07 12:03:30", gmt2);
+			Assert.fail("Should not parse a different layout.");
+		} catch (NumberFormatException e) {
+			/* Correct. */
+		}
+	}
+
+
+	/**
+	 * Random timestamps, including those on the days that daylight saving
+	 * starts and ends, and fields out of range, must give the same times as
+	 * the calendar the readers used before.
+	 */
+	@Test
+	public void testSameAsCalendar() {
+		Random random = new Random(20221220);
+		DigicoreTimestampParser parser = new DigicoreTimestampParser();
+		for(String zone : new String[]{"GMT+2", "Africa/Johannesburg", "Europe/Berlin", "America/Sao_Paulo"}){
+			TimeZone timeZone = TimeZone.getTimeZone(zone);
+			for(int i = 0; i < 20000; i++){
+				String timestamp;
+				if(i % 10 == 0){
+					timestamp = String.format(Locale.US, "%04d%02d%02d %02d:%02d:%02d",
+							2000 + random.nextInt(30), random.nextInt(14), random.nextInt(33),
+							random.nextInt(26), random.nextInt(62), random.nextInt(62));
+				} else{
+					timestamp = String.format(Locale.US, "%04d%02d%02d %02d:%02d:%02d",
+							2013 + random.nextInt(2), 1 + random.nextInt(12), 1 + random.nextInt(28),
+							random.nextInt(24), random.nextInt(60), random.nextInt(60));
+				}
+				Assert.assertEquals("Wrong time for " + timestamp + " in " + zone,
+						parseWithCalendar(timestamp, timeZone), parser.parse(timestamp, timeZone), 0.0);
+			}
+			for(String timestamp : new String[]{"20130331 01:59:59", "20130331 02:30:00", "20130331 03:00:00",
+					"20131027 02:30:00", "20131027 03:00:00", "20131020 00:30:00", "20130217 00:30:00"}){
+				Assert.assertEquals("Wrong time for " + timestamp + " in " + zone,
+						parseWithCalendar(timestamp, timeZone), parser.parse(timestamp, timeZone), 0.0);
+			}
+		}
+	}
+
+
+	/**
+	 * How the readers parsed timestamps before, but without the milliseconds
+	 * of the clock.
+	 */
+	static double parseWithCalendar(String string, TimeZone timeZone){
+		GregorianCalendar g = new GregorianCalendar();
+		g.clear();
+		g.setTimeZone(timeZone);
+
+		int year = Integer.parseInt(string.substring(0,4));
+		int month = Integer.parseInt(string.substring(4, 6)) - 1;
+		int day = Integer.parseInt(string.substring(6, 8));
+		int hour = Integer.parseInt(string.substring(9, 11));
+		int min = Integer.parseInt(string.substring(12, 14));
+		int sec = Integer.parseInt(string.substring(15, 17));
+
+		g.set(year, month, day, hour, min, sec);
+
+		return Math.floorDiv(g.getTimeInMillis(), 1000L);
+	}
+
+}
@@ -0,0 +1,153 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DigicoreVehiclesBinaryTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.io;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.up.freight.containers.*;
+import org.matsim.vehicles.Vehicle;
+
+
+public class DigicoreVehiclesBinaryTest {
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		DigicoreVehicles vehicles = createVehicles();
+		String filename = utils.getOutputDirectory() + "vehicles" + DigicoreVehiclesBinaryWriter.FILENAME_SUFFIX;
+		new DigicoreVehiclesBinaryWriter(vehicles).write(filename);
+
+		DigicoreVehicles read = new DigicoreVehicles();
+		DigicoreVehiclesBinaryReader.read(filename, read);
+		assertEquals("Wrong coordinate reference system.", "Test CRS", read.getCoordinateReferenceSystem());
+		assertEquals("Wrong description.", "Test", read.getDescription());
+		assertEquals("Wrong number of vehicles.", vehicles.getVehicles().size(), read.getVehicles().size());
+
+		/* Vehicle attributes. */
+		DigicoreVehicle v0 = read.getVehicles().get(Id.createVehicleId("v0"));
+		assertEquals("Wrong string attribute.", "Pretoria", v0.getAttributes().getAttribute("depot"));
+		assertEquals("Wrong integer attribute.", 3, v0.getAttributes().getAttribute("axles"));
+		assertEquals("Wrong double attribute.", 12.5, v0.getAttributes().getAttribute("mass"));
+		assertEquals("Wrong boolean attribute.", Boolean.TRUE, v0.getAttributes().getAttribute("refrigerated"));
+		assertNull("Should not have the unsupported attribute.", v0.getAttributes().getAttribute("unsupported"));
+		assertEquals("Wrong container attribute.", 42L, read.getVehicleAttributes().getAttribute("v1", "count"));
+		assertEquals("Wrong container attribute.", "\u00f6stlich", read.getVehicleAttributes().getAttribute("v1", "label"));
+		assertNull("Should not have a container attribute.", read.getVehicleAttributes().getAttribute("v0", "count"));
+
+		/* Everything else. */
+		DigicoreActivity activity = v0.getChains().get(0).getAllActivities().get(0);
+		assertEquals("Wrong maximum duration.", 600.0, activity.getMaximumDuration().seconds(), 0.0);
+		assertEquals("Wrong vehicles.", toXml(vehicles.getVehicles().values()), toXml(read.getVehicles().values()));
+	}
+
+	@Test
+	public void testGetVehicle() throws IOException {
+		DigicoreVehicles vehicles = createVehicles();
+		String filename = utils.getOutputDirectory() + "vehicles" + DigicoreVehiclesBinaryWriter.FILENAME_SUFFIX;
+		DigicoreVehiclesBinaryWriter writer = new DigicoreVehiclesBinaryWriter(vehicles);
+		writer.open(filename);
+		for(int v = vehicles.getVehicles().size() - 1; v >= 0; v--){
+			writer.writeVehicle(vehicles.getVehicles().get(Id.createVehicleId("v" + v)));
+		}
+		writer.close();
+
+		try(DigicoreVehiclesBinaryReader reader = new DigicoreVehiclesBinaryReader(filename)){
+			List<Id<Vehicle>> ids = new ArrayList<>(reader.getVehicleIds());
+			assertEquals("Wrong number of vehicles.", vehicles.getVehicles().size(), ids.size());
+			assertEquals("Vehicles should be in the order written.", Id.createVehicleId("v19"), ids.get(0));
+			assertNull("Should not find a vehicle.", reader.getVehicle(Id.createVehicleId("dummy")));
+
+			for(String id : new String[]{"v7", "v0", "v19", "v7"}){
+				DigicoreVehicle vehicle = reader.getVehicle(Id.createVehicleId(id));
+				assertEquals("Wrong vehicle.", Id.createVehicleId(id), vehicle.getId());
+				assertEquals("Wrong vehicle " + id, toXml(Arrays.asList(vehicles.getVehicles().get(vehicle.getId()))),
+						toXml(Arrays.asList(vehicle)));
+			}
+		}
+	}
+
+	@Test
+	public void testConvert() throws IOException {
+		String xml = utils.getOutputDirectory() + "vehicles.xml";
+		DigicoreVehiclesWriterTest.writeStreamed(DigicoreVehiclesWriterTest.buildDetailedVehicles(20, 20221223), xml);
+		String binary = utils.getOutputDirectory() + "vehicles" + DigicoreVehiclesBinaryWriter.FILENAME_SUFFIX;
+		DigicoreVehiclesBinaryConverter.main(new String[]{xml, binary});
+		String back = utils.getOutputDirectory() + "back.xml";
+		DigicoreVehiclesBinaryConverter.main(new String[]{binary, back});
+
+		assertTrue("Conversion should not change the vehicles.", Arrays.equals(
+				Files.readAllBytes(Paths.get(xml)), Files.readAllBytes(Paths.get(back))));
+	}
+
+	@Test
+	public void testNotBinary() {
+		String filename = utils.getOutputDirectory() + "vehicles.xml";
+		DigicoreVehiclesWriterTest.writeStreamed(DigicoreVehiclesWriterTest.buildDetailedVehicles(1, 1L), filename);
+		try{
+			new DigicoreVehiclesBinaryReader(filename);
+			fail("Should not read an XML file.");
+		} catch(IllegalArgumentException e){
+			/* Correct. */
+		}
+	}
+
+
+	private String toXml(Iterable<DigicoreVehicle> vehicles) throws IOException {
+		List<DigicoreVehicle> list = new ArrayList<>();
+		vehicles.forEach(list::add);
+		list.sort((v1, v2) -> v1.getId().toString().compareTo(v2.getId().toString()));
+		String filename = utils.getOutputDirectory() + "compare.xml";
+		DigicoreVehiclesWriterTest.writeStreamed(list, filename);
+		return new String(Files.readAllBytes(Paths.get(filename)), "UTF-8");
+	}
+
+
+	private static DigicoreVehicles createVehicles(){
+		DigicoreVehicles vehicles = new DigicoreVehicles("Test CRS");
+		vehicles.setDescription("Test");
+		for(DigicoreVehicle vehicle : DigicoreVehiclesWriterTest.buildDetailedVehicles(20, 20221223)){
+			vehicles.addDigicoreVehicle(vehicle);
+		}
+		DigicoreVehicle v0 = vehicles.getVehicles().get(Id.createVehicleId("v0"));
+		v0.getAttributes().putAttribute("depot", "Pretoria");
+		v0.getAttributes().putAttribute("axles", 3);
+		v0.getAttributes().putAttribute("mass", 12.5);
+		v0.getAttributes().putAttribute("refrigerated", true);
+		v0.getAttributes().putAttribute("unsupported", new Object());
+		v0.getChains().get(0).getAllActivities().get(0).setMaximumDuration(600.0);
+		vehicles.getVehicleAttributes().putAttribute("v1", "count", 42L);
+		vehicles.getVehicleAttributes().putAttribute("v1", "label", "\u00f6stlich");
+		return vehicles;
+	}
+
+}
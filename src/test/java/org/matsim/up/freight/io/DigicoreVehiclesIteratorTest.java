@@ -0,0 +1,147 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DigicoreVehiclesIteratorTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.io;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.up.freight.containers.*;
+
+
+public class DigicoreVehiclesIteratorTest {
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testIteratorV1() throws IOException {
+		String filename = utils.getOutputDirectory() + "vehiclesV1.xml.gz";
+		new DigicoreVehiclesWriter(createVehicles()).writeV1(filename);
+
+		try(DigicoreVehiclesIterator it = new DigicoreVehiclesIterator(filename)){
+			assertEquals("Wrong doctype.", "digicoreVehicles_v1.dtd", it.getDoctype());
+			assertVehicles(filename, it);
+		}
+	}
+
+	@Test
+	public void testIteratorV2() throws IOException {
+		String filename = utils.getOutputDirectory() + "vehiclesV2.xml.gz";
+		new DigicoreVehiclesWriter(createVehicles()).writeV2(filename);
+
+		try(DigicoreVehiclesIterator it = new DigicoreVehiclesIterator(filename)){
+			assertEquals("Wrong doctype.", "digicoreVehicles_v2.dtd", it.getDoctype());
+			assertVehicles(filename, it);
+		}
+	}
+
+	@Test
+	public void testStream() {
+		String filename = utils.getOutputDirectory() + "vehiclesV2.xml";
+		new DigicoreVehiclesWriter(createVehicles()).writeV2(filename);
+
+		DigicoreVehiclesIterator it = new DigicoreVehiclesIterator(filename);
+		try(Stream<DigicoreVehicle> stream = it.stream()){
+			List<String> ids = stream.map(vehicle -> vehicle.getId().toString()).collect(Collectors.toList());
+			assertEquals("Wrong vehicles.", List.of("1", "2"), ids);
+		}
+		assertFalse("Closed iterator should have no vehicles.", it.hasNext());
+		assertNotNull("Should expose the collection attributes.", it.getVehicleAttributes());
+	}
+
+
+	/**
+	 * Checks, element by element, that the iterator returns the same
+	 * vehicles, and in the same order, as the existing reader.
+	 */
+	private void assertVehicles(String filename, DigicoreVehiclesIterator it){
+		DigicoreVehicles expected = new DigicoreVehicles();
+		List<DigicoreVehicle> expectedVehicles = new ArrayList<>();
+		new DigicoreVehiclesReader(expected, expectedVehicles::add).readFile(filename);
+
+		assertEquals("Wrong CRS.", expected.getCoordinateReferenceSystem(), it.getCoordinateReferenceSystem());
+		assertEquals("Wrong description.", expected.getDescription(), it.getDescription());
+
+		for(DigicoreVehicle dv : expectedVehicles){
+			assertTrue("Should have another vehicle.", it.hasNext());
+			DigicoreVehicle vehicle = it.next();
+			assertEquals("Wrong vehicle.", dv.getId(), vehicle.getId());
+			assertEquals("Wrong vehicle type.", dv.getType().getId(), vehicle.getType().getId());
+			assertEquals("Wrong number of chains.", dv.getChains().size(), vehicle.getChains().size());
+			for(int c = 0; c < dv.getChains().size(); c++){
+				DigicoreChain chain = dv.getChains().get(c);
+				DigicoreChain other = vehicle.getChains().get(c);
+				assertEquals("Wrong number of chain elements.", chain.size(), other.size());
+				for(int e = 0; e < chain.size(); e++){
+					assertElement(chain.get(e), other.get(e));
+				}
+			}
+		}
+		assertFalse("Should have no more vehicles.", it.hasNext());
+	}
+
+
+	private void assertElement(DigicoreChainElement expected, DigicoreChainElement element){
+		assertEquals("Wrong element type.", expected.getClass(), element.getClass());
+		if(expected instanceof DigicoreActivity){
+			DigicoreActivity a = (DigicoreActivity) expected;
+			DigicoreActivity b = (DigicoreActivity) element;
+			assertEquals("Wrong activity type.", a.getType(), b.getType());
+			assertEquals("Wrong start time.", a.getStartTime().seconds(), b.getStartTime().seconds(), MatsimTestUtils.EPSILON);
+			assertEquals("Wrong end time.", a.getEndTime().seconds(), b.getEndTime().seconds(), MatsimTestUtils.EPSILON);
+			assertEquals("Wrong coordinate.", a.getCoord(), b.getCoord());
+			assertEquals("Wrong facility.", a.getFacilityId(), b.getFacilityId());
+			assertEquals("Wrong link.", a.getLinkId(), b.getLinkId());
+			assertEquals("Wrong time zone.", a.getZone(), b.getZone());
+			assertEquals("Wrong locale.", a.getLocale(), b.getLocale());
+		} else{
+			DigicoreTrace a = (DigicoreTrace) expected;
+			DigicoreTrace b = (DigicoreTrace) element;
+			assertEquals("Wrong CRS for trace.", a.getCrs(), b.getCrs());
+			assertEquals("Wrong number of positions.", a.size(), b.size());
+			for(int p = 0; p < a.size(); p++){
+				assertEquals("Wrong position time.", a.get(p).getTime(), b.get(p).getTime());
+				assertEquals("Wrong position.", a.get(p).getCoord(), b.get(p).getCoord());
+			}
+		}
+	}
+
+
+	/**
+	 * The reader test's vehicles, with a facility for one of the activities.
+	 */
+	private static DigicoreVehicles createVehicles(){
+		DigicoreVehicles dvs = DigicoreVehiclesReaderTest.createVehicles();
+		DigicoreActivity activity = (DigicoreActivity) dvs.getVehicles().get(Id.createVehicleId("2")).getChains().get(0).get(2);
+		activity.setFacilityId(Id.create("f1", ActivityFacility.class));
+		return dvs;
+	}
+
+}
@@ -113,7 +113,7 @@ public class DigicoreVehiclesReaderTest {
 		assertEquals("Position y not correct.", position.getCoord().getY(), 1.0, MatsimTestUtils.EPSILON);
 	}
 	
-	private DigicoreVehicles createVehicles(){
+	static DigicoreVehicles createVehicles(){
 		DigicoreVehicles dvs = new DigicoreVehicles();
 		dvs.setCoordinateReferenceSystem("Test CRS");
 		dvs.setDescription("Test");
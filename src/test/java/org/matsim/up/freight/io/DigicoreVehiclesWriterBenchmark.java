@@ -0,0 +1,197 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DigicoreVehiclesWriterBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.up.freight.containers.DigicoreActivity;
+import org.matsim.up.freight.containers.DigicoreChain;
+import org.matsim.up.freight.containers.DigicoreTrace;
+import org.matsim.up.freight.containers.DigicoreVehicle;
+import org.matsim.up.freight.containers.DigicoreVehicles;
+
+/**
+ * Compares formatting the activities' timestamps and coordinates with a
+ * calendar and {@link String#format(Locale, String, Object...)}, as the
+ * writers did before, with the {@link DigicoreXmlFormatter}. The vehicles
+ * are then also written completely, to report the writer's throughput.
+ * The vehicles are generated, e.g. 10000 of them with
+ * <pre>
+ *     java -Xms4g -Xmx4g ... DigicoreVehiclesWriterBenchmark 10000 5
+ * </pre>
+ *
+ * @author jwjoubert
+ */
+public class DigicoreVehiclesWriterBenchmark {
+	private static final Logger LOG = Logger.getLogger(DigicoreVehiclesWriterBenchmark.class);
+
+	/**
+	 * @param args optional number of vehicles (default 10000), and the
+	 *             number of measured iterations (default 5).
+	 */
+	public static void main(String[] args) throws IOException {
+		int numberOfVehicles = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		List<DigicoreVehicle> vehicles = createVehicles(numberOfVehicles);
+		int numberOfActivities = 0;
+		for (DigicoreVehicle vehicle : vehicles) {
+			for (DigicoreChain chain : vehicle.getChains()) {
+				numberOfActivities += chain.getAllActivities().size();
+			}
+		}
+		LOG.info("Formatting " + numberOfActivities + " activities.");
+
+		/* Warm up both paths before measuring. */
+		for (int i = 0; i < 3; i++) {
+			formatWithString(vehicles);
+			formatWithFormatter(vehicles);
+		}
+
+		long stringTime = 0;
+		long formatterTime = 0;
+		for (int i = 0; i < iterations; i++) {
+			long start = System.nanoTime();
+			long stringLength = formatWithString(vehicles);
+			stringTime += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			long formatterLength = formatWithFormatter(vehicles);
+			formatterTime += System.nanoTime() - start;
+			if (stringLength != formatterLength) {
+				throw new IllegalStateException("The two paths do not format the same text.");
+			}
+		}
+		double total = (double) numberOfActivities * iterations;
+		LOG.info(String.format(Locale.US, "String.format: %.1f ns/activity", stringTime / total));
+		LOG.info(String.format(Locale.US, "    formatter: %.1f ns/activity", formatterTime / total));
+
+		File file = File.createTempFile("vehicles", ".xml");
+		file.deleteOnExit();
+		DigicoreVehicles header = new DigicoreVehicles("Test CRS");
+		long start = System.nanoTime();
+		DigicoreVehiclesWriter writer = new DigicoreVehiclesWriter(header);
+		writer.open(file.getAbsolutePath());
+		vehicles.forEach(writer::writeVehicle);
+		writer.close();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		LOG.info(String.format(Locale.US, "Wrote %.1f MB in %.2f s (%.1f MB/s).",
+				file.length() / 1e6, seconds, file.length() / 1e6 / seconds));
+	}
+
+
+	/**
+	 * @return vehicles that resemble a month of the DigiCore data: the
+	 * 		   activities are all in the same zone, and each vehicle's
+	 * 		   times increase through the month.
+	 */
+	private static List<DigicoreVehicle> createVehicles(int numberOfVehicles) {
+		Random random = new Random(20221225);
+		TimeZone timeZone = TimeZone.getTimeZone("GMT+2");
+		List<DigicoreVehicle> vehicles = new ArrayList<>(numberOfVehicles);
+		for (int v = 0; v < numberOfVehicles; v++) {
+			DigicoreVehicle vehicle = new DigicoreVehicle(Id.createVehicleId(v));
+			double time = 1362088800.0 + random.nextInt(86400);
+			for (int c = 0; c < 20; c++) {
+				DigicoreChain chain = new DigicoreChain();
+				for (int a = 0; a < 5; a++) {
+					if (a > 0) {
+						DigicoreTrace trace = new DigicoreTrace("Test CRS");
+						for (int p = 0; p < 10; p++) {
+							time += 60;
+							trace.addPosition((long) time, 16.0 + 17.0 * random.nextDouble(), -35.0 + 13.0 * random.nextDouble());
+						}
+						chain.add(trace);
+					}
+					DigicoreActivity activity = new DigicoreActivity(a == 0 ? "major" : "minor", timeZone, Locale.ENGLISH);
+					activity.setCoord(new Coord(4e6 * random.nextDouble() - 2e6, 4e6 * random.nextDouble() - 2e6));
+					activity.setStartTime(time += random.nextInt(3600));
+					activity.setEndTime(time += random.nextInt(3600));
+					chain.add(activity);
+				}
+				vehicle.getChains().add(chain);
+			}
+			vehicles.add(vehicle);
+		}
+		return vehicles;
+	}
+
+
+	private static long formatWithString(List<DigicoreVehicle> vehicles) {
+		long length = 0;
+		for (DigicoreVehicle vehicle : vehicles) {
+			for (DigicoreChain chain : vehicle.getChains()) {
+				for (DigicoreActivity activity : chain.getAllActivities()) {
+					length += getDateString(activity.getStartTimeGregorianCalendar()).length();
+					length += getDateString(activity.getEndTimeGregorianCalendar()).length();
+					length += String.format(Locale.US, "%.2f", activity.getCoord().getX()).length();
+					length += String.format(Locale.US, "%.2f", activity.getCoord().getY()).length();
+				}
+			}
+		}
+		return length;
+	}
+
+
+	private static long formatWithFormatter(List<DigicoreVehicle> vehicles) {
+		DigicoreXmlFormatter formatter = new DigicoreXmlFormatter();
+		StringWriter out = new StringWriter();
+		long length = 0;
+		try {
+			for (DigicoreVehicle vehicle : vehicles) {
+				for (DigicoreChain chain : vehicle.getChains()) {
+					for (DigicoreActivity activity : chain.getAllActivities()) {
+						formatter.appendDate(activity.getStartTime().seconds(), activity);
+						formatter.appendDate(activity.getEndTime().seconds(), activity);
+						formatter.appendFixed(activity.getCoord().getX(), 2);
+						formatter.appendFixed(activity.getCoord().getY(), 2);
+					}
+				}
+				formatter.writeTo(out);
+				length += out.getBuffer().length();
+				out.getBuffer().setLength(0);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return length;
+	}
+
+
+	private static String getDateString(GregorianCalendar cal) {
+		return String.format(Locale.US, "%04d%02d%02d %02d:%02d:%02d",
+				cal.get(Calendar.YEAR), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.DAY_OF_MONTH),
+				cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.MINUTE), cal.get(Calendar.SECOND));
+	}
+}
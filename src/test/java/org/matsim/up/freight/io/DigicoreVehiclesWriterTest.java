@@ -21,16 +21,28 @@ package org.matsim.up.freight.io;
 import static org.junit.Assert.*;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
+import java.util.Random;
 import java.util.TimeZone;
 
 import org.junit.Rule;
 import org.junit.Test;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Coord;
 import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.facilities.ActivityFacility;
 import org.matsim.testcases.MatsimTestUtils;
 import org.matsim.up.freight.containers.*;
 import org.matsim.up.freight.io.DigicoreVehiclesWriter;
+import org.matsim.up.freight.utils.BlockGzip;
+import org.matsim.up.freight.utils.BlockGzipIndex;
 
 
 public class DigicoreVehiclesWriterTest {
@@ -64,6 +76,32 @@ public class DigicoreVehiclesWriterTest {
 		assertTrue("Output file does not exist.", new File(utils.getOutputDirectory() + "vehicles.xml").exists());
 	}
 	
+	@Test
+	public void testWriteStreamed() {
+		DigicoreVehicles dvs = buildVehicles();
+		DigicoreVehicles header = new DigicoreVehicles(dvs.getCoordinateReferenceSystem());
+		header.setDescription(dvs.getDescription());
+		DigicoreVehiclesWriter writer = new DigicoreVehiclesWriter(header);
+		writer.open(utils.getOutputDirectory() + "vehicles.xml.gz");
+		for(DigicoreVehicle vehicle : dvs.getVehicles().values()){
+			writer.writeVehicle(vehicle);
+		}
+		writer.close();
+		
+		DigicoreVehicles read = new DigicoreVehicles();
+		new DigicoreVehiclesReader(read).readFile(utils.getOutputDirectory() + "vehicles.xml.gz");
+		assertEquals("Wrong number of vehicles.", 2, read.getVehicles().size());
+		assertEquals("Wrong description.", "Test", read.getDescription());
+		assertEquals("Wrong number of chains.", 1, read.getVehicles().get(Id.createVehicleId("2")).getChains().size());
+		
+		try{
+			writer.writeVehicle(dvs.getVehicles().get(Id.createVehicleId("2")));
+			fail("Should not write to a closed writer.");
+		} catch(IllegalStateException e){
+			/* Correctly caught exception. */
+		}
+	}
+	
 	@Test
 	public void testWriteV2WithInconsistentCrs(){
 		DigicoreVehicles dvs = buildVehicles();
@@ -76,6 +114,138 @@ public class DigicoreVehiclesWriterTest {
 		}
 	}
 	
+	/**
+	 * The file was written before the writer stopped using
+	 * {@link String#format(String, Object...)}, and must not change.
+	 */
+	@Test
+	public void testWriteV2Unchanged() throws IOException {
+		String filename = utils.getOutputDirectory() + "vehicles.xml";
+		writeStreamed(buildDetailedVehicles(8, 20221221), filename);
+		assertTrue("Output differs from before.", Arrays.equals(
+				Files.readAllBytes(Paths.get(utils.getClassInputDirectory() + "vehicles.xml")),
+				Files.readAllBytes(Paths.get(filename))));
+	}
+	
+	@Test
+	public void testRoundTrip() throws IOException {
+		String first = utils.getOutputDirectory() + "first.xml";
+		writeStreamed(buildDetailedVehicles(20, 20221222), first);
+		
+		List<DigicoreVehicle> read = new ArrayList<>();
+		new DigicoreVehiclesReader(new DigicoreVehicles(), read::add).readFile(first);
+		assertEquals("Wrong number of vehicles.", 20, read.size());
+		String second = utils.getOutputDirectory() + "second.xml";
+		writeStreamed(read, second);
+		assertTrue("Vehicles should be written the same after reading them.", Arrays.equals(
+				Files.readAllBytes(Paths.get(first)), Files.readAllBytes(Paths.get(second))));
+	}
+	
+	/**
+	 * Compressed files are block-gzipped, and hold the same as the
+	 * uncompressed file.
+	 */
+	@Test
+	public void testWriteBlockGzipped() throws IOException {
+		List<DigicoreVehicle> vehicles = buildDetailedVehicles(20, 20221228);
+		String xml = utils.getOutputDirectory() + "vehicles.xml";
+		writeStreamed(vehicles, xml);
+		String gz = utils.getOutputDirectory() + "vehicles.xml.gz";
+		writeStreamed(vehicles, gz);
+		
+		assertTrue("File should be block-gzipped.", BlockGzipIndex.isBlockGzipped(new File(gz)));
+		try(InputStream in = BlockGzip.getInputStream(gz)){
+			assertTrue("Compressed file differs.", Arrays.equals(Files.readAllBytes(Paths.get(xml)), in.readAllBytes()));
+		}
+		List<DigicoreVehicle> read = new ArrayList<>();
+		new DigicoreVehiclesReader(new DigicoreVehicles(), read::add).readFile(gz);
+		assertEquals("Wrong number of vehicles.", 20, read.size());
+	}
+	
+	
+	static void writeStreamed(List<DigicoreVehicle> vehicles, String filename){
+		DigicoreVehicles header = new DigicoreVehicles("Test CRS");
+		header.setDescription("Test");
+		DigicoreVehiclesWriter writer = new DigicoreVehiclesWriter(header);
+		writer.open(filename);
+		vehicles.forEach(writer::writeVehicle);
+		writer.close();
+	}
+	
+	
+	/**
+	 * Vehicles with random activities and traces, with coordinates that
+	 * include rounding ties and negative zeros, and activities on the days
+	 * that daylight saving starts and ends.
+	 */
+	static List<DigicoreVehicle> buildDetailedVehicles(int numberOfVehicles, long seed){
+		Random random = new Random(seed);
+		TimeZone gmt2 = TimeZone.getTimeZone("GMT+2");
+		TimeZone berlin = TimeZone.getTimeZone("Europe/Berlin");
+		List<DigicoreVehicle> vehicles = new ArrayList<>(numberOfVehicles);
+		for(int v = 0; v < numberOfVehicles; v++){
+			DigicoreVehicle vehicle = new DigicoreVehicle(Id.createVehicleId("v" + v));
+			vehicle.setType(v % 2 == 0 ? "truck" : "bus");
+			double time = 1362088800.0 + random.nextInt(86400);
+			for(int c = 0; c < 1 + random.nextInt(4); c++){
+				DigicoreChain chain = new DigicoreChain();
+				for(int a = 0; a < 2 + random.nextInt(4); a++){
+					if(a > 0){
+						DigicoreTrace trace = new DigicoreTrace("Test CRS");
+						for(int p = 0; p < random.nextInt(5); p++){
+							time += 1 + random.nextInt(120);
+							double x = 16.0 + 17.0 * random.nextDouble();
+							double y = -35.0 + 13.0 * random.nextDouble();
+							if(p % 2 == 0){
+								trace.addPosition((long) time, x, y);
+							} else{
+								trace.addPosition((long) time, x, y, 2000.0 * random.nextDouble());
+							}
+						}
+						chain.add(trace);
+					}
+					TimeZone zone = random.nextInt(10) == 0 ? berlin : gmt2;
+					DigicoreActivity activity = new DigicoreActivity(a == 0 ? "major" : "minor", zone, Locale.ENGLISH);
+					activity.setCoord(new Coord(createCoordinate(random), createCoordinate(random)));
+					if(random.nextInt(10) == 0){
+						time = random.nextBoolean() ? 1364691600.0 : 1382835600.0;
+						time += random.nextInt(7200);
+					}
+					time += random.nextInt(3600) + random.nextInt(1000) / 1000.0;
+					activity.setStartTime(time);
+					time += random.nextInt(36000) + random.nextInt(1000) / 1000.0;
+					activity.setEndTime(time);
+					if(random.nextBoolean()){
+						activity.setFacilityId(Id.create("f" + random.nextInt(100), ActivityFacility.class));
+					}
+					if(random.nextInt(4) == 0){
+						activity.setLinkId(Id.createLinkId("l" + random.nextInt(100)));
+					}
+					chain.add(activity);
+				}
+				vehicle.getChains().add(chain);
+			}
+			vehicles.add(vehicle);
+		}
+		return vehicles;
+	}
+	
+	
+	private static double createCoordinate(Random random){
+		switch(random.nextInt(6)){
+		case 0:
+			/* Rounding ties, both in binary and in decimal. */
+			return random.nextInt(200000) - 100000 + (random.nextBoolean() ? 0.125 : 0.005);
+		case 1:
+			return -random.nextInt(5) / 1000.0;
+		case 2:
+			return random.nextInt(2000000) - 1000000;
+		default:
+			return 4000000.0 * random.nextDouble() - 2000000.0;
+		}
+	}
+	
+	
 	private DigicoreVehicles buildVehicles(){
 		DigicoreVehicles dvs = new DigicoreVehicles();
 		dvs.setCoordinateReferenceSystem("Test CRS");
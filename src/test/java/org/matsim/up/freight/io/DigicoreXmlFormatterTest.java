@@ -0,0 +1,123 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DigicoreXmlFormatterTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.io;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class DigicoreXmlFormatterTest {
+
+	@Test
+	public void testAppendFixed() throws IOException {
+		Random random = new Random(20221223);
+		DigicoreXmlFormatter formatter = new DigicoreXmlFormatter();
+		double[] special = {0.0, -0.0, -0.001, 0.005, 1.005, 0.125, 2.675, -2.675, 99.995,
+				1e15, -1e15, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MIN_VALUE};
+		for(int decimals : new int[]{1, 2, 6}){
+			for(double value : special){
+				assertFixed(formatter, value, decimals);
+			}
+			for(int i = 0; i < 100000; i++){
+				double value;
+				switch(i % 4){
+				case 0:
+					value = (random.nextInt(2000001) - 1000000) / 1000.0;
+					break;
+				case 1:
+					value = (random.nextInt(2000001) - 1000000) + random.nextInt(8) / 8.0;
+					break;
+				case 2:
+					value = 4e6 * random.nextDouble() - 2e6;
+					break;
+				default:
+					value = 40.0 * random.nextDouble() - 20.0;
+				}
+				assertFixed(formatter, value, decimals);
+			}
+		}
+	}
+
+
+	@Test
+	public void testAppendDate() throws IOException {
+		Random random = new Random(20221224);
+		DigicoreXmlFormatter formatter = new DigicoreXmlFormatter();
+		for(String zone : new String[]{"GMT+2", "Africa/Johannesburg", "Europe/Berlin", "America/Sao_Paulo"}){
+			TimeZone timeZone = TimeZone.getTimeZone(zone);
+			long time = 1356991200000L;
+			for(int i = 0; i < 100000; i++){
+				/* Mostly increasing, as within a vehicle, but also jumps. */
+				if(i % 100 == 0){
+					time = -100000000000L + (long) (random.nextDouble() * 1700000000000L);
+				}
+				time += random.nextInt(3600000);
+				StringWriter writer = new StringWriter();
+				formatter.appendDate(time, timeZone).writeTo(writer);
+				Assert.assertEquals("Wrong date for " + time + " in " + zone, getDateString(time, timeZone), writer.toString());
+			}
+		}
+	}
+
+
+	@Test
+	public void testWriteTo() throws IOException {
+		DigicoreXmlFormatter formatter = new DigicoreXmlFormatter();
+		StringWriter writer = new StringWriter();
+		StringBuilder expected = new StringBuilder();
+		for(int i = 0; i < 100000; i++){
+			formatter.append("<position x=\"").appendFixed(i / 7.0, 6).append('"').append(" />\n");
+			expected.append(String.format(Locale.US, "<position x=\"%.6f\" />\n", i / 7.0));
+			formatter.flushIfFull(writer);
+		}
+		formatter.writeTo(writer);
+		Assert.assertEquals("Wrong output.", expected.toString(), writer.toString());
+	}
+
+
+	private static void assertFixed(DigicoreXmlFormatter formatter, double value, int decimals) throws IOException {
+		StringWriter writer = new StringWriter();
+		formatter.appendFixed(value, decimals).writeTo(writer);
+		Assert.assertEquals("Wrong format for " + value, String.format(Locale.US, "%." + decimals + "f", value), writer.toString());
+	}
+
+
+	/**
+	 * How the writers formatted the timestamps before.
+	 */
+	private static String getDateString(long time, TimeZone timeZone){
+		GregorianCalendar cal = new GregorianCalendar(timeZone, Locale.ENGLISH);
+		cal.setTimeInMillis(time);
+		return String.format(Locale.US, "%04d%02d%02d %02d:%02d:%02d",
+				cal.get(Calendar.YEAR), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.DAY_OF_MONTH),
+				cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.MINUTE), cal.get(Calendar.SECOND));
+	}
+
+}
@@ -0,0 +1,154 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BlockGzipTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.testcases.MatsimTestUtils;
+
+
+public class BlockGzipTest {
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	/**
+	 * Whatever the number of threads, and however the data is written, the
+	 * blocks must be read back in order, also by a normal gzip reader.
+	 */
+	@Test
+	public void testRoundTrip() throws IOException {
+		byte[] data = createData(1000003, new Random(20221224));
+		for (int threads = 1; threads <= 4; threads++) {
+			byte[] compressed = compress(data, threads);
+			Assert.assertArrayEquals("Wrong data with " + threads + " thread(s).", data,
+					readAll(new BlockGzipInputStream(new ByteArrayInputStream(compressed), threads)));
+			Assert.assertArrayEquals("Should be readable as gzip with " + threads + " thread(s).", data,
+					readAll(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+		}
+
+		/* Empty data still has the end-of-file block. */
+		byte[] empty = compress(new byte[0], 2);
+		Assert.assertEquals("Wrong empty file.", 28, empty.length);
+		Assert.assertEquals("Should be empty.", 0, readAll(new BlockGzipInputStream(new ByteArrayInputStream(empty), 2)).length);
+	}
+
+	@Test
+	public void testIncompressible() throws IOException {
+		byte[] data = new byte[3 * BlockGzipOutputStream.BLOCK_SIZE + 17];
+		new Random(20221225).nextBytes(data);
+		byte[] compressed = compress(data, 3);
+		Assert.assertArrayEquals("Wrong data.", data, readAll(new BlockGzipInputStream(new ByteArrayInputStream(compressed), 3)));
+		Assert.assertArrayEquals("Should be readable as gzip.", data, readAll(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+	}
+
+	@Test
+	public void testIndex() throws IOException {
+		byte[] data = createData(500000, new Random(20221226));
+		String filename = utils.getOutputDirectory() + "data.txt.gz";
+		try (OutputStream os = new BlockGzipOutputStream(new FileOutputStream(filename), 4)) {
+			os.write(data);
+		}
+		File file = new File(filename);
+		Assert.assertTrue("Should be block-gzipped.", BlockGzipIndex.isBlockGzipped(file));
+		BlockGzipIndex index = BlockGzipIndex.read(file);
+		Assert.assertEquals("Wrong number of blocks.", (data.length + BlockGzipOutputStream.BLOCK_SIZE - 1) / BlockGzipOutputStream.BLOCK_SIZE + 1,
+				index.getNumberOfBlocks());
+		Assert.assertEquals("Wrong uncompressed size.", data.length, index.getUncompressedSize());
+		Assert.assertArrayEquals("Wrong data.", data, readAll(BlockGzip.getInputStream(filename)));
+	}
+
+	@Test
+	public void testNotBlockGzipped() throws IOException {
+		byte[] data = createData(100000, new Random(20221227));
+		String filename = utils.getOutputDirectory() + "data.txt.gz";
+		try (OutputStream os = new GZIPOutputStream(new FileOutputStream(filename))) {
+			os.write(data);
+		}
+		Assert.assertFalse("Should not be block-gzipped.", BlockGzipIndex.isBlockGzipped(new File(filename)));
+		Assert.assertArrayEquals("Should still be read.", data, readAll(BlockGzip.getInputStream(filename)));
+
+		ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+		try (OutputStream os = new GZIPOutputStream(gzipped)) {
+			os.write(data);
+		}
+		try {
+			readAll(new BlockGzipInputStream(new ByteArrayInputStream(gzipped.toByteArray()), 2));
+			Assert.fail("Should not read a normal gzip stream.");
+		} catch (IOException e) {
+			/* Correct. */
+		}
+	}
+
+
+	/**
+	 * Lines of text, written in pieces of random length.
+	 */
+	private static byte[] createData(int length, Random random) {
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++) {
+			data[i] = random.nextInt(40) == 0 ? (byte) '\n' : (byte) ('a' + random.nextInt(6));
+		}
+		return data;
+	}
+
+	private static byte[] compress(byte[] data, int threads) throws IOException {
+		Random random = new Random(data.length);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (OutputStream os = new BlockGzipOutputStream(compressed, threads)) {
+			int offset = 0;
+			while (offset < data.length) {
+				int n = Math.min(data.length - offset, random.nextInt(100000));
+				if (n == 1) {
+					os.write(data[offset]);
+				} else {
+					os.write(data, offset, n);
+				}
+				offset += n;
+			}
+		}
+		return compressed.toByteArray();
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		try (in) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[7919];
+			int n;
+			while ((n = in.read(buffer)) >= 0) {
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		}
+	}
+
+}
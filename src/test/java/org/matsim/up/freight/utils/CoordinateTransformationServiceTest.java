@@ -0,0 +1,179 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CoordinateTransformationServiceTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.up.freight.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.core.utils.geometry.CoordinateTransformation;
+import org.matsim.core.utils.geometry.transformations.TransformationFactory;
+
+
+public class CoordinateTransformationServiceTest {
+	private static final String WGS84 = TransformationFactory.WGS84;
+	private static final String LO29 = TransformationFactory.HARTEBEESTHOEK94_LO29;
+
+	@Test
+	public void testGet() {
+		Assert.assertSame("Should share the service.",
+				CoordinateTransformationService.get(WGS84, LO29),
+				CoordinateTransformationService.get(WGS84, LO29));
+		Assert.assertNotSame("Should not share services with different caches.",
+				CoordinateTransformationService.get(WGS84, LO29),
+				CoordinateTransformationService.get(WGS84, LO29, 16));
+		Assert.assertTrue("A single position should still be cached.",
+				CoordinateTransformationService.get(WGS84, LO29, 1).toString().endsWith("(cache 1)"));
+		Assert.assertTrue("Cache size should be rounded up to a power of two.",
+				CoordinateTransformationService.get(WGS84, LO29, 3).toString().endsWith("(cache 4)"));
+		try {
+			CoordinateTransformationService.get(WGS84, LO29, -1);
+			Assert.fail("Should not accept a negative cache size.");
+		} catch (IllegalArgumentException e) {
+			/* Correct. */
+		}
+	}
+
+
+	/**
+	 * Single coordinates, and arrays, must be transformed exactly as with the
+	 * transformation from the {@link TransformationFactory}.
+	 */
+	@Test
+	public void testSameAsTransformationFactory() {
+		CoordinateTransformation expected = TransformationFactory.getCoordinateTransformation(WGS84, LO29);
+		double[] lon = new double[2000];
+		double[] lat = new double[lon.length];
+		createPositions(lon, lat, new Random(20221206));
+
+		for (int cache : new int[]{0, 1, 3, 16}) {
+			CoordinateTransformationService ct = CoordinateTransformationService.get(WGS84, LO29, cache);
+			for (int i = 0; i < 10; i++) {
+				Coord c = ct.transform(new Coord(lon[i], lat[i]));
+				Coord e = expected.transform(new Coord(lon[i], lat[i]));
+				Assert.assertEquals("Wrong x.", e.getX(), c.getX(), 0.0);
+				Assert.assertEquals("Wrong y.", e.getY(), c.getY(), 0.0);
+			}
+
+			/* Only the given range must be transformed. */
+			double[] x = lon.clone();
+			double[] y = lat.clone();
+			ct.transform(x, y, 10, x.length - 20);
+			for (int i = 0; i < x.length; i++) {
+				if (i < 10 || i >= x.length - 10) {
+					Assert.assertEquals("Should not be transformed.", lon[i], x[i], 0.0);
+					Assert.assertEquals("Should not be transformed.", lat[i], y[i], 0.0);
+				} else {
+					Coord e = expected.transform(new Coord(lon[i], lat[i]));
+					Assert.assertEquals("Wrong x at " + i, e.getX(), x[i], 0.0);
+					Assert.assertEquals("Wrong y at " + i, e.getY(), y[i], 0.0);
+				}
+			}
+		}
+	}
+
+
+	@Test
+	public void testRoundTrip() {
+		double[] lon = new double[1000];
+		double[] lat = new double[lon.length];
+		createPositions(lon, lat, new Random(20221207));
+		double[] x = lon.clone();
+		double[] y = lat.clone();
+		CoordinateTransformationService.get(WGS84, LO29).transform(x, y, x.length);
+		CoordinateTransformationService.get(LO29, WGS84).transform(x, y, x.length);
+		for (int i = 0; i < x.length; i++) {
+			Assert.assertEquals("Wrong longitude.", lon[i], x[i], 1e-7);
+			Assert.assertEquals("Wrong latitude.", lat[i], y[i], 1e-7);
+		}
+	}
+
+
+	@Test
+	public void testIdentity() {
+		CoordinateTransformationService ct = CoordinateTransformationService.get("Atlantis", "Atlantis");
+		double[] x = {1.0, 2.0};
+		double[] y = {3.0, 4.0};
+		ct.transform(x, y, 2);
+		Assert.assertArrayEquals("Should not change.", new double[]{1.0, 2.0}, x, 0.0);
+		Assert.assertArrayEquals("Should not change.", new double[]{3.0, 4.0}, y, 0.0);
+	}
+
+
+	/**
+	 * Threads sharing the service must not affect one another's results.
+	 */
+	@Test
+	public void testConcurrent() throws Exception {
+		double[] lon = new double[20000];
+		double[] lat = new double[lon.length];
+		createPositions(lon, lat, new Random(20221208));
+		double[] expectedX = lon.clone();
+		double[] expectedY = lat.clone();
+		CoordinateTransformationService.get(WGS84, LO29).transform(expectedX, expectedY, lon.length);
+
+		CoordinateTransformationService ct = CoordinateTransformationService.get(WGS84, LO29, 64);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<double[][]>> results = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			results.add(executor.submit(() -> {
+				double[] x = lon.clone();
+				double[] y = lat.clone();
+				ct.transform(x, y, x.length);
+				return new double[][]{x, y};
+			}));
+		}
+		executor.shutdown();
+		for (Future<double[][]> result : results) {
+			Assert.assertArrayEquals("Wrong x.", expectedX, result.get()[0], 0.0);
+			Assert.assertArrayEquals("Wrong y.", expectedY, result.get()[1], 0.0);
+		}
+	}
+
+
+	/**
+	 * Creates positions in South Africa, where a vehicle is often stationary
+	 * and regularly returns to earlier positions.
+	 */
+	private static void createPositions(double[] lon, double[] lat, Random random) {
+		for (int i = 0; i < lon.length; i++) {
+			double r = random.nextDouble();
+			if (i > 0 && r < 0.3) {
+				lon[i] = lon[i - 1];
+				lat[i] = lat[i - 1];
+			} else if (i > 100 && r < 0.4) {
+				int j = i - 1 - random.nextInt(100);
+				lon[i] = lon[j];
+				lat[i] = lat[j];
+			} else {
+				lon[i] = 17.0 + 15.0 * random.nextDouble();
+				lat[i] = -22.0 - 12.0 * random.nextDouble();
+			}
+		}
+	}
+
+}
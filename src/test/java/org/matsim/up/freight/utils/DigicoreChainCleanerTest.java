@@ -0,0 +1,69 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DigicoreChainCleanerTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.up.freight.utils;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.utils.misc.Counter;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.up.freight.containers.DigicoreActivity;
+import org.matsim.up.freight.containers.DigicoreChain;
+import org.matsim.up.freight.containers.DigicoreTrace;
+import org.matsim.up.freight.containers.DigicoreVehicle;
+import org.matsim.up.freight.utils.DigicoreChainCleaner.CallableChainCleaner;
+import org.matsim.vehicles.Vehicle;
+
+public class DigicoreChainCleanerTest {
+
+	@Test
+	public void testCleanChainIgnoresFacilityIdCase() {
+		DigicoreChain chain = new DigicoreChain();
+		chain.add(buildActivity("major", "f1", 0.0, 100.0));
+		chain.add(new DigicoreTrace("WGS84"));
+		chain.add(buildActivity("minor", "F1", 200.0, 300.0));
+		chain.add(new DigicoreTrace("WGS84"));
+		chain.add(buildActivity("minor", "f2", 400.0, 500.0));
+
+		CallableChainCleaner cleaner = new CallableChainCleaner(
+				new DigicoreVehicle(Id.create("1", Vehicle.class)), new Counter("  vehicles # "));
+		cleaner.cleanChain(chain);
+
+		Assert.assertEquals("Activities at the same facility should be merged.", 3, chain.size());
+		DigicoreActivity merged = (DigicoreActivity) chain.get(0);
+		Assert.assertEquals("Wrong end time.", 300.0, merged.getEndTime().seconds(), 0.0);
+		Assert.assertEquals("Wrong type.", "major", merged.getType());
+		Assert.assertEquals("Wrong facility.", "f2", ((DigicoreActivity) chain.get(2)).getFacilityId().toString());
+	}
+
+
+	private static DigicoreActivity buildActivity(String type, String facilityId, double start, double end) {
+		DigicoreActivity activity = new DigicoreActivity(type, TimeZone.getTimeZone("GMT+2"), new Locale("en"));
+		activity.setFacilityId(Id.create(facilityId, ActivityFacility.class));
+		activity.setStartTime(start);
+		activity.setEndTime(end);
+		return activity;
+	}
+}